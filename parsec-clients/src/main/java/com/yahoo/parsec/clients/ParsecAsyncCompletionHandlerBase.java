@@ -4,8 +4,12 @@
 package com.yahoo.parsec.clients;
 
 import com.ning.http.client.AsyncCompletionHandler;
+import com.ning.http.client.HttpResponseBodyPart;
+import com.ning.http.client.HttpResponseStatus;
 
 import javax.ws.rs.core.Response;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Simple AsyncHandler that returns {@link Response}.
@@ -13,8 +17,50 @@ import javax.ws.rs.core.Response;
  * @author sho
  */
 public class ParsecAsyncCompletionHandlerBase extends AsyncCompletionHandler<Response> {
+    /**
+     * Body parts of the current response, null if the body is returned as a String.
+     */
+    private final List<HttpResponseBodyPart> bodyParts;
+
+    /**
+     * Constructor, returning the body as a String entity.
+     */
+    public ParsecAsyncCompletionHandlerBase() {
+        this(false);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param responseBodyAsBytes whether to return the body as a {@link ParsecResponseBody} entity over the
+     *                            received body parts, instead of a String entity
+     */
+    public ParsecAsyncCompletionHandlerBase(final boolean responseBodyAsBytes) {
+        bodyParts = responseBodyAsBytes ? new ArrayList<>() : null;
+    }
+
+    @Override
+    public STATE onStatusReceived(final HttpResponseStatus status) throws Exception {
+        if (bodyParts != null) {
+            bodyParts.clear();
+        }
+        return super.onStatusReceived(status);
+    }
+
+    @Override
+    public STATE onBodyPartReceived(final HttpResponseBodyPart content) throws Exception {
+        if (bodyParts == null) {
+            return super.onBodyPartReceived(content);
+        }
+        bodyParts.add(content);
+        return STATE.CONTINUE;
+    }
+
     @Override
     public Response onCompleted(final com.ning.http.client.Response ningResponse) throws Exception {
+        if (bodyParts != null) {
+            return ParsecHttpUtil.getResponse(ningResponse, bodyParts);
+        }
         return ParsecHttpUtil.getResponse(ningResponse);
     }
 }
@@ -4,13 +4,27 @@
 package com.yahoo.parsec.clients;
 
 import com.ning.http.client.*;
+import com.ning.http.client.providers.netty.future.NettyResponseFuture;
+import org.jboss.netty.channel.Channel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 
 /**
  * {@link AsyncHandler} wrapper that logs connection related information.
+ * <p>
+ * Body parts are passed straight through to the wrapped handler and only counted: the profiling log
+ * only needs status and headers, so a streaming handler downloads large bodies with flat memory use.
  *
  * @param <T> T
  * @author sho
@@ -23,7 +37,7 @@ class ParsecAsyncHandlerWrapper<T> implements AsyncHandler<T>, ProgressAsyncHand
     private static final Logger LOGGER = LoggerFactory.getLogger(ParsecAsyncHandlerWrapper.class);
 
     /**
-     * response builder.
+     * response builder, for status and headers only.
      */
     private final Response.ResponseBuilder builder = new Response.ResponseBuilder();
 
@@ -61,6 +75,36 @@ class ParsecAsyncHandlerWrapper<T> implements AsyncHandler<T>, ProgressAsyncHand
      */
     private int lastRespCode;
 
+    /**
+     * body bytes received for the current response.
+     */
+    private long bytesReceived;
+
+    /**
+     * status codes for which the body download is aborted.
+     */
+    private volatile Collection<Integer> abortStatusCodes;
+
+    /**
+     * whether the current response is aborted.
+     */
+    private boolean aborted;
+
+    /**
+     * whether response headers were received.
+     */
+    private volatile boolean headersReceived;
+
+    /**
+     * Ning future of the current attempt.
+     */
+    private volatile Future<?> responseFuture;
+
+    /**
+     * progress listeners, notified when a request completes or fails.
+     */
+    private List<Consumer<ParsecAsyncProgress>> progressListeners;
+
     /**
      * Constructor.
      *
@@ -75,6 +119,7 @@ class ParsecAsyncHandlerWrapper<T> implements AsyncHandler<T>, ProgressAsyncHand
         this.progress = new ParsecAsyncProgress();
         this.ningRequest = ningRequest;
         this.requestCount = 0;
+        this.abortStatusCodes = Collections.emptyList();
     }
 
     /**
@@ -86,7 +131,7 @@ class ParsecAsyncHandlerWrapper<T> implements AsyncHandler<T>, ProgressAsyncHand
      */
     @Override
     public STATE onBodyPartReceived(final HttpResponseBodyPart bodyPart) throws Exception {
-        builder.accumulate(bodyPart);
+        bytesReceived += bodyPart.length();
         return asyncHandler.onBodyPartReceived(bodyPart);
     }
 
@@ -137,7 +182,15 @@ class ParsecAsyncHandlerWrapper<T> implements AsyncHandler<T>, ProgressAsyncHand
     public STATE onHeadersReceived(final HttpResponseHeaders headers) throws Exception {
         builder.accumulate(headers);
         ParsecAsyncProgressTimer.progressTime(progress, ParsecAsyncProgressTimer.TimerOpCode.TIMER_STARTTRANSFER);
-        return asyncHandler.onHeadersReceived(headers);
+        headersReceived = true;
+        STATE state = asyncHandler.onHeadersReceived(headers);
+
+        // Status and headers arrive together, abort here so headers (e.g. Retry-After) are kept
+        if (aborted) {
+            LOGGER.debug("Abort body download: " + ningRequest.getUrl());
+            return STATE.ABORT;
+        }
+        return state;
     }
 
     /**
@@ -192,6 +245,8 @@ class ParsecAsyncHandlerWrapper<T> implements AsyncHandler<T>, ProgressAsyncHand
     public STATE onStatusReceived(final HttpResponseStatus responseStatus) throws Exception {
         builder.reset();
         builder.accumulate(responseStatus);
+        bytesReceived = 0;
+        aborted = abortStatusCodes.contains(responseStatus.getStatusCode());
         return asyncHandler.onStatusReceived(responseStatus);
     }
 
@@ -243,8 +298,12 @@ class ParsecAsyncHandlerWrapper<T> implements AsyncHandler<T>, ProgressAsyncHand
     public void onThrowable(Throwable t) {
         ParsecAsyncProgressTimer.progressTime(progress, ParsecAsyncProgressTimer.TimerOpCode.TIMER_TOTAL);
         writeProfilingLog(null);
-        progress.reset();
         lastRespCode = -1;
+        // cancelled requests have no complete progress, the hedger records the time they waited itself
+        if (!(t instanceof CancellationException)) {
+            notifyProgressListeners();
+        }
+        progress.reset();
         asyncHandler.onThrowable(t);
     }
 
@@ -254,8 +313,9 @@ class ParsecAsyncHandlerWrapper<T> implements AsyncHandler<T>, ProgressAsyncHand
 
         ParsecAsyncProgressTimer.progressTime(progress, ParsecAsyncProgressTimer.TimerOpCode.TIMER_TOTAL);
         writeProfilingLog(ningResponse);
-        progress.reset();
         lastRespCode = ningResponse.getStatusCode();
+        notifyProgressListeners();
+        progress.reset();
 
         return asyncHandler.onCompleted();
     }
@@ -279,6 +339,101 @@ class ParsecAsyncHandlerWrapper<T> implements AsyncHandler<T>, ProgressAsyncHand
         return this.progress;
     }
 
+    /**
+     * the last response code getter.
+     *
+     * @return last response code
+     */
+    public int getLastRespCode() {
+        return lastRespCode;
+    }
+
+    /**
+     * the body bytes received getter.
+     *
+     * @return body bytes received for the current response
+     */
+    public long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    /**
+     * set status codes for which the body download of the next responses is aborted as soon as
+     * status and headers are received.
+     *
+     * @param abortStatusCodes status codes
+     */
+    public void setAbortStatusCodes(final Collection<Integer> abortStatusCodes) {
+        this.abortStatusCodes = abortStatusCodes;
+    }
+
+    /**
+     * set Ning future of the current attempt.
+     *
+     * @param responseFuture Ning future
+     */
+    void setResponseFuture(final Future<?> responseFuture) {
+        this.responseFuture = responseFuture;
+    }
+
+    /**
+     * suspend or resume reading the response of the current attempt from its connection,
+     * only supported by the Netty provider.
+     *
+     * @param readable false to suspend reading, true to resume
+     * @return true if applied
+     */
+    boolean setReadable(final boolean readable) {
+        Future<?> future = responseFuture;
+        if (!(future instanceof NettyResponseFuture)) {
+            return false;
+        }
+        Channel channel = ((NettyResponseFuture<?>) future).channel();
+        if (channel == null || !channel.isOpen()) {
+            return false;
+        }
+        channel.setReadable(readable);
+        return true;
+    }
+
+    /**
+     * whether response headers were received.
+     *
+     * @return true if headers were received
+     */
+    public boolean isHeadersReceived() {
+        return headersReceived;
+    }
+
+    /**
+     * add progress listener, notified with the request progress when a request completes or fails
+     * (not when it is cancelled), after the last response code is set.
+     *
+     * @param progressListener progress listener
+     */
+    public void addProgressListener(final Consumer<ParsecAsyncProgress> progressListener) {
+        if (progressListeners == null) {
+            progressListeners = new ArrayList<>(1);
+        }
+        progressListeners.add(progressListener);
+    }
+
+    /**
+     * notify progress listeners.
+     */
+    private void notifyProgressListeners() {
+        if (progressListeners == null) {
+            return;
+        }
+        for (Consumer<ParsecAsyncProgress> progressListener : progressListeners) {
+            try {
+                progressListener.accept(progress);
+            } catch (RuntimeException e) {
+                LOGGER.warn("Progress listener failed", e);
+            }
+        }
+    }
+
     /**
      * write log profiling.
      *
@@ -290,11 +445,17 @@ class ParsecAsyncHandlerWrapper<T> implements AsyncHandler<T>, ProgressAsyncHand
         if (requestCount > 1) {
             requestStatus = ParsecClientDefine.REQUEST_SINGLE_RETRY + ":" + lastRespCode;
         }
+        Map<String, String> msgMap = new LinkedHashMap<>();
+        msgMap.put(ParsecClientDefine.PROFILING_BYTES_RECEIVED, String.valueOf(bytesReceived));
+        if (aborted) {
+            msgMap.put(ParsecClientDefine.PROFILING_ABORTED, Boolean.TRUE.toString());
+        }
         ParsecClientProfilingLogUtil.logRemoteRequest(
                 ningRequest,
                 ningResponse,
                 requestStatus,
-                progress
+                progress,
+                msgMap
         );
     }
 }
@@ -3,21 +3,33 @@
 
 package com.yahoo.parsec.clients;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.ning.http.client.AsyncHandler;
 import com.ning.http.client.AsyncHttpClient;
 import com.ning.http.client.AsyncHttpClientConfig;
+import com.ning.http.client.ListenableFuture;
+import com.ning.http.client.Request;
 import com.ning.http.client.filter.IOExceptionFilter;
 import com.ning.http.client.filter.RequestFilter;
 import com.ning.http.client.filter.ResponseFilter;
+import com.ning.http.util.AsyncHttpProviderUtils;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Response;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
 
 
 /**
@@ -32,6 +44,21 @@ public class ParsecAsyncHttpClient {
      */
     private static final Logger LOGGER = LoggerFactory.getLogger(ParsecAsyncHttpClient.class);
 
+    /**
+     * Lowest status code counted as a failure by circuit breakers.
+     */
+    private static final int SERVER_ERROR = 500;
+
+    /**
+     * Too many requests status code.
+     */
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    /**
+     * Service unavailable status code.
+     */
+    private static final int SERVICE_UNAVAILABLE = 503;
+
     /**
      * Client.
      */
@@ -50,7 +77,52 @@ public class ParsecAsyncHttpClient {
     /**
      * Executor.
      */
-    private ThreadPoolExecutor executorService;
+    private ExecutorService executorService;
+
+    /**
+     * Scheduler for retry backoff and hedge delays.
+     */
+    private ScheduledExecutorService scheduledExecutorService;
+
+    /**
+     * Hedger for hedged requests.
+     */
+    private ParsecHttpRequestHedger hedger;
+
+    /**
+     * Batcher for batch requests.
+     */
+    private ParsecHttpRequestBatcher batcher;
+
+    /**
+     * Circuit breaker builder, null if circuit breaking is disabled.
+     */
+    private ParsecCircuitBreaker.Builder circuitBreakerBuilder;
+
+    /**
+     * Circuit breakers per host.
+     */
+    private final ConcurrentMap<String, ParsecCircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+
+    /**
+     * Concurrency limiter builder, null if concurrency limiting is disabled.
+     */
+    private ParsecConcurrencyLimiter.Builder concurrencyLimiterBuilder;
+
+    /**
+     * Concurrency limiters per host.
+     */
+    private final ConcurrentMap<String, ParsecConcurrencyLimiter> concurrencyLimiters = new ConcurrentHashMap<>();
+
+    /**
+     * Coalescer for critical GET requests, null if coalescing is disabled.
+     */
+    private ParsecHttpRequestCoalescer<Response> coalescer;
+
+    /**
+     * Object mapper decoding JSON responses.
+     */
+    private ObjectMapper objectMapper;
 
     /**
      * Unused constructor.
@@ -64,27 +136,49 @@ public class ParsecAsyncHttpClient {
      * @param builder builder
      */
     private ParsecAsyncHttpClient(final Builder builder) {
-        this(builder.configBuilder.build(), builder.cacheExpireAfterWrite, builder.cacheMaximumSize);
-    }
+        ningClientConfig = builder.configBuilder.build();
+        // Netty I/O threads always run on the Ning executor, virtual threads would be pinned by their selector
+        executorService = builder.virtualThreads
+            ? ParsecVirtualThreads.newExecutor(builder.traceVirtualThreadPinning)
+            : ningClientConfig.executorService();
+        ParsecAsyncHttpResponseLoadingCache.Builder cacheBuilder = new ParsecAsyncHttpResponseLoadingCache.Builder(this)
+            .expireAfterWrite(builder.cacheExpireAfterWrite, TimeUnit.SECONDS)
+            .maxTimeToLive(builder.cacheMaxTimeToLive, TimeUnit.SECONDS)
+            .staleWhileRevalidate(builder.cacheStaleWhileRevalidate, TimeUnit.SECONDS)
+            .staleIfError(builder.cacheStaleIfError, TimeUnit.SECONDS)
+            .earlyRefreshBeta(builder.cacheEarlyRefreshBeta)
+            .maxEntryWeight(builder.cacheMaxEntryWeight)
+            .negativeTimeToLive(Response.Status.Family.CLIENT_ERROR, builder.cacheClientErrorTimeToLive, TimeUnit.SECONDS)
+            .negativeTimeToLive(Response.Status.Family.SERVER_ERROR, builder.cacheServerErrorTimeToLive, TimeUnit.SECONDS)
+            .exceptionTimeToLive(builder.cacheExceptionTimeToLive, TimeUnit.SECONDS)
+            .negativeMaximumSize(builder.cacheNegativeMaximumSize)
+            .keyNormalizer(builder.cacheKeyNormalizer)
+            .offHeapStorage(builder.cacheOffHeapCapacity,
+                (int) Math.min(builder.cacheOffHeapCapacity, Builder.DEFAULT_CACHE_OFF_HEAP_SLAB_SIZE))
+            .executor(executorService);
+        if (builder.cacheDiskDirectory != null) {
+            int segmentSize = (int) Math.max(Builder.MIN_CACHE_DISK_SEGMENT_SIZE,
+                Math.min(builder.cacheDiskCapacity / 2, Builder.DEFAULT_CACHE_DISK_SEGMENT_SIZE));
+            cacheBuilder.diskStorage(Paths.get(builder.cacheDiskDirectory), segmentSize,
+                (int) Math.max(2, builder.cacheDiskCapacity / segmentSize));
+        }
+        if (builder.cacheMaximumWeight > 0) {
+            cacheBuilder.maximumWeight(builder.cacheMaximumWeight);
+        } else {
+            cacheBuilder.maximumSize(builder.cacheMaximumSize);
+        }
+        responseLoadingCache = cacheBuilder.build();
 
-    /**
-     * Private constructor.
-     * @param ningClientConfig Ning client config
-     * @param cacheExpireAfterWrite cache expire time
-     * @param cacheMaximumSize cache maximum size
-     */
-    private ParsecAsyncHttpClient(
-        final AsyncHttpClientConfig ningClientConfig,
-        int cacheExpireAfterWrite,
-        int cacheMaximumSize) {
-        responseLoadingCache = new ParsecAsyncHttpResponseLoadingCache.Builder(this)
-            .expireAfterWrite(cacheExpireAfterWrite, TimeUnit.SECONDS)
-            .maximumSize(cacheMaximumSize)
-            .build();
-
-        this.ningClientConfig = ningClientConfig;
-        executorService = (ThreadPoolExecutor) ningClientConfig.executorService();
+        scheduledExecutorService = Executors.newSingleThreadScheduledExecutor();
         client = new AsyncHttpClient(ningClientConfig);
+        hedger = new ParsecHttpRequestHedger(scheduledExecutorService, builder.hedgeBudget);
+        batcher = new ParsecHttpRequestBatcher(scheduledExecutorService);
+        circuitBreakerBuilder = builder.circuitBreakerBuilder;
+        concurrencyLimiterBuilder = builder.concurrencyLimiterBuilder;
+        if (builder.coalesceCriticalGets) {
+            coalescer = new ParsecHttpRequestCoalescer<>();
+        }
+        objectMapper = builder.objectMapper != null ? builder.objectMapper : new ObjectMapper();
     }
 
     /**
@@ -99,6 +193,14 @@ public class ParsecAsyncHttpClient {
             executorService.shutdown();
         }
 
+        if (!ningClientConfig.executorService().isShutdown()) {
+            ningClientConfig.executorService().shutdown();
+        }
+
+        if (!scheduledExecutorService.isShutdown()) {
+            scheduledExecutorService.shutdown();
+        }
+
         responseLoadingCache.shutdownCleanUpExecutorService();
     }
 
@@ -122,17 +224,78 @@ public class ParsecAsyncHttpClient {
 
     /**
      * Critical execute a request (will not lookup in cache nor load into cache).
+     * GET requests with a hedge delay are hedged, identical critical GET requests in flight
+     * share one call if critical GET coalescing is enabled.
      *
      * @param request Request to critical execute
      * @return {@literal CompletableFuture<Response>}
      * @throws ExecutionException execution exception
      */
     public CompletableFuture<Response> criticalExecute(final ParsecAsyncHttpRequest request) throws ExecutionException {
-        return criticalExecute(request, new ParsecAsyncCompletionHandlerBase());
+        if (coalescer != null && request.isCriticalGet() && "GET".equals(request.getMethod())) {
+            return withinDeadline(request, () -> coalescer.execute(request.withoutDeadline(), this::executeRequest));
+        }
+
+        return executeRequest(request);
+    }
+
+    /**
+     * Execute a request with the default response handler, hedging it if needed.
+     *
+     * @param request Request to execute
+     * @return {@literal CompletableFuture<Response>}
+     */
+    private CompletableFuture<Response> executeRequest(final ParsecAsyncHttpRequest request) {
+        if (ParsecHttpRequestHedger.isHedgeable(request)) {
+            return withinDeadline(request, () -> hedger.execute(
+                request,
+                () -> new ParsecAsyncCompletionHandlerBase(request.isResponseBodyAsBytes()),
+                asyncHandlerWrapper -> executeRequest(request, asyncHandlerWrapper)
+            ));
+        }
+
+        return criticalExecute(request, new ParsecAsyncCompletionHandlerBase(request.isResponseBodyAsBytes()));
+    }
+
+    /**
+     * Execute a request within its deadline: the execution is not started if the deadline passed,
+     * and is cancelled when the deadline passes.
+     *
+     * @param request Request to execute
+     * @param execution Execution of the request
+     * @param <T> Response type
+     * @return {@literal CompletableFuture<T>}, completed exceptionally with a
+     *     {@link ParsecDeadlineExceededException} if the deadline passed
+     */
+    private <T> CompletableFuture<T> withinDeadline(
+        final ParsecAsyncHttpRequest request,
+        final Supplier<CompletableFuture<T>> execution
+    ) {
+        final long timeLeft = request.getTimeLeft();
+        if (timeLeft == Long.MAX_VALUE) {
+            return execution.get();
+        }
+
+        final ParsecDeadlineFuture<T> result = new ParsecDeadlineFuture<>();
+        if (timeLeft <= 0) {
+            result.completeExceptionally(new ParsecDeadlineExceededException(
+                "Deadline exceeded before sending request: " + request.getUrl()));
+            return result;
+        }
+
+        result.setExecution(execution.get());
+        if (!result.isDone()) {
+            result.setTimer(scheduledExecutorService.schedule(() -> result.expire(
+                new ParsecDeadlineExceededException("Deadline exceeded: " + request.getUrl())),
+                timeLeft, TimeUnit.MILLISECONDS));
+        }
+        return result;
     }
 
     /**
      * Critical execute a request (will not lookup in cache nor load into cache).
+     * Body parts are passed to the handler as they are received and are not buffered by the client,
+     * so a streaming handler downloads large bodies with flat memory use.
      *
      * @param request Request to critical execute
      * @param asyncHandler Request async handler
@@ -143,29 +306,172 @@ public class ParsecAsyncHttpClient {
         final ParsecAsyncHttpRequest request,
         AsyncHandler<T> asyncHandler
     ) {
-        ParsecAsyncHandlerWrapper<T> asyncHandlerWrapper =
-                new ParsecAsyncHandlerWrapper<>(asyncHandler, request.getNingRequest());
-
-        if (!request.getRetryStatusCodes().isEmpty()) {
-            return new ParsecCompletableFuture<>(
-                executorService.submit(
-                    new ParsecHttpRequestRetryCallable<>(
-                        client,
-                        request,
-                        asyncHandlerWrapper
-                    )
-                )
-            );
+        return withinDeadline(request, () ->
+            executeRequest(request, new ParsecAsyncHandlerWrapper<>(asyncHandler, request.getNingRequest())));
+    }
+
+    /**
+     * Execute a request within the circuit breaker and the concurrency limit of the request host.
+     *
+     * @param request Request to execute
+     * @param asyncHandlerWrapper Request async handler wrapper
+     * @param <T> Response type
+     * @return {@literal CompletableFuture<T>}
+     */
+    private <T> CompletableFuture<T> executeRequest(
+        final ParsecAsyncHttpRequest request,
+        final ParsecAsyncHandlerWrapper<T> asyncHandlerWrapper
+    ) {
+        if (circuitBreakerBuilder == null && concurrencyLimiterBuilder == null) {
+            return doExecuteRequest(request, asyncHandlerWrapper);
+        }
+
+        final String host = AsyncHttpProviderUtils.getBaseUrl(request.getNingRequest().getUri());
+        final ParsecCircuitBreaker circuitBreaker = getCircuitBreaker(host);
+        final ParsecCircuitBreaker.Permit permit =
+            circuitBreaker == null ? null : circuitBreaker.tryAcquirePermission();
+        if (circuitBreaker != null && permit == null) {
+            CompletableFuture<T> rejected = new CompletableFuture<>();
+            rejected.completeExceptionally(new ParsecCircuitBreakerOpenException(host));
+            return rejected;
+        }
+
+        final ParsecConcurrencyLimiter concurrencyLimiter = getConcurrencyLimiter(host);
+        if (concurrencyLimiter == null) {
+            return executeRequest(request, asyncHandlerWrapper, permit);
+        }
+
+        asyncHandlerWrapper.addProgressListener(progress -> concurrencyLimiter.onSample(
+            progress.getTotalTime(), isDropped(asyncHandlerWrapper.getLastRespCode())));
+
+        final AtomicBoolean started = new AtomicBoolean();
+        final CompletableFuture<T> future = concurrencyLimiter.submit(() -> {
+            started.set(true);
+            return executeRequest(request, asyncHandlerWrapper, permit);
+        }, executorService);
+
+        // rejected or cancelled while queued
+        if (permit != null) {
+            future.whenComplete((response, throwable) -> {
+                if (!started.get()) {
+                    permit.onIgnored();
+                }
+            });
+        }
+        return future;
+    }
+
+    /**
+     * Execute a request, recording its outcome in the circuit breaker.
+     *
+     * @param request Request to execute
+     * @param asyncHandlerWrapper Request async handler wrapper
+     * @param permit Circuit breaker permit, null if circuit breaking is disabled
+     * @param <T> Response type
+     * @return {@literal CompletableFuture<T>}
+     */
+    private <T> CompletableFuture<T> executeRequest(
+        final ParsecAsyncHttpRequest request,
+        final ParsecAsyncHandlerWrapper<T> asyncHandlerWrapper,
+        final ParsecCircuitBreaker.Permit permit
+    ) {
+        if (permit == null) {
+            return doExecuteRequest(request, asyncHandlerWrapper);
+        }
+
+        final long start = System.nanoTime();
+        final CompletableFuture<T> future;
+        try {
+            future = doExecuteRequest(request, asyncHandlerWrapper);
+        } catch (RuntimeException e) {
+            permit.onComplete(true, System.nanoTime() - start);
+            throw e;
+        }
+
+        future.whenComplete((response, throwable) -> {
+            if (throwable instanceof CancellationException) {
+                permit.onIgnored();
+            } else {
+                permit.onComplete(
+                    throwable != null || asyncHandlerWrapper.getLastRespCode() >= SERVER_ERROR,
+                    System.nanoTime() - start
+                );
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Execute a request with retries if needed, streamed bodies are sent only once.
+     *
+     * @param request Request to execute
+     * @param asyncHandlerWrapper Request async handler wrapper
+     * @param <T> Response type
+     * @return {@literal CompletableFuture<T>}
+     */
+    private <T> CompletableFuture<T> doExecuteRequest(
+        final ParsecAsyncHttpRequest request,
+        final ParsecAsyncHandlerWrapper<T> asyncHandlerWrapper
+    ) {
+        if (!request.getRetryStatusCodes().isEmpty() && request.isBodyReplayable()) {
+            return new ParsecHttpRequestRetryCallable<>(
+                client,
+                request,
+                asyncHandlerWrapper,
+                executorService,
+                scheduledExecutorService
+            ).callAsync();
         } else {
-            return new ParsecCompletableFuture<>(
-                client.executeRequest(
-                    request.getNingRequest(),
-                    asyncHandlerWrapper
-                )
-            );
+            final Request ningRequest;
+            try {
+                ningRequest = request.getNingRequest(ningClientConfig.getRequestTimeout());
+            } catch (TimeoutException e) {
+                CompletableFuture<T> expired = new CompletableFuture<>();
+                expired.completeExceptionally(e);
+                return expired;
+            }
+            ListenableFuture<T> ningFuture = client.executeRequest(ningRequest, asyncHandlerWrapper);
+            asyncHandlerWrapper.setResponseFuture(ningFuture);
+            return new ParsecCompletableFuture<>(ningFuture);
         }
     }
 
+    /**
+     * Whether a response code means the request was dropped by an overloaded host.
+     *
+     * @param statusCode Response status code, -1 for errors and timeouts
+     * @return true if dropped
+     */
+    private static boolean isDropped(final int statusCode) {
+        return statusCode == -1 || statusCode == TOO_MANY_REQUESTS || statusCode == SERVICE_UNAVAILABLE;
+    }
+
+    /**
+     * Get circuit breaker of a host.
+     *
+     * @param host Host base URL (e.g. http://localhost:8080)
+     * @return {@link ParsecCircuitBreaker}, or null if circuit breaking is disabled
+     */
+    public ParsecCircuitBreaker getCircuitBreaker(final String host) {
+        if (circuitBreakerBuilder == null) {
+            return null;
+        }
+        return circuitBreakers.computeIfAbsent(host, circuitBreakerBuilder::build);
+    }
+
+    /**
+     * Get concurrency limiter of a host.
+     *
+     * @param host Host base URL (e.g. http://localhost:8080)
+     * @return {@link ParsecConcurrencyLimiter}, or null if concurrency limiting is disabled
+     */
+    public ParsecConcurrencyLimiter getConcurrencyLimiter(final String host) {
+        if (concurrencyLimiterBuilder == null) {
+            return null;
+        }
+        return concurrencyLimiters.computeIfAbsent(host, concurrencyLimiterBuilder::build);
+    }
+
     /**
      * Execute requests.
      *
@@ -185,6 +491,104 @@ public class ParsecAsyncHttpClient {
         return futures;
     }
 
+    /**
+     * Send all requests at once and complete with the first {@code quorum} 2xx responses, or with whatever
+     * arrived by the deadline. Requests still in flight are then cancelled so their connections are released.
+     *
+     * @param requests Requests to execute, e.g. one per shard or replica
+     * @param quorum Number of 2xx responses to wait for
+     * @param deadline Deadline, 0 for none
+     * @param unit Time unit of deadline
+     * @return {@literal CompletableFuture<List<ParsecBatchItem>>} with one item per request, in request order;
+     *     items of cancelled requests fail with a {@link CancellationException} (quorum reached)
+     *     or a {@link TimeoutException} (deadline)
+     */
+    public CompletableFuture<List<ParsecBatchItem>> scatterGather(
+        final List<ParsecAsyncHttpRequest> requests,
+        final int quorum,
+        final long deadline,
+        final TimeUnit unit
+    ) {
+        return executeBatch(requests, new ParsecBatchOptions.Builder()
+            .setMaxInFlight(Math.max(1, requests.size()))
+            .setQuorum(quorum)
+            .setDeadline(deadline, unit)
+            .build());
+    }
+
+    /**
+     * Execute requests as a batch, with at most {@link ParsecBatchOptions#getMaxInFlight()} requests in flight
+     * and a deadline for the whole batch. No thread is blocked waiting for the batch.
+     * Cancelling the returned future cancels the requests in flight.
+     *
+     * @param requests Requests to execute
+     * @param options Batch options
+     * @return {@literal CompletableFuture<List<ParsecBatchItem>>} with one item per request, in request order;
+     *     with {@link ParsecBatchOptions.Policy#FAIL_FAST} completed exceptionally with the first failure
+     *     or a {@link TimeoutException} at the deadline
+     */
+    public CompletableFuture<List<ParsecBatchItem>> executeBatch(
+        final List<ParsecAsyncHttpRequest> requests,
+        final ParsecBatchOptions options
+    ) {
+        return batcher.execute(requests, options, this::executeUnchecked);
+    }
+
+    /**
+     * Lazy publisher of the response of a request: the request is executed (as by
+     * {@link #execute(ParsecAsyncHttpRequest)}) for each subscriber on its first demand, not on subscribe,
+     * and cancelling the subscription cancels the request.
+     *
+     * @param request Request to execute
+     * @return {@literal ParsecFlow.Publisher<Response>} of one response
+     */
+    public ParsecFlow.Publisher<Response> publish(final ParsecAsyncHttpRequest request) {
+        return new ParsecResponsePublisher<>(() -> executeUnchecked(request));
+    }
+
+    /**
+     * Lazy publisher of the body of a response, one buffer per body part as received from the connection.
+     * The request is sent (as by {@link #criticalExecute(ParsecAsyncHttpRequest, AsyncHandler)}) for each
+     * subscriber on its first demand. Reading from the connection is suspended while the subscriber does not
+     * keep up, and cancelling the subscription closes the connection.
+     *
+     * @param request Request to execute
+     * @return {@literal ParsecFlow.Publisher<ByteBuffer>}, failing with a {@link WebApplicationException}
+     *     if the status is not 2xx
+     */
+    public ParsecFlow.Publisher<ByteBuffer> publishBody(final ParsecAsyncHttpRequest request) {
+        return new ParsecBodyPublisher(request,
+            asyncHandlerWrapper -> withinDeadline(request, () -> executeRequest(request, asyncHandlerWrapper)));
+    }
+
+    /**
+     * Create a processor executing the requests it receives (as by {@link #execute(ParsecAsyncHttpRequest)})
+     * and publishing their responses in request order. At most {@code maxInFlight} requests are requested
+     * from upstream ahead of downstream demand, so a slow subscriber also slows the requests down.
+     * A failed request fails the stream and cancels upstream and the other requests.
+     *
+     * @param maxInFlight Max requests in flight or waiting for downstream demand
+     * @return new {@literal ParsecFlow.Processor<ParsecAsyncHttpRequest, Response>}, for a single subscriber
+     */
+    public ParsecFlow.Processor<ParsecAsyncHttpRequest, Response> newRequestProcessor(final int maxInFlight) {
+        return new ParsecRequestProcessor(maxInFlight, this::executeUnchecked);
+    }
+
+    /**
+     * Execute request, for functional interfaces not throwing checked exceptions.
+     *
+     * @param request Request to execute
+     * @return {@literal CompletableFuture<Response>}
+     * @throws CompletionException wrapping the cause of an {@link ExecutionException}
+     */
+    private CompletableFuture<Response> executeUnchecked(final ParsecAsyncHttpRequest request) {
+        try {
+            return execute(request);
+        } catch (ExecutionException e) {
+            throw new CompletionException(e.getCause() != null ? e.getCause() : e);
+        }
+    }
+
     /**
      * Execute request.
      * @param request Request to execute
@@ -193,12 +597,88 @@ public class ParsecAsyncHttpClient {
      */
     public CompletableFuture<Response> execute(final ParsecAsyncHttpRequest request) throws ExecutionException {
         if (!request.isCriticalGet() && request.getMethod().equals("GET")) {
-            return responseLoadingCache.get(request, executorService);
+            return withinDeadline(request, () -> responseLoadingCache.get(request.withoutDeadline()));
         }
 
         return criticalExecute(request);
     }
 
+    /**
+     * Execute request and decode the JSON response body. The body is decoded from the received body parts,
+     * without decoding it into a String, and cached responses keep the decoded object so that cache hits
+     * are not decoded again: decoded objects are shared and must not be modified.
+     *
+     * @param request Request to execute
+     * @param type Response body type
+     * @param <T> Response body type
+     * @return {@literal CompletableFuture<T>}, completed with null if there is no body, or exceptionally with
+     *     a {@link WebApplicationException} holding the response if the status is not 2xx
+     * @throws ExecutionException execution exception
+     */
+    public <T> CompletableFuture<T> execute(
+        final ParsecAsyncHttpRequest request,
+        final Class<T> type
+    ) throws ExecutionException {
+        return execute(request, objectMapper.getTypeFactory().constructType(type));
+    }
+
+    /**
+     * Execute request and decode the JSON response body into a generic type, e.g.
+     * {@literal new TypeReference<List<Foo>>() { }}.
+     *
+     * @param request Request to execute
+     * @param typeReference Response body type
+     * @param <T> Response body type
+     * @return {@literal CompletableFuture<T>}, see {@link #execute(ParsecAsyncHttpRequest, Class)}
+     * @throws ExecutionException execution exception
+     */
+    public <T> CompletableFuture<T> execute(
+        final ParsecAsyncHttpRequest request,
+        final TypeReference<T> typeReference
+    ) throws ExecutionException {
+        return execute(request, objectMapper.getTypeFactory().constructType(typeReference));
+    }
+
+    /**
+     * Execute request and decode the JSON response body.
+     *
+     * @param request Request to execute
+     * @param type Response body type
+     * @param <T> Response body type
+     * @return {@literal CompletableFuture<T>}
+     * @throws ExecutionException execution exception
+     */
+    private <T> CompletableFuture<T> execute(
+        final ParsecAsyncHttpRequest request,
+        final JavaType type
+    ) throws ExecutionException {
+        return execute(request.withResponseBodyAsBytes()).thenApply(response -> decode(response, type));
+    }
+
+    /**
+     * Decode the JSON body of a response.
+     *
+     * @param response Response, with a {@link ParsecResponseBody} entity
+     * @param type Response body type
+     * @param <T> Response body type
+     * @return decoded body, null if there is no body
+     */
+    private <T> T decode(final Response response, final JavaType type) {
+        if (response.getStatusInfo().getFamily() != Response.Status.Family.SUCCESSFUL) {
+            throw new WebApplicationException(response);
+        }
+
+        ParsecResponseBody body = (ParsecResponseBody) response.getEntity();
+        if (body == null || body.getLength() == 0) {
+            return null;
+        }
+        try {
+            return body.decode(objectMapper, type);
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+    }
+
     /**
      * Get connection timeout.
      *
@@ -222,10 +702,86 @@ public class ParsecAsyncHttpClient {
      *
      * @return Executor service
      */
-    ThreadPoolExecutor getExecutorService() {
+    ExecutorService getExecutorService() {
         return executorService;
     }
 
+    /**
+     * Get cache weighted size, the approximate heap size of cached response bodies and headers.
+     *
+     * @return Cache weighted size (bytes)
+     */
+    public long getCacheWeightedSize() {
+        return responseLoadingCache.getWeightedSize();
+    }
+
+    /**
+     * Get cache statistics: hits, misses, loads, load time, removals per cause and current size.
+     *
+     * @return Snapshot of the cache statistics
+     */
+    public ParsecCacheStats getCacheStats() {
+        return responseLoadingCache.getStats();
+    }
+
+    /**
+     * Invalidate the cached response of a request, e.g. after writing to the resource.
+     *
+     * @param request Request
+     */
+    public void invalidateCache(ParsecAsyncHttpRequest request) {
+        responseLoadingCache.invalidate(request);
+    }
+
+    /**
+     * Invalidate the cached responses of a host.
+     *
+     * @param host Host, case-insensitive
+     * @return Number of responses invalidated
+     */
+    public int invalidateCacheByHost(String host) {
+        return responseLoadingCache.invalidateHost(host);
+    }
+
+    /**
+     * Invalidate the cached responses of URLs starting with a prefix.
+     *
+     * @param urlPrefix URL prefix
+     * @return Number of responses invalidated
+     */
+    public int invalidateCacheByUrlPrefix(String urlPrefix) {
+        return responseLoadingCache.invalidateUrlPrefix(urlPrefix);
+    }
+
+    /**
+     * Invalidate the cached responses of requests with a cache tag
+     * ({@link ParsecAsyncHttpRequest.Builder#addCacheTag(String)}).
+     *
+     * @param tag Cache tag
+     * @return Number of responses invalidated
+     */
+    public int invalidateCacheByTag(String tag) {
+        return responseLoadingCache.invalidateTag(tag);
+    }
+
+    /**
+     * Get coalescer.
+     *
+     * @return Coalescer, null if critical GET coalescing is disabled
+     */
+    ParsecHttpRequestCoalescer<Response> getCoalescer() {
+        return coalescer;
+    }
+
+    /**
+     * Get hedger.
+     *
+     * @return Hedger
+     */
+    ParsecHttpRequestHedger getHedger() {
+        return hedger;
+    }
+
     /**
      * Get IO exception filters.
      *
@@ -398,6 +954,41 @@ public class ParsecAsyncHttpClient {
          */
         private static final int DEFAULT_CACHE_MAX_SIZE = 10000;
 
+        /**
+         * Default cache negative max size.
+         */
+        private static final int DEFAULT_CACHE_NEGATIVE_MAX_SIZE = 1000;
+
+        /**
+         * Default cache max time to live (1 day).
+         */
+        private static final int DEFAULT_CACHE_MAX_TIME_TO_LIVE = 86400;
+
+        /**
+         * Default cache off-heap slab size (4 MB).
+         */
+        private static final int DEFAULT_CACHE_OFF_HEAP_SLAB_SIZE = 4 * 1024 * 1024;
+
+        /**
+         * Default cache disk segment size (64 MB).
+         */
+        private static final int DEFAULT_CACHE_DISK_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+        /**
+         * Min cache disk segment size (64 KB).
+         */
+        private static final int MIN_CACHE_DISK_SEGMENT_SIZE = 64 * 1024;
+
+        /**
+         * Default cache disk capacity (1 GB).
+         */
+        private static final long DEFAULT_CACHE_DISK_CAPACITY = 1024L * 1024 * 1024;
+
+        /**
+         * Default hedge budget.
+         */
+        private static final double DEFAULT_HEDGE_BUDGET = 0.1;
+
         /**
          * Config builder.
          */
@@ -413,6 +1004,111 @@ public class ParsecAsyncHttpClient {
          */
         private int cacheMaximumSize = DEFAULT_CACHE_MAX_SIZE;
 
+        /**
+         * Cache max time to live.
+         */
+        private int cacheMaxTimeToLive = DEFAULT_CACHE_MAX_TIME_TO_LIVE;
+
+        /**
+         * Cache max weight.
+         */
+        private long cacheMaximumWeight;
+
+        /**
+         * Cache max entry weight.
+         */
+        private long cacheMaxEntryWeight;
+
+        /**
+         * Cache off-heap capacity.
+         */
+        private long cacheOffHeapCapacity;
+
+        /**
+         * Cache disk directory.
+         */
+        private String cacheDiskDirectory;
+
+        /**
+         * Cache disk capacity.
+         */
+        private long cacheDiskCapacity = DEFAULT_CACHE_DISK_CAPACITY;
+
+        /**
+         * Cache stale-while-revalidate window.
+         */
+        private int cacheStaleWhileRevalidate;
+
+        /**
+         * Cache stale-if-error window.
+         */
+        private int cacheStaleIfError;
+
+        /**
+         * Cache early refresh beta.
+         */
+        private double cacheEarlyRefreshBeta;
+
+        /**
+         * Cache negative time to live of 4xx responses.
+         */
+        private int cacheClientErrorTimeToLive;
+
+        /**
+         * Cache negative time to live of 5xx responses.
+         */
+        private int cacheServerErrorTimeToLive;
+
+        /**
+         * Cache negative time to live of failures.
+         */
+        private int cacheExceptionTimeToLive;
+
+        /**
+         * Cache negative max size.
+         */
+        private int cacheNegativeMaximumSize = DEFAULT_CACHE_NEGATIVE_MAX_SIZE;
+
+        /**
+         * Cache key normalizer.
+         */
+        private ParsecCacheKeyNormalizer cacheKeyNormalizer;
+
+        /**
+         * Hedge budget.
+         */
+        private double hedgeBudget = DEFAULT_HEDGE_BUDGET;
+
+        /**
+         * Circuit breaker builder.
+         */
+        private ParsecCircuitBreaker.Builder circuitBreakerBuilder;
+
+        /**
+         * Concurrency limiter builder.
+         */
+        private ParsecConcurrencyLimiter.Builder concurrencyLimiterBuilder;
+
+        /**
+         * Coalesce critical GETs.
+         */
+        private boolean coalesceCriticalGets;
+
+        /**
+         * Object mapper decoding JSON responses.
+         */
+        private ObjectMapper objectMapper;
+
+        /**
+         * Flag to run on virtual threads.
+         */
+        private boolean virtualThreads;
+
+        /**
+         * Flag to trace virtual threads pinned to their carrier thread.
+         */
+        private boolean traceVirtualThreadPinning;
+
         /**
          * Constructor.
          */
@@ -591,6 +1287,8 @@ public class ParsecAsyncHttpClient {
 
         /**
          * Set executor service for executing requests, handling retries, and asynchronous cache loading.
+         * Any executor service can be used, as long as it can run the Netty I/O threads (one long running task
+         * per I/O worker) besides other tasks, see also {@link #setVirtualThreads(boolean)}.
          *
          * @param executorService Executor service
          * @return {@link ParsecAsyncHttpClient.Builder}
@@ -700,8 +1398,9 @@ public class ParsecAsyncHttpClient {
         }
 
         /**
-         * Set cache expire after write.
-         * @param cacheExpireAfterWrite How long before cache expires after write
+         * Set cache expire after write, the time to live of cached responses without Cache-Control
+         * max-age or Expires headers.
+         * @param cacheExpireAfterWrite How long before cache expires after write, in seconds
          * @return {@link ParsecAsyncHttpClient.Builder}
          */
         public Builder setCacheExpireAfterWrite(int cacheExpireAfterWrite) {
@@ -709,6 +1408,246 @@ public class ParsecAsyncHttpClient {
             return this;
         }
 
+        /**
+         * Set circuit breaker, one circuit breaker is built per host. Connection errors, timeouts
+         * and 5xx responses count as failures.
+         * @param circuitBreakerBuilder Circuit breaker builder, null to disable circuit breaking (default)
+         * @return {@link ParsecAsyncHttpClient.Builder}
+         */
+        public Builder setCircuitBreaker(ParsecCircuitBreaker.Builder circuitBreakerBuilder) {
+            this.circuitBreakerBuilder = circuitBreakerBuilder;
+            return this;
+        }
+
+        /**
+         * Set coalesce critical GETs. Identical critical GET requests in flight at the same time share
+         * one call and one response, nothing is cached once the call completes.
+         * @param coalesceCriticalGets Coalesce critical GETs (default false)
+         * @return {@link ParsecAsyncHttpClient.Builder}
+         */
+        public Builder setCoalesceCriticalGets(boolean coalesceCriticalGets) {
+            this.coalesceCriticalGets = coalesceCriticalGets;
+            return this;
+        }
+
+        /**
+         * Set adaptive concurrency limiter, one limiter is built per host. The limit of in-flight
+         * requests adapts to the RTTs of the host, requests above the limit are queued.
+         * @param concurrencyLimiterBuilder Concurrency limiter builder, null to disable concurrency limiting (default)
+         * @return {@link ParsecAsyncHttpClient.Builder}
+         */
+        public Builder setConcurrencyLimiter(ParsecConcurrencyLimiter.Builder concurrencyLimiterBuilder) {
+            this.concurrencyLimiterBuilder = concurrencyLimiterBuilder;
+            return this;
+        }
+
+        /**
+         * Set hedge budget, the max ratio of hedged requests over hedgeable requests.
+         * @param hedgeBudget Hedge budget (e.g. 0.1 for at most 10% extra requests), 0 to disable hedging
+         * @return {@link ParsecAsyncHttpClient.Builder}
+         */
+        public Builder setHedgeBudget(double hedgeBudget) {
+            this.hedgeBudget = hedgeBudget;
+            return this;
+        }
+
+        /**
+         * Set cache max time to live, caps the freshness of cached responses and how long responses
+         * with an ETag or Last-Modified validator are kept for revalidation.
+         * @param cacheMaxTimeToLive Max time to live, in seconds
+         * @return {@link ParsecAsyncHttpClient.Builder}
+         */
+        public Builder setCacheMaxTimeToLive(int cacheMaxTimeToLive) {
+            this.cacheMaxTimeToLive = cacheMaxTimeToLive;
+            return this;
+        }
+
+        /**
+         * Set cache stale-while-revalidate window for responses without the Cache-Control
+         * stale-while-revalidate directive. Within the window after expiry, the stale response is
+         * returned at once while one background revalidation runs on the client executor.
+         * @param cacheStaleWhileRevalidate Stale-while-revalidate window, in seconds (default 0)
+         * @return {@link ParsecAsyncHttpClient.Builder}
+         */
+        public Builder setCacheStaleWhileRevalidate(int cacheStaleWhileRevalidate) {
+            this.cacheStaleWhileRevalidate = cacheStaleWhileRevalidate;
+            return this;
+        }
+
+        /**
+         * Set cache stale-if-error window for responses without the Cache-Control stale-if-error directive.
+         * Within the window after expiry, the stale response is returned if revalidation fails or gets a 5xx.
+         * @param cacheStaleIfError Stale-if-error window, in seconds (default 0)
+         * @return {@link ParsecAsyncHttpClient.Builder}
+         */
+        public Builder setCacheStaleIfError(int cacheStaleIfError) {
+            this.cacheStaleIfError = cacheStaleIfError;
+            return this;
+        }
+
+        /**
+         * Set cache early refresh beta. Fresh responses are refreshed in the background with a probability
+         * rising as expiry gets closer, so that hot responses do not all expire at once.
+         * @param cacheEarlyRefreshBeta Early refresh beta, 1 is a good start, 0 to disable (default)
+         * @return {@link ParsecAsyncHttpClient.Builder}
+         */
+        public Builder setCacheEarlyRefreshBeta(double cacheEarlyRefreshBeta) {
+            this.cacheEarlyRefreshBeta = cacheEarlyRefreshBeta;
+            return this;
+        }
+
+        /**
+         * Set cache negative time to live of 4xx responses. Such responses are then kept apart from other
+         * responses, in a negative cache with its own max size, for at most this time.
+         * @param cacheClientErrorTimeToLive Negative time to live, in seconds, 0 to cache 4xx responses like
+         *                                   any other (default)
+         * @return {@link ParsecAsyncHttpClient.Builder}
+         */
+        public Builder setCacheClientErrorTimeToLive(int cacheClientErrorTimeToLive) {
+            this.cacheClientErrorTimeToLive = cacheClientErrorTimeToLive;
+            return this;
+        }
+
+        /**
+         * Set cache negative time to live of 5xx responses. Such responses are then kept apart from other
+         * responses, in a negative cache with its own max size, for at most this time.
+         * @param cacheServerErrorTimeToLive Negative time to live, in seconds, 0 to cache 5xx responses like
+         *                                   any other (default)
+         * @return {@link ParsecAsyncHttpClient.Builder}
+         */
+        public Builder setCacheServerErrorTimeToLive(int cacheServerErrorTimeToLive) {
+            this.cacheServerErrorTimeToLive = cacheServerErrorTimeToLive;
+            return this;
+        }
+
+        /**
+         * Set cache negative time to live of failures (connect errors, timeouts...). Callers of a cacheable
+         * request that just failed get the same failure meanwhile, instead of sending the request again.
+         * @param cacheExceptionTimeToLive Negative time to live, in seconds, 0 to disable (default)
+         * @return {@link ParsecAsyncHttpClient.Builder}
+         */
+        public Builder setCacheExceptionTimeToLive(int cacheExceptionTimeToLive) {
+            this.cacheExceptionTimeToLive = cacheExceptionTimeToLive;
+            return this;
+        }
+
+        /**
+         * Set cache negative max size.
+         * @param cacheNegativeMaximumSize Maximum error responses and failures to keep in the negative cache
+         *                                 (default 1000)
+         * @return {@link ParsecAsyncHttpClient.Builder}
+         */
+        public Builder setCacheNegativeMaximumSize(int cacheNegativeMaximumSize) {
+            this.cacheNegativeMaximumSize = cacheNegativeMaximumSize;
+            return this;
+        }
+
+        /**
+         * Set cache key normalizer. Requests with the same normalized URL (e.g. with sorted query params) and
+         * the same key headers then share cache entries, the headers named by the Vary header of responses
+         * still taking part in the key.
+         * @param cacheKeyNormalizer Cache key normalizer, null to key entries by the whole request (default)
+         * @return {@link ParsecAsyncHttpClient.Builder}
+         */
+        public Builder setCacheKeyNormalizer(ParsecCacheKeyNormalizer cacheKeyNormalizer) {
+            this.cacheKeyNormalizer = cacheKeyNormalizer;
+            return this;
+        }
+
+        /**
+         * Set object mapper decoding JSON responses of
+         * {@link ParsecAsyncHttpClient#execute(ParsecAsyncHttpRequest, Class)}.
+         * @param objectMapper Object mapper, null for a default {@link ObjectMapper} (default)
+         * @return {@link ParsecAsyncHttpClient.Builder}
+         */
+        public Builder setObjectMapper(ObjectMapper objectMapper) {
+            this.objectMapper = objectMapper;
+            return this;
+        }
+
+        /**
+         * Set virtual threads mode (Java 21 and later): retries, asynchronous cache loads and callbacks run on
+         * a new virtual thread per task instead of the executor service, so there is no pool to size.
+         * Netty I/O threads still run on the executor service.
+         *
+         * @param virtualThreads true to run on virtual threads, build fails with
+         *     {@link UnsupportedOperationException} if they are not available
+         * @return {@link ParsecAsyncHttpClient.Builder}
+         */
+        public Builder setVirtualThreads(boolean virtualThreads) {
+            this.virtualThreads = virtualThreads;
+            return this;
+        }
+
+        /**
+         * Set virtual thread pinning trace: virtual threads blocking while pinned to their carrier thread
+         * (e.g. in synchronized blocks) print their stack trace (jdk.tracePinnedThreads=short). Only effective
+         * if no virtual thread was created before in the JVM, pinned threads are also recorded by JFR
+         * (jdk.VirtualThreadPinned event).
+         *
+         * @param traceVirtualThreadPinning true to trace pinning in virtual threads mode
+         * @return {@link ParsecAsyncHttpClient.Builder}
+         */
+        public Builder setTraceVirtualThreadPinning(boolean traceVirtualThreadPinning) {
+            this.traceVirtualThreadPinning = traceVirtualThreadPinning;
+            return this;
+        }
+
+        /**
+         * Set cache maximum weight, bounding the cache by the approximate heap size of cached response
+         * bodies and headers instead of by entries. Overrides {@link #setCacheMaximumSize(int)}.
+         * @param cacheMaximumWeight Maximum weight to keep in cache, in bytes, 0 to bound by entries (default)
+         * @return {@link ParsecAsyncHttpClient.Builder}
+         */
+        public Builder setCacheMaximumWeight(long cacheMaximumWeight) {
+            this.cacheMaximumWeight = cacheMaximumWeight;
+            return this;
+        }
+
+        /**
+         * Set cache max entry weight, responses with bodies and headers above this size are never cached.
+         * @param cacheMaxEntryWeight Max entry weight, in bytes, 0 for no limit (default)
+         * @return {@link ParsecAsyncHttpClient.Builder}
+         */
+        public Builder setCacheMaxEntryWeight(long cacheMaxEntryWeight) {
+            this.cacheMaxEntryWeight = cacheMaxEntryWeight;
+            return this;
+        }
+
+        /**
+         * Set cache off-heap capacity. Bodies of cached responses (up to 4 MB each) are then kept in direct
+         * memory instead of on heap, and the responses are rebuilt on every cache hit. When full, the oldest
+         * bodies are evicted and their responses are reloaded on next access.
+         * @param cacheOffHeapCapacity Off-heap capacity, in bytes, 0 to keep bodies on heap (default)
+         * @return {@link ParsecAsyncHttpClient.Builder}
+         */
+        public Builder setCacheOffHeapCapacity(long cacheOffHeapCapacity) {
+            this.cacheOffHeapCapacity = cacheOffHeapCapacity;
+            return this;
+        }
+
+        /**
+         * Set cache disk directory, enabling a second-level cache on local disk that survives restarts.
+         * Responses missing from the in memory cache are looked up on disk before executing the request,
+         * with the same freshness rules.
+         * @param cacheDiskDirectory Cache disk directory, null to disable (default)
+         * @return {@link ParsecAsyncHttpClient.Builder}
+         */
+        public Builder setCacheDiskDirectory(String cacheDiskDirectory) {
+            this.cacheDiskDirectory = cacheDiskDirectory;
+            return this;
+        }
+
+        /**
+         * Set cache disk capacity.
+         * @param cacheDiskCapacity Cache disk capacity, in bytes (default 1 GB)
+         * @return {@link ParsecAsyncHttpClient.Builder}
+         */
+        public Builder setCacheDiskCapacity(long cacheDiskCapacity) {
+            this.cacheDiskCapacity = cacheDiskCapacity;
+            return this;
+        }
+
         /**
          * Set cache maximum size.
          * @param cacheMaximumSize Maximum entries to keep in cache
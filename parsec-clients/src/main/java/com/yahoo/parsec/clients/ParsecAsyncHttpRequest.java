@@ -5,21 +5,27 @@ package com.yahoo.parsec.clients;
 
 import com.ning.http.client.*;
 import com.ning.http.client.cookie.Cookie;
+import com.ning.http.client.generators.FileBodyGenerator;
+import com.ning.http.client.generators.InputStreamBodyGenerator;
 import com.ning.http.client.multipart.ByteArrayPart;
 import com.ning.http.client.multipart.FilePart;
 import com.ning.http.client.multipart.Part;
 import com.ning.http.client.multipart.StringPart;
 import com.ning.http.client.uri.Uri;
-import org.apache.commons.lang3.builder.EqualsBuilder;
-import org.apache.commons.lang3.builder.HashCodeBuilder;
 
 import javax.ws.rs.core.NewCookie;
 import javax.ws.rs.core.Response;
 import java.io.File;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.Charset;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 /**
@@ -28,6 +34,11 @@ import java.util.*;
  * @author sho
  */
 public class ParsecAsyncHttpRequest {
+    /**
+     * Last body identity given out.
+     */
+    private static final AtomicLong BODY_IDENTITIES = new AtomicLong();
+
     /**
      * Flag for cirtical get.
      */
@@ -38,6 +49,36 @@ public class ParsecAsyncHttpRequest {
      */
     private final int maxRetries;
 
+    /**
+     * Initial retry backoff in milliseconds.
+     */
+    private final int retryBackoff;
+
+    /**
+     * Max retry backoff in milliseconds.
+     */
+    private final int maxRetryBackoff;
+
+    /**
+     * Hedge delay in milliseconds.
+     */
+    private final int hedgeAfter;
+
+    /**
+     * Hedge delay percentile.
+     */
+    private final double hedgeAfterPercentile;
+
+    /**
+     * Deadline (epoch milliseconds), 0 for none.
+     */
+    private final long deadline;
+
+    /**
+     * Header carrying the time left until the deadline, null for none.
+     */
+    private final String deadlineHeader;
+
     /**
      * Response status codes tp retry.
      */
@@ -73,6 +114,32 @@ public class ParsecAsyncHttpRequest {
      */
     private final boolean acceptCompression;
 
+    /**
+     * Flag to return the response body as {@link ParsecResponseBody}.
+     */
+    private final boolean responseBodyAsBytes;
+
+    /**
+     * Cache tags, for targeted cache invalidation.
+     */
+    private final Set<String> cacheTags;
+
+    /**
+     * Unique identity of a body that cannot be compared by value (streamed body or custom body parts),
+     * shared by copies of the request, 0 for bodies compared by value.
+     */
+    private final long bodyIdentity;
+
+    /**
+     * Fingerprint of all fields (but cache tags), for equals, computed on first use.
+     */
+    private volatile byte[] fingerprint;
+
+    /**
+     * Hash code of the fingerprint, valid once the fingerprint is computed.
+     */
+    private int fingerprintHashCode;
+
     /**
      * Unused constructor.
      */
@@ -88,14 +155,167 @@ public class ParsecAsyncHttpRequest {
     private ParsecAsyncHttpRequest(final Builder builder) {
         criticalGet = builder.criticalGet;
         maxRetries = builder.maxRetries;
-        retryStatusCodes = builder.retryStatusCodes;
+        retryBackoff = builder.retryBackoff;
+        maxRetryBackoff = builder.maxRetryBackoff;
+        hedgeAfter = builder.hedgeAfter;
+        hedgeAfterPercentile = builder.hedgeAfterPercentile;
+        deadline = builder.deadline;
+        deadlineHeader = builder.deadlineHeader;
+        retryStatusCodes = new ArrayList<>(builder.retryStatusCodes);
         ningRequest = builder.ningRequestBuilder.build();
         acceptCompression = builder.acceptCompression;
+        responseBodyAsBytes = builder.responseBodyAsBytes;
+        cacheTags = builder.cacheTags.isEmpty()
+            ? Collections.emptySet() : Collections.unmodifiableSet(new LinkedHashSet<>(builder.cacheTags));
 
         headers = new FluentCaseInsensitiveStringsMap(ningRequest.getHeaders());
         cookies = ParsecHttpUtil.getCookies(ningRequest.getCookies());
         formParams = ParsecHttpUtil.getParamsMap(ningRequest.getFormParams());
         queryParams = ParsecHttpUtil.getParamsMap(ningRequest.getQueryParams());
+        bodyIdentity = hasBodyIdentity(ningRequest) ? BODY_IDENTITIES.incrementAndGet() : 0;
+    }
+
+    /**
+     * Private constructor, copies settings of a prototype request with another Ning request.
+     * @param prototype prototype request
+     * @param ningRequest Ning request
+     * @param responseBodyAsBytes flag to return the response body as {@link ParsecResponseBody}
+     */
+    private ParsecAsyncHttpRequest(
+        final ParsecAsyncHttpRequest prototype,
+        final Request ningRequest,
+        final boolean responseBodyAsBytes
+    ) {
+        criticalGet = prototype.criticalGet;
+        maxRetries = prototype.maxRetries;
+        retryBackoff = prototype.retryBackoff;
+        maxRetryBackoff = prototype.maxRetryBackoff;
+        hedgeAfter = prototype.hedgeAfter;
+        hedgeAfterPercentile = prototype.hedgeAfterPercentile;
+        deadline = prototype.deadline;
+        deadlineHeader = prototype.deadlineHeader;
+        retryStatusCodes = prototype.retryStatusCodes;
+        acceptCompression = prototype.acceptCompression;
+        this.responseBodyAsBytes = responseBodyAsBytes;
+        cacheTags = prototype.cacheTags;
+        this.ningRequest = ningRequest;
+
+        headers = new FluentCaseInsensitiveStringsMap(ningRequest.getHeaders());
+        cookies = prototype.cookies;
+        formParams = prototype.formParams;
+        queryParams = prototype.queryParams;
+        bodyIdentity = prototype.bodyIdentity;
+    }
+
+    /**
+     * Private constructor, copies a request with another fingerprint and deadline.
+     * @param prototype prototype request
+     * @param fingerprint fingerprint, null to compute it from the fields on first use
+     * @param deadline deadline (epoch milliseconds), 0 for none
+     */
+    private ParsecAsyncHttpRequest(
+        final ParsecAsyncHttpRequest prototype,
+        final byte[] fingerprint,
+        final long deadline
+    ) {
+        criticalGet = prototype.criticalGet;
+        maxRetries = prototype.maxRetries;
+        retryBackoff = prototype.retryBackoff;
+        maxRetryBackoff = prototype.maxRetryBackoff;
+        hedgeAfter = prototype.hedgeAfter;
+        hedgeAfterPercentile = prototype.hedgeAfterPercentile;
+        this.deadline = deadline;
+        deadlineHeader = prototype.deadlineHeader;
+        retryStatusCodes = prototype.retryStatusCodes;
+        acceptCompression = prototype.acceptCompression;
+        responseBodyAsBytes = prototype.responseBodyAsBytes;
+        cacheTags = prototype.cacheTags;
+        ningRequest = prototype.ningRequest;
+        headers = prototype.headers;
+        cookies = prototype.cookies;
+        formParams = prototype.formParams;
+        queryParams = prototype.queryParams;
+        bodyIdentity = prototype.bodyIdentity;
+        if (fingerprint != null) {
+            fingerprintHashCode = ParsecRequestFingerprint.hashCode(fingerprint);
+            this.fingerprint = fingerprint;
+        }
+    }
+
+    /**
+     * Copy of this request to use as cache key, equal to the keys of requests with the same normalized URL,
+     * key headers and other fields.
+     *
+     * @param normalizer Cache key normalizer
+     * @param varyHeaders Lower case names of headers taking part in the key whatever the normalizer
+     * @return new {@link ParsecAsyncHttpRequest}, only to be used as cache key
+     */
+    ParsecAsyncHttpRequest withCacheKey(final ParsecCacheKeyNormalizer normalizer, final Collection<String> varyHeaders) {
+        return new ParsecAsyncHttpRequest(this, computeFingerprint(normalizer, varyHeaders), deadline);
+    }
+
+    /**
+     * Copy of this request without deadline, for calls shared by callers with different deadlines.
+     *
+     * @return this if it has no deadline, new {@link ParsecAsyncHttpRequest} otherwise
+     */
+    ParsecAsyncHttpRequest withoutDeadline() {
+        return deadline == 0 ? this : new ParsecAsyncHttpRequest(this, fingerprint(), 0);
+    }
+
+    /**
+     * Get fingerprint.
+     *
+     * @return SHA-256 fingerprint, identical across restarts if {@link #isFingerprintStable()}
+     */
+    byte[] getFingerprint() {
+        return fingerprint().clone();
+    }
+
+    /**
+     * Whether the fingerprint is identical across restarts, i.e. the body is compared by value.
+     *
+     * @return false for streamed bodies and custom body parts, only equal to copies of this request
+     */
+    boolean isFingerprintStable() {
+        return bodyIdentity == 0;
+    }
+
+    /**
+     * Get fingerprint, computing it on first use.
+     *
+     * @return fingerprint, not to be modified
+     */
+    private byte[] fingerprint() {
+        byte[] result = fingerprint;
+        if (result == null) {
+            // racing threads compute the same value
+            result = computeFingerprint();
+            fingerprintHashCode = ParsecRequestFingerprint.hashCode(result);
+            fingerprint = result;
+        }
+        return result;
+    }
+
+    /**
+     * Copy of this request with a header set (replacing existing values).
+     *
+     * @param name Header name
+     * @param value Header value
+     * @return new {@link ParsecAsyncHttpRequest}
+     */
+    ParsecAsyncHttpRequest withHeader(final String name, final String value) {
+        return new ParsecAsyncHttpRequest(
+            this, new RequestBuilder(ningRequest).setHeader(name, value).build(), responseBodyAsBytes);
+    }
+
+    /**
+     * Copy of this request returning the response body as {@link ParsecResponseBody}.
+     *
+     * @return this if it already does, new {@link ParsecAsyncHttpRequest} otherwise
+     */
+    ParsecAsyncHttpRequest withResponseBodyAsBytes() {
+        return responseBodyAsBytes ? this : new ParsecAsyncHttpRequest(this, ningRequest, true);
     }
 
     @Override
@@ -108,31 +328,155 @@ public class ParsecAsyncHttpRequest {
             return false;
         }
 
-        // Compare local fields except Ning request
-        if (!EqualsBuilder.reflectionEquals(this, object, new String[] {"ningRequest"})) {
-            return false;
-        }
-
-        // Compare Ning request fields
-        return ParsecEqualsUtil.ningRequestEquals(ningRequest, ((ParsecAsyncHttpRequest) object).ningRequest);
+        ParsecAsyncHttpRequest other = (ParsecAsyncHttpRequest) object;
+        byte[] fingerprint = fingerprint();
+        byte[] otherFingerprint = other.fingerprint();
+        return fingerprintHashCode == other.fingerprintHashCode && Arrays.equals(fingerprint, otherFingerprint);
     }
 
     @Override
     public int hashCode() {
-        // Calculate Ning request hash by custom algorithm
-        int ningRequestHash = new HashCodeBuilder()
-            .append(ningRequest.getBodyEncoding())
-            .append(ningRequest.getContentLength())
-            .append(ningRequest.getFollowRedirect())
-            .append(ningRequest.getMethod())
-            .append(ningRequest.getRangeOffset())
-            .append(ningRequest.getRequestTimeout())
-            .append(ningRequest.getStringData())
-            .append(ningRequest.getUrl())
-            .append(ningRequest.getVirtualHost())
-            .hashCode();
+        fingerprint();
+        return fingerprintHashCode;
+    }
+
+    /**
+     * Compute the fingerprint of all fields: settings, cookies, params, headers (names are
+     * case-insensitive) and the Ning request (method, URL, body, parts).
+     *
+     * @return fingerprint
+     */
+    private byte[] computeFingerprint() {
+        return computeFingerprint(null, Collections.emptySet());
+    }
+
+    /**
+     * Compute the fingerprint of all fields, with a normalized URL and only key headers.
+     *
+     * @param normalizer Cache key normalizer, null to keep the URL and all headers
+     * @param varyHeaders Lower case names of headers to keep whatever the normalizer
+     * @return fingerprint
+     */
+    private byte[] computeFingerprint(final ParsecCacheKeyNormalizer normalizer, final Collection<String> varyHeaders) {
+        ParsecRequestFingerprint builder = new ParsecRequestFingerprint()
+            .add(criticalGet)
+            .add(maxRetries)
+            .add(retryBackoff)
+            .add(maxRetryBackoff)
+            .add(hedgeAfter)
+            .add(hedgeAfterPercentile)
+            .add(retryStatusCodes)
+            .add(acceptCompression)
+            .add(responseBodyAsBytes)
+            .add(cookies);
+        addParams(builder, formParams);
+        addParams(builder, queryParams);
+
+        Map<String, List<String>> lowerCaseHeaders = new HashMap<>();
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            String name = header.getKey().toLowerCase(Locale.ROOT);
+            if (normalizer == null || normalizer.isKeyHeader(name) || varyHeaders.contains(name)) {
+                lowerCaseHeaders.computeIfAbsent(name, key -> new ArrayList<>()).addAll(header.getValue());
+            }
+        }
+        addParams(builder, lowerCaseHeaders);
+
+        ProxyServer proxyServer = ningRequest.getProxyServer();
+        builder.add(proxyServer == null ? null : proxyServer.toString())
+            .add(ningRequest.getBodyEncoding())
+            .add(ningRequest.getByteData())
+            .add(ningRequest.getContentLength())
+            .add(ningRequest.getFollowRedirect() == null ? -1 : ningRequest.getFollowRedirect() ? 1 : 0)
+            .add(ningRequest.getMethod())
+            .add(ningRequest.getRangeOffset())
+            .add(ningRequest.getRequestTimeout())
+            .add(ningRequest.getStringData())
+            .add(normalizer == null ? ningRequest.getUrl() : normalizer.normalizeUrl(ningRequest.getUrl()))
+            .add(ningRequest.getVirtualHost());
+
+        List<byte[]> compositeByteData = ningRequest.getCompositeByteData();
+        builder.add(compositeByteData == null ? -1 : compositeByteData.size());
+        if (compositeByteData != null) {
+            compositeByteData.forEach(builder::add);
+        }
+
+        // file bodies are compared by file region, other streamed bodies by body identity
+        BodyGenerator bodyGenerator = ningRequest.getBodyGenerator();
+        Object streamBody = bodyGenerator != null ? bodyGenerator : ningRequest.getStreamData();
+        if (bodyGenerator instanceof FileBodyGenerator) {
+            FileBodyGenerator fileBody = (FileBodyGenerator) bodyGenerator;
+            builder.add(1)
+                .add(fileBody.getFile().getAbsolutePath())
+                .add(fileBody.getRegionSeek())
+                .add(fileBody.getRegionLength());
+        } else if (streamBody != null) {
+            builder.add(2).add(bodyIdentity);
+        } else {
+            builder.add(0);
+        }
+
+        List<Part> parts = ningRequest.getParts();
+        builder.add(parts == null ? -1 : parts.size());
+        if (parts != null) {
+            for (Part part : parts) {
+                builder.add(part.getClass().getName())
+                    .add(part.getCharset() == null ? null : part.getCharset().name())
+                    .add(part.getContentId())
+                    .add(part.getContentType())
+                    .add(part.getDispositionType())
+                    .add(part.getName())
+                    .add(part.getTransferEncoding());
+                if (part instanceof ByteArrayPart) {
+                    builder.add(((ByteArrayPart) part).getBytes());
+                } else if (part instanceof FilePart) {
+                    builder.add(((FilePart) part).getFile().getPath());
+                } else if (part instanceof StringPart) {
+                    builder.add(((StringPart) part).getValue());
+                } else {
+                    // unknown parts are compared by body identity
+                    builder.add(bodyIdentity);
+                }
+            }
+        }
+        return builder.digest();
+    }
+
+    /**
+     * Whether the body of a Ning request cannot be compared by value: streamed other than from a file, or with
+     * custom body parts.
+     *
+     * @param ningRequest Ning request
+     * @return true if requests with this body need a body identity
+     */
+    private static boolean hasBodyIdentity(final Request ningRequest) {
+        BodyGenerator bodyGenerator = ningRequest.getBodyGenerator();
+        if (ningRequest.getStreamData() != null
+            || bodyGenerator != null && !(bodyGenerator instanceof FileBodyGenerator)) {
+            return true;
+        }
 
-        return HashCodeBuilder.reflectionHashCode(this, new String[] {"ningRequest"}) + ningRequestHash;
+        List<Part> parts = ningRequest.getParts();
+        if (parts != null) {
+            for (Part part : parts) {
+                if (!(part instanceof ByteArrayPart || part instanceof FilePart || part instanceof StringPart)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Add params or headers to a fingerprint, sorted by name.
+     *
+     * @param builder fingerprint
+     * @param params params
+     */
+    private static void addParams(final ParsecRequestFingerprint builder, final Map<String, List<String>> params) {
+        builder.add(params.size());
+        for (Map.Entry<String, List<String>> param : new TreeMap<>(params).entrySet()) {
+            builder.add(param.getKey()).add(param.getValue());
+        }
     }
 
     /**
@@ -162,6 +506,17 @@ public class ParsecAsyncHttpRequest {
         return ningRequest.getBodyEncoding();
     }
 
+    /**
+     * Is body replayable, i.e. whether the request can be sent again (not an input stream or channel body).
+     *
+     * @return Whether the body can be sent more than once
+     */
+    public boolean isBodyReplayable() {
+        BodyGenerator bodyGenerator = ningRequest.getBodyGenerator();
+        return ningRequest.getStreamData() == null
+            && (bodyGenerator == null || bodyGenerator instanceof FileBodyGenerator);
+    }
+
     /**
      * Get content length.
      *
@@ -212,6 +567,51 @@ public class ParsecAsyncHttpRequest {
         return Collections.unmodifiableMap(headers);
     }
 
+    /**
+     * Get deadline.
+     *
+     * @return Deadline (epoch milliseconds), 0 if none
+     */
+    public long getDeadline() {
+        return deadline;
+    }
+
+    /**
+     * Get deadline header.
+     *
+     * @return Name of the header carrying the time left until the deadline, null if none
+     */
+    public String getDeadlineHeader() {
+        return deadlineHeader;
+    }
+
+    /**
+     * Get time left until the deadline.
+     *
+     * @return Time left in milliseconds (0 or less if passed), {@link Long#MAX_VALUE} if no deadline
+     */
+    long getTimeLeft() {
+        return deadline == 0 ? Long.MAX_VALUE : deadline - System.currentTimeMillis();
+    }
+
+    /**
+     * Get hedge delay.
+     *
+     * @return Hedge delay in milliseconds, 0 if disabled
+     */
+    public int getHedgeAfter() {
+        return hedgeAfter;
+    }
+
+    /**
+     * Get hedge delay percentile.
+     *
+     * @return Hedge delay percentile, 0 if disabled
+     */
+    public double getHedgeAfterPercentile() {
+        return hedgeAfterPercentile;
+    }
+
     /**
      * Get max retries.
      *
@@ -221,6 +621,15 @@ public class ParsecAsyncHttpRequest {
         return maxRetries;
     }
 
+    /**
+     * Get max retry backoff.
+     *
+     * @return Max retry backoff in milliseconds
+     */
+    public int getMaxRetryBackoff() {
+        return maxRetryBackoff;
+    }
+
     /**
      * Get method.
      *
@@ -239,6 +648,36 @@ public class ParsecAsyncHttpRequest {
         return ningRequest;
     }
 
+    /**
+     * Get Ning {@link Request} of an attempt sent now: the request timeout is shrunk to the time left
+     * until the deadline, which is also set in the deadline header.
+     *
+     * @param defaultRequestTimeout Client request timeout in milliseconds, used if the request has none
+     * @return Ning {@link Request}
+     * @throws TimeoutException ({@link ParsecDeadlineExceededException}) if the deadline passed
+     */
+    Request getNingRequest(final int defaultRequestTimeout) throws TimeoutException {
+        if (deadline == 0) {
+            return ningRequest;
+        }
+
+        long timeLeft = getTimeLeft();
+        if (timeLeft <= 0) {
+            throw new ParsecDeadlineExceededException("Deadline exceeded before sending request: " + getUrl());
+        }
+
+        int requestTimeout = ningRequest.getRequestTimeout() != 0 ? ningRequest.getRequestTimeout()
+            : defaultRequestTimeout;
+        RequestBuilder builder = new RequestBuilder(ningRequest);
+        if (requestTimeout <= 0 || requestTimeout > timeLeft) {
+            builder.setRequestTimeout((int) Math.min(Integer.MAX_VALUE, timeLeft));
+        }
+        if (deadlineHeader != null) {
+            builder.setHeader(deadlineHeader, Long.toString(timeLeft));
+        }
+        return builder.build();
+    }
+
     /**
      * Get proxy server.
      *
@@ -279,6 +718,24 @@ public class ParsecAsyncHttpRequest {
         return ningRequest.getRequestTimeout();
     }
 
+    /**
+     * Get initial retry backoff.
+     *
+     * @return Initial retry backoff in milliseconds
+     */
+    public int getRetryBackoff() {
+        return retryBackoff;
+    }
+
+    /**
+     * Get cache tags.
+     *
+     * @return Cache tags
+     */
+    public Set<String> getCacheTags() {
+        return cacheTags;
+    }
+
     /**
      * Get retry status codes.
      *
@@ -344,6 +801,15 @@ public class ParsecAsyncHttpRequest {
         return acceptCompression;
     }
 
+    /**
+     * Is response body as bytes.
+     *
+     * @return Whether the response entity is a {@link ParsecResponseBody} instead of a String
+     */
+    public boolean isResponseBodyAsBytes() {
+        return responseBodyAsBytes;
+    }
+
     /**
      * Static Builder class for {@link ParsecAsyncHttpRequest}.
      *
@@ -355,6 +821,11 @@ public class ParsecAsyncHttpRequest {
          */
         private static final int DEFAULT_MAX_RETRIES = 3;
 
+        /**
+         * Default max retry backoff in milliseconds.
+         */
+        private static final int DEFAULT_MAX_RETRY_BACKOFF = 30000;
+
         /**
          * Accept encoding header.
          */
@@ -390,11 +861,41 @@ public class ParsecAsyncHttpRequest {
          */
         private int maxRetries;
 
+        /**
+         * Initial retry backoff in milliseconds.
+         */
+        private int retryBackoff;
+
+        /**
+         * Max retry backoff in milliseconds.
+         */
+        private int maxRetryBackoff;
+
+        /**
+         * Hedge delay in milliseconds.
+         */
+        private int hedgeAfter;
+
+        /**
+         * Hedge delay percentile.
+         */
+        private double hedgeAfterPercentile;
+
         /**
          * Request timeout.
          */
         private int requestTimeout;
 
+        /**
+         * Deadline (epoch milliseconds).
+         */
+        private long deadline;
+
+        /**
+         * Deadline header.
+         */
+        private String deadlineHeader;
+
         /**
          * Cookies.
          */
@@ -440,6 +941,11 @@ public class ParsecAsyncHttpRequest {
          */
         private byte[] byteBody;
 
+        /**
+         * Body streamed from an input stream or a file region.
+         */
+        private BodyGenerator bodyGenerator;
+
         /**
          * Body encoding.
          */
@@ -465,11 +971,21 @@ public class ParsecAsyncHttpRequest {
          */
         private boolean acceptCompression;
 
+        /**
+         * Flag to return the response body as {@link ParsecResponseBody}.
+         */
+        private boolean responseBodyAsBytes;
+
         /**
          * Body parts.
          */
         private List<Part> bodyParts;
 
+        /**
+         * Cache tags.
+         */
+        private Set<String> cacheTags;
+
         /**
          * Constructor.
          */
@@ -477,11 +993,25 @@ public class ParsecAsyncHttpRequest {
             // Init default values
             method = "GET";
             maxRetries = DEFAULT_MAX_RETRIES;
+            maxRetryBackoff = DEFAULT_MAX_RETRY_BACKOFF;
             headers = new FluentCaseInsensitiveStringsMap();
             retryStatusCodes = new ArrayList<>();
             uri = URI.create("http://localhost");
             acceptCompression = true;
             bodyParts = new ArrayList<>();
+            cacheTags = new LinkedHashSet<>();
+        }
+
+        /**
+         * Add cache tag. The response cached for the request can then be invalidated by tag, tags do not take part
+         * in request equality.
+         *
+         * @param tag Cache tag
+         * @return {@link ParsecAsyncHttpRequest.Builder}
+         */
+        public Builder addCacheTag(String tag) {
+            cacheTags.add(tag);
+            return this;
         }
 
         /**
@@ -635,6 +1165,8 @@ public class ParsecAsyncHttpRequest {
                 ningRequestBuilder.setBody(body);
             } else if (byteBody != null) {
                 ningRequestBuilder.setBody(byteBody);
+            } else if (bodyGenerator != null) {
+                ningRequestBuilder.setBody(bodyGenerator);
             }
 
             if (bodyEncoding != null) {
@@ -711,9 +1243,8 @@ public class ParsecAsyncHttpRequest {
          * @return {@link ParsecAsyncHttpRequest.Builder}
          */
         public Builder setBody(String body) {
+            clearBody();
             this.body = body;
-            formParams = null;
-            this.byteBody = null;
             return this;
         }
 
@@ -724,12 +1255,69 @@ public class ParsecAsyncHttpRequest {
          * @return {@link ParsecAsyncHttpRequest.Builder}
          */
         public Builder setBody(byte[] body) {
+            clearBody();
             this.byteBody = Arrays.copyOf(body, body.length);
-            formParams = null;
-            this.body = null;
             return this;
         }
 
+        /**
+         * Set body streamed from an input stream, read one chunk at a time as the connection takes it.
+         * The body is sent with chunked transfer encoding unless a content length is set, and can be sent
+         * only once: such requests are not retried on retry status codes.
+         *
+         * @param body Body input stream, closed once sent
+         * @return {@link ParsecAsyncHttpRequest.Builder}
+         */
+        public Builder setBody(InputStream body) {
+            clearBody();
+            this.bodyGenerator = new InputStreamBodyGenerator(body);
+            return this;
+        }
+
+        /**
+         * Set body streamed from a blocking channel, see {@link #setBody(InputStream)}.
+         *
+         * @param body Body channel, closed once sent
+         * @return {@link ParsecAsyncHttpRequest.Builder}
+         */
+        public Builder setBody(ReadableByteChannel body) {
+            return setBody(Channels.newInputStream(body));
+        }
+
+        /**
+         * Set body sent from a file, without copying it through the heap over plain HTTP connections.
+         *
+         * @param body Body file
+         * @return {@link ParsecAsyncHttpRequest.Builder}
+         */
+        public Builder setBody(File body) {
+            return setBody(body, 0, body.length());
+        }
+
+        /**
+         * Set body sent from a file region, without copying it through the heap over plain HTTP connections.
+         *
+         * @param body Body file
+         * @param offset Region offset
+         * @param length Region length
+         * @return {@link ParsecAsyncHttpRequest.Builder}
+         */
+        public Builder setBody(File body, long offset, long length) {
+            clearBody();
+            this.bodyGenerator = new FileBodyGenerator(body, offset, length);
+            return this;
+        }
+
+        /**
+         * Clear body and form params, a request has a single body.
+         */
+        private void clearBody() {
+            body = null;
+            byteBody = null;
+            bodyGenerator = null;
+            formParams = null;
+        }
+
         /**
          * Set body encoding.
          *
@@ -741,6 +1329,17 @@ public class ParsecAsyncHttpRequest {
             return this;
         }
 
+        /**
+         * Set cache tags.
+         *
+         * @param tags Cache tags
+         * @return {@link ParsecAsyncHttpRequest.Builder}
+         */
+        public Builder setCacheTags(Collection<String> tags) {
+            cacheTags = new LinkedHashSet<>(tags);
+            return this;
+        }
+
         /**
          * Set content length.
          *
@@ -823,6 +1422,32 @@ public class ParsecAsyncHttpRequest {
             return this;
         }
 
+        /**
+         * Set hedge delay. When a GET request has not received response headers within this delay,
+         * a second copy is sent and whichever response completes first is returned.
+         * Only applies to requests executed with the default response handler.
+         *
+         * @param hedgeAfter Hedge delay in milliseconds, 0 to disable
+         * @return {@link ParsecAsyncHttpRequest.Builder}
+         */
+        public Builder setHedgeAfter(int hedgeAfter) {
+            this.hedgeAfter = hedgeAfter;
+            return this;
+        }
+
+        /**
+         * Set hedge delay percentile. When set, the hedge delay is the given percentile of the recent
+         * time to response headers observed for the same host, falling back to hedge delay until
+         * enough samples are recorded.
+         *
+         * @param hedgeAfterPercentile Hedge delay percentile (e.g. 95.0), 0 to disable
+         * @return {@link ParsecAsyncHttpRequest.Builder}
+         */
+        public Builder setHedgeAfterPercentile(double hedgeAfterPercentile) {
+            this.hedgeAfterPercentile = hedgeAfterPercentile;
+            return this;
+        }
+
         /**
          * Set max retries.
          *
@@ -834,6 +1459,18 @@ public class ParsecAsyncHttpRequest {
             return this;
         }
 
+        /**
+         * Set max retry backoff, the upper bound of the delay between two attempts
+         * (including delays requested by a Retry-After response header).
+         *
+         * @param maxRetryBackoff Max retry backoff in milliseconds
+         * @return {@link ParsecAsyncHttpRequest.Builder}
+         */
+        public Builder setMaxRetryBackoff(int maxRetryBackoff) {
+            this.maxRetryBackoff = maxRetryBackoff;
+            return this;
+        }
+
         /**
          * Set method.
          *
@@ -895,6 +1532,57 @@ public class ParsecAsyncHttpRequest {
             return this;
         }
 
+        /**
+         * Set deadline. Unlike the request timeout, which applies to every attempt, the deadline bounds
+         * the whole execution: queueing, all retries and their backoff. Every attempt timeout is shrunk to the
+         * time left, no retry is sent if its backoff ends past the deadline and queued requests are dropped
+         * with a {@link TimeoutException} once it passed, before being sent. The deadline is not part of
+         * the cache key: identical requests share cached and coalesced responses whatever their deadline, the
+         * shared call has no deadline and each caller times out on its own.
+         *
+         * @param deadline Deadline (epoch milliseconds, as {@link System#currentTimeMillis()}), 0 for none
+         * @return {@link ParsecAsyncHttpRequest.Builder}
+         */
+        public Builder setDeadline(long deadline) {
+            this.deadline = deadline;
+            return this;
+        }
+
+        /**
+         * Set deadline to the given time from now, see {@link #setDeadline(long)}.
+         *
+         * @param timeout Time from now
+         * @param unit Time unit
+         * @return {@link ParsecAsyncHttpRequest.Builder}
+         */
+        public Builder setDeadlineAfter(long timeout, TimeUnit unit) {
+            return setDeadline(System.currentTimeMillis() + unit.toMillis(timeout));
+        }
+
+        /**
+         * Set header propagating the time left until the deadline (milliseconds) to the backend,
+         * set on every attempt.
+         *
+         * @param deadlineHeader Header name (e.g. X-Request-Budget-Ms), null for none
+         * @return {@link ParsecAsyncHttpRequest.Builder}
+         */
+        public Builder setDeadlineHeader(String deadlineHeader) {
+            this.deadlineHeader = deadlineHeader;
+            return this;
+        }
+
+        /**
+         * Set initial retry backoff. The backoff doubles on every retry (with jitter)
+         * up to max retry backoff, 0 retries immediately.
+         *
+         * @param retryBackoff Initial retry backoff in milliseconds
+         * @return {@link ParsecAsyncHttpRequest.Builder}
+         */
+        public Builder setRetryBackoff(int retryBackoff) {
+            this.retryBackoff = retryBackoff;
+            return this;
+        }
+
         /**
          * Set URI.
          *
@@ -938,5 +1626,17 @@ public class ParsecAsyncHttpRequest {
             this.acceptCompression = acceptCompression;
             return this;
         }
+
+        /**
+         * Set response body as bytes: the response entity is then a {@link ParsecResponseBody} over the
+         * received body parts, decoded into a String only when asked for, instead of a String.
+         *
+         * @param responseBodyAsBytes return the response body as {@link ParsecResponseBody}
+         * @return {@link ParsecAsyncHttpRequest.Builder}
+         */
+        public Builder setResponseBodyAsBytes(boolean responseBodyAsBytes) {
+            this.responseBodyAsBytes = responseBodyAsBytes;
+            return this;
+        }
     }
 }
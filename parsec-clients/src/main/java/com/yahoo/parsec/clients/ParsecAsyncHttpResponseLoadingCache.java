@@ -4,20 +4,59 @@
 package com.yahoo.parsec.clients;
 
 import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.CacheLoader;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.RemovalCause;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.ws.rs.core.Response;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
 import java.util.concurrent.*;
 
 
 /**
- * An asynchronous loading cache.
+ * An asynchronous loading cache following HTTP caching semantics.
  * key: {@link ParsecAsyncHttpRequest}
- * value: CompletableFuture&lt;{@link Response}&gt;.
+ * value: CompletableFuture&lt;{@link ParsecCachedResponse}&gt;.
+ * <p>
+ * Freshness is per entry, from the response Cache-Control (max-age, s-maxage, no-cache, no-store, private),
+ * Expires and Age headers, and defaults to the default time to live otherwise. Stale entries with an ETag
+ * or Last-Modified validator are revalidated with a conditional request, and the stored body is reused
+ * on 304 Not Modified.
+ * <p>
+ * Refresh-ahead: within the stale-while-revalidate window, stale responses are returned at once while one
+ * background revalidation runs on the executor; fresh responses may be refreshed early with a probability
+ * rising as expiry gets closer; within the stale-if-error window, stale responses are returned when
+ * revalidation fails or gets a 5xx. The windows come from the Cache-Control directives of the response,
+ * and default to the configured windows.
+ * <p>
+ * With off-heap storage, bodies of cached responses are kept in a {@link ParsecOffHeapBodyStore} and only
+ * headers and freshness information stay on heap; responses are rebuilt on every hit.
+ * <p>
+ * With disk storage, cached responses are also written to a {@link ParsecDiskResponseCache} that survives
+ * restarts, and consulted on a miss before executing the request: fresh responses are served from disk,
+ * stale ones are revalidated.
+ * <p>
+ * With negative caching, error responses of the configured status families and request failures are kept
+ * in a separate, size bounded cache for their own short time to live, so that repeated requests for a
+ * failing key are answered locally instead of reloading on every call.
+ * <p>
+ * With a {@link ParsecCacheKeyNormalizer}, entries are keyed by the normalized request (e.g. with sorted query
+ * params and only some headers) instead of the request itself. The request headers named by the Vary header of
+ * a response are then added back to the key of the requests for the same normalized request.
+ * <p>
+ * Entries can be invalidated by request, host, URL prefix or cache tag, through a {@link ParsecCacheIndex} of
+ * the cached keys. Responses only on disk since a restart are not indexed until loaded again.
  *
  * @author sho
  */
@@ -32,7 +71,7 @@ final class ParsecAsyncHttpResponseLoadingCache {
     /**
      * Base async loading cache.
      */
-    private AsyncLoadingCache<ParsecAsyncHttpRequest, Response> asyncLoadingCache;
+    private AsyncLoadingCache<ParsecAsyncHttpRequest, ParsecCachedResponse> asyncLoadingCache;
 
     /**
      * Response cache loader.
@@ -44,6 +83,91 @@ final class ParsecAsyncHttpResponseLoadingCache {
      */
     private ScheduledExecutorService cleanUpExecutorService;
 
+    /**
+     * Freshness lifetime of responses without explicit freshness (milliseconds).
+     */
+    private long defaultTimeToLive;
+
+    /**
+     * Max freshness lifetime (milliseconds).
+     */
+    private long maxTimeToLive;
+
+    /**
+     * Default stale-while-revalidate window (milliseconds).
+     */
+    private long staleWhileRevalidate;
+
+    /**
+     * Default stale-if-error window (milliseconds).
+     */
+    private long staleIfError;
+
+    /**
+     * Max weight of a cached response (bytes), 0 for no limit.
+     */
+    private long maxEntryWeight;
+
+    /**
+     * Early refresh beta, 0 to disable early refresh.
+     */
+    private double earlyRefreshBeta;
+
+    /**
+     * Executor for background revalidations.
+     */
+    private Executor executor;
+
+    /**
+     * Off-heap body store, null to keep bodies on heap.
+     */
+    private ParsecOffHeapBodyStore bodyStore;
+
+    /**
+     * Disk cache, null if disabled.
+     */
+    private ParsecDiskResponseCache diskCache;
+
+    /**
+     * Negative cache of error responses and failures, null if disabled.
+     */
+    private Cache<ParsecAsyncHttpRequest, NegativeEntry> negativeCache;
+
+    /**
+     * Negative time to live per status family (milliseconds).
+     */
+    private Map<Response.Status.Family, Long> negativeTimeToLive;
+
+    /**
+     * Negative time to live of failures (milliseconds).
+     */
+    private long exceptionTimeToLive;
+
+    /**
+     * Cache key normalizer, null to key entries by request.
+     */
+    private ParsecCacheKeyNormalizer keyNormalizer;
+
+    /**
+     * Vary headers of the responses per normalized request, null without key normalizer.
+     */
+    private Cache<ParsecAsyncHttpRequest, List<String>> varyIndex;
+
+    /**
+     * Index of cached keys by host, URL and cache tag.
+     */
+    private final ParsecCacheIndex index = new ParsecCacheIndex(this::isCached);
+
+    /**
+     * Statistics counters.
+     */
+    private final ParsecCacheStatsCounter statsCounter = new ParsecCacheStatsCounter();
+
+    /**
+     * Clock.
+     */
+    private Clock clock;
+
     /**
      * Unused private constructor.
      */
@@ -58,80 +182,806 @@ final class ParsecAsyncHttpResponseLoadingCache {
      */
     @SuppressWarnings("unchecked")
     private ParsecAsyncHttpResponseLoadingCache(final Builder builder) {
+        defaultTimeToLive = builder.defaultTimeToLive;
+        maxTimeToLive = builder.maxTimeToLive;
+        staleWhileRevalidate = builder.staleWhileRevalidate;
+        staleIfError = builder.staleIfError;
+        earlyRefreshBeta = builder.earlyRefreshBeta;
+        maxEntryWeight = builder.maxEntryWeight;
+        executor = builder.executor;
+        clock = builder.clock;
         responseCacheLoader = new ResponseCacheLoader(builder.client);
-        asyncLoadingCache = builder.caffeine.buildAsync(responseCacheLoader);
+        if (builder.offHeapCapacity > 0) {
+            bodyStore = new ParsecOffHeapBodyStore(builder.offHeapCapacity, builder.offHeapSlabSize);
+        }
+        builder.caffeine.<ParsecAsyncHttpRequest, ParsecCachedResponse>removalListener((key, cached, cause) -> {
+            statsCounter.recordRemoval(cause);
+            if (cause != RemovalCause.REPLACED) {
+                index.remove(key);
+            }
+            if (cached != null) {
+                cached.release();
+            }
+        });
+        if (builder.diskDirectory != null) {
+            try {
+                diskCache = new ParsecDiskResponseCache(
+                    builder.diskDirectory, builder.diskSegmentSize, builder.diskMaxSegments, clock.millis());
+            } catch (IOException | RuntimeException e) {
+                LOGGER.warn("Disk cache disabled, failed to open " + builder.diskDirectory, e);
+            }
+        }
+        keyNormalizer = builder.keyNormalizer;
+        if (keyNormalizer != null) {
+            varyIndex = Caffeine.newBuilder()
+                .maximumSize(builder.varyIndexMaximumSize)
+                .expireAfterAccess(maxTimeToLive, TimeUnit.MILLISECONDS)
+                .build();
+        }
+        negativeTimeToLive = builder.negativeTimeToLive;
+        exceptionTimeToLive = builder.exceptionTimeToLive;
+        long maxNegativeTimeToLive = negativeTimeToLive.values().stream()
+            .reduce(exceptionTimeToLive, Math::max);
+        if (maxNegativeTimeToLive > 0) {
+            negativeCache = Caffeine.newBuilder()
+                .maximumSize(builder.negativeMaximumSize)
+                .expireAfterWrite(maxNegativeTimeToLive, TimeUnit.MILLISECONDS)
+                .executor(executor)
+                .<ParsecAsyncHttpRequest, NegativeEntry>removalListener((key, entry, cause) -> index.remove(key))
+                .build();
+        }
+        asyncLoadingCache = builder.caffeine
+            .expireAfterWrite(maxTimeToLive, TimeUnit.MILLISECONDS)
+            .buildAsync(responseCacheLoader);
 
         cleanUpExecutorService = Executors.newSingleThreadScheduledExecutor();
         cleanUpExecutorService.scheduleWithFixedDelay(() -> {
                 if (LOGGER.isDebugEnabled()) {
                     LOGGER.debug("Performing cache cleanup");
                 }
-                asyncLoadingCache.synchronous().cleanUp();
+                cleanUp();
             },
             builder.cleanUpInterval, builder.cleanUpInterval, builder.cleanUpTimeUnit
         );
     }
 
     /**
-     * Get from cache.
+     * Get from cache: as is if loading or fresh, stale while revalidating in the background within the
+     * stale-while-revalidate window, revalidated or reloaded otherwise (stale on errors within the
+     * stale-if-error window). Negatively cached error responses and failures are returned first.
      *
      * @param request Request to lookup in cache
      * @return CompletableFuture&lt;{@link Response}&gt;
      */
     public CompletableFuture<Response> get(ParsecAsyncHttpRequest request) {
-        return asyncLoadingCache.get(request);
+        final ParsecAsyncHttpRequest key = getKey(request);
+        final CompletableFuture<Response> negative = getNegative(key);
+        if (negative != null) {
+            statsCounter.recordNegativeHit();
+            return negative;
+        }
+
+        final boolean[] loading = new boolean[1];
+        final CompletableFuture<ParsecCachedResponse> future = asyncLoadingCache.get(key, (k, e) -> {
+            loading[0] = true;
+            return responseCacheLoader.asyncLoad(request, key);
+        });
+
+        // Callers loading or joining a load get its response whatever its freshness
+        if (loading[0] || !future.isDone() || future.isCompletedExceptionally()) {
+            statsCounter.recordMiss();
+            return future.handle((cached, throwable) -> {
+                if (throwable != null) {
+                    if (loading[0]) {
+                        storeNegative(request, key, throwable);
+                    }
+                    throw toCompletionException(throwable);
+                }
+                if (loading[0] && storeNegative(request, key, cached)) {
+                    asyncLoadingCache.synchronous().invalidate(key);
+                    unpersist(request, key);
+                } else if (!isAdmitted(cached)) {
+                    asyncLoadingCache.synchronous().invalidate(key);
+                    unpersist(request, key);
+                } else if (loading[0]) {
+                    final ParsecAsyncHttpRequest storeKey = getKey(request, cached);
+                    if (!storeKey.equals(key)) {
+                        // the response varies on headers left out of the key
+                        asyncLoadingCache.synchronous().asMap().remove(key, cached);
+                        asyncLoadingCache.put(storeKey, CompletableFuture.completedFuture(cached));
+                    }
+                    persist(request, storeKey, cached);
+                    offload(storeKey, cached);
+                    index.add(storeKey, request);
+                }
+                return cached.getResponse();
+            });
+        }
+
+        final ParsecCachedResponse cached = future.join();
+        final long now = clock.millis();
+        if (isAdmitted(cached)) {
+            if (cached.isFresh(now)) {
+                if (cached.shouldRefreshEarly(now, earlyRefreshBeta, 1 - ThreadLocalRandom.current().nextDouble())) {
+                    refreshInBackground(request, key, cached);
+                }
+                return serve(request, key, cached, false);
+            }
+            if (cached.isStaleWithin(now, getStaleWhileRevalidate(cached))) {
+                refreshInBackground(request, key, cached);
+                return serve(request, key, cached, true);
+            }
+        }
+
+        return revalidate(request, key, cached).handle((reloaded, throwable) -> {
+            if (throwable == null && !isServerError(reloaded)) {
+                statsCounter.recordMiss();
+                return reloaded.getResponse();
+            }
+            if (isAdmitted(cached) && cached.isStaleWithin(clock.millis(), getStaleIfError(cached))) {
+                Response stale = cached.getResponse();
+                if (stale != null) {
+                    LOGGER.debug("Serving stale response on error: " + request.getUrl());
+                    statsCounter.recordStaleHit();
+                    return stale;
+                }
+            }
+            statsCounter.recordMiss();
+            if (throwable != null) {
+                storeNegative(request, key, throwable);
+                throw toCompletionException(throwable);
+            }
+            return reloaded.getResponse();
+        });
+    }
+
+    /**
+     * Get a negatively cached error response or failure.
+     *
+     * @param key Cache key
+     * @return CompletableFuture&lt;{@link Response}&gt;, completed exceptionally for a failure, or null if
+     * negative caching is disabled or the request is not negatively cached
+     */
+    private CompletableFuture<Response> getNegative(final ParsecAsyncHttpRequest key) {
+        if (negativeCache == null) {
+            return null;
+        }
+
+        final NegativeEntry entry = negativeCache.getIfPresent(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt <= clock.millis()) {
+            negativeCache.asMap().remove(key, entry);
+            return null;
+        }
+
+        if (entry.failure != null) {
+            CompletableFuture<Response> failed = new CompletableFuture<>();
+            failed.completeExceptionally(entry.failure);
+            return failed;
+        }
+        return CompletableFuture.completedFuture(entry.response);
+    }
+
+    /**
+     * Negatively cache an error response, if negative caching is enabled for its status family.
+     *
+     * @param request Request
+     * @param key Cache key
+     * @param cached Loaded entry
+     * @return true if negative caching is enabled for the status family, in which case the response must not
+     * be kept in the main cache
+     */
+    private boolean storeNegative(
+        final ParsecAsyncHttpRequest request,
+        final ParsecAsyncHttpRequest key,
+        final ParsecCachedResponse cached
+    ) {
+        if (negativeCache == null) {
+            return false;
+        }
+        final Long timeToLive = negativeTimeToLive.get(Response.Status.Family.familyOf(cached.getStatus()));
+        if (timeToLive == null) {
+            return false;
+        }
+
+        final Response response = cached.getResponse();
+        if (response != null && cached.isStorable()) {
+            // the negative time to live caps the freshness lifetime of the response
+            ParsecCachedResponse negative = new ParsecCachedResponse(response,
+                cached.getResponseTime() - cached.getLoadTime(), cached.getResponseTime(), timeToLive, timeToLive);
+            final long now = clock.millis();
+            final long expiresAt = now + negative.getFreshnessLifetime() - negative.getAge(now);
+            if (expiresAt > now) {
+                LOGGER.debug("Negatively caching " + cached.getStatus() + ": " + request.getUrl());
+                negativeCache.put(key, new NegativeEntry(response, null, expiresAt));
+                index.add(key, request);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Negatively cache a failure, if negative caching of failures is enabled and the failure comes from
+     * the backend or the transport.
+     *
+     * @param request Request
+     * @param key Cache key
+     * @param throwable Failure
+     */
+    private void storeNegative(
+        final ParsecAsyncHttpRequest request,
+        final ParsecAsyncHttpRequest key,
+        final Throwable throwable
+    ) {
+        if (negativeCache == null || exceptionTimeToLive <= 0) {
+            return;
+        }
+
+        final Throwable failure = throwable instanceof CompletionException && throwable.getCause() != null
+            ? throwable.getCause() : throwable;
+        if (isLocalFailure(failure)) {
+            return;
+        }
+        LOGGER.debug("Negatively caching failure: " + request.getUrl());
+        negativeCache.put(key, new NegativeEntry(null, failure, clock.millis() + exceptionTimeToLive));
+        index.add(key, request);
+    }
+
+    /**
+     * Whether a failure is local to the client or a caller (cancellation, caller deadline, open circuit breaker,
+     * concurrency limit), so that it says nothing about the next calls to the backend.
+     *
+     * @param failure Failure
+     * @return true if local
+     */
+    private static boolean isLocalFailure(final Throwable failure) {
+        return failure instanceof CancellationException
+            || failure instanceof ParsecDeadlineExceededException
+            || failure instanceof ParsecCircuitBreakerOpenException
+            || failure instanceof ParsecConcurrencyLimitExceededException;
+    }
+
+    /**
+     * Wrap a failure in a {@link CompletionException}, unless it is one already.
+     *
+     * @param throwable Failure
+     * @return CompletionException
+     */
+    private static CompletionException toCompletionException(final Throwable throwable) {
+        return throwable instanceof CompletionException
+            ? (CompletionException) throwable : new CompletionException(throwable);
+    }
+
+    /**
+     * Serve a cached entry, or reload it if its off-heap body was evicted.
+     *
+     * @param request Request
+     * @param key Cache key
+     * @param cached Entry
+     * @param stale Whether the entry is stale
+     * @return CompletableFuture&lt;{@link Response}&gt;
+     */
+    private CompletableFuture<Response> serve(
+        final ParsecAsyncHttpRequest request,
+        final ParsecAsyncHttpRequest key,
+        final ParsecCachedResponse cached,
+        final boolean stale
+    ) {
+        Response response = cached.getResponse();
+        if (response != null) {
+            if (stale) {
+                statsCounter.recordStaleHit();
+            } else {
+                statsCounter.recordHit();
+            }
+            return CompletableFuture.completedFuture(response);
+        }
+
+        LOGGER.debug("Off-heap body evicted: " + request.getUrl());
+        asyncLoadingCache.synchronous().asMap().remove(key, cached);
+        return get(request);
     }
 
     /**
      * Get from cache.
      *
      * @param request Request to lookup in cache
-     * @param executorService Executor service to use for asynchronous load
+     * @param executorService Unused, loads are asynchronous and do not block any executor thread
      * @return CompletableFuture&lt;{@link Response}&gt;
      */
-    public CompletableFuture<Response> get(ParsecAsyncHttpRequest request, ExecutorService executorService) {
-        return asyncLoadingCache.get(request, (k, e) -> responseCacheLoader.asyncLoad(request, executorService));
+    public CompletableFuture<Response> get(ParsecAsyncHttpRequest request, ExecutorService executorService) {
+        return get(request);
+    }
+
+    /**
+     * Get from cache or null if not in cache. Stale entries are returned as is.
+     *
+     * @param request Request to lookup in cache
+     * @return CompletableFuture&lt;{@link Response}&gt; or null if not in cache, completed with null if the
+     * off-heap body was evicted
+     */
+    public CompletableFuture<Response> getIfPresent(ParsecAsyncHttpRequest request) {
+        ParsecAsyncHttpRequest key = getKey(request);
+        CompletableFuture<Response> negative = getNegative(key);
+        if (negative != null) {
+            return negative;
+        }
+        CompletableFuture<ParsecCachedResponse> future = asyncLoadingCache.getIfPresent(key);
+        return future == null ? null : future.thenApply(ParsecCachedResponse::getResponse);
+    }
+
+    /**
+     * Put CompletableFuture&lt;{@link Response}&gt; into cache.
+     *
+     * @param request Request to use as cache key
+     * @param completableFuture CompletableFuture&lt;{@link Response}&gt; to store
+     */
+    public void put(ParsecAsyncHttpRequest request, CompletableFuture<Response> completableFuture) {
+        final long now = clock.millis();
+        final ParsecAsyncHttpRequest key = getKey(request);
+        if (negativeCache != null) {
+            negativeCache.invalidate(key);
+        }
+        final CompletableFuture<ParsecCachedResponse> future =
+            completableFuture.thenApply(response -> offHeap(newCachedResponse(response, now)));
+        asyncLoadingCache.put(key, future);
+        future.thenRun(() -> index.add(key, request));
+    }
+
+    /**
+     * Invalidate the entry a request would be served from, on heap, on disk and in the negative cache.
+     *
+     * @param request Request
+     */
+    public void invalidate(ParsecAsyncHttpRequest request) {
+        invalidateKey(getKey(request));
+    }
+
+    /**
+     * Invalidate the entries of a host.
+     *
+     * @param host Host, case-insensitive
+     * @return number of entries invalidated
+     */
+    public int invalidateHost(String host) {
+        return invalidateKeys(index.getByHost(host));
+    }
+
+    /**
+     * Invalidate the entries of URLs starting with a prefix.
+     *
+     * @param urlPrefix URL prefix, e.g. "http://host/users/42" (also matches "http://host/users/420")
+     * @return number of entries invalidated
+     */
+    public int invalidateUrlPrefix(String urlPrefix) {
+        return invalidateKeys(index.getByUrlPrefix(urlPrefix));
+    }
+
+    /**
+     * Invalidate the entries loaded by requests with a cache tag.
+     *
+     * @param tag Cache tag
+     * @return number of entries invalidated
+     */
+    public int invalidateTag(String tag) {
+        return invalidateKeys(index.getByTag(tag));
+    }
+
+    /**
+     * Invalidate keys.
+     *
+     * @param keys Cache keys
+     * @return number of keys
+     */
+    private int invalidateKeys(final List<ParsecAsyncHttpRequest> keys) {
+        keys.forEach(this::invalidateKey);
+        return keys.size();
+    }
+
+    /**
+     * Invalidate a key, on heap, on disk and in the negative cache.
+     *
+     * @param key Cache key
+     */
+    private void invalidateKey(final ParsecAsyncHttpRequest key) {
+        asyncLoadingCache.synchronous().invalidate(key);
+        if (negativeCache != null) {
+            negativeCache.invalidate(key);
+        }
+        unpersist(key, key);
+        index.remove(key);
+    }
+
+    /**
+     * Whether a key is cached, on heap, on disk or in the negative cache.
+     *
+     * @param key Cache key
+     * @return true if cached
+     */
+    private boolean isCached(final ParsecAsyncHttpRequest key) {
+        return asyncLoadingCache.synchronous().asMap().containsKey(key)
+            || negativeCache != null && negativeCache.asMap().containsKey(key)
+            || diskCache != null && diskCache.contains(key);
+    }
+
+    /**
+     * Get index.
+     *
+     * @return index of cached keys
+     */
+    ParsecCacheIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Returns a view of the entries stored in this cache as a synchronous {@link LoadingCache}.
+     * A mapping is not present if the value is currently being loaded. Modifications made to the
+     * synchronous cache directly affect the asynchronous cache. If a modification is made to a
+     * mapping that is currently loading, the operation blocks until the computation completes.
+     *
+     * @return a thread-safe synchronous view of this cache
+     */
+    public LoadingCache<ParsecAsyncHttpRequest, ParsecCachedResponse> synchronous() {
+        return asyncLoadingCache.synchronous();
+    }
+
+    /**
+     * Remove entries that are neither fresh, revalidatable nor within their stale windows, or whose
+     * off-heap body was evicted, and perform Caffeine maintenance.
+     */
+    void cleanUp() {
+        final long now = clock.millis();
+        if (diskCache != null) {
+            diskCache.cleanUp(now);
+        }
+        asyncLoadingCache.synchronous().asMap().values().removeIf(cached -> !cached.isBodyAvailable()
+            || !cached.isUsable(now, Math.max(getStaleWhileRevalidate(cached), getStaleIfError(cached))));
+        asyncLoadingCache.synchronous().cleanUp();
+        if (negativeCache != null) {
+            negativeCache.asMap().values().removeIf(entry -> entry.expiresAt <= now);
+            negativeCache.cleanUp();
+        }
+        index.cleanUp();
+    }
+
+    /**
+     * Get negative cache.
+     *
+     * @return negative cache, null if disabled
+     */
+    Cache<ParsecAsyncHttpRequest, NegativeEntry> getNegativeCache() {
+        return negativeCache;
+    }
+
+    /**
+     * Get weighted size: total approximate heap size of cached responses (bytes).
+     *
+     * @return weighted size
+     */
+    long getWeightedSize() {
+        return asyncLoadingCache.synchronous().policy().eviction()
+            .map(eviction -> eviction.weightedSize())
+            .filter(OptionalLong::isPresent)
+            .map(OptionalLong::getAsLong)
+            .orElseGet(() -> asyncLoadingCache.synchronous().asMap().values().stream()
+                .mapToLong(ParsecCachedResponse::getWeight).sum());
+    }
+
+    /**
+     * Get statistics.
+     *
+     * @return snapshot of the statistics
+     */
+    ParsecCacheStats getStats() {
+        return new ParsecCacheStats(statsCounter, asyncLoadingCache.synchronous().estimatedSize(), getWeightedSize(),
+            negativeCache == null ? 0 : negativeCache.estimatedSize());
+    }
+
+    /**
+     * Get off-heap body store.
+     *
+     * @return off-heap body store, null if bodies are kept on heap
+     */
+    ParsecOffHeapBodyStore getBodyStore() {
+        return bodyStore;
+    }
+
+    /**
+     * Get disk cache.
+     *
+     * @return disk cache, null if disabled
+     */
+    ParsecDiskResponseCache getDiskCache() {
+        return diskCache;
+    }
+
+    /**
+     * Write an entry to the disk cache in the background, if the disk cache is enabled.
+     *
+     * @param request Request
+     * @param key Cache key
+     * @param cached Entry
+     */
+    private void persist(
+        final ParsecAsyncHttpRequest request,
+        final ParsecAsyncHttpRequest key,
+        final ParsecCachedResponse cached
+    ) {
+        if (diskCache == null) {
+            return;
+        }
+
+        final long keepUntil = getKeepUntil(cached);
+        try {
+            executor.execute(() -> {
+                Response response = cached.getResponse();
+                if (response == null) {
+                    return;
+                }
+                try {
+                    diskCache.put(key, response, cached.getResponseTime() - cached.getLoadTime(),
+                        cached.getResponseTime(), keepUntil);
+                } catch (IOException e) {
+                    LOGGER.warn("Failed to write disk cache: " + request.getUrl(), e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            LOGGER.debug("Disk cache write rejected: " + request.getUrl());
+        }
+    }
+
+    /**
+     * Remove a request from the disk cache, if the disk cache is enabled.
+     *
+     * @param request Request
+     * @param key Cache key
+     */
+    private void unpersist(final ParsecAsyncHttpRequest request, final ParsecAsyncHttpRequest key) {
+        if (diskCache == null) {
+            return;
+        }
+
+        try {
+            diskCache.remove(key);
+        } catch (IOException e) {
+            LOGGER.warn("Failed to write disk cache: " + request.getUrl(), e);
+        }
+    }
+
+    /**
+     * Get time after which an entry is useless: neither fresh, within its stale windows nor revalidatable.
+     *
+     * @param cached Entry
+     * @return keep until (epoch milliseconds)
+     */
+    private long getKeepUntil(final ParsecCachedResponse cached) {
+        final long now = clock.millis();
+        if (cached.hasValidator()) {
+            return now + maxTimeToLive;
+        }
+        long staleWindow = Math.max(getStaleWhileRevalidate(cached), getStaleIfError(cached));
+        return now + Math.max(0, cached.getFreshnessLifetime() + staleWindow - cached.getAge(now));
+    }
+
+    /**
+     * Move the body of a loaded entry off heap, if off-heap storage is enabled.
+     *
+     * @param key Cache key
+     * @param cached Loaded entry
+     */
+    private void offload(final ParsecAsyncHttpRequest key, final ParsecCachedResponse cached) {
+        ParsecCachedResponse offHeap = offHeap(cached);
+        if (offHeap != cached && !asyncLoadingCache.synchronous().asMap().replace(key, cached, offHeap)) {
+            offHeap.release();
+        }
+    }
+
+    /**
+     * Copy of an entry with its body off heap, if off-heap storage is enabled.
+     *
+     * @param cached Entry
+     * @return entry with its body off heap, or the entry itself
+     */
+    private ParsecCachedResponse offHeap(final ParsecCachedResponse cached) {
+        return bodyStore == null ? cached : cached.offHeap(bodyStore);
+    }
+
+    /**
+     * Whether an entry may be kept: storable and not heavier than the max entry weight.
+     *
+     * @param cached Entry
+     * @return true if admitted
+     */
+    private boolean isAdmitted(final ParsecCachedResponse cached) {
+        return cached.isStorable() && (maxEntryWeight <= 0 || cached.getWeight() <= maxEntryWeight);
+    }
+
+    /**
+     * Get stale-while-revalidate window of an entry, from its Cache-Control or the default.
+     *
+     * @param cached Entry
+     * @return stale-while-revalidate window (milliseconds)
+     */
+    private long getStaleWhileRevalidate(final ParsecCachedResponse cached) {
+        return cached.getStaleWhileRevalidate() >= 0 ? cached.getStaleWhileRevalidate() : staleWhileRevalidate;
+    }
+
+    /**
+     * Get stale-if-error window of an entry, from its Cache-Control or the default.
+     *
+     * @param cached Entry
+     * @return stale-if-error window (milliseconds)
+     */
+    private long getStaleIfError(final ParsecCachedResponse cached) {
+        return cached.getStaleIfError() >= 0 ? cached.getStaleIfError() : staleIfError;
+    }
+
+    /**
+     * Whether the response of an entry is a server error.
+     *
+     * @param cached Entry
+     * @return true if 5xx
+     */
+    private static boolean isServerError(final ParsecCachedResponse cached) {
+        return cached.getStatus() >= Response.Status.INTERNAL_SERVER_ERROR.getStatusCode();
+    }
+
+    /**
+     * Revalidate an entry in the background on the executor, unless a revalidation is already in progress.
+     *
+     * @param request Request
+     * @param key Cache key
+     * @param cached Entry
+     */
+    private void refreshInBackground(
+        final ParsecAsyncHttpRequest request,
+        final ParsecAsyncHttpRequest key,
+        final ParsecCachedResponse cached
+    ) {
+        if (cached.getRevalidation().get() != null) {
+            return;
+        }
+
+        try {
+            executor.execute(() -> revalidate(request, key, cached).whenComplete((reloaded, throwable) -> {
+                if (throwable != null) {
+                    LOGGER.debug("Background revalidation failed: " + request.getUrl(), throwable);
+                }
+            }));
+        } catch (RejectedExecutionException e) {
+            LOGGER.debug("Background revalidation rejected: " + request.getUrl());
+        }
+    }
+
+    /**
+     * Revalidate (or reload) a stale entry, one revalidation at a time per entry.
+     *
+     * @param request Request
+     * @param key Cache key
+     * @param cached Stale entry
+     * @return CompletableFuture&lt;{@link ParsecCachedResponse}&gt;
+     */
+    private CompletableFuture<ParsecCachedResponse> revalidate(
+        final ParsecAsyncHttpRequest request,
+        final ParsecAsyncHttpRequest key,
+        final ParsecCachedResponse cached
+    ) {
+        CompletableFuture<ParsecCachedResponse> created = new CompletableFuture<>();
+        if (!cached.getRevalidation().compareAndSet(null, created)) {
+            return cached.getRevalidation().get();
+        }
+
+        responseCacheLoader.asyncReload(request, cached).whenComplete((reloaded, throwable) -> {
+            if (throwable != null) {
+                // let the next caller try again
+                cached.getRevalidation().compareAndSet(created, null);
+                created.completeExceptionally(throwable);
+                return;
+            }
+            if (isServerError(reloaded) && isAdmitted(cached)
+                && cached.isStaleWithin(clock.millis(), getStaleIfError(cached))) {
+                // keep the last good response, and let the next caller try again
+                cached.getRevalidation().compareAndSet(created, null);
+            } else {
+                store(request, key, reloaded);
+            }
+            created.complete(reloaded);
+        });
+        return created;
+    }
+
+    /**
+     * Store a loaded entry (negatively if it is an error response of a negatively cached status family), or
+     * remove the key if the response must not be stored.
+     *
+     * @param request Request
+     * @param key Cache key of the stale entry
+     * @param cached Entry
+     */
+    private void store(
+        final ParsecAsyncHttpRequest request,
+        final ParsecAsyncHttpRequest key,
+        final ParsecCachedResponse cached
+    ) {
+        if (storeNegative(request, key, cached)) {
+            asyncLoadingCache.synchronous().invalidate(key);
+            unpersist(request, key);
+        } else if (isAdmitted(cached)) {
+            final ParsecAsyncHttpRequest storeKey = getKey(request, cached);
+            persist(request, storeKey, cached);
+            asyncLoadingCache.put(storeKey, CompletableFuture.completedFuture(offHeap(cached)));
+            index.add(storeKey, request);
+            if (!storeKey.equals(key)) {
+                asyncLoadingCache.synchronous().invalidate(key);
+            }
+        } else {
+            asyncLoadingCache.synchronous().invalidate(key);
+            unpersist(request, key);
+        }
     }
 
     /**
-     * Get from cache or null if not in cache.
+     * Get the cache key of a request: the request itself without key normalizer, the normalized request with
+     * the headers named by the Vary header of its last response otherwise.
      *
-     * @param request Request to lookup in cache
-     * @return CompletableFuture&lt;{@link Response}&gt; or null if not in cache
+     * @param request Request
+     * @return cache key
      */
-    public CompletableFuture<Response> getIfPresent(ParsecAsyncHttpRequest request) {
-        return asyncLoadingCache.getIfPresent(request);
+    private ParsecAsyncHttpRequest getKey(final ParsecAsyncHttpRequest request) {
+        if (keyNormalizer == null) {
+            return request;
+        }
+
+        final ParsecAsyncHttpRequest normalized = request.withCacheKey(keyNormalizer, Collections.emptySet());
+        final List<String> varyHeaders = varyIndex.getIfPresent(normalized);
+        return varyHeaders == null ? normalized : request.withCacheKey(keyNormalizer, varyHeaders);
     }
 
     /**
-     * Put CompletableFuture&lt;{@link Response}&gt; into cache.
+     * Get the cache key of a loaded response, and record its Vary headers for the next lookups.
      *
-     * @param request Request to use as cache key
-     * @param completableFuture CompletableFuture&lt;{@link Response}&gt; to store
+     * @param request Request
+     * @param cached Loaded entry
+     * @return cache key
      */
-    public void put(ParsecAsyncHttpRequest request, CompletableFuture<Response> completableFuture) {
-        asyncLoadingCache.put(request, completableFuture);
+    private ParsecAsyncHttpRequest getKey(final ParsecAsyncHttpRequest request, final ParsecCachedResponse cached) {
+        if (keyNormalizer == null) {
+            return request;
+        }
+
+        final ParsecAsyncHttpRequest normalized = request.withCacheKey(keyNormalizer, Collections.emptySet());
+        final List<String> varyHeaders = cached.getVaryHeaders();
+        if (varyHeaders.isEmpty()) {
+            varyIndex.invalidate(normalized);
+            return normalized;
+        }
+        varyIndex.put(normalized, varyHeaders);
+        return request.withCacheKey(keyNormalizer, varyHeaders);
     }
 
     /**
-     * Returns a view of the entries stored in this cache as a synchronous {@link LoadingCache}.
-     * A mapping is not present if the value is currently being loaded. Modifications made to the
-     * synchronous cache directly affect the asynchronous cache. If a modification is made to a
-     * mapping that is currently loading, the operation blocks until the computation completes.
+     * Create cache entry.
      *
-     * @return a thread-safe synchronous view of this cache
+     * @param response Response
+     * @param requestTime Time the request was sent
+     * @return {@link ParsecCachedResponse}
      */
-    public LoadingCache<ParsecAsyncHttpRequest, Response> synchronous() {
-        return asyncLoadingCache.synchronous();
+    private ParsecCachedResponse newCachedResponse(final Response response, final long requestTime) {
+        return new ParsecCachedResponse(response, requestTime, clock.millis(), defaultTimeToLive, maxTimeToLive);
     }
 
     /**
-     * Shutdown.
+     * Shutdown, and close the disk cache.
      */
     void shutdownCleanUpExecutorService() {
         if (!cleanUpExecutorService.isShutdown()) {
             cleanUpExecutorService.shutdown();
         }
+        if (diskCache != null) {
+            diskCache.close();
+        }
     }
 
     /**
@@ -145,10 +995,25 @@ final class ParsecAsyncHttpResponseLoadingCache {
          */
         private static final long DEFAULT_CLEANUP_INTERVAL = 60;
 
+        /**
+         * Default max time to live (1 day).
+         */
+        private static final long DEFAULT_MAX_TIME_TO_LIVE = TimeUnit.DAYS.toMillis(1);
+
+        /**
+         * Default negative cache maximum size.
+         */
+        private static final long DEFAULT_NEGATIVE_MAXIMUM_SIZE = 1000;
+
+        /**
+         * Default max number of normalized requests whose Vary headers are kept.
+         */
+        private static final long DEFAULT_VARY_INDEX_MAXIMUM_SIZE = 10000;
+
         /**
          * Caffeine.
          */
-        private Caffeine caffeine;
+        private Caffeine<Object, Object> caffeine;
 
         /**
          * Client.
@@ -165,6 +1030,96 @@ final class ParsecAsyncHttpResponseLoadingCache {
          */
         private TimeUnit cleanUpTimeUnit;
 
+        /**
+         * Default time to live (milliseconds).
+         */
+        private long defaultTimeToLive;
+
+        /**
+         * Max time to live (milliseconds).
+         */
+        private long maxTimeToLive;
+
+        /**
+         * Default stale-while-revalidate window (milliseconds).
+         */
+        private long staleWhileRevalidate;
+
+        /**
+         * Default stale-if-error window (milliseconds).
+         */
+        private long staleIfError;
+
+        /**
+         * Early refresh beta.
+         */
+        private double earlyRefreshBeta;
+
+        /**
+         * Max entry weight (bytes).
+         */
+        private long maxEntryWeight;
+
+        /**
+         * Off-heap storage capacity (bytes).
+         */
+        private long offHeapCapacity;
+
+        /**
+         * Off-heap storage slab size (bytes).
+         */
+        private int offHeapSlabSize;
+
+        /**
+         * Disk cache directory.
+         */
+        private Path diskDirectory;
+
+        /**
+         * Disk cache segment size (bytes).
+         */
+        private int diskSegmentSize;
+
+        /**
+         * Disk cache max segments.
+         */
+        private int diskMaxSegments;
+
+        /**
+         * Negative time to live per status family (milliseconds).
+         */
+        private Map<Response.Status.Family, Long> negativeTimeToLive;
+
+        /**
+         * Negative time to live of failures (milliseconds).
+         */
+        private long exceptionTimeToLive;
+
+        /**
+         * Negative cache maximum size.
+         */
+        private long negativeMaximumSize;
+
+        /**
+         * Cache key normalizer.
+         */
+        private ParsecCacheKeyNormalizer keyNormalizer;
+
+        /**
+         * Max number of normalized requests whose Vary headers are kept.
+         */
+        private long varyIndexMaximumSize;
+
+        /**
+         * Executor.
+         */
+        private Executor executor;
+
+        /**
+         * Clock.
+         */
+        private Clock clock;
+
         /**
          * Constructor.
          * @param client client
@@ -174,6 +1129,12 @@ final class ParsecAsyncHttpResponseLoadingCache {
             this.client = client;
             cleanUpInterval = DEFAULT_CLEANUP_INTERVAL;
             cleanUpTimeUnit = TimeUnit.SECONDS;
+            maxTimeToLive = DEFAULT_MAX_TIME_TO_LIVE;
+            negativeTimeToLive = new EnumMap<>(Response.Status.Family.class);
+            negativeMaximumSize = DEFAULT_NEGATIVE_MAXIMUM_SIZE;
+            varyIndexMaximumSize = DEFAULT_VARY_INDEX_MAXIMUM_SIZE;
+            executor = ForkJoinPool.commonPool();
+            clock = Clock.systemUTC();
         }
 
         /**
@@ -188,23 +1149,155 @@ final class ParsecAsyncHttpResponseLoadingCache {
         /**
          * Set executor {@link Executor}.
          *
-         * @param executor Executor for asynchronous cache loading
+         * @param executor Executor for asynchronous cache loading and background revalidations
          * @return {@link ParsecAsyncHttpResponseLoadingCache.Builder}
          */
         public Builder executor(final Executor executor) {
             caffeine.executor(executor);
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * Set default stale-while-revalidate window, for responses without the Cache-Control
+         * stale-while-revalidate directive.
+         *
+         * @param duration Stale-while-revalidate window, 0 to disable
+         * @param unit Time unit
+         * @return {@link ParsecAsyncHttpResponseLoadingCache.Builder}
+         */
+        public Builder staleWhileRevalidate(final long duration, final TimeUnit unit) {
+            staleWhileRevalidate = unit.toMillis(duration);
+            return this;
+        }
+
+        /**
+         * Set default stale-if-error window, for responses without the Cache-Control stale-if-error directive.
+         *
+         * @param duration Stale-if-error window, 0 to disable
+         * @param unit Time unit
+         * @return {@link ParsecAsyncHttpResponseLoadingCache.Builder}
+         */
+        public Builder staleIfError(final long duration, final TimeUnit unit) {
+            staleIfError = unit.toMillis(duration);
+            return this;
+        }
+
+        /**
+         * Set early refresh beta (probabilistic early expiration).
+         *
+         * @param beta Early refresh beta, 1 is a good start, above 1 favors earlier refreshes, 0 to disable
+         * @return {@link ParsecAsyncHttpResponseLoadingCache.Builder}
+         */
+        public Builder earlyRefreshBeta(final double beta) {
+            earlyRefreshBeta = beta;
             return this;
         }
 
         /**
-         * Set cache expire after write duration.
+         * Set default time to live, the freshness lifetime of responses without Cache-Control max-age
+         * or Expires headers.
          *
-         * @param duration Expire duration
-         * @param unit Expire time unit
+         * @param duration Default time to live
+         * @param unit Time unit
          * @return {@link ParsecAsyncHttpResponseLoadingCache.Builder}
          */
         public Builder expireAfterWrite(final long duration, final TimeUnit unit) {
-            caffeine.expireAfterWrite(duration, unit);
+            defaultTimeToLive = unit.toMillis(duration);
+            return this;
+        }
+
+        /**
+         * Set max time to live, caps the freshness lifetime and how long revalidatable responses are kept.
+         *
+         * @param duration Max time to live
+         * @param unit Time unit
+         * @return {@link ParsecAsyncHttpResponseLoadingCache.Builder}
+         */
+        public Builder maxTimeToLive(final long duration, final TimeUnit unit) {
+            maxTimeToLive = unit.toMillis(duration);
+            return this;
+        }
+
+        /**
+         * Set negative time to live of error responses of a status family. Such responses are kept in the
+         * negative cache instead of the main cache, for the lesser of this time and their own freshness
+         * lifetime.
+         *
+         * @param family Status family, {@link Response.Status.Family#CLIENT_ERROR} or
+         *               {@link Response.Status.Family#SERVER_ERROR}
+         * @param duration Negative time to live, 0 to cache such responses like any other
+         * @param unit Time unit
+         * @return {@link ParsecAsyncHttpResponseLoadingCache.Builder}
+         * @throws IllegalArgumentException if the family is not an error family
+         */
+        public Builder negativeTimeToLive(final Response.Status.Family family, final long duration, final TimeUnit unit) {
+            if (family != Response.Status.Family.CLIENT_ERROR && family != Response.Status.Family.SERVER_ERROR) {
+                throw new IllegalArgumentException("not an error status family: " + family);
+            }
+            if (duration > 0) {
+                negativeTimeToLive.put(family, unit.toMillis(duration));
+            } else {
+                negativeTimeToLive.remove(family);
+            }
+            return this;
+        }
+
+        /**
+         * Set negative time to live of failures (connect errors, timeouts...), the failure is returned again
+         * to callers of the same request meanwhile. Local failures (cancellations, caller deadlines, open
+         * circuit breakers, concurrency limits) are not cached.
+         *
+         * @param duration Negative time to live, 0 to disable
+         * @param unit Time unit
+         * @return {@link ParsecAsyncHttpResponseLoadingCache.Builder}
+         */
+        public Builder exceptionTimeToLive(final long duration, final TimeUnit unit) {
+            exceptionTimeToLive = unit.toMillis(duration);
+            return this;
+        }
+
+        /**
+         * Set negative cache maximum size, separate from the main cache maximum size or weight.
+         *
+         * @param size Negative cache maximum size
+         * @return {@link ParsecAsyncHttpResponseLoadingCache.Builder}
+         */
+        public Builder negativeMaximumSize(final long size) {
+            negativeMaximumSize = size;
+            return this;
+        }
+
+        /**
+         * Set cache key normalizer, so that requests with the same normalized URL and key headers share entries.
+         *
+         * @param normalizer Cache key normalizer, null to key entries by request
+         * @return {@link ParsecAsyncHttpResponseLoadingCache.Builder}
+         */
+        public Builder keyNormalizer(final ParsecCacheKeyNormalizer normalizer) {
+            keyNormalizer = normalizer;
+            return this;
+        }
+
+        /**
+         * Set max number of normalized requests whose Vary headers are kept, with a key normalizer.
+         *
+         * @param size Max number of normalized requests
+         * @return {@link ParsecAsyncHttpResponseLoadingCache.Builder}
+         */
+        public Builder varyIndexMaximumSize(final long size) {
+            varyIndexMaximumSize = size;
+            return this;
+        }
+
+        /**
+         * Set clock, for tests.
+         *
+         * @param clock Clock
+         * @return {@link ParsecAsyncHttpResponseLoadingCache.Builder}
+         */
+        Builder clock(final Clock clock) {
+            this.clock = clock;
             return this;
         }
 
@@ -219,6 +1312,60 @@ final class ParsecAsyncHttpResponseLoadingCache {
             return this;
         }
 
+        /**
+         * Set cache maximum weight, bounding the total approximate heap size of cached response bodies and
+         * headers instead of the number of entries. Cannot be combined with {@link #maximumSize(long)}.
+         *
+         * @param weight Cache maximum weight (bytes)
+         * @return {@link ParsecAsyncHttpResponseLoadingCache.Builder}
+         */
+        @SuppressWarnings("unchecked")
+        public Builder maximumWeight(final long weight) {
+            caffeine.maximumWeight(weight)
+                .weigher((request, cached) -> ((ParsecCachedResponse) cached).getWeight());
+            return this;
+        }
+
+        /**
+         * Set max entry weight, responses heavier than this are never cached.
+         *
+         * @param weight Max entry weight (bytes), 0 for no limit
+         * @return {@link ParsecAsyncHttpResponseLoadingCache.Builder}
+         */
+        public Builder maxEntryWeight(final long weight) {
+            maxEntryWeight = weight;
+            return this;
+        }
+
+        /**
+         * Set off-heap storage of response bodies, in direct memory slabs. When full, the oldest slab is
+         * recycled and the entries whose bodies were in it are reloaded on next access.
+         *
+         * @param capacity Off-heap capacity (bytes), 0 to keep bodies on heap
+         * @param slabSize Slab size (bytes), larger bodies are kept on heap
+         * @return {@link ParsecAsyncHttpResponseLoadingCache.Builder}
+         */
+        public Builder offHeapStorage(final long capacity, final int slabSize) {
+            offHeapCapacity = capacity;
+            offHeapSlabSize = slabSize;
+            return this;
+        }
+
+        /**
+         * Set disk storage, a second-level cache in memory-mapped segment files surviving restarts.
+         *
+         * @param directory Directory of segment files, null to disable
+         * @param segmentSize Segment size (bytes), responses larger than half of it are not stored
+         * @param maxSegments Max number of segments
+         * @return {@link ParsecAsyncHttpResponseLoadingCache.Builder}
+         */
+        public Builder diskStorage(final Path directory, final int segmentSize, final int maxSegments) {
+            diskDirectory = directory;
+            diskSegmentSize = segmentSize;
+            diskMaxSegments = maxSegments;
+            return this;
+        }
+
         /**
          * Set cache clean up interval.
          *
@@ -233,10 +1380,52 @@ final class ParsecAsyncHttpResponseLoadingCache {
         }
     }
 
+    /**
+     * Negative cache entry, an error response or a failure.
+     */
+    static final class NegativeEntry {
+        /**
+         * Error response, null for a failure.
+         */
+        private final Response response;
+
+        /**
+         * Failure, null for an error response.
+         */
+        private final Throwable failure;
+
+        /**
+         * Expiry time (epoch milliseconds).
+         */
+        private final long expiresAt;
+
+        /**
+         * Constructor.
+         *
+         * @param response error response
+         * @param failure failure
+         * @param expiresAt expiry time (epoch milliseconds)
+         */
+        private NegativeEntry(final Response response, final Throwable failure, final long expiresAt) {
+            this.response = response;
+            this.failure = failure;
+            this.expiresAt = expiresAt;
+        }
+
+        /**
+         * Get expiry time.
+         *
+         * @return expiry time (epoch milliseconds)
+         */
+        long getExpiresAt() {
+            return expiresAt;
+        }
+    }
+
     /**
      * {@link CacheLoader} implementation that loads {@link Response} into {@link ParsecAsyncHttpResponseLoadingCache}.
      */
-    private final class ResponseCacheLoader implements CacheLoader<ParsecAsyncHttpRequest, Response> {
+    private final class ResponseCacheLoader implements CacheLoader<ParsecAsyncHttpRequest, ParsecCachedResponse> {
         /**
          * Client.
          */
@@ -255,16 +1444,147 @@ final class ParsecAsyncHttpResponseLoadingCache {
          * Load {@link Response} into {@link ParsecAsyncHttpResponseLoadingCache}.
          *
          * @param request {@link ParsecAsyncHttpRequest} as {@link ParsecAsyncHttpResponseLoadingCache} key
-         * @return {@link Response}
+         * @return {@link ParsecCachedResponse}
          * @throws RuntimeException Run time exception
          */
-        public Response load(final ParsecAsyncHttpRequest request) throws RuntimeException {
+        public ParsecCachedResponse load(final ParsecAsyncHttpRequest request) throws RuntimeException {
             try {
-                return client.criticalExecute(request).get();
+                return asyncLoad(request, Runnable::run).get();
             } catch (ExecutionException | InterruptedException e) {
                 throw new RuntimeException(e);
             }
         }
+
+        /**
+         * Load {@link Response} into {@link ParsecAsyncHttpResponseLoadingCache} without blocking.
+         *
+         * @param request {@link ParsecAsyncHttpRequest} as {@link ParsecAsyncHttpResponseLoadingCache} key
+         * @param executor unused, requests are executed asynchronously by the client
+         * @return CompletableFuture&lt;{@link ParsecCachedResponse}&gt;
+         */
+        @Override
+        public CompletableFuture<ParsecCachedResponse> asyncLoad(
+            final ParsecAsyncHttpRequest request,
+            final Executor executor
+        ) {
+            return asyncLoad(request, request);
+        }
+
+        /**
+         * Load {@link Response} into {@link ParsecAsyncHttpResponseLoadingCache} without blocking.
+         *
+         * @param request {@link ParsecAsyncHttpRequest} to execute
+         * @param key {@link ParsecAsyncHttpResponseLoadingCache} key
+         * @return CompletableFuture&lt;{@link ParsecCachedResponse}&gt;
+         */
+        private CompletableFuture<ParsecCachedResponse> asyncLoad(
+            final ParsecAsyncHttpRequest request,
+            final ParsecAsyncHttpRequest key
+        ) {
+            ParsecCachedResponse stored = loadFromDisk(key);
+            if (stored != null) {
+                if (stored.isFresh(clock.millis())) {
+                    LOGGER.debug("Loaded from disk cache: " + request.getUrl());
+                    statsCounter.recordDiskHit();
+                    return CompletableFuture.completedFuture(stored);
+                }
+                if (stored.hasValidator()) {
+                    return asyncReload(request, stored);
+                }
+            }
+            return execute(request);
+        }
+
+        /**
+         * Load from the disk cache.
+         *
+         * @param key {@link ParsecAsyncHttpResponseLoadingCache} key
+         * @return {@link ParsecCachedResponse}, or null if disabled or not in the disk cache
+         */
+        private ParsecCachedResponse loadFromDisk(final ParsecAsyncHttpRequest key) {
+            if (diskCache == null) {
+                return null;
+            }
+
+            ParsecDiskResponseCache.Record stored = diskCache.get(key, clock.millis());
+            if (stored == null) {
+                return null;
+            }
+            return new ParsecCachedResponse(
+                stored.getResponse(), stored.getRequestTime(), stored.getResponseTime(), defaultTimeToLive, maxTimeToLive);
+        }
+
+        /**
+         * Reload a stale entry, with a conditional request if it has a validator.
+         *
+         * @param request {@link ParsecAsyncHttpRequest} as {@link ParsecAsyncHttpResponseLoadingCache} key
+         * @param cached Stale entry
+         * @return CompletableFuture&lt;{@link ParsecCachedResponse}&gt;
+         */
+        private CompletableFuture<ParsecCachedResponse> asyncReload(
+            final ParsecAsyncHttpRequest request,
+            final ParsecCachedResponse cached
+        ) {
+            if (!cached.hasValidator() || !cached.isBodyAvailable()) {
+                return execute(request);
+            }
+
+            ParsecAsyncHttpRequest conditionalRequest = request;
+            if (cached.getEtag() != null && request.getHeaderString(ParsecCachedResponse.IF_NONE_MATCH) == null) {
+                conditionalRequest = conditionalRequest.withHeader(ParsecCachedResponse.IF_NONE_MATCH, cached.getEtag());
+            }
+            if (cached.getLastModified() != null
+                && request.getHeaderString(ParsecCachedResponse.IF_MODIFIED_SINCE) == null) {
+                conditionalRequest = conditionalRequest.withHeader(
+                    ParsecCachedResponse.IF_MODIFIED_SINCE, cached.getLastModified());
+            }
+
+            final long requestTime = clock.millis();
+            return criticalExecute(conditionalRequest).thenCompose(response -> {
+                if (response.getStatus() != Response.Status.NOT_MODIFIED.getStatusCode()) {
+                    return CompletableFuture.completedFuture(newCachedResponse(response, requestTime));
+                }
+
+                Response revalidated = cached.revalidated(response);
+                if (revalidated == null) {
+                    // off-heap body evicted meanwhile
+                    return execute(request);
+                }
+                LOGGER.debug("Revalidated: " + request.getUrl());
+                statsCounter.recordRevalidation();
+                return CompletableFuture.completedFuture(newCachedResponse(revalidated, requestTime));
+            });
+        }
+
+        /**
+         * Execute request and create cache entry.
+         *
+         * @param request Request
+         * @return CompletableFuture&lt;{@link ParsecCachedResponse}&gt;
+         */
+        private CompletableFuture<ParsecCachedResponse> execute(final ParsecAsyncHttpRequest request) {
+            final long requestTime = clock.millis();
+            return criticalExecute(request).thenApply(response -> newCachedResponse(response, requestTime));
+        }
+
+        /**
+         * Critical execute request, without deadline as the load is shared by every caller of the key.
+         *
+         * @param request Request
+         * @return CompletableFuture&lt;{@link Response}&gt;
+         */
+        private CompletableFuture<Response> criticalExecute(final ParsecAsyncHttpRequest request) {
+            final long start = System.nanoTime();
+            CompletableFuture<Response> future;
+            try {
+                future = client.criticalExecute(request.withoutDeadline());
+            } catch (ExecutionException e) {
+                future = new CompletableFuture<>();
+                future.completeExceptionally(e.getCause() != null ? e.getCause() : e);
+            }
+            return future.whenComplete((response, throwable) ->
+                statsCounter.recordLoad(throwable == null, System.nanoTime() - start));
+        }
     }
 
 }
@@ -0,0 +1,78 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import javax.ws.rs.core.Response;
+
+/**
+ * Result of one request of a batch, see {@link ParsecAsyncHttpClient#executeBatch(java.util.List, ParsecBatchOptions)}.
+ *
+ * @author sho
+ */
+public final class ParsecBatchItem {
+    /**
+     * Request.
+     */
+    private final ParsecAsyncHttpRequest request;
+
+    /**
+     * Response, null if the request failed.
+     */
+    private final Response response;
+
+    /**
+     * Failure, null if the request succeeded.
+     */
+    private final Throwable throwable;
+
+    /**
+     * Constructor.
+     *
+     * @param request request
+     * @param response response, null if the request failed
+     * @param throwable failure, null if the request succeeded
+     */
+    ParsecBatchItem(final ParsecAsyncHttpRequest request, final Response response, final Throwable throwable) {
+        this.request = request;
+        this.response = response;
+        this.throwable = throwable;
+    }
+
+    /**
+     * Get request.
+     *
+     * @return request
+     */
+    public ParsecAsyncHttpRequest getRequest() {
+        return request;
+    }
+
+    /**
+     * Get response.
+     *
+     * @return response (any status code), null if the request failed
+     */
+    public Response getResponse() {
+        return response;
+    }
+
+    /**
+     * Get failure.
+     *
+     * @return failure, e.g. {@link java.util.concurrent.TimeoutException} if the batch deadline passed,
+     *     null if the request succeeded
+     */
+    public Throwable getThrowable() {
+        return throwable;
+    }
+
+    /**
+     * Whether the request succeeded, i.e. received a response.
+     *
+     * @return true if there is a response
+     */
+    public boolean isSuccess() {
+        return throwable == null;
+    }
+}
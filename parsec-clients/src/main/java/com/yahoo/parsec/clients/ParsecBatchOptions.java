@@ -0,0 +1,191 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Options of {@link ParsecAsyncHttpClient#executeBatch(java.util.List, ParsecBatchOptions)}.
+ *
+ * @author sho
+ */
+public final class ParsecBatchOptions {
+    /**
+     * What to do when a request of the batch fails.
+     */
+    public enum Policy {
+        /**
+         * Complete the batch exceptionally with the first failure (or at the deadline), cancelling the other
+         * requests.
+         */
+        FAIL_FAST,
+
+        /**
+         * Execute every request and complete the batch with the result of each one, at the deadline with the
+         * results received so far.
+         */
+        COLLECT_ALL
+    }
+
+    /**
+     * Max requests in flight.
+     */
+    private final int maxInFlight;
+
+    /**
+     * Deadline of the whole batch (milliseconds), 0 for none.
+     */
+    private final long deadline;
+
+    /**
+     * Failure policy.
+     */
+    private final Policy policy;
+
+    /**
+     * Number of 2xx responses that completes the batch, 0 for none.
+     */
+    private final int quorum;
+
+    /**
+     * Private constructor.
+     *
+     * @param builder builder
+     */
+    private ParsecBatchOptions(final Builder builder) {
+        maxInFlight = builder.maxInFlight;
+        deadline = builder.deadline;
+        policy = builder.policy;
+        quorum = builder.quorum;
+    }
+
+    /**
+     * Get max requests in flight.
+     *
+     * @return max in flight
+     */
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * Get deadline of the whole batch.
+     *
+     * @return deadline (milliseconds), 0 for none
+     */
+    public long getDeadline() {
+        return deadline;
+    }
+
+    /**
+     * Get failure policy.
+     *
+     * @return policy
+     */
+    public Policy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Get quorum.
+     *
+     * @return number of 2xx responses that completes the batch, 0 for none
+     */
+    public int getQuorum() {
+        return quorum;
+    }
+
+    /**
+     * Static Builder class for {@link ParsecBatchOptions}.
+     */
+    public static class Builder {
+        /**
+         * Default max requests in flight.
+         */
+        private static final int DEFAULT_MAX_IN_FLIGHT = 64;
+
+        /**
+         * Max requests in flight.
+         */
+        private int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+
+        /**
+         * Deadline (milliseconds).
+         */
+        private long deadline;
+
+        /**
+         * Failure policy.
+         */
+        private Policy policy = Policy.COLLECT_ALL;
+
+        /**
+         * Quorum.
+         */
+        private int quorum;
+
+        /**
+         * Set max requests in flight, the next request is sent when one completes.
+         *
+         * @param maxInFlight Max requests in flight (default 64)
+         * @return {@link ParsecBatchOptions.Builder}
+         */
+        public Builder setMaxInFlight(int maxInFlight) {
+            if (maxInFlight <= 0) {
+                throw new IllegalArgumentException("maxInFlight must be positive: " + maxInFlight);
+            }
+            this.maxInFlight = maxInFlight;
+            return this;
+        }
+
+        /**
+         * Set deadline of the whole batch, from its start. Requests not completed by then are cancelled and
+         * fail with a {@link java.util.concurrent.TimeoutException}.
+         *
+         * @param deadline Deadline, 0 for none (default)
+         * @param unit Time unit
+         * @return {@link ParsecBatchOptions.Builder}
+         */
+        public Builder setDeadline(long deadline, TimeUnit unit) {
+            this.deadline = unit.toMillis(deadline);
+            return this;
+        }
+
+        /**
+         * Set failure policy. Only failed requests (exceptions) count as failures, not error status codes.
+         *
+         * @param policy Policy (default {@link Policy#COLLECT_ALL})
+         * @return {@link ParsecBatchOptions.Builder}
+         */
+        public Builder setPolicy(Policy policy) {
+            this.policy = policy;
+            return this;
+        }
+
+        /**
+         * Set quorum: the batch completes as soon as this many requests received a 2xx response, the requests
+         * still in flight are cancelled and their items fail with a
+         * {@link java.util.concurrent.CancellationException}.
+         *
+         * @param quorum Quorum, 0 for none (default)
+         * @return {@link ParsecBatchOptions.Builder}
+         */
+        public Builder setQuorum(int quorum) {
+            if (quorum < 0) {
+                throw new IllegalArgumentException("quorum must not be negative: " + quorum);
+            }
+            this.quorum = quorum;
+            return this;
+        }
+
+        /**
+         * Build new {@link ParsecBatchOptions} instance.
+         *
+         * @return new {@link ParsecBatchOptions} instance
+         */
+        public ParsecBatchOptions build() {
+            return new ParsecBatchOptions(this);
+        }
+    }
+}
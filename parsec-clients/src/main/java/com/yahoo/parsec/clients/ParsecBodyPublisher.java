@@ -0,0 +1,349 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import com.ning.http.client.AsyncHandler;
+import com.ning.http.client.HttpResponseBodyPart;
+import com.ning.http.client.HttpResponseHeaders;
+import com.ning.http.client.HttpResponseStatus;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Lazy {@link ParsecFlow.Publisher} of a response body, one {@link ByteBuffer} per body part received.
+ * The request is sent on the first demand of each subscriber. Body parts not yet requested are buffered, and
+ * reading from the connection is suspended while too many are buffered, so that a slow subscriber slows the
+ * server down (TCP backpressure) instead of filling the heap.
+ *
+ * @author sho
+ */
+final class ParsecBodyPublisher implements ParsecFlow.Publisher<ByteBuffer> {
+    /**
+     * Buffered body parts above which reading from the connection is suspended.
+     */
+    static final int HIGH_WATER_MARK = 16;
+
+    /**
+     * Buffered body parts below which reading from the connection is resumed.
+     */
+    static final int LOW_WATER_MARK = 4;
+
+    /**
+     * Min 2xx status code.
+     */
+    private static final int MIN_SUCCESS = 200;
+
+    /**
+     * Min status code after 2xx.
+     */
+    private static final int MAX_SUCCESS = 300;
+
+    /**
+     * Request.
+     */
+    private final ParsecAsyncHttpRequest request;
+
+    /**
+     * Execution of the request with a handler wrapper, called once per subscriber.
+     */
+    private final Function<ParsecAsyncHandlerWrapper<Void>, CompletableFuture<Void>> execution;
+
+    /**
+     * Constructor.
+     *
+     * @param request request
+     * @param execution execution of the request with a handler wrapper
+     */
+    ParsecBodyPublisher(
+        final ParsecAsyncHttpRequest request,
+        final Function<ParsecAsyncHandlerWrapper<Void>, CompletableFuture<Void>> execution
+    ) {
+        this.request = request;
+        this.execution = execution;
+    }
+
+    @Override
+    public void subscribe(final ParsecFlow.Subscriber<? super ByteBuffer> subscriber) {
+        Objects.requireNonNull(subscriber, "subscriber");
+        subscriber.onSubscribe(new BodySubscription(subscriber));
+    }
+
+    /**
+     * Subscription of one subscriber, also handling the response of its request.
+     */
+    private final class BodySubscription implements ParsecFlow.Subscription, AsyncHandler<Void> {
+        /**
+         * Subscriber.
+         */
+        private final ParsecFlow.Subscriber<? super ByteBuffer> subscriber;
+
+        /**
+         * Body parts received and not yet emitted.
+         */
+        private final Queue<ByteBuffer> parts = new ConcurrentLinkedQueue<>();
+
+        /**
+         * Number of buffered body parts.
+         */
+        private final AtomicInteger buffered = new AtomicInteger();
+
+        /**
+         * Outstanding demand.
+         */
+        private final AtomicLong demand = new AtomicLong();
+
+        /**
+         * Drain work in progress, only one thread emits at a time.
+         */
+        private final AtomicInteger wip = new AtomicInteger();
+
+        /**
+         * Whether the request was sent.
+         */
+        private final AtomicBoolean started = new AtomicBoolean();
+
+        /**
+         * Handler wrapper of the request.
+         */
+        private volatile ParsecAsyncHandlerWrapper<Void> wrapper;
+
+        /**
+         * Execution future.
+         */
+        private volatile CompletableFuture<Void> future;
+
+        /**
+         * Whether the whole body was received.
+         */
+        private volatile boolean done;
+
+        /**
+         * Failure to emit, null if none.
+         */
+        private volatile Throwable error;
+
+        /**
+         * Whether the subscription was cancelled.
+         */
+        private volatile boolean cancelled;
+
+        /**
+         * Whether a terminal signal was emitted, only accessed while draining.
+         */
+        private boolean terminated;
+
+        /**
+         * Whether reading from the connection is suspended, guarded by this.
+         */
+        private boolean suspended;
+
+        /**
+         * Constructor.
+         *
+         * @param subscriber subscriber
+         */
+        private BodySubscription(final ParsecFlow.Subscriber<? super ByteBuffer> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(final long n) {
+            if (n <= 0) {
+                fail(new IllegalArgumentException("request must be positive: " + n));
+                cancelExecution();
+                return;
+            }
+
+            demand.getAndUpdate(current -> current + n < 0 ? Long.MAX_VALUE : current + n);
+            if (!cancelled && started.compareAndSet(false, true)) {
+                start();
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            cancelExecution();
+            drain();
+        }
+
+        /**
+         * Send the request.
+         */
+        private void start() {
+            wrapper = new ParsecAsyncHandlerWrapper<>(this, request.getNingRequest());
+            final CompletableFuture<Void> execution;
+            try {
+                execution = ParsecBodyPublisher.this.execution.apply(wrapper);
+            } catch (RuntimeException e) {
+                fail(ParsecResponsePublisher.unwrap(e));
+                return;
+            }
+
+            future = execution;
+            if (cancelled) {
+                execution.cancel(true);
+                return;
+            }
+            execution.whenComplete((result, throwable) -> {
+                if (throwable == null) {
+                    complete();
+                } else {
+                    fail(ParsecResponsePublisher.unwrap(throwable));
+                }
+            });
+        }
+
+        /**
+         * Cancel execution if sent.
+         */
+        private void cancelExecution() {
+            CompletableFuture<Void> execution = future;
+            if (execution != null) {
+                execution.cancel(true);
+            }
+        }
+
+        /**
+         * Emit a failure, dropping buffered body parts.
+         *
+         * @param throwable failure
+         */
+        private void fail(final Throwable throwable) {
+            if (error == null) {
+                error = throwable;
+            }
+            drain();
+        }
+
+        /**
+         * Complete once buffered body parts are emitted.
+         */
+        private void complete() {
+            done = true;
+            resumeReading();
+            drain();
+        }
+
+        /**
+         * Emit buffered body parts as demanded, then the terminal signal.
+         */
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+
+            do {
+                if (cancelled || terminated) {
+                    clear();
+                    continue;
+                }
+
+                while (error == null && demand.get() > 0) {
+                    ByteBuffer part = parts.poll();
+                    if (part == null) {
+                        break;
+                    }
+                    buffered.decrementAndGet();
+                    if (demand.get() != Long.MAX_VALUE) {
+                        demand.decrementAndGet();
+                    }
+                    subscriber.onNext(part);
+                }
+
+                if (error != null) {
+                    terminated = true;
+                    clear();
+                    subscriber.onError(error);
+                } else if (done && parts.isEmpty()) {
+                    terminated = true;
+                    subscriber.onComplete();
+                } else if (buffered.get() <= LOW_WATER_MARK) {
+                    resumeReading();
+                }
+            } while (wip.decrementAndGet() != 0);
+        }
+
+        /**
+         * Drop buffered body parts.
+         */
+        private void clear() {
+            parts.clear();
+            buffered.set(0);
+        }
+
+        /**
+         * Suspend reading from the connection.
+         */
+        private synchronized void suspendReading() {
+            if (!suspended && !done && wrapper.setReadable(false)) {
+                suspended = true;
+            }
+        }
+
+        /**
+         * Resume reading from the connection.
+         */
+        private synchronized void resumeReading() {
+            if (suspended) {
+                suspended = false;
+                wrapper.setReadable(true);
+            }
+        }
+
+        @Override
+        public void onThrowable(final Throwable throwable) {
+            fail(throwable);
+        }
+
+        @Override
+        public STATE onBodyPartReceived(final HttpResponseBodyPart bodyPart) throws Exception {
+            if (cancelled || error != null) {
+                return STATE.ABORT;
+            }
+
+            ByteBuffer part = bodyPart.getBodyByteBuffer();
+            if (part.hasRemaining()) {
+                parts.add(part);
+                if (buffered.incrementAndGet() >= HIGH_WATER_MARK) {
+                    suspendReading();
+                }
+                drain();
+            }
+            return STATE.CONTINUE;
+        }
+
+        @Override
+        public STATE onStatusReceived(final HttpResponseStatus responseStatus) throws Exception {
+            int statusCode = responseStatus.getStatusCode();
+            if (statusCode < MIN_SUCCESS || statusCode >= MAX_SUCCESS) {
+                fail(new WebApplicationException(Response.status(statusCode).build()));
+                return STATE.ABORT;
+            }
+            return cancelled ? STATE.ABORT : STATE.CONTINUE;
+        }
+
+        @Override
+        public STATE onHeadersReceived(final HttpResponseHeaders headers) throws Exception {
+            return cancelled ? STATE.ABORT : STATE.CONTINUE;
+        }
+
+        @Override
+        public Void onCompleted() throws Exception {
+            complete();
+            return null;
+        }
+    }
+}
@@ -0,0 +1,245 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Predicate;
+
+/**
+ * Secondary index of {@link ParsecAsyncHttpResponseLoadingCache} keys by host, URL and cache tag, so that
+ * targeted invalidations only visit the matching keys.
+ * <p>
+ * All changes for a key are made while holding its entry in the key map, after checking whether the key is
+ * cached: a key removed from the cache and cached again concurrently is never left out of the index.
+ *
+ * @author sho
+ */
+final class ParsecCacheIndex {
+    /**
+     * Indexed fields per key.
+     */
+    private final ConcurrentMap<ParsecAsyncHttpRequest, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Keys per lower case host.
+     */
+    private final ConcurrentMap<String, Set<ParsecAsyncHttpRequest>> byHost = new ConcurrentHashMap<>();
+
+    /**
+     * Keys per URL, sorted for prefix lookups.
+     */
+    private final ConcurrentSkipListMap<String, Set<ParsecAsyncHttpRequest>> byUrl = new ConcurrentSkipListMap<>();
+
+    /**
+     * Keys per cache tag.
+     */
+    private final ConcurrentMap<String, Set<ParsecAsyncHttpRequest>> byTag = new ConcurrentHashMap<>();
+
+    /**
+     * Whether a key is cached.
+     */
+    private final Predicate<ParsecAsyncHttpRequest> isCached;
+
+    /**
+     * Constructor.
+     *
+     * @param isCached whether a key is cached
+     */
+    ParsecCacheIndex(final Predicate<ParsecAsyncHttpRequest> isCached) {
+        this.isCached = isCached;
+    }
+
+    /**
+     * Index a cached key, with the cache tags of the request that loaded it.
+     *
+     * @param key cache key
+     * @param request request
+     */
+    void add(final ParsecAsyncHttpRequest key, final ParsecAsyncHttpRequest request) {
+        entries.compute(key, (k, entry) -> {
+            if (!isCached.test(k)) {
+                return entry == null ? null : unindex(k, entry);
+            }
+            if (entry == null) {
+                entry = new Entry(getHost(k), k.getUrl());
+                addTo(byHost, entry.host, k);
+                addTo(byUrl, entry.url, k);
+            }
+            for (String tag : request.getCacheTags()) {
+                if (entry.tags.add(tag)) {
+                    addTo(byTag, tag, k);
+                }
+            }
+            return entry;
+        });
+    }
+
+    /**
+     * Remove a key from the index, unless it is cached again.
+     *
+     * @param key cache key
+     */
+    void remove(final ParsecAsyncHttpRequest key) {
+        entries.computeIfPresent(key, (k, entry) -> isCached.test(k) ? entry : unindex(k, entry));
+    }
+
+    /**
+     * Remove the keys no longer cached, e.g. expired from a second-level cache without notice.
+     */
+    void cleanUp() {
+        entries.keySet().forEach(this::remove);
+    }
+
+    /**
+     * Get keys of a host.
+     *
+     * @param host host, case-insensitive
+     * @return keys
+     */
+    List<ParsecAsyncHttpRequest> getByHost(final String host) {
+        Set<ParsecAsyncHttpRequest> keys = byHost.get(host.toLowerCase(Locale.ROOT));
+        return keys == null ? Collections.emptyList() : new ArrayList<>(keys);
+    }
+
+    /**
+     * Get keys of URLs starting with a prefix.
+     *
+     * @param prefix URL prefix
+     * @return keys
+     */
+    List<ParsecAsyncHttpRequest> getByUrlPrefix(final String prefix) {
+        List<ParsecAsyncHttpRequest> keys = new ArrayList<>();
+        for (Map.Entry<String, Set<ParsecAsyncHttpRequest>> url : byUrl.tailMap(prefix).entrySet()) {
+            if (!url.getKey().startsWith(prefix)) {
+                break;
+            }
+            keys.addAll(url.getValue());
+        }
+        return keys;
+    }
+
+    /**
+     * Get keys of a cache tag.
+     *
+     * @param tag cache tag
+     * @return keys
+     */
+    List<ParsecAsyncHttpRequest> getByTag(final String tag) {
+        Set<ParsecAsyncHttpRequest> keys = byTag.get(tag);
+        return keys == null ? Collections.emptyList() : new ArrayList<>(keys);
+    }
+
+    /**
+     * Get number of indexed keys.
+     *
+     * @return size
+     */
+    int size() {
+        return entries.size();
+    }
+
+    /**
+     * Remove a key from the secondary maps, with its entry held.
+     *
+     * @param key cache key
+     * @param entry indexed fields
+     * @return null
+     */
+    private Entry unindex(final ParsecAsyncHttpRequest key, final Entry entry) {
+        removeFrom(byHost, entry.host, key);
+        removeFrom(byUrl, entry.url, key);
+        for (String tag : entry.tags) {
+            removeFrom(byTag, tag, key);
+        }
+        return null;
+    }
+
+    /**
+     * Get lower case host of a key.
+     *
+     * @param key cache key
+     * @return host, empty if unknown
+     */
+    private static String getHost(final ParsecAsyncHttpRequest key) {
+        String host = key.getNingRequest().getUri().getHost();
+        return host == null ? "" : host.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Add a key to a secondary map.
+     *
+     * @param map secondary map
+     * @param value indexed value
+     * @param key cache key
+     */
+    private static void addTo(
+        final ConcurrentMap<String, Set<ParsecAsyncHttpRequest>> map,
+        final String value,
+        final ParsecAsyncHttpRequest key
+    ) {
+        map.compute(value, (v, keys) -> {
+            Set<ParsecAsyncHttpRequest> set = keys == null ? ConcurrentHashMap.newKeySet() : keys;
+            set.add(key);
+            return set;
+        });
+    }
+
+    /**
+     * Remove a key from a secondary map.
+     *
+     * @param map secondary map
+     * @param value indexed value
+     * @param key cache key
+     */
+    private static void removeFrom(
+        final ConcurrentMap<String, Set<ParsecAsyncHttpRequest>> map,
+        final String value,
+        final ParsecAsyncHttpRequest key
+    ) {
+        map.computeIfPresent(value, (v, keys) -> {
+            keys.remove(key);
+            return keys.isEmpty() ? null : keys;
+        });
+    }
+
+    /**
+     * Indexed fields of a key.
+     */
+    private static final class Entry {
+        /**
+         * Lower case host.
+         */
+        private final String host;
+
+        /**
+         * URL.
+         */
+        private final String url;
+
+        /**
+         * Cache tags.
+         */
+        private final Set<String> tags = new HashSet<>();
+
+        /**
+         * Constructor.
+         *
+         * @param host lower case host
+         * @param url URL
+         */
+        private Entry(final String host, final String url) {
+            this.host = host;
+            this.url = url;
+        }
+    }
+}
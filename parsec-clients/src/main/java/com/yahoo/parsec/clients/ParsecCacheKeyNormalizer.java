@@ -0,0 +1,176 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Cache key normalizer, so that requests differing only in ways the backend ignores share cache entries.
+ * <p>
+ * The cache key of a request is then its normalized URL, the request headers taking part in the key,
+ * plus the request headers named by the Vary header of cached responses, and every other request field.
+ * This implementation sorts query params by name and allowlists headers; override
+ * {@link #normalizeUrl(String)} and {@link #isKeyHeader(String)} for other rules.
+ *
+ * @author sho
+ */
+public class ParsecCacheKeyNormalizer {
+    /**
+     * Whether to sort query params.
+     */
+    private final boolean sortQueryParams;
+
+    /**
+     * Lower case names of headers taking part in the key, null for all headers.
+     */
+    private final Set<String> headerAllowlist;
+
+    /**
+     * Constructor, sorting query params and keeping all headers in the key.
+     */
+    public ParsecCacheKeyNormalizer() {
+        this(new Builder());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param builder builder
+     */
+    protected ParsecCacheKeyNormalizer(final Builder builder) {
+        sortQueryParams = builder.sortQueryParams;
+        headerAllowlist = builder.headerAllowlist == null ? null : Collections.unmodifiableSet(builder.headerAllowlist);
+    }
+
+    /**
+     * Normalize the URL of a request.
+     *
+     * @param url URL
+     * @return normalized URL, with query params sorted by name (params of the same name keep their order)
+     */
+    public String normalizeUrl(final String url) {
+        if (!sortQueryParams || url == null) {
+            return url;
+        }
+        int queryStart = url.indexOf('?');
+        if (queryStart < 0 || url.indexOf('&', queryStart) < 0) {
+            return url;
+        }
+
+        List<String> params = new ArrayList<>(Arrays.asList(url.substring(queryStart + 1).split("&", -1)));
+        params.sort((left, right) -> paramName(left).compareTo(paramName(right)));
+        return url.substring(0, queryStart + 1) + String.join("&", params);
+    }
+
+    /**
+     * Whether a request header takes part in the cache key.
+     *
+     * @param name lower case header name
+     * @return true if the header takes part in the key
+     */
+    public boolean isKeyHeader(final String name) {
+        return headerAllowlist == null || headerAllowlist.contains(name);
+    }
+
+    /**
+     * Get header allowlist.
+     *
+     * @return lower case names of headers taking part in the key, null for all headers
+     */
+    public Set<String> getHeaderAllowlist() {
+        return headerAllowlist;
+    }
+
+    /**
+     * Whether query params are sorted.
+     *
+     * @return true if query params are sorted
+     */
+    public boolean isSortQueryParams() {
+        return sortQueryParams;
+    }
+
+    /**
+     * Get the name of an encoded query param.
+     *
+     * @param param name=value
+     * @return name
+     */
+    private static String paramName(final String param) {
+        int separator = param.indexOf('=');
+        return separator < 0 ? param : param.substring(0, separator);
+    }
+
+    /**
+     * Static Builder class for {@link ParsecCacheKeyNormalizer}.
+     */
+    public static class Builder {
+        /**
+         * Whether to sort query params.
+         */
+        private boolean sortQueryParams = true;
+
+        /**
+         * Lower case names of headers taking part in the key, null for all headers.
+         */
+        private Set<String> headerAllowlist;
+
+        /**
+         * Set whether to sort query params.
+         *
+         * @param sortQueryParams Whether to sort query params by name (default true)
+         * @return {@link ParsecCacheKeyNormalizer.Builder}
+         */
+        public Builder setSortQueryParams(final boolean sortQueryParams) {
+            this.sortQueryParams = sortQueryParams;
+            return this;
+        }
+
+        /**
+         * Set header allowlist, only these request headers take part in the cache key (besides the
+         * headers named by the Vary header of responses).
+         *
+         * @param headerAllowlist Case-insensitive header names, null for all headers (default)
+         * @return {@link ParsecCacheKeyNormalizer.Builder}
+         */
+        public Builder setHeaderAllowlist(final Collection<String> headerAllowlist) {
+            this.headerAllowlist = null;
+            if (headerAllowlist != null) {
+                this.headerAllowlist = new HashSet<>();
+                headerAllowlist.forEach(this::addAllowedHeader);
+            }
+            return this;
+        }
+
+        /**
+         * Add a header to the header allowlist.
+         *
+         * @param name Case-insensitive header name
+         * @return {@link ParsecCacheKeyNormalizer.Builder}
+         */
+        public Builder addAllowedHeader(final String name) {
+            if (headerAllowlist == null) {
+                headerAllowlist = new HashSet<>();
+            }
+            headerAllowlist.add(name.toLowerCase(Locale.ROOT));
+            return this;
+        }
+
+        /**
+         * Build new {@link ParsecCacheKeyNormalizer} instance.
+         *
+         * @return new {@link ParsecCacheKeyNormalizer} instance
+         */
+        public ParsecCacheKeyNormalizer build() {
+            return new ParsecCacheKeyNormalizer(this);
+        }
+    }
+}
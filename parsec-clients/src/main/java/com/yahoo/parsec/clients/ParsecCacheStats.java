@@ -0,0 +1,289 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import com.github.benmanes.caffeine.cache.RemovalCause;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Snapshot of the statistics of the {@link ParsecAsyncHttpClient} response cache.
+ * <p>
+ * Every cacheable request counts once as a hit (fresh response), a stale hit (stale response served while
+ * revalidating, or on error), a negative hit (negatively cached error response or failure) or a miss (response
+ * loaded, revalidated or reloaded for the caller). Loads count the requests actually executed, including
+ * background revalidations.
+ *
+ * @author sho
+ */
+public final class ParsecCacheStats {
+    /**
+     * Fresh hits.
+     */
+    private final long hitCount;
+
+    /**
+     * Stale hits.
+     */
+    private final long staleHitCount;
+
+    /**
+     * Negative hits.
+     */
+    private final long negativeHitCount;
+
+    /**
+     * Misses.
+     */
+    private final long missCount;
+
+    /**
+     * Disk hits.
+     */
+    private final long diskHitCount;
+
+    /**
+     * Load successes.
+     */
+    private final long loadSuccessCount;
+
+    /**
+     * Load failures.
+     */
+    private final long loadFailureCount;
+
+    /**
+     * Total load time (nanoseconds).
+     */
+    private final long totalLoadTime;
+
+    /**
+     * 304 revalidations.
+     */
+    private final long revalidationCount;
+
+    /**
+     * Removals per cause.
+     */
+    private final Map<RemovalCause, Long> removalCounts;
+
+    /**
+     * Entries.
+     */
+    private final long size;
+
+    /**
+     * Weighted size (bytes).
+     */
+    private final long weightedSize;
+
+    /**
+     * Negative cache entries.
+     */
+    private final long negativeSize;
+
+    /**
+     * Constructor.
+     *
+     * @param counter counter
+     * @param size entries
+     * @param weightedSize weighted size (bytes)
+     * @param negativeSize negative cache entries
+     */
+    ParsecCacheStats(final ParsecCacheStatsCounter counter, final long size, final long weightedSize,
+        final long negativeSize) {
+        hitCount = counter.getHits();
+        staleHitCount = counter.getStaleHits();
+        negativeHitCount = counter.getNegativeHits();
+        missCount = counter.getMisses();
+        diskHitCount = counter.getDiskHits();
+        loadSuccessCount = counter.getLoadSuccesses();
+        loadFailureCount = counter.getLoadFailures();
+        totalLoadTime = counter.getTotalLoadTime();
+        revalidationCount = counter.getRevalidations();
+        removalCounts = Collections.unmodifiableMap(counter.getRemovals());
+        this.size = size;
+        this.weightedSize = weightedSize;
+        this.negativeSize = negativeSize;
+    }
+
+    /**
+     * Get number of fresh responses served from cache.
+     *
+     * @return hit count
+     */
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Get number of stale responses served from cache (stale-while-revalidate, stale-if-error).
+     *
+     * @return stale hit count
+     */
+    public long getStaleHitCount() {
+        return staleHitCount;
+    }
+
+    /**
+     * Get number of error responses and failures served from the negative cache.
+     *
+     * @return negative hit count
+     */
+    public long getNegativeHitCount() {
+        return negativeHitCount;
+    }
+
+    /**
+     * Get number of responses loaded, revalidated or reloaded for the caller.
+     *
+     * @return miss count
+     */
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Get number of cacheable requests.
+     *
+     * @return hits, stale hits, negative hits and misses
+     */
+    public long getRequestCount() {
+        return hitCount + staleHitCount + negativeHitCount + missCount;
+    }
+
+    /**
+     * Get ratio of cacheable requests answered without waiting for a load.
+     *
+     * @return hit rate, 1 if there was no request
+     */
+    public double getHitRate() {
+        long requestCount = getRequestCount();
+        return requestCount == 0 ? 1.0 : (double) (requestCount - missCount) / requestCount;
+    }
+
+    /**
+     * Get number of responses loaded from the disk cache instead of executing the request.
+     *
+     * @return disk hit count
+     */
+    public long getDiskHitCount() {
+        return diskHitCount;
+    }
+
+    /**
+     * Get number of requests executed successfully (any status code).
+     *
+     * @return load success count
+     */
+    public long getLoadSuccessCount() {
+        return loadSuccessCount;
+    }
+
+    /**
+     * Get number of requests executed with a failure.
+     *
+     * @return load failure count
+     */
+    public long getLoadFailureCount() {
+        return loadFailureCount;
+    }
+
+    /**
+     * Get total time spent executing requests.
+     *
+     * @return total load time (nanoseconds)
+     */
+    public long getTotalLoadTime() {
+        return totalLoadTime;
+    }
+
+    /**
+     * Get average time spent executing a request.
+     *
+     * @return average load penalty (nanoseconds), 0 if there was no load
+     */
+    public double getAverageLoadPenalty() {
+        long loadCount = loadSuccessCount + loadFailureCount;
+        return loadCount == 0 ? 0.0 : (double) totalLoadTime / loadCount;
+    }
+
+    /**
+     * Get number of conditional requests answered with 304 Not Modified.
+     *
+     * @return revalidation count
+     */
+    public long getRevalidationCount() {
+        return revalidationCount;
+    }
+
+    /**
+     * Get number of entries removed per cause. {@link RemovalCause#EXPLICIT} includes responses that must not be
+     * stored and clean ups of unusable entries, {@link RemovalCause#REPLACED} includes reloads and revalidations.
+     *
+     * @return removal counts, for every cause
+     */
+    public Map<RemovalCause, Long> getRemovalCounts() {
+        return removalCounts;
+    }
+
+    /**
+     * Get number of entries evicted (size, expiry or garbage collection).
+     *
+     * @return eviction count
+     */
+    public long getEvictionCount() {
+        return removalCounts.entrySet().stream()
+            .filter(removal -> removal.getKey().wasEvicted())
+            .mapToLong(Map.Entry::getValue)
+            .sum();
+    }
+
+    /**
+     * Get number of entries.
+     *
+     * @return size
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Get approximate heap size of cached response bodies and headers.
+     *
+     * @return weighted size (bytes)
+     */
+    public long getWeightedSize() {
+        return weightedSize;
+    }
+
+    /**
+     * Get number of negative cache entries.
+     *
+     * @return negative size
+     */
+    public long getNegativeSize() {
+        return negativeSize;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName()
+            + "{hitCount=" + hitCount
+            + ", staleHitCount=" + staleHitCount
+            + ", negativeHitCount=" + negativeHitCount
+            + ", missCount=" + missCount
+            + ", diskHitCount=" + diskHitCount
+            + ", loadSuccessCount=" + loadSuccessCount
+            + ", loadFailureCount=" + loadFailureCount
+            + ", totalLoadTime=" + totalLoadTime
+            + ", revalidationCount=" + revalidationCount
+            + ", removalCounts=" + removalCounts
+            + ", size=" + size
+            + ", weightedSize=" + weightedSize
+            + ", negativeSize=" + negativeSize
+            + '}';
+    }
+}
@@ -0,0 +1,238 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import com.github.benmanes.caffeine.cache.RemovalCause;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free counters of {@link ParsecAsyncHttpResponseLoadingCache}, striped with {@link LongAdder} so that
+ * recording adds no contention on the cache hot path.
+ *
+ * @author sho
+ */
+final class ParsecCacheStatsCounter {
+    /**
+     * Fresh responses served from cache.
+     */
+    private final LongAdder hits = new LongAdder();
+
+    /**
+     * Stale responses served from cache (stale-while-revalidate, stale-if-error).
+     */
+    private final LongAdder staleHits = new LongAdder();
+
+    /**
+     * Error responses and failures served from the negative cache.
+     */
+    private final LongAdder negativeHits = new LongAdder();
+
+    /**
+     * Responses loaded, revalidated or reloaded for the caller.
+     */
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Responses loaded from the disk cache.
+     */
+    private final LongAdder diskHits = new LongAdder();
+
+    /**
+     * Requests executed successfully.
+     */
+    private final LongAdder loadSuccesses = new LongAdder();
+
+    /**
+     * Requests executed with a failure.
+     */
+    private final LongAdder loadFailures = new LongAdder();
+
+    /**
+     * Total time executing requests (nanoseconds).
+     */
+    private final LongAdder totalLoadTime = new LongAdder();
+
+    /**
+     * Conditional requests answered with 304 Not Modified.
+     */
+    private final LongAdder revalidations = new LongAdder();
+
+    /**
+     * Removals per cause.
+     */
+    private final Map<RemovalCause, LongAdder> removals;
+
+    /**
+     * Constructor.
+     */
+    ParsecCacheStatsCounter() {
+        Map<RemovalCause, LongAdder> removalCounters = new EnumMap<>(RemovalCause.class);
+        for (RemovalCause cause : RemovalCause.values()) {
+            removalCounters.put(cause, new LongAdder());
+        }
+        removals = Collections.unmodifiableMap(removalCounters);
+    }
+
+    /**
+     * Record a fresh response served from cache.
+     */
+    void recordHit() {
+        hits.increment();
+    }
+
+    /**
+     * Record a stale response served from cache.
+     */
+    void recordStaleHit() {
+        staleHits.increment();
+    }
+
+    /**
+     * Record a response or failure served from the negative cache.
+     */
+    void recordNegativeHit() {
+        negativeHits.increment();
+    }
+
+    /**
+     * Record a response loaded, revalidated or reloaded for the caller.
+     */
+    void recordMiss() {
+        misses.increment();
+    }
+
+    /**
+     * Record a response loaded from the disk cache.
+     */
+    void recordDiskHit() {
+        diskHits.increment();
+    }
+
+    /**
+     * Record a request execution.
+     *
+     * @param success whether it succeeded
+     * @param loadTime time taken (nanoseconds)
+     */
+    void recordLoad(final boolean success, final long loadTime) {
+        if (success) {
+            loadSuccesses.increment();
+        } else {
+            loadFailures.increment();
+        }
+        totalLoadTime.add(loadTime);
+    }
+
+    /**
+     * Record a 304 Not Modified revalidation.
+     */
+    void recordRevalidation() {
+        revalidations.increment();
+    }
+
+    /**
+     * Record a removal.
+     *
+     * @param cause removal cause
+     */
+    void recordRemoval(final RemovalCause cause) {
+        removals.get(cause).increment();
+    }
+
+    /**
+     * Get fresh hits.
+     *
+     * @return fresh hits
+     */
+    long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Get stale hits.
+     *
+     * @return stale hits
+     */
+    long getStaleHits() {
+        return staleHits.sum();
+    }
+
+    /**
+     * Get negative hits.
+     *
+     * @return negative hits
+     */
+    long getNegativeHits() {
+        return negativeHits.sum();
+    }
+
+    /**
+     * Get misses.
+     *
+     * @return misses
+     */
+    long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Get disk hits.
+     *
+     * @return disk hits
+     */
+    long getDiskHits() {
+        return diskHits.sum();
+    }
+
+    /**
+     * Get load successes.
+     *
+     * @return load successes
+     */
+    long getLoadSuccesses() {
+        return loadSuccesses.sum();
+    }
+
+    /**
+     * Get load failures.
+     *
+     * @return load failures
+     */
+    long getLoadFailures() {
+        return loadFailures.sum();
+    }
+
+    /**
+     * Get total load time.
+     *
+     * @return total load time (nanoseconds)
+     */
+    long getTotalLoadTime() {
+        return totalLoadTime.sum();
+    }
+
+    /**
+     * Get revalidations.
+     *
+     * @return revalidations
+     */
+    long getRevalidations() {
+        return revalidations.sum();
+    }
+
+    /**
+     * Get removals per cause.
+     *
+     * @return removals per cause
+     */
+    Map<RemovalCause, Long> getRemovals() {
+        Map<RemovalCause, Long> counts = new EnumMap<>(RemovalCause.class);
+        removals.forEach((cause, count) -> counts.put(cause, count.sum()));
+        return counts;
+    }
+}
@@ -0,0 +1,752 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.ws.rs.core.Response;
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Response stored in {@link ParsecAsyncHttpResponseLoadingCache} with its HTTP freshness information
+ * (Cache-Control, Expires, Age), validators (ETag, Last-Modified) and stale serving windows
+ * (stale-while-revalidate, stale-if-error, RFC 5861). The body may be moved to a {@link ParsecOffHeapBodyStore},
+ * the response is then rebuilt on every {@link #getResponse()}.
+ *
+ * @author sho
+ */
+final class ParsecCachedResponse {
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(ParsecCachedResponse.class);
+
+    /**
+     * Cache-Control header.
+     */
+    static final String CACHE_CONTROL = "Cache-Control";
+
+    /**
+     * ETag header.
+     */
+    static final String ETAG = "ETag";
+
+    /**
+     * Last-Modified header.
+     */
+    static final String LAST_MODIFIED = "Last-Modified";
+
+    /**
+     * If-None-Match header.
+     */
+    static final String IF_NONE_MATCH = "If-None-Match";
+
+    /**
+     * If-Modified-Since header.
+     */
+    static final String IF_MODIFIED_SINCE = "If-Modified-Since";
+
+    /**
+     * Expires header.
+     */
+    private static final String EXPIRES = "Expires";
+
+    /**
+     * Age header.
+     */
+    private static final String AGE = "Age";
+
+    /**
+     * Date header.
+     */
+    private static final String DATE = "Date";
+
+    /**
+     * Vary header.
+     */
+    private static final String VARY = "Vary";
+
+    /**
+     * Content-Type header.
+     */
+    private static final String CONTENT_TYPE = "Content-Type";
+
+    /**
+     * Headers describing the payload, not updated from 304 responses.
+     */
+    private static final Set<String> PAYLOAD_HEADERS = new HashSet<>(Arrays.asList(
+        "content-length", "content-type", "content-encoding", "transfer-encoding"));
+
+    /**
+     * Response, without body if the body is stored off heap.
+     */
+    private final Response response;
+
+    /**
+     * Status code.
+     */
+    private final int status;
+
+    /**
+     * Off-heap body store, null if the body is on heap.
+     */
+    private final ParsecOffHeapBodyStore bodyStore;
+
+    /**
+     * Off-heap body, null if the body is on heap.
+     */
+    private final ParsecOffHeapBodyStore.Handle bodyHandle;
+
+    /**
+     * Entity type of the off-heap body: String, byte[] or {@link ParsecResponseBody}.
+     */
+    private final Class<?> bodyType;
+
+    /**
+     * Whether the off-heap body was released.
+     */
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    /**
+     * Time the response was received (epoch milliseconds).
+     */
+    private final long responseTime;
+
+    /**
+     * Age of the response when received (milliseconds).
+     */
+    private final long initialAge;
+
+    /**
+     * Freshness lifetime (milliseconds).
+     */
+    private final long freshnessLifetime;
+
+    /**
+     * Time taken to load the response (milliseconds).
+     */
+    private final long loadTime;
+
+    /**
+     * Approximate heap size of the body and headers (bytes).
+     */
+    private final int weight;
+
+    /**
+     * Whether the response may be stored.
+     */
+    private final boolean storable;
+
+    /**
+     * Whether the response must not be served stale (no-cache, must-revalidate, proxy-revalidate).
+     */
+    private final boolean mustRevalidate;
+
+    /**
+     * stale-while-revalidate window (milliseconds), -1 if absent.
+     */
+    private final long staleWhileRevalidate;
+
+    /**
+     * stale-if-error window (milliseconds), -1 if absent.
+     */
+    private final long staleIfError;
+
+    /**
+     * Lower case names of the request headers selecting this response (Vary).
+     */
+    private final List<String> varyHeaders;
+
+    /**
+     * ETag.
+     */
+    private final String etag;
+
+    /**
+     * Last-Modified.
+     */
+    private final String lastModified;
+
+    /**
+     * Revalidation in progress.
+     */
+    private final AtomicReference<CompletableFuture<ParsecCachedResponse>> revalidation = new AtomicReference<>();
+
+    /**
+     * Constructor.
+     *
+     * @param response response
+     * @param requestTime time the request was sent (epoch milliseconds)
+     * @param responseTime time the response was received (epoch milliseconds)
+     * @param defaultLifetime freshness lifetime if the response has none (milliseconds)
+     * @param maxLifetime max freshness lifetime (milliseconds)
+     */
+    ParsecCachedResponse(
+        final Response response,
+        final long requestTime,
+        final long responseTime,
+        final long defaultLifetime,
+        final long maxLifetime
+    ) {
+        this.response = response;
+        this.responseTime = responseTime;
+        status = response.getStatus();
+        bodyStore = null;
+        bodyHandle = null;
+        bodyType = null;
+        loadTime = Math.max(0, responseTime - requestTime);
+        weight = estimateWeight(response);
+
+        final CacheControl cacheControl = new CacheControl(response.getHeaderString(CACHE_CONTROL));
+        varyHeaders = parseVary(response.getHeaderString(VARY));
+        // Vary: * never matches another request
+        storable = !cacheControl.noStore && !cacheControl.isPrivate && !varyHeaders.contains("*");
+        mustRevalidate = cacheControl.noCache || cacheControl.mustRevalidate;
+        staleWhileRevalidate = cacheControl.staleWhileRevalidate;
+        staleIfError = cacheControl.staleIfError;
+        etag = response.getHeaderString(ETAG);
+        lastModified = response.getHeaderString(LAST_MODIFIED);
+
+        final long date = parseHttpDate(response.getHeaderString(DATE));
+        final long apparentAge = date > 0 ? Math.max(0, responseTime - date) : 0;
+        final long age = parseSeconds(response.getHeaderString(AGE));
+        initialAge = Math.max(apparentAge, Math.max(0, age) + (responseTime - requestTime));
+
+        final long lifetime;
+        if (cacheControl.noCache) {
+            lifetime = 0;
+        } else if (cacheControl.sMaxAge >= 0) {
+            lifetime = cacheControl.sMaxAge;
+        } else if (cacheControl.maxAge >= 0) {
+            lifetime = cacheControl.maxAge;
+        } else if (response.getHeaderString(EXPIRES) != null) {
+            // invalid Expires (e.g. "0") means already expired
+            long expires = parseHttpDate(response.getHeaderString(EXPIRES));
+            lifetime = Math.max(0, expires - (date > 0 ? date : responseTime));
+        } else {
+            lifetime = defaultLifetime;
+        }
+        freshnessLifetime = Math.min(lifetime, maxLifetime);
+    }
+
+    /**
+     * Copy constructor, with the body moved off heap.
+     *
+     * @param onHeap response with body on heap
+     * @param headers response without body
+     * @param bodyStore off-heap body store
+     * @param bodyHandle off-heap body
+     * @param bodyType entity type of the body
+     */
+    private ParsecCachedResponse(
+        final ParsecCachedResponse onHeap,
+        final Response headers,
+        final ParsecOffHeapBodyStore bodyStore,
+        final ParsecOffHeapBodyStore.Handle bodyHandle,
+        final Class<?> bodyType
+    ) {
+        response = headers;
+        status = onHeap.status;
+        this.bodyStore = bodyStore;
+        this.bodyHandle = bodyHandle;
+        this.bodyType = bodyType;
+        responseTime = onHeap.responseTime;
+        initialAge = onHeap.initialAge;
+        freshnessLifetime = onHeap.freshnessLifetime;
+        loadTime = onHeap.loadTime;
+        weight = estimateWeight(headers);
+        storable = onHeap.storable;
+        mustRevalidate = onHeap.mustRevalidate;
+        staleWhileRevalidate = onHeap.staleWhileRevalidate;
+        staleIfError = onHeap.staleIfError;
+        varyHeaders = onHeap.varyHeaders;
+        etag = onHeap.etag;
+        lastModified = onHeap.lastModified;
+    }
+
+    /**
+     * Move the body off heap. Only String (stored as UTF-8), byte[] and {@link ParsecResponseBody} bodies that fit
+     * in a slab are moved.
+     *
+     * @param store off-heap body store
+     * @return copy with the body off heap, or this if the body stays on heap
+     */
+    ParsecCachedResponse offHeap(final ParsecOffHeapBodyStore store) {
+        if (bodyHandle != null) {
+            return this;
+        }
+
+        final Object entity = response.getEntity();
+        final byte[] bytes;
+        if (entity instanceof byte[]) {
+            bytes = (byte[]) entity;
+        } else if (entity instanceof String) {
+            bytes = ((String) entity).getBytes(StandardCharsets.UTF_8);
+        } else if (entity instanceof ParsecResponseBody
+            && ((ParsecResponseBody) entity).getLength() <= store.getSlabSize()) {
+            bytes = ((ParsecResponseBody) entity).getBytes();
+        } else {
+            return this;
+        }
+
+        ParsecOffHeapBodyStore.Handle handle = store.store(bytes);
+        if (handle == null) {
+            return this;
+        }
+        return new ParsecCachedResponse(
+            this, Response.fromResponse(response).entity(null).build(), store, handle, entity.getClass());
+    }
+
+    /**
+     * Get response, rebuilt with its body if the body is off heap.
+     *
+     * @return response, or null if the off-heap body was evicted
+     */
+    Response getResponse() {
+        if (bodyHandle == null) {
+            return response;
+        }
+
+        byte[] bytes = bodyStore.read(bodyHandle);
+        if (bytes == null) {
+            return null;
+        }
+        return Response.fromResponse(response).entity(toEntity(bytes, bodyType, response)).build();
+    }
+
+    /**
+     * Get status code.
+     *
+     * @return status code
+     */
+    int getStatus() {
+        return status;
+    }
+
+    /**
+     * Whether the body is on heap, or still in the off-heap store.
+     *
+     * @return true if {@link #getResponse()} returns the response
+     */
+    boolean isBodyAvailable() {
+        return bodyHandle == null || bodyStore.contains(bodyHandle);
+    }
+
+    /**
+     * Whether the body is off heap.
+     *
+     * @return true if off heap
+     */
+    boolean isOffHeap() {
+        return bodyHandle != null;
+    }
+
+    /**
+     * Release the off-heap body once the entry is removed from the cache.
+     */
+    void release() {
+        if (bodyHandle != null && released.compareAndSet(false, true)) {
+            bodyStore.release(bodyHandle);
+        }
+    }
+
+    /**
+     * Get current age.
+     *
+     * @param now now (epoch milliseconds)
+     * @return age (milliseconds)
+     */
+    long getAge(final long now) {
+        return initialAge + Math.max(0, now - responseTime);
+    }
+
+    /**
+     * Get time the response was received.
+     *
+     * @return response time (epoch milliseconds)
+     */
+    long getResponseTime() {
+        return responseTime;
+    }
+
+    /**
+     * Get time taken to load the response.
+     *
+     * @return load time (milliseconds)
+     */
+    long getLoadTime() {
+        return loadTime;
+    }
+
+    /**
+     * Get freshness lifetime.
+     *
+     * @return freshness lifetime (milliseconds)
+     */
+    long getFreshnessLifetime() {
+        return freshnessLifetime;
+    }
+
+    /**
+     * Whether the response is fresh.
+     *
+     * @param now now (epoch milliseconds)
+     * @return true if fresh
+     */
+    boolean isFresh(final long now) {
+        return freshnessLifetime > getAge(now);
+    }
+
+    /**
+     * Whether the response may be stored.
+     *
+     * @return true if storable
+     */
+    boolean isStorable() {
+        return storable;
+    }
+
+    /**
+     * Get approximate heap size of the body and headers.
+     *
+     * @return weight (bytes)
+     */
+    int getWeight() {
+        return weight;
+    }
+
+    /**
+     * Whether the response has a validator (ETag or Last-Modified) for conditional requests.
+     *
+     * @return true if it has a validator
+     */
+    boolean hasValidator() {
+        return etag != null || lastModified != null;
+    }
+
+    /**
+     * Whether the response is still useful once stale (can be revalidated or served stale).
+     *
+     * @param now now (epoch milliseconds)
+     * @param staleWindow how long the response may be served stale (milliseconds)
+     * @return true if fresh, revalidatable or within the stale window
+     */
+    boolean isUsable(final long now, final long staleWindow) {
+        return storable && (hasValidator() || isStaleWithin(now, staleWindow));
+    }
+
+    /**
+     * Whether the response is fresh, or stale for less than the given window and allowed to be served stale.
+     *
+     * @param now now (epoch milliseconds)
+     * @param window stale window (milliseconds)
+     * @return true if it may be served
+     */
+    boolean isStaleWithin(final long now, final long window) {
+        return isFresh(now) || (!mustRevalidate && freshnessLifetime + window > getAge(now));
+    }
+
+    /**
+     * Probabilistic early expiration (XFetch): whether to refresh the still fresh response now, with a
+     * probability rising as expiry gets closer, and sooner for responses that are slower to load.
+     *
+     * @param now now (epoch milliseconds)
+     * @param beta how early to refresh, 0 never refreshes early, above 1 favors earlier refreshes
+     * @param random uniformly distributed random number in (0, 1]
+     * @return true if the response should be refreshed
+     */
+    boolean shouldRefreshEarly(final long now, final double beta, final double random) {
+        if (beta <= 0 || !isFresh(now)) {
+            return false;
+        }
+        // at least 1ms, a response loaded within the same millisecond still gets a chance to refresh early
+        return getAge(now) - Math.max(1, loadTime) * beta * Math.log(random) >= freshnessLifetime;
+    }
+
+    /**
+     * Get stale-while-revalidate window from Cache-Control.
+     *
+     * @return stale-while-revalidate (milliseconds), -1 if absent
+     */
+    long getStaleWhileRevalidate() {
+        return staleWhileRevalidate;
+    }
+
+    /**
+     * Get stale-if-error window from Cache-Control.
+     *
+     * @return stale-if-error (milliseconds), -1 if absent
+     */
+    long getStaleIfError() {
+        return staleIfError;
+    }
+
+    /**
+     * Get Vary headers.
+     *
+     * @return lower case names of the request headers selecting this response, empty if none
+     */
+    List<String> getVaryHeaders() {
+        return varyHeaders;
+    }
+
+    /**
+     * Get ETag.
+     *
+     * @return ETag or null
+     */
+    String getEtag() {
+        return etag;
+    }
+
+    /**
+     * Get Last-Modified.
+     *
+     * @return Last-Modified or null
+     */
+    String getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Get revalidation in progress.
+     *
+     * @return revalidation holder
+     */
+    AtomicReference<CompletableFuture<ParsecCachedResponse>> getRevalidation() {
+        return revalidation;
+    }
+
+    /**
+     * Create the response to a conditional request answered with 304 Not Modified: the stored
+     * response with its headers updated from the 304 response (except payload headers).
+     *
+     * @param notModified 304 response
+     * @return updated response, or null if the off-heap body was evicted
+     */
+    Response revalidated(final Response notModified) {
+        Response stored = getResponse();
+        if (stored == null) {
+            return null;
+        }
+
+        Response.ResponseBuilder builder = Response.fromResponse(stored);
+        for (Map.Entry<String, List<String>> header : notModified.getStringHeaders().entrySet()) {
+            if (PAYLOAD_HEADERS.contains(header.getKey().toLowerCase(Locale.ROOT))) {
+                continue;
+            }
+            builder.header(header.getKey(), null);
+            for (String value : header.getValue()) {
+                builder.header(header.getKey(), value);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Parse a Vary header.
+     *
+     * @param value header value, may be null
+     * @return sorted lower case header names, empty if none
+     */
+    static List<String> parseVary(final String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return Collections.emptyList();
+        }
+        Set<String> names = new TreeSet<>();
+        for (String name : value.split(",")) {
+            if (!name.trim().isEmpty()) {
+                names.add(name.trim().toLowerCase(Locale.ROOT));
+            }
+        }
+        return Collections.unmodifiableList(new ArrayList<>(names));
+    }
+
+    /**
+     * Parse HTTP date.
+     *
+     * @param value header value
+     * @return epoch milliseconds, or 0 if absent or invalid
+     */
+    static long parseHttpDate(final String value) {
+        if (value == null || value.isEmpty()) {
+            return 0;
+        }
+        try {
+            return ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            LOGGER.debug("Invalid HTTP date: " + value);
+            return 0;
+        }
+    }
+
+    /**
+     * Rebuild an entity from its bytes.
+     *
+     * @param bytes body bytes, String bodies as UTF-8
+     * @param bodyType entity type: String, byte[] or {@link ParsecResponseBody}
+     * @param headers response headers, for the charset of {@link ParsecResponseBody} bodies
+     * @return entity
+     */
+    static Object toEntity(final byte[] bytes, final Class<?> bodyType, final Response headers) {
+        if (bodyType == byte[].class) {
+            return bytes;
+        } else if (bodyType == ParsecResponseBody.class) {
+            return new ParsecResponseBody(bytes, ParsecResponseBody.getCharset(headers.getHeaderString(CONTENT_TYPE)));
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Estimate heap size of the body and headers of a response: 2 bytes per char for strings.
+     *
+     * @param response response
+     * @return weight (bytes), capped to {@link Integer#MAX_VALUE}
+     */
+    static int estimateWeight(final Response response) {
+        long weight = 0;
+
+        Object entity = response.getEntity();
+        if (entity instanceof String) {
+            weight += 2L * ((String) entity).length();
+        } else if (entity instanceof byte[]) {
+            weight += ((byte[]) entity).length;
+        } else if (entity instanceof ParsecResponseBody) {
+            weight += ((ParsecResponseBody) entity).getLength();
+        }
+
+        for (Map.Entry<String, List<String>> header : response.getStringHeaders().entrySet()) {
+            for (String value : header.getValue()) {
+                weight += 2L * (header.getKey().length() + (value == null ? 0 : value.length()));
+            }
+        }
+        return (int) Math.min(Integer.MAX_VALUE, weight);
+    }
+
+    /**
+     * Parse delta seconds.
+     *
+     * @param value header or directive value
+     * @return milliseconds, or -1 if absent or invalid
+     */
+    private static long parseSeconds(final String value) {
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return TimeUnit.SECONDS.toMillis(Long.parseLong(value.trim()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Parsed Cache-Control response directives.
+     */
+    private static final class CacheControl {
+        /**
+         * no-store.
+         */
+        private boolean noStore;
+
+        /**
+         * no-cache.
+         */
+        private boolean noCache;
+
+        /**
+         * private.
+         */
+        private boolean isPrivate;
+
+        /**
+         * must-revalidate or proxy-revalidate.
+         */
+        private boolean mustRevalidate;
+
+        /**
+         * stale-while-revalidate (milliseconds), -1 if absent.
+         */
+        private long staleWhileRevalidate = -1;
+
+        /**
+         * stale-if-error (milliseconds), -1 if absent.
+         */
+        private long staleIfError = -1;
+
+        /**
+         * max-age (milliseconds), -1 if absent.
+         */
+        private long maxAge = -1;
+
+        /**
+         * s-maxage (milliseconds), -1 if absent.
+         */
+        private long sMaxAge = -1;
+
+        /**
+         * Constructor.
+         *
+         * @param header Cache-Control header value (multiple headers joined with commas)
+         */
+        private CacheControl(final String header) {
+            if (header == null) {
+                return;
+            }
+
+            for (String directive : header.split(",")) {
+                String[] pair = directive.trim().split("=", 2);
+                String name = pair[0].trim().toLowerCase(Locale.ROOT);
+                String value = pair.length > 1 ? pair[1].trim().replace("\"", "") : null;
+
+                switch (name) {
+                    case "no-store":
+                        noStore = true;
+                        break;
+                    case "no-cache":
+                        noCache = true;
+                        break;
+                    case "private":
+                        isPrivate = true;
+                        break;
+                    case "max-age":
+                        maxAge = parseSeconds(value);
+                        break;
+                    case "s-maxage":
+                        sMaxAge = parseSeconds(value);
+                        break;
+                    case "must-revalidate":
+                    case "proxy-revalidate":
+                        mustRevalidate = true;
+                        break;
+                    case "stale-while-revalidate":
+                        staleWhileRevalidate = parseSeconds(value);
+                        break;
+                    case "stale-if-error":
+                        staleIfError = parseSeconds(value);
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+    }
+}
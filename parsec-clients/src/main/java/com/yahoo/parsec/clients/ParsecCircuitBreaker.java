@@ -0,0 +1,631 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Lock-free circuit breaker (closed / open / half-open) with a sliding window of the last N calls.
+ * <p>
+ * The breaker opens when the failure rate or the slow call rate of the window reaches its threshold,
+ * rejects calls while open, and lets a limited number of trial calls through once the open duration
+ * has elapsed (half-open). All trial calls succeeding closes the breaker, any failure re-opens it.
+ *
+ * @author sho
+ */
+public final class ParsecCircuitBreaker {
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(ParsecCircuitBreaker.class);
+
+    /**
+     * Percent.
+     */
+    private static final int PERCENT = 100;
+
+    /**
+     * Circuit breaker state.
+     */
+    public enum State {
+        /** calls are permitted. */
+        CLOSED,
+        /** calls are rejected. */
+        OPEN,
+        /** a limited number of trial calls are permitted. */
+        HALF_OPEN
+    }
+
+    /**
+     * Listener notified on circuit breaker state changes.
+     */
+    @FunctionalInterface
+    public interface StateListener {
+        /**
+         * On state change.
+         *
+         * @param name circuit breaker name (host)
+         * @param from previous state
+         * @param to new state
+         */
+        void onStateChange(String name, State from, State to);
+    }
+
+    /**
+     * Name.
+     */
+    private final String name;
+
+    /**
+     * Sliding window size (calls).
+     */
+    private final int windowSize;
+
+    /**
+     * Minimum calls in window before evaluating thresholds.
+     */
+    private final int minimumCalls;
+
+    /**
+     * Failure rate threshold (percent).
+     */
+    private final int failureRateThreshold;
+
+    /**
+     * Slow call rate threshold (percent).
+     */
+    private final int slowCallRateThreshold;
+
+    /**
+     * Slow call duration threshold (nanoseconds).
+     */
+    private final long slowCallDuration;
+
+    /**
+     * Open duration (nanoseconds).
+     */
+    private final long openDuration;
+
+    /**
+     * Trial calls permitted in half-open state.
+     */
+    private final int halfOpenCalls;
+
+    /**
+     * State listeners.
+     */
+    private final List<StateListener> stateListeners;
+
+    /**
+     * Current status.
+     */
+    private final AtomicReference<Status> status;
+
+    /**
+     * Private constructor.
+     *
+     * @param name name
+     * @param builder builder
+     */
+    private ParsecCircuitBreaker(final String name, final Builder builder) {
+        this.name = name;
+        windowSize = builder.windowSize;
+        minimumCalls = builder.minimumCalls;
+        failureRateThreshold = builder.failureRateThreshold;
+        slowCallRateThreshold = builder.slowCallRateThreshold;
+        slowCallDuration = TimeUnit.MILLISECONDS.toNanos(builder.slowCallDuration);
+        openDuration = TimeUnit.MILLISECONDS.toNanos(builder.openDuration);
+        halfOpenCalls = builder.halfOpenCalls;
+        stateListeners = Collections.unmodifiableList(new ArrayList<>(builder.stateListeners));
+        status = new AtomicReference<>(closed());
+    }
+
+    /**
+     * Get name.
+     *
+     * @return name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get state.
+     *
+     * @return state
+     */
+    public State getState() {
+        return status.get().state;
+    }
+
+    /**
+     * Get failure rate of the sliding window.
+     *
+     * @return failure rate (percent), or -1 if not enough calls
+     */
+    public float getFailureRate() {
+        Window window = status.get().window;
+        int calls = window.calls.get();
+        return calls < minimumCalls ? -1 : (float) window.failures.get() * PERCENT / calls;
+    }
+
+    /**
+     * Get slow call rate of the sliding window.
+     *
+     * @return slow call rate (percent), or -1 if not enough calls
+     */
+    public float getSlowCallRate() {
+        Window window = status.get().window;
+        int calls = window.calls.get();
+        return calls < minimumCalls ? -1 : (float) window.slowCalls.get() * PERCENT / calls;
+    }
+
+    /**
+     * Try to acquire permission for a call.
+     *
+     * @return permit to record the outcome of the call with, null if the call is not permitted
+     */
+    public Permit tryAcquirePermission() {
+        while (true) {
+            Status current = status.get();
+            switch (current.state) {
+                case CLOSED:
+                    return new Permit(current);
+                case OPEN:
+                    if (System.nanoTime() - current.openedAt < openDuration) {
+                        return null;
+                    }
+                    transition(current, new Status(State.HALF_OPEN, current.window, 0, halfOpenCalls));
+                    break;
+                default:
+                    int permits = current.permits.get();
+                    if (permits <= 0) {
+                        return null;
+                    }
+                    if (current.permits.compareAndSet(permits, permits - 1)) {
+                        return new Permit(current);
+                    }
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Record the outcome of a call permitted by a status.
+     *
+     * @param granted status that permitted the call
+     * @param failure whether the call failed
+     * @param duration call duration in nanoseconds
+     */
+    private void onComplete(final Status granted, final boolean failure, final long duration) {
+        // calls permitted by a previous status (e.g. closed calls completing once half-open) are not trial calls
+        if (status.get() != granted) {
+            return;
+        }
+
+        final boolean slow = duration >= slowCallDuration;
+        switch (granted.state) {
+            case CLOSED:
+                granted.window.record(failure, slow);
+                if (isThresholdReached(granted.window)) {
+                    transition(granted, new Status(State.OPEN, granted.window, System.nanoTime(), 0));
+                }
+                break;
+            case HALF_OPEN:
+                if (failure || slow) {
+                    transition(granted, new Status(State.OPEN, granted.window, System.nanoTime(), 0));
+                } else if (granted.successes.incrementAndGet() >= halfOpenCalls) {
+                    transition(granted, closed());
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Release the trial permit of a call completed without outcome, if its status is still current.
+     *
+     * @param granted status that permitted the call
+     */
+    private void onIgnored(final Status granted) {
+        if (granted.state == State.HALF_OPEN && status.get() == granted) {
+            granted.permits.incrementAndGet();
+        }
+    }
+
+    /**
+     * Whether failure or slow call threshold is reached.
+     *
+     * @param window window
+     * @return true if threshold is reached
+     */
+    private boolean isThresholdReached(final Window window) {
+        int calls = window.calls.get();
+        if (calls < minimumCalls) {
+            return false;
+        }
+        return window.failures.get() * PERCENT >= failureRateThreshold * calls
+            || window.slowCalls.get() * PERCENT >= slowCallRateThreshold * calls;
+    }
+
+    /**
+     * New closed status with an empty window.
+     *
+     * @return closed status
+     */
+    private Status closed() {
+        return new Status(State.CLOSED, new Window(windowSize), 0, 0);
+    }
+
+    /**
+     * Transition from expected status to new status and notify listeners.
+     *
+     * @param expected expected current status
+     * @param next new status
+     */
+    private void transition(final Status expected, final Status next) {
+        if (!status.compareAndSet(expected, next)) {
+            return;
+        }
+
+        LOGGER.debug("Circuit breaker " + name + ": " + expected.state + " -> " + next.state);
+        for (StateListener stateListener : stateListeners) {
+            try {
+                stateListener.onStateChange(name, expected.state, next.state);
+            } catch (RuntimeException e) {
+                LOGGER.warn("Circuit breaker state listener failed", e);
+            }
+        }
+    }
+
+    /**
+     * Permission for one call, recording its outcome against the status that permitted it.
+     */
+    public final class Permit {
+        /**
+         * Status that permitted the call.
+         */
+        private final Status granted;
+
+        /**
+         * Whether the outcome was recorded.
+         */
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        /**
+         * Private constructor.
+         *
+         * @param granted status that permitted the call
+         */
+        private Permit(final Status granted) {
+            this.granted = granted;
+        }
+
+        /**
+         * Record the outcome of the call, ignored if the breaker changed state since the call was permitted.
+         *
+         * @param failure whether the call failed
+         * @param duration call duration in nanoseconds
+         */
+        public void onComplete(final boolean failure, final long duration) {
+            if (released.compareAndSet(false, true)) {
+                ParsecCircuitBreaker.this.onComplete(granted, failure, duration);
+            }
+        }
+
+        /**
+         * Release the permission of a call that completed without outcome (e.g. cancelled).
+         */
+        public void onIgnored() {
+            if (released.compareAndSet(false, true)) {
+                ParsecCircuitBreaker.this.onIgnored(granted);
+            }
+        }
+    }
+
+    /**
+     * Immutable state with its mutable counters.
+     */
+    private static final class Status {
+        /**
+         * State.
+         */
+        private final State state;
+
+        /**
+         * Sliding window.
+         */
+        private final Window window;
+
+        /**
+         * Opened at (nanoseconds).
+         */
+        private final long openedAt;
+
+        /**
+         * Half-open permits left.
+         */
+        private final AtomicInteger permits;
+
+        /**
+         * Half-open successes.
+         */
+        private final AtomicInteger successes;
+
+        /**
+         * Constructor.
+         *
+         * @param state state
+         * @param window window
+         * @param openedAt opened at
+         * @param permits half-open permits
+         */
+        private Status(final State state, final Window window, final long openedAt, final int permits) {
+            this.state = state;
+            this.window = window;
+            this.openedAt = openedAt;
+            this.permits = new AtomicInteger(permits);
+            this.successes = new AtomicInteger();
+        }
+    }
+
+    /**
+     * Count-based sliding window of call outcomes.
+     */
+    private static final class Window {
+        /**
+         * Failure flag.
+         */
+        private static final int FAILURE = 1;
+
+        /**
+         * Slow flag.
+         */
+        private static final int SLOW = 2;
+
+        /**
+         * Recorded flag.
+         */
+        private static final int RECORDED = 4;
+
+        /**
+         * Outcomes ring buffer.
+         */
+        private final AtomicIntegerArray outcomes;
+
+        /**
+         * Next slot.
+         */
+        private final AtomicLong index = new AtomicLong();
+
+        /**
+         * Calls in window.
+         */
+        private final AtomicInteger calls = new AtomicInteger();
+
+        /**
+         * Failures in window.
+         */
+        private final AtomicInteger failures = new AtomicInteger();
+
+        /**
+         * Slow calls in window.
+         */
+        private final AtomicInteger slowCalls = new AtomicInteger();
+
+        /**
+         * Constructor.
+         *
+         * @param size window size
+         */
+        private Window(final int size) {
+            outcomes = new AtomicIntegerArray(size);
+        }
+
+        /**
+         * Record outcome, replacing the oldest one.
+         *
+         * @param failure failure
+         * @param slow slow
+         */
+        private void record(final boolean failure, final boolean slow) {
+            int outcome = RECORDED | (failure ? FAILURE : 0) | (slow ? SLOW : 0);
+            int old = outcomes.getAndSet((int) (index.getAndIncrement() % outcomes.length()), outcome);
+
+            if ((old & RECORDED) == 0) {
+                calls.incrementAndGet();
+            }
+            failures.addAndGet((outcome & FAILURE) - (old & FAILURE));
+            slowCalls.addAndGet(((outcome & SLOW) - (old & SLOW)) / SLOW);
+        }
+    }
+
+    /**
+     * Static Builder class for {@link ParsecCircuitBreaker}.
+     * One circuit breaker is built per host from the same builder.
+     *
+     * @author sho
+     */
+    public static class Builder {
+        /**
+         * Default window size.
+         */
+        private static final int DEFAULT_WINDOW_SIZE = 100;
+
+        /**
+         * Default minimum calls.
+         */
+        private static final int DEFAULT_MINIMUM_CALLS = 20;
+
+        /**
+         * Default failure rate threshold.
+         */
+        private static final int DEFAULT_FAILURE_RATE_THRESHOLD = 50;
+
+        /**
+         * Default slow call duration.
+         */
+        private static final int DEFAULT_SLOW_CALL_DURATION = 60000;
+
+        /**
+         * Default open duration.
+         */
+        private static final int DEFAULT_OPEN_DURATION = 5000;
+
+        /**
+         * Default half-open calls.
+         */
+        private static final int DEFAULT_HALF_OPEN_CALLS = 5;
+
+        /**
+         * Window size.
+         */
+        private int windowSize = DEFAULT_WINDOW_SIZE;
+
+        /**
+         * Minimum calls.
+         */
+        private int minimumCalls = DEFAULT_MINIMUM_CALLS;
+
+        /**
+         * Failure rate threshold.
+         */
+        private int failureRateThreshold = DEFAULT_FAILURE_RATE_THRESHOLD;
+
+        /**
+         * Slow call rate threshold.
+         */
+        private int slowCallRateThreshold = PERCENT;
+
+        /**
+         * Slow call duration.
+         */
+        private int slowCallDuration = DEFAULT_SLOW_CALL_DURATION;
+
+        /**
+         * Open duration.
+         */
+        private int openDuration = DEFAULT_OPEN_DURATION;
+
+        /**
+         * Half-open calls.
+         */
+        private int halfOpenCalls = DEFAULT_HALF_OPEN_CALLS;
+
+        /**
+         * State listeners.
+         */
+        private List<StateListener> stateListeners = new ArrayList<>();
+
+        /**
+         * Add state listener.
+         *
+         * @param stateListener state listener
+         * @return {@link ParsecCircuitBreaker.Builder}
+         */
+        public Builder addStateListener(StateListener stateListener) {
+            stateListeners.add(stateListener);
+            return this;
+        }
+
+        /**
+         * Build new {@link ParsecCircuitBreaker} instance.
+         *
+         * @param name circuit breaker name
+         * @return {@link ParsecCircuitBreaker}
+         */
+        public ParsecCircuitBreaker build(String name) {
+            return new ParsecCircuitBreaker(name, this);
+        }
+
+        /**
+         * Set failure rate threshold.
+         *
+         * @param failureRateThreshold Failure rate (percent) of the window that opens the circuit
+         * @return {@link ParsecCircuitBreaker.Builder}
+         */
+        public Builder setFailureRateThreshold(int failureRateThreshold) {
+            this.failureRateThreshold = failureRateThreshold;
+            return this;
+        }
+
+        /**
+         * Set half-open calls.
+         *
+         * @param halfOpenCalls Trial calls permitted in half-open state
+         * @return {@link ParsecCircuitBreaker.Builder}
+         */
+        public Builder setHalfOpenCalls(int halfOpenCalls) {
+            this.halfOpenCalls = halfOpenCalls;
+            return this;
+        }
+
+        /**
+         * Set minimum calls.
+         *
+         * @param minimumCalls Minimum calls in window before thresholds are evaluated
+         * @return {@link ParsecCircuitBreaker.Builder}
+         */
+        public Builder setMinimumCalls(int minimumCalls) {
+            this.minimumCalls = minimumCalls;
+            return this;
+        }
+
+        /**
+         * Set open duration.
+         *
+         * @param openDuration How long the circuit stays open before half-open, in milliseconds
+         * @return {@link ParsecCircuitBreaker.Builder}
+         */
+        public Builder setOpenDuration(int openDuration) {
+            this.openDuration = openDuration;
+            return this;
+        }
+
+        /**
+         * Set slow call duration.
+         *
+         * @param slowCallDuration Duration in milliseconds above which a call is slow
+         * @return {@link ParsecCircuitBreaker.Builder}
+         */
+        public Builder setSlowCallDuration(int slowCallDuration) {
+            this.slowCallDuration = slowCallDuration;
+            return this;
+        }
+
+        /**
+         * Set slow call rate threshold.
+         *
+         * @param slowCallRateThreshold Slow call rate (percent) of the window that opens the circuit
+         * @return {@link ParsecCircuitBreaker.Builder}
+         */
+        public Builder setSlowCallRateThreshold(int slowCallRateThreshold) {
+            this.slowCallRateThreshold = slowCallRateThreshold;
+            return this;
+        }
+
+        /**
+         * Set window size.
+         *
+         * @param windowSize Number of last calls in the sliding window
+         * @return {@link ParsecCircuitBreaker.Builder}
+         */
+        public Builder setWindowSize(int windowSize) {
+            this.windowSize = windowSize;
+            return this;
+        }
+    }
+}
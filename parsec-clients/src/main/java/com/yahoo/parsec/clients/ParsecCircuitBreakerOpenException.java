@@ -0,0 +1,43 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import java.io.IOException;
+
+/**
+ * Thrown (as the cause of the failed future) when a request is rejected because the
+ * circuit breaker of its host is open.
+ *
+ * @author sho
+ */
+public class ParsecCircuitBreakerOpenException extends IOException {
+    /**
+     * Serial version UID.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Host (base URL).
+     */
+    private final String host;
+
+    /**
+     * Constructor.
+     *
+     * @param host host (base URL) whose circuit breaker is open
+     */
+    public ParsecCircuitBreakerOpenException(final String host) {
+        super("Circuit breaker is open: " + host);
+        this.host = host;
+    }
+
+    /**
+     * Get host.
+     *
+     * @return host (base URL) whose circuit breaker is open
+     */
+    public String getHost() {
+        return host;
+    }
+}
@@ -28,6 +28,16 @@ public final class ParsecClientDefine {
      */
     public static final String HEADER_CONTENT_LENGTH = "content-length";
 
+    /**
+     * aborted profiling log key.
+     */
+    public static final String PROFILING_ABORTED = "aborted";
+
+    /**
+     * body bytes received profiling log key.
+     */
+    public static final String PROFILING_BYTES_RECEIVED = "bytes_received";
+
 
     /**
      * unused private constructor.
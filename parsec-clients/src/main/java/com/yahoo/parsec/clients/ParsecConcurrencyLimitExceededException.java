@@ -0,0 +1,43 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import java.io.IOException;
+
+/**
+ * Thrown (as the cause of the failed future) when a request is rejected because the
+ * concurrency limit of its host is reached and its queue is full.
+ *
+ * @author sho
+ */
+public class ParsecConcurrencyLimitExceededException extends IOException {
+    /**
+     * Serial version UID.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Host (base URL).
+     */
+    private final String host;
+
+    /**
+     * Constructor.
+     *
+     * @param host host (base URL) whose concurrency limit is exceeded
+     */
+    public ParsecConcurrencyLimitExceededException(final String host) {
+        super("Concurrency limit exceeded: " + host);
+        this.host = host;
+    }
+
+    /**
+     * Get host.
+     *
+     * @return host (base URL) whose concurrency limit is exceeded
+     */
+    public String getHost() {
+        return host;
+    }
+}
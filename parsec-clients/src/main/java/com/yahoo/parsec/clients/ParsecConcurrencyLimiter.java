@@ -0,0 +1,547 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Adaptive concurrency limiter (gradient algorithm) for the requests to one host.
+ * <p>
+ * The limit of in-flight requests follows the ratio between the minimum (no load) RTT and the
+ * current RTT: it grows while RTTs stay close to the minimum and shrinks as soon as requests start
+ * queueing at the backend. Dropped requests (errors, timeouts, 429 and 503 responses) shrink the
+ * limit multiplicatively. Requests above the limit wait in a bounded queue, and are rejected with
+ * {@link ParsecConcurrencyLimitExceededException} once the queue is full; no thread is ever blocked.
+ *
+ * @author sho
+ */
+public final class ParsecConcurrencyLimiter {
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(ParsecConcurrencyLimiter.class);
+
+    /**
+     * Min gradient (max decrease per sample).
+     */
+    private static final double MIN_GRADIENT = 0.5;
+
+    /**
+     * Samples between resets of the no load RTT (lets the limit probe for a new baseline).
+     */
+    private static final long PROBE_INTERVAL = 1000;
+
+    /**
+     * Name.
+     */
+    private final String name;
+
+    /**
+     * Min limit.
+     */
+    private final int minLimit;
+
+    /**
+     * Max limit.
+     */
+    private final int maxLimit;
+
+    /**
+     * Max queue size.
+     */
+    private final int maxQueueSize;
+
+    /**
+     * RTT tolerance over the no load RTT before the limit decreases.
+     */
+    private final double rttTolerance;
+
+    /**
+     * Limit decrease ratio on drops.
+     */
+    private final double backoffRatio;
+
+    /**
+     * Smoothing of limit increases.
+     */
+    private final double smoothing;
+
+    /**
+     * Current limit (double bits).
+     */
+    private final AtomicLong limit;
+
+    /**
+     * No load RTT.
+     */
+    private final AtomicLong minRtt = new AtomicLong(Long.MAX_VALUE);
+
+    /**
+     * Samples recorded.
+     */
+    private final AtomicLong samples = new AtomicLong();
+
+    /**
+     * In-flight requests.
+     */
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /**
+     * Queued requests.
+     */
+    private final Queue<QueuedCall<?>> queue = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Queue size.
+     */
+    private final AtomicInteger queueSize = new AtomicInteger();
+
+    /**
+     * Private constructor.
+     *
+     * @param name name
+     * @param builder builder
+     */
+    private ParsecConcurrencyLimiter(final String name, final Builder builder) {
+        this.name = name;
+        minLimit = builder.minLimit;
+        maxLimit = builder.maxLimit;
+        maxQueueSize = builder.maxQueueSize;
+        rttTolerance = builder.rttTolerance;
+        backoffRatio = builder.backoffRatio;
+        smoothing = builder.smoothing;
+        limit = new AtomicLong(Double.doubleToLongBits(
+            Math.max(minLimit, Math.min(maxLimit, builder.initialLimit))));
+    }
+
+    /**
+     * Get name.
+     *
+     * @return name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get current limit of in-flight requests.
+     *
+     * @return limit
+     */
+    public int getLimit() {
+        return (int) getLimitValue();
+    }
+
+    /**
+     * Get in-flight requests.
+     *
+     * @return in-flight requests
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Get queued requests.
+     *
+     * @return queued requests
+     */
+    public int getQueueSize() {
+        return queueSize.get();
+    }
+
+    /**
+     * Execute within the limit, or queue the execution until an in-flight request completes.
+     *
+     * @param execution starts the request
+     * @param executor executor for starting queued requests
+     * @param <T> response type
+     * @return {@literal CompletableFuture<T>}, failed with {@link ParsecConcurrencyLimitExceededException}
+     * if the queue is full
+     */
+    public <T> CompletableFuture<T> submit(final Supplier<CompletableFuture<T>> execution, final Executor executor) {
+        if (queue.isEmpty() && tryAcquire()) {
+            return start(execution);
+        }
+
+        if (queueSize.incrementAndGet() > maxQueueSize) {
+            queueSize.decrementAndGet();
+            CompletableFuture<T> rejected = new CompletableFuture<>();
+            rejected.completeExceptionally(new ParsecConcurrencyLimitExceededException(name));
+            return rejected;
+        }
+
+        QueuedCall<T> queuedCall = new QueuedCall<>(execution, executor);
+        queue.offer(queuedCall);
+        drain();
+        return queuedCall;
+    }
+
+    /**
+     * Record RTT sample of a completed request and adjust the limit.
+     *
+     * @param rtt round trip time (any unit, consistently)
+     * @param dropped whether the request was dropped (error, timeout or overload response)
+     */
+    public void onSample(final long rtt, final boolean dropped) {
+        final long noLoadRtt;
+        if (rtt > 0) {
+            noLoadRtt = samples.incrementAndGet() % PROBE_INTERVAL == 0
+                ? resetMinRtt(rtt) : minRtt.accumulateAndGet(rtt, Math::min);
+        } else if (dropped) {
+            noLoadRtt = 0;
+        } else {
+            return;
+        }
+        final int currentInFlight = inFlight.get();
+
+        long currentBits;
+        double next;
+        do {
+            currentBits = limit.get();
+            double current = Double.longBitsToDouble(currentBits);
+
+            if (dropped) {
+                next = current * backoffRatio;
+            } else if (currentInFlight * 2 < current) {
+                // not using the limit, RTTs tell nothing about the backend capacity
+                return;
+            } else {
+                double gradient = Math.max(MIN_GRADIENT, Math.min(1.0, rttTolerance * noLoadRtt / rtt));
+                next = current * (1 - smoothing) + (current * gradient + Math.sqrt(current)) * smoothing;
+            }
+            next = Math.max(minLimit, Math.min(maxLimit, next));
+        } while (!limit.compareAndSet(currentBits, Double.doubleToLongBits(next)));
+
+        // a higher limit may let queued requests through
+        drain();
+    }
+
+    /**
+     * Get limit value.
+     *
+     * @return limit
+     */
+    private double getLimitValue() {
+        return Double.longBitsToDouble(limit.get());
+    }
+
+    /**
+     * Reset no load RTT.
+     *
+     * @param rtt rtt
+     * @return rtt
+     */
+    private long resetMinRtt(final long rtt) {
+        LOGGER.debug("Concurrency limiter " + name + ": probe RTT " + rtt + ", limit " + getLimit());
+        minRtt.set(rtt);
+        return rtt;
+    }
+
+    /**
+     * Try to acquire an in-flight slot.
+     *
+     * @return true if acquired
+     */
+    private boolean tryAcquire() {
+        int current;
+        do {
+            current = inFlight.get();
+            if (current >= getLimit()) {
+                return false;
+            }
+        } while (!inFlight.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    /**
+     * Release an in-flight slot and start queued requests.
+     */
+    private void release() {
+        inFlight.decrementAndGet();
+        drain();
+    }
+
+    /**
+     * Start queued requests while below the limit.
+     */
+    private void drain() {
+        while (!queue.isEmpty() && tryAcquire()) {
+            QueuedCall<?> queuedCall = queue.poll();
+            if (queuedCall == null) {
+                inFlight.decrementAndGet();
+                continue;
+            }
+            queueSize.decrementAndGet();
+            try {
+                queuedCall.executor.execute(queuedCall::run);
+            } catch (RejectedExecutionException e) {
+                queuedCall.completeExceptionally(e);
+                inFlight.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Start execution holding an in-flight slot, released on completion.
+     *
+     * @param execution execution
+     * @param <T> response type
+     * @return {@literal CompletableFuture<T>}
+     */
+    private <T> CompletableFuture<T> start(final Supplier<CompletableFuture<T>> execution) {
+        final CompletableFuture<T> future;
+        try {
+            future = execution.get();
+        } catch (RuntimeException e) {
+            release();
+            throw e;
+        }
+        future.whenComplete((response, throwable) -> release());
+        return future;
+    }
+
+    /**
+     * Queued request.
+     *
+     * @param <T> response type
+     */
+    private final class QueuedCall<T> extends CompletableFuture<T> {
+        /**
+         * Execution.
+         */
+        private final Supplier<CompletableFuture<T>> execution;
+
+        /**
+         * Executor.
+         */
+        private final Executor executor;
+
+        /**
+         * Started request.
+         */
+        private volatile CompletableFuture<T> current;
+
+        /**
+         * Constructor.
+         *
+         * @param execution execution
+         * @param executor executor
+         */
+        private QueuedCall(final Supplier<CompletableFuture<T>> execution, final Executor executor) {
+            this.execution = execution;
+            this.executor = executor;
+        }
+
+        /**
+         * Start the request (an in-flight slot is already held).
+         */
+        private void run() {
+            if (isDone()) {
+                release();
+                return;
+            }
+
+            final CompletableFuture<T> future;
+            try {
+                future = start(execution);
+            } catch (RuntimeException e) {
+                completeExceptionally(e);
+                return;
+            }
+
+            current = future;
+            future.whenComplete((response, throwable) -> {
+                if (throwable == null) {
+                    complete(response);
+                } else {
+                    completeExceptionally(throwable);
+                }
+            });
+            if (isCancelled()) {
+                future.cancel(true);
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            CompletableFuture<T> future = current;
+            if (cancelled && future != null) {
+                future.cancel(mayInterruptIfRunning);
+            }
+            return cancelled;
+        }
+    }
+
+    /**
+     * Static Builder class for {@link ParsecConcurrencyLimiter}.
+     * One limiter is built per host from the same builder.
+     *
+     * @author sho
+     */
+    public static class Builder {
+        /**
+         * Default initial limit.
+         */
+        private static final int DEFAULT_INITIAL_LIMIT = 20;
+
+        /**
+         * Default max limit.
+         */
+        private static final int DEFAULT_MAX_LIMIT = 1000;
+
+        /**
+         * Default max queue size.
+         */
+        private static final int DEFAULT_MAX_QUEUE_SIZE = 1000;
+
+        /**
+         * Default RTT tolerance.
+         */
+        private static final double DEFAULT_RTT_TOLERANCE = 1.5;
+
+        /**
+         * Default backoff ratio.
+         */
+        private static final double DEFAULT_BACKOFF_RATIO = 0.9;
+
+        /**
+         * Default smoothing.
+         */
+        private static final double DEFAULT_SMOOTHING = 0.2;
+
+        /**
+         * Initial limit.
+         */
+        private int initialLimit = DEFAULT_INITIAL_LIMIT;
+
+        /**
+         * Min limit.
+         */
+        private int minLimit = 1;
+
+        /**
+         * Max limit.
+         */
+        private int maxLimit = DEFAULT_MAX_LIMIT;
+
+        /**
+         * Max queue size.
+         */
+        private int maxQueueSize = DEFAULT_MAX_QUEUE_SIZE;
+
+        /**
+         * RTT tolerance.
+         */
+        private double rttTolerance = DEFAULT_RTT_TOLERANCE;
+
+        /**
+         * Backoff ratio.
+         */
+        private double backoffRatio = DEFAULT_BACKOFF_RATIO;
+
+        /**
+         * Smoothing.
+         */
+        private double smoothing = DEFAULT_SMOOTHING;
+
+        /**
+         * Build new {@link ParsecConcurrencyLimiter} instance.
+         *
+         * @param name limiter name
+         * @return {@link ParsecConcurrencyLimiter}
+         */
+        public ParsecConcurrencyLimiter build(String name) {
+            return new ParsecConcurrencyLimiter(name, this);
+        }
+
+        /**
+         * Set backoff ratio.
+         *
+         * @param backoffRatio Ratio applied to the limit on every dropped request (e.g. 0.9)
+         * @return {@link ParsecConcurrencyLimiter.Builder}
+         */
+        public Builder setBackoffRatio(double backoffRatio) {
+            this.backoffRatio = backoffRatio;
+            return this;
+        }
+
+        /**
+         * Set initial limit.
+         *
+         * @param initialLimit Initial limit of in-flight requests
+         * @return {@link ParsecConcurrencyLimiter.Builder}
+         */
+        public Builder setInitialLimit(int initialLimit) {
+            this.initialLimit = initialLimit;
+            return this;
+        }
+
+        /**
+         * Set max limit.
+         *
+         * @param maxLimit Max limit of in-flight requests
+         * @return {@link ParsecConcurrencyLimiter.Builder}
+         */
+        public Builder setMaxLimit(int maxLimit) {
+            this.maxLimit = maxLimit;
+            return this;
+        }
+
+        /**
+         * Set max queue size.
+         *
+         * @param maxQueueSize Max requests waiting for the limit, 0 to reject immediately
+         * @return {@link ParsecConcurrencyLimiter.Builder}
+         */
+        public Builder setMaxQueueSize(int maxQueueSize) {
+            this.maxQueueSize = maxQueueSize;
+            return this;
+        }
+
+        /**
+         * Set min limit.
+         *
+         * @param minLimit Min limit of in-flight requests
+         * @return {@link ParsecConcurrencyLimiter.Builder}
+         */
+        public Builder setMinLimit(int minLimit) {
+            this.minLimit = minLimit;
+            return this;
+        }
+
+        /**
+         * Set RTT tolerance.
+         *
+         * @param rttTolerance Ratio over the no load RTT tolerated before the limit decreases (e.g. 1.5)
+         * @return {@link ParsecConcurrencyLimiter.Builder}
+         */
+        public Builder setRttTolerance(double rttTolerance) {
+            this.rttTolerance = rttTolerance;
+            return this;
+        }
+
+        /**
+         * Set smoothing.
+         *
+         * @param smoothing Weight of a new sample in the limit (0 - 1)
+         * @return {@link ParsecConcurrencyLimiter.Builder}
+         */
+        public Builder setSmoothing(double smoothing) {
+            this.smoothing = smoothing;
+            return this;
+        }
+    }
+}
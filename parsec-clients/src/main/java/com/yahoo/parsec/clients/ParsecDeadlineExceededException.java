@@ -0,0 +1,29 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Thrown (as the cause of the failed future) when the deadline of a request passed, see
+ * {@link ParsecAsyncHttpRequest.Builder#setDeadline(long)}. Unlike a request timeout, it is specific to
+ * the caller and says nothing about the backend.
+ *
+ * @author sho
+ */
+public class ParsecDeadlineExceededException extends TimeoutException {
+    /**
+     * Serial version UID.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructor.
+     *
+     * @param message message
+     */
+    public ParsecDeadlineExceededException(final String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,89 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * {@link CompletableFuture} completed by an execution, or with a {@link TimeoutException} at the request
+ * deadline, cancelling the execution.
+ *
+ * @param <T> Response type
+ * @author sho
+ */
+final class ParsecDeadlineFuture<T> extends CompletableFuture<T> {
+    /**
+     * Execution.
+     */
+    private volatile CompletableFuture<T> execution;
+
+    /**
+     * Pending deadline timer.
+     */
+    private volatile Future<?> timer;
+
+    /**
+     * Set execution.
+     *
+     * @param execution execution
+     */
+    void setExecution(final CompletableFuture<T> execution) {
+        this.execution = execution;
+        execution.whenComplete((response, throwable) -> {
+            boolean completed = throwable == null ? complete(response) : completeExceptionally(throwable);
+            Future<?> pendingTimer = timer;
+            if (completed && pendingTimer != null) {
+                pendingTimer.cancel(false);
+            }
+        });
+    }
+
+    /**
+     * Set deadline timer.
+     *
+     * @param timer timer
+     */
+    void setTimer(final Future<?> timer) {
+        this.timer = timer;
+        if (isDone()) {
+            timer.cancel(false);
+        }
+    }
+
+    /**
+     * Complete with a timeout at the deadline, cancelling the execution.
+     *
+     * @param timeout timeout
+     */
+    void expire(final TimeoutException timeout) {
+        if (completeExceptionally(timeout)) {
+            cancelExecution(true);
+        }
+    }
+
+    /**
+     * Cancel execution.
+     *
+     * @param mayInterruptIfRunning mayInterruptIfRunning
+     */
+    private void cancelExecution(final boolean mayInterruptIfRunning) {
+        CompletableFuture<T> future = execution;
+        if (future != null && !future.isDone()) {
+            future.cancel(mayInterruptIfRunning);
+        }
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        boolean cancelled = super.cancel(mayInterruptIfRunning);
+        Future<?> pendingTimer = timer;
+        if (pendingTimer != null) {
+            pendingTimer.cancel(false);
+        }
+        cancelExecution(mayInterruptIfRunning);
+        return cancelled;
+    }
+}
@@ -0,0 +1,889 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.ws.rs.core.Response;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * Persistent second-level response cache, surviving restarts.
+ * <p>
+ * Responses are appended to a log of memory-mapped segment files, one record per put or remove, each with
+ * a CRC32 checksum. An in-memory index of the latest record per request is rebuilt by scanning the
+ * segments on start, stopping at the first corrupt record of a segment. When the max number of segments
+ * is exceeded, the oldest segment is compacted: its live records are copied to the newest segment if they
+ * take less than half of it, dropped otherwise, and the segment file is deleted.
+ *
+ * @author sho
+ */
+final class ParsecDiskResponseCache {
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(ParsecDiskResponseCache.class);
+
+    /**
+     * Record magic number.
+     */
+    private static final int MAGIC = 0x50525331;
+
+    /**
+     * Record header size: magic, payload length, checksum.
+     */
+    private static final int HEADER_SIZE = 12;
+
+    /**
+     * Put record.
+     */
+    private static final byte PUT = 1;
+
+    /**
+     * Remove record.
+     */
+    private static final byte REMOVE = 2;
+
+    /**
+     * No body.
+     */
+    private static final byte NO_BODY = 0;
+
+    /**
+     * String body, stored as UTF-8.
+     */
+    private static final byte STRING_BODY = 1;
+
+    /**
+     * byte[] body.
+     */
+    private static final byte BINARY_BODY = 2;
+
+    /**
+     * {@link ParsecResponseBody} body.
+     */
+    private static final byte BYTES_BODY = 3;
+
+    /**
+     * Segment file name pattern.
+     */
+    private static final Pattern SEGMENT_FILE = Pattern.compile("segment-(\\d+)\\.log");
+
+    /**
+     * Directory.
+     */
+    private final Path directory;
+
+    /**
+     * Segment size (bytes).
+     */
+    private final int segmentSize;
+
+    /**
+     * Max number of segments.
+     */
+    private final int maxSegments;
+
+    /**
+     * Segments, oldest first.
+     */
+    private final LinkedList<Segment> segments = new LinkedList<>();
+
+    /**
+     * Latest put record per key.
+     */
+    private final Map<String, Location> index = new HashMap<>();
+
+    /**
+     * Lock, reads share it, writes are exclusive.
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Constructor, recovers the records of existing segments.
+     *
+     * @param directory directory of segment files, created if absent
+     * @param segmentSize segment size (bytes), records larger than half of it are not stored
+     * @param maxSegments max number of segments
+     * @param now now (epoch milliseconds), expired records are not recovered
+     * @throws IOException IO exception
+     */
+    ParsecDiskResponseCache(
+        final Path directory,
+        final int segmentSize,
+        final int maxSegments,
+        final long now
+    ) throws IOException {
+        if (segmentSize <= HEADER_SIZE || maxSegments < 1) {
+            throw new IllegalArgumentException("invalid segment size or count: " + segmentSize + ", " + maxSegments);
+        }
+
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSegments = maxSegments;
+        Files.createDirectories(directory);
+
+        Map<Long, Path> files = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path file : stream) {
+                Matcher matcher = SEGMENT_FILE.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    files.put(Long.parseLong(matcher.group(1)), file);
+                }
+            }
+        }
+        for (Map.Entry<Long, Path> file : files.entrySet()) {
+            Segment segment = new Segment(file.getKey(), file.getValue());
+            segments.add(segment);
+            recover(segment, now);
+        }
+
+        if (segments.isEmpty()) {
+            segments.add(new Segment(0, segmentPath(0)));
+        }
+        while (segments.size() > maxSegments) {
+            compact();
+        }
+        LOGGER.debug("Recovered " + index.size() + " cached responses from " + directory);
+    }
+
+    /**
+     * Get the key of a request: its fingerprint, so that requests used as normalized cache keys are stored by
+     * their normalized fields. Only identical across restarts if the fingerprint is stable.
+     *
+     * @param request request
+     * @return key
+     */
+    static String key(final ParsecAsyncHttpRequest request) {
+        return Base64.getEncoder().encodeToString(request.getFingerprint());
+    }
+
+    /**
+     * Get a stored response.
+     *
+     * @param request request
+     * @param now now (epoch milliseconds)
+     * @return stored response, or null if absent or expired
+     */
+    Record get(final ParsecAsyncHttpRequest request, final long now) {
+        if (!request.isFingerprintStable()) {
+            return null;
+        }
+        String key = key(request);
+        byte[] payload;
+
+        lock.readLock().lock();
+        try {
+            Location location = index.get(key);
+            if (location == null || location.keepUntil <= now) {
+                return null;
+            }
+            payload = location.segment.read(location.offset + HEADER_SIZE, location.length - HEADER_SIZE);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        try {
+            return decode(payload);
+        } catch (IOException e) {
+            LOGGER.warn("Invalid cached response record: " + request.getUrl(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Whether a response is stored, expired or not.
+     *
+     * @param request request
+     * @return true if stored
+     */
+    boolean contains(final ParsecAsyncHttpRequest request) {
+        if (!request.isFingerprintStable()) {
+            return false;
+        }
+        String key = key(request);
+        lock.readLock().lock();
+        try {
+            return index.containsKey(key);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Store a response, unless the same response is already stored or the request key is not stable
+     * across restarts.
+     *
+     * @param request request
+     * @param response response
+     * @param requestTime time the request was sent (epoch milliseconds)
+     * @param responseTime time the response was received (epoch milliseconds)
+     * @param keepUntil time after which the response is useless (epoch milliseconds)
+     * @throws IOException IO exception
+     */
+    void put(
+        final ParsecAsyncHttpRequest request,
+        final Response response,
+        final long requestTime,
+        final long responseTime,
+        final long keepUntil
+    ) throws IOException {
+        if (!request.isFingerprintStable()) {
+            return;
+        }
+        String key = key(request);
+
+        lock.writeLock().lock();
+        try {
+            Location existing = index.get(key);
+            if (existing != null && existing.responseTime == responseTime) {
+                return;
+            }
+
+            byte[] payload = encodePut(key, response, requestTime, responseTime, keepUntil);
+            Location location = append(payload, responseTime, keepUntil);
+            if (location == null) {
+                LOGGER.debug("Response too large for disk cache: " + request.getUrl());
+                removeLocked(key);
+                return;
+            }
+            location.segment.liveBytes += location.length;
+            release(index.put(key, location));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove a stored response.
+     *
+     * @param request request
+     * @throws IOException IO exception
+     */
+    void remove(final ParsecAsyncHttpRequest request) throws IOException {
+        lock.writeLock().lock();
+        try {
+            removeLocked(key(request));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Drop expired responses from the index, their records are removed on compaction.
+     *
+     * @param now now (epoch milliseconds)
+     */
+    void cleanUp(final long now) {
+        lock.writeLock().lock();
+        try {
+            Iterator<Location> locations = index.values().iterator();
+            while (locations.hasNext()) {
+                Location location = locations.next();
+                if (location.keepUntil <= now) {
+                    release(location);
+                    locations.remove();
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Get number of stored responses.
+     *
+     * @return size
+     */
+    int size() {
+        lock.readLock().lock();
+        try {
+            return index.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get number of segments.
+     *
+     * @return segment count
+     */
+    int getSegmentCount() {
+        lock.readLock().lock();
+        try {
+            return segments.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Flush segments to disk and close them.
+     */
+    void close() {
+        lock.writeLock().lock();
+        try {
+            for (Segment segment : segments) {
+                segment.close();
+            }
+            segments.clear();
+            index.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Write a remove record and drop the key from the index, with the write lock held.
+     *
+     * @param key key
+     * @throws IOException IO exception
+     */
+    private void removeLocked(final String key) throws IOException {
+        Location removed = index.remove(key);
+        if (removed != null) {
+            release(removed);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(REMOVE);
+            writeString(out, key);
+            append(bytes.toByteArray(), 0, 0);
+        }
+    }
+
+    /**
+     * Account a record no longer referenced by the index.
+     *
+     * @param location record, may be null
+     */
+    private static void release(final Location location) {
+        if (location != null) {
+            location.segment.liveBytes -= location.length;
+        }
+    }
+
+    /**
+     * Append a record to the newest segment, rolling to a new segment if full, with the write lock held.
+     *
+     * @param payload payload
+     * @param responseTime response time of a put record
+     * @param keepUntil keep until of a put record
+     * @return location, or null if the record is larger than half a segment
+     * @throws IOException IO exception
+     */
+    private Location append(final byte[] payload, final long responseTime, final long keepUntil) throws IOException {
+        int length = HEADER_SIZE + payload.length;
+        if (length > segmentSize / 2) {
+            return null;
+        }
+
+        if (segments.getLast().remaining() < length) {
+            Segment last = segments.getLast();
+            segments.add(new Segment(last.id + 1, segmentPath(last.id + 1)));
+            while (segments.size() > maxSegments) {
+                compact();
+            }
+        }
+        return segments.getLast().write(payload, responseTime, keepUntil);
+    }
+
+    /**
+     * Compact the oldest segment, with the write lock held.
+     *
+     * @throws IOException IO exception
+     */
+    private void compact() throws IOException {
+        Segment oldest = segments.removeFirst();
+        Segment newest = segments.getLast();
+        boolean copy = oldest.liveBytes * 2 < segmentSize;
+
+        Iterator<Location> locations = index.values().iterator();
+        while (locations.hasNext()) {
+            Location location = locations.next();
+            if (location.segment != oldest) {
+                continue;
+            }
+
+            if (copy && newest.remaining() >= location.length) {
+                Location copied = newest.write(
+                    oldest.read(location.offset + HEADER_SIZE, location.length - HEADER_SIZE),
+                    location.responseTime, location.keepUntil);
+                location.segment = copied.segment;
+                location.offset = copied.offset;
+                copied.segment.liveBytes += location.length;
+            } else {
+                locations.remove();
+            }
+        }
+
+        LOGGER.debug("Compacted disk cache segment " + oldest.id + (copy ? "" : ", live records dropped"));
+        oldest.close();
+        Files.deleteIfExists(oldest.path);
+    }
+
+    /**
+     * Rebuild the index from the records of a segment.
+     *
+     * @param segment segment
+     * @param now now (epoch milliseconds)
+     */
+    private void recover(final Segment segment, final long now) {
+        int position = 0;
+        while (position + HEADER_SIZE <= segment.buffer.limit()) {
+            if (segment.buffer.getInt(position) != MAGIC) {
+                break;
+            }
+
+            int payloadLength = segment.buffer.getInt(position + 4);
+            if (payloadLength < 0 || position + HEADER_SIZE + payloadLength > segment.buffer.limit()) {
+                LOGGER.warn("Truncated record in " + segment.path + " at " + position);
+                break;
+            }
+
+            byte[] payload = segment.read(position + HEADER_SIZE, payloadLength);
+            if (checksum(payload) != segment.buffer.getInt(position + 8)) {
+                LOGGER.warn("Corrupt record in " + segment.path + " at " + position);
+                break;
+            }
+
+            try {
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+                byte type = in.readByte();
+                String key = readString(in);
+                if (type == PUT) {
+                    in.readLong();
+                    long responseTime = in.readLong();
+                    long keepUntil = in.readLong();
+                    Location previous = index.remove(key);
+                    release(previous);
+                    if (keepUntil > now) {
+                        int length = HEADER_SIZE + payloadLength;
+                        index.put(key, new Location(segment, position, length, responseTime, keepUntil));
+                        segment.liveBytes += length;
+                    }
+                } else {
+                    release(index.remove(key));
+                }
+            } catch (IOException e) {
+                LOGGER.warn("Invalid record in " + segment.path + " at " + position, e);
+                break;
+            }
+            position += HEADER_SIZE + payloadLength;
+        }
+        segment.position = position;
+    }
+
+    /**
+     * Get path of a segment file.
+     *
+     * @param id segment id
+     * @return path
+     */
+    private Path segmentPath(final long id) {
+        return directory.resolve("segment-" + id + ".log");
+    }
+
+    /**
+     * Encode a put record payload.
+     *
+     * @param key key
+     * @param response response
+     * @param requestTime request time
+     * @param responseTime response time
+     * @param keepUntil keep until
+     * @return payload
+     * @throws IOException IO exception
+     */
+    private static byte[] encodePut(
+        final String key,
+        final Response response,
+        final long requestTime,
+        final long responseTime,
+        final long keepUntil
+    ) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(PUT);
+        writeString(out, key);
+        out.writeLong(requestTime);
+        out.writeLong(responseTime);
+        out.writeLong(keepUntil);
+        out.writeInt(response.getStatus());
+
+        List<String[]> headers = new ArrayList<>();
+        for (Map.Entry<String, List<String>> header : response.getStringHeaders().entrySet()) {
+            for (String value : header.getValue()) {
+                headers.add(new String[] {header.getKey(), value});
+            }
+        }
+        out.writeInt(headers.size());
+        for (String[] header : headers) {
+            writeString(out, header[0]);
+            writeString(out, header[1]);
+        }
+
+        Object entity = response.getEntity();
+        if (entity instanceof String) {
+            out.writeByte(STRING_BODY);
+            writeBytes(out, ((String) entity).getBytes(StandardCharsets.UTF_8));
+        } else if (entity instanceof byte[]) {
+            out.writeByte(BINARY_BODY);
+            writeBytes(out, (byte[]) entity);
+        } else if (entity instanceof ParsecResponseBody) {
+            out.writeByte(BYTES_BODY);
+            writeBytes(out, ((ParsecResponseBody) entity).getBytes());
+        } else {
+            out.writeByte(NO_BODY);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decode a put record payload.
+     *
+     * @param payload payload
+     * @return record
+     * @throws IOException IO exception
+     */
+    private static Record decode(final byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        if (in.readByte() != PUT) {
+            throw new IOException("not a put record");
+        }
+        readString(in);
+        long requestTime = in.readLong();
+        long responseTime = in.readLong();
+        in.readLong();
+
+        Response.ResponseBuilder builder = Response.status(in.readInt());
+        int headerCount = in.readInt();
+        for (int i = 0; i < headerCount; i++) {
+            builder.header(readString(in), readString(in));
+        }
+
+        byte bodyType = in.readByte();
+        if (bodyType == STRING_BODY) {
+            builder.entity(new String(readBytes(in), StandardCharsets.UTF_8));
+        } else if (bodyType == BINARY_BODY) {
+            builder.entity(readBytes(in));
+        } else if (bodyType == BYTES_BODY) {
+            Response headers = builder.build();
+            Object entity = ParsecCachedResponse.toEntity(readBytes(in), ParsecResponseBody.class, headers);
+            return new Record(Response.fromResponse(headers).entity(entity).build(), requestTime, responseTime);
+        }
+        return new Record(builder.build(), requestTime, responseTime);
+    }
+
+    /**
+     * Write a string as length and UTF-8 bytes.
+     *
+     * @param out output
+     * @param value string, may be null
+     * @throws IOException IO exception
+     */
+    private static void writeString(final DataOutputStream out, final String value) throws IOException {
+        writeBytes(out, value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Read a string written by {@link #writeString(DataOutputStream, String)}.
+     *
+     * @param in input
+     * @return string
+     * @throws IOException IO exception
+     */
+    private static String readString(final DataInputStream in) throws IOException {
+        return new String(readBytes(in), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Write bytes with their length.
+     *
+     * @param out output
+     * @param value bytes
+     * @throws IOException IO exception
+     */
+    private static void writeBytes(final DataOutputStream out, final byte[] value) throws IOException {
+        out.writeInt(value.length);
+        out.write(value);
+    }
+
+    /**
+     * Read bytes written by {@link #writeBytes(DataOutputStream, byte[])}.
+     *
+     * @param in input
+     * @return bytes
+     * @throws IOException IO exception
+     */
+    private static byte[] readBytes(final DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > in.available()) {
+            throw new IOException("invalid length: " + length);
+        }
+        byte[] value = new byte[length];
+        in.readFully(value);
+        return value;
+    }
+
+    /**
+     * Compute checksum.
+     *
+     * @param payload payload
+     * @return CRC32 checksum
+     */
+    private static int checksum(final byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Stored response.
+     */
+    static final class Record {
+        /**
+         * Response.
+         */
+        private final Response response;
+
+        /**
+         * Time the request was sent (epoch milliseconds).
+         */
+        private final long requestTime;
+
+        /**
+         * Time the response was received (epoch milliseconds).
+         */
+        private final long responseTime;
+
+        /**
+         * Constructor.
+         *
+         * @param response response
+         * @param requestTime request time
+         * @param responseTime response time
+         */
+        private Record(final Response response, final long requestTime, final long responseTime) {
+            this.response = response;
+            this.requestTime = requestTime;
+            this.responseTime = responseTime;
+        }
+
+        /**
+         * Get response.
+         *
+         * @return response
+         */
+        Response getResponse() {
+            return response;
+        }
+
+        /**
+         * Get time the request was sent.
+         *
+         * @return request time (epoch milliseconds)
+         */
+        long getRequestTime() {
+            return requestTime;
+        }
+
+        /**
+         * Get time the response was received.
+         *
+         * @return response time (epoch milliseconds)
+         */
+        long getResponseTime() {
+            return responseTime;
+        }
+    }
+
+    /**
+     * Location of the latest put record of a key.
+     */
+    private static final class Location {
+        /**
+         * Segment.
+         */
+        private Segment segment;
+
+        /**
+         * Record offset in segment.
+         */
+        private int offset;
+
+        /**
+         * Record length, header included.
+         */
+        private final int length;
+
+        /**
+         * Response time.
+         */
+        private final long responseTime;
+
+        /**
+         * Keep until.
+         */
+        private final long keepUntil;
+
+        /**
+         * Constructor.
+         *
+         * @param segment segment
+         * @param offset record offset
+         * @param length record length
+         * @param responseTime response time
+         * @param keepUntil keep until
+         */
+        private Location(
+            final Segment segment,
+            final int offset,
+            final int length,
+            final long responseTime,
+            final long keepUntil
+        ) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+            this.responseTime = responseTime;
+            this.keepUntil = keepUntil;
+        }
+    }
+
+    /**
+     * Memory-mapped segment file.
+     */
+    private final class Segment {
+        /**
+         * Segment id, increasing.
+         */
+        private final long id;
+
+        /**
+         * Path.
+         */
+        private final Path path;
+
+        /**
+         * Channel.
+         */
+        private final FileChannel channel;
+
+        /**
+         * Mapped buffer.
+         */
+        private final MappedByteBuffer buffer;
+
+        /**
+         * Write position.
+         */
+        private int position;
+
+        /**
+         * Bytes of records referenced by the index.
+         */
+        private long liveBytes;
+
+        /**
+         * Constructor, creates the file if absent.
+         *
+         * @param id segment id
+         * @param path path
+         * @throws IOException IO exception
+         */
+        private Segment(final long id, final Path path) throws IOException {
+            this.id = id;
+            this.path = path;
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            // segments written with another segment size keep their size
+            long size = channel.size() > 0 ? Math.min(channel.size(), Integer.MAX_VALUE) : segmentSize;
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+
+        /**
+         * Get remaining space.
+         *
+         * @return remaining bytes
+         */
+        private int remaining() {
+            return buffer.limit() - position;
+        }
+
+        /**
+         * Write a record.
+         *
+         * @param payload payload
+         * @param responseTime response time of a put record
+         * @param keepUntil keep until of a put record
+         * @return location
+         */
+        private Location write(final byte[] payload, final long responseTime, final long keepUntil) {
+            ByteBuffer out = buffer.duplicate();
+            out.position(position);
+            out.putInt(MAGIC);
+            out.putInt(payload.length);
+            out.putInt(checksum(payload));
+            out.put(payload);
+
+            int length = HEADER_SIZE + payload.length;
+            Location location = new Location(this, position, length, responseTime, keepUntil);
+            position += length;
+            return location;
+        }
+
+        /**
+         * Read bytes.
+         *
+         * @param offset offset
+         * @param length length
+         * @return bytes
+         */
+        private byte[] read(final int offset, final int length) {
+            byte[] bytes = new byte[length];
+            ByteBuffer in = buffer.duplicate();
+            in.position(offset);
+            in.get(bytes);
+            return bytes;
+        }
+
+        /**
+         * Flush and close.
+         */
+        private void close() {
+            try {
+                buffer.force();
+                channel.close();
+            } catch (IOException e) {
+                LOGGER.warn("Failed to close disk cache segment " + path, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+/**
+ * Reactive Streams interfaces of the client, with the same methods and contract as
+ * {@code java.util.concurrent.Flow} (Java 9) and {@code org.reactivestreams}, for Java 8.
+ * Publishers of the client are bridged to either of them by delegating each method to the same method.
+ *
+ * @author sho
+ */
+public final class ParsecFlow {
+    /**
+     * Unused private constructor.
+     */
+    private ParsecFlow() {
+
+    }
+
+    /**
+     * Producer of items received by subscribers on their demand.
+     *
+     * @param <T> item type
+     */
+    @FunctionalInterface
+    public interface Publisher<T> {
+        /**
+         * Subscribe, {@link Subscriber#onSubscribe(Subscription)} is called first.
+         *
+         * @param subscriber subscriber
+         */
+        void subscribe(Subscriber<? super T> subscriber);
+    }
+
+    /**
+     * Receiver of items.
+     *
+     * @param <T> item type
+     */
+    public interface Subscriber<T> {
+        /**
+         * Called before any other method of a subscription.
+         *
+         * @param subscription subscription, nothing is received before {@link Subscription#request(long)}
+         */
+        void onSubscribe(Subscription subscription);
+
+        /**
+         * Called with the next item, at most as many times as requested.
+         *
+         * @param item item
+         */
+        void onNext(T item);
+
+        /**
+         * Called on failure, no other method is called after.
+         *
+         * @param throwable failure
+         */
+        void onError(Throwable throwable);
+
+        /**
+         * Called once all items were received, no other method is called after.
+         */
+        void onComplete();
+    }
+
+    /**
+     * Link between a publisher and a subscriber.
+     */
+    public interface Subscription {
+        /**
+         * Add demand.
+         *
+         * @param n number of items, must be positive
+         */
+        void request(long n);
+
+        /**
+         * Stop receiving items, releasing the resources of the subscription (e.g. the connection).
+         */
+        void cancel();
+    }
+
+    /**
+     * Subscriber and publisher, transforming items.
+     *
+     * @param <T> received item type
+     * @param <R> published item type
+     */
+    public interface Processor<T, R> extends Subscriber<T>, Publisher<R> {
+    }
+}
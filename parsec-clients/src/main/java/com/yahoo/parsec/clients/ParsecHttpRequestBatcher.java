@@ -0,0 +1,324 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import javax.ws.rs.core.Response;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+
+/**
+ * Executes a batch of requests with at most a given number in flight, under a deadline for the whole batch.
+ * With a quorum, the batch completes as soon as enough requests received a 2xx response (scatter-gather).
+ * <p>
+ * No thread waits for the batch: the next request is sent from the completion of a previous one, and the
+ * deadline is a timer on the client scheduler.
+ *
+ * @author sho
+ */
+final class ParsecHttpRequestBatcher {
+    /**
+     * Scheduler for batch deadlines.
+     */
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * Constructor.
+     *
+     * @param scheduler scheduler for batch deadlines
+     */
+    ParsecHttpRequestBatcher(final ScheduledExecutorService scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Execute requests.
+     *
+     * @param requests requests
+     * @param options batch options
+     * @param execution executes one request
+     * @return {@literal CompletableFuture<List<ParsecBatchItem>>} with one item per request, in request order
+     */
+    CompletableFuture<List<ParsecBatchItem>> execute(
+        final List<ParsecAsyncHttpRequest> requests,
+        final ParsecBatchOptions options,
+        final Function<ParsecAsyncHttpRequest, CompletableFuture<Response>> execution
+    ) {
+        final BatchFuture result = new BatchFuture(new ArrayList<>(requests), options, execution);
+        if (requests.isEmpty()) {
+            result.complete(Collections.emptyList());
+            return result;
+        }
+
+        if (options.getDeadline() > 0) {
+            result.setTimer(scheduler.schedule(result::expire, options.getDeadline(), TimeUnit.MILLISECONDS));
+        }
+        result.send(Math.min(options.getMaxInFlight(), requests.size()));
+        return result;
+    }
+
+    /**
+     * {@link CompletableFuture} of a batch, completed when every item has a result, cancels the requests
+     * in flight when completed early.
+     */
+    private static final class BatchFuture extends CompletableFuture<List<ParsecBatchItem>> {
+        /**
+         * Requests.
+         */
+        private final List<ParsecAsyncHttpRequest> requests;
+
+        /**
+         * Whether the first failure completes the batch.
+         */
+        private final boolean failFast;
+
+        /**
+         * Number of 2xx responses that completes the batch, 0 for none.
+         */
+        private final int quorum;
+
+        /**
+         * Executes one request.
+         */
+        private final Function<ParsecAsyncHttpRequest, CompletableFuture<Response>> execution;
+
+        /**
+         * Item per request, null until its result is known.
+         */
+        private final AtomicReferenceArray<ParsecBatchItem> items;
+
+        /**
+         * Response future per sent request.
+         */
+        private final AtomicReferenceArray<CompletableFuture<Response>> attempts;
+
+        /**
+         * Index of the next request to send.
+         */
+        private final AtomicInteger next = new AtomicInteger();
+
+        /**
+         * Items without a result.
+         */
+        private final AtomicInteger pending;
+
+        /**
+         * Sends requested and not yet performed, only one thread sends at a time.
+         */
+        private final AtomicInteger sends = new AtomicInteger();
+
+        /**
+         * Requests with a 2xx response.
+         */
+        private final AtomicInteger succeeded = new AtomicInteger();
+
+        /**
+         * Whether the batch was failed or cancelled.
+         */
+        private final AtomicBoolean stopped = new AtomicBoolean();
+
+        /**
+         * Pending deadline timer.
+         */
+        private volatile Future<?> timer;
+
+        /**
+         * Constructor.
+         *
+         * @param requests requests
+         * @param options batch options
+         * @param execution executes one request
+         */
+        private BatchFuture(
+            final List<ParsecAsyncHttpRequest> requests,
+            final ParsecBatchOptions options,
+            final Function<ParsecAsyncHttpRequest, CompletableFuture<Response>> execution
+        ) {
+            this.requests = requests;
+            this.failFast = options.getPolicy() == ParsecBatchOptions.Policy.FAIL_FAST;
+            this.quorum = options.getQuorum();
+            this.execution = execution;
+            items = new AtomicReferenceArray<>(requests.size());
+            attempts = new AtomicReferenceArray<>(requests.size());
+            pending = new AtomicInteger(requests.size());
+        }
+
+        /**
+         * Send the next requests in a loop rather than recursively, as requests completing synchronously
+         * (e.g. cache hits or rejections) request the next send from within the current one.
+         *
+         * @param count number of requests to send
+         */
+        private void send(final int count) {
+            if (sends.getAndAdd(count) != 0) {
+                return;
+            }
+
+            int missed = count;
+            do {
+                for (int i = 0; i < missed; i++) {
+                    sendNext();
+                }
+                missed = sends.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        /**
+         * Send the next request, if any and the batch is not done.
+         */
+        private void sendNext() {
+            if (stopped.get() || isDone()) {
+                return;
+            }
+            final int index = next.getAndIncrement();
+            if (index >= requests.size()) {
+                return;
+            }
+
+            CompletableFuture<Response> attempt;
+            try {
+                attempt = execution.apply(requests.get(index));
+            } catch (RuntimeException e) {
+                attempt = new CompletableFuture<>();
+                attempt.completeExceptionally(e);
+            }
+            attempts.set(index, attempt);
+            attempt.whenComplete((response, throwable) -> onComplete(index, response, throwable));
+
+            if (stopped.get() || isDone()) {
+                attempt.cancel(true);
+            }
+        }
+
+        /**
+         * Record the result of a request and send the next one, or settle the batch if it reached its quorum.
+         *
+         * @param index request index
+         * @param response response
+         * @param throwable failure
+         */
+        private void onComplete(final int index, final Response response, final Throwable throwable) {
+            Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null
+                ? throwable.getCause() : throwable;
+            if (cause != null && failFast) {
+                fail(cause);
+                return;
+            }
+
+            setItem(index, new ParsecBatchItem(requests.get(index), cause == null ? response : null, cause));
+            if (quorum > 0 && cause == null
+                && response.getStatusInfo().getFamily() == Response.Status.Family.SUCCESSFUL
+                && succeeded.incrementAndGet() == quorum) {
+                settle(request -> new CancellationException("quorum reached: " + request.getUrl()));
+                return;
+            }
+            send(1);
+        }
+
+        /**
+         * Fail the items without a result with a {@link TimeoutException} at the deadline.
+         */
+        private void expire() {
+            if (isDone()) {
+                return;
+            }
+            if (failFast) {
+                fail(new TimeoutException("batch deadline exceeded"));
+                return;
+            }
+
+            settle(request -> new TimeoutException("batch deadline exceeded: " + request.getUrl()));
+        }
+
+        /**
+         * Stop sending and fail the items without a result, the requests in flight are cancelled by the last item.
+         *
+         * @param failure failure of the items without a result
+         */
+        private void settle(final Function<ParsecAsyncHttpRequest, Throwable> failure) {
+            next.set(requests.size());
+            for (int i = 0; i < requests.size(); i++) {
+                if (items.get(i) == null) {
+                    setItem(i, new ParsecBatchItem(requests.get(i), null, failure.apply(requests.get(i))));
+                }
+            }
+        }
+
+        /**
+         * Cancel the requests in flight, then complete the batch exceptionally.
+         *
+         * @param throwable failure
+         */
+        private void fail(final Throwable throwable) {
+            if (stopped.compareAndSet(false, true)) {
+                cancelAttempts();
+                completeExceptionally(throwable);
+            }
+        }
+
+        /**
+         * Set the item of a request, unless it already has one, completing the batch with the last one.
+         *
+         * @param index request index
+         * @param item item
+         */
+        private void setItem(final int index, final ParsecBatchItem item) {
+            if (items.compareAndSet(index, null, item) && pending.decrementAndGet() == 0) {
+                List<ParsecBatchItem> results = new ArrayList<>(items.length());
+                for (int i = 0; i < items.length(); i++) {
+                    results.add(items.get(i));
+                }
+                cancelAttempts();
+                complete(Collections.unmodifiableList(results));
+            }
+        }
+
+        /**
+         * Set deadline timer.
+         *
+         * @param timer timer
+         */
+        private void setTimer(final Future<?> timer) {
+            this.timer = timer;
+            if (isDone()) {
+                timer.cancel(false);
+            }
+        }
+
+        /**
+         * Cancel timer and requests still in flight.
+         */
+        private void cancelAttempts() {
+            Future<?> pendingTimer = timer;
+            if (pendingTimer != null) {
+                pendingTimer.cancel(false);
+            }
+            for (int i = 0; i < attempts.length(); i++) {
+                CompletableFuture<Response> attempt = attempts.get(i);
+                if (attempt != null && !attempt.isDone()) {
+                    attempt.cancel(true);
+                }
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            stopped.set(true);
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            cancelAttempts();
+            return cancelled;
+        }
+    }
+}
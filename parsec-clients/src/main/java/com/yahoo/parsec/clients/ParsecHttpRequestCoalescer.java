@@ -0,0 +1,98 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * Single-flight execution: identical requests (by {@link ParsecAsyncHttpRequest#equals(Object)}) in flight
+ * at the same time share one call and its response. Nothing is kept once the call completes.
+ *
+ * @param <T> response type
+ * @author sho
+ */
+final class ParsecHttpRequestCoalescer<T> {
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(ParsecHttpRequestCoalescer.class);
+
+    /**
+     * Calls in flight.
+     */
+    private final ConcurrentMap<ParsecAsyncHttpRequest, CompletableFuture<T>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Execute request, or join the identical request in flight.
+     *
+     * @param request request
+     * @param execution executes the request
+     * @return {@literal CompletableFuture<T>} of this caller, cancelling it does not affect other callers
+     */
+    CompletableFuture<T> execute(
+        final ParsecAsyncHttpRequest request,
+        final Function<ParsecAsyncHttpRequest, CompletableFuture<T>> execution
+    ) {
+        CompletableFuture<T> shared = new CompletableFuture<>();
+        CompletableFuture<T> existing = inFlight.putIfAbsent(request, shared);
+
+        if (existing != null) {
+            LOGGER.debug("Joining request in flight: " + request.getUrl());
+            return join(existing);
+        }
+
+        final CompletableFuture<T> future;
+        try {
+            future = execution.apply(request);
+        } catch (RuntimeException e) {
+            inFlight.remove(request, shared);
+            shared.completeExceptionally(e);
+            throw e;
+        }
+
+        future.whenComplete((response, throwable) -> {
+            // removed before completion so that callers reacting to the response start a new call
+            inFlight.remove(request, shared);
+            if (throwable == null) {
+                shared.complete(response);
+            } else {
+                shared.completeExceptionally(throwable);
+            }
+        });
+        return join(shared);
+    }
+
+    /**
+     * Get number of calls in flight.
+     *
+     * @return calls in flight
+     */
+    int size() {
+        return inFlight.size();
+    }
+
+    /**
+     * Create a caller future completed with the shared call.
+     *
+     * @param shared shared call
+     * @return caller future
+     */
+    private CompletableFuture<T> join(final CompletableFuture<T> shared) {
+        CompletableFuture<T> caller = new CompletableFuture<>();
+        shared.whenComplete((response, throwable) -> {
+            if (throwable == null) {
+                caller.complete(response);
+            } else {
+                caller.completeExceptionally(throwable);
+            }
+        });
+        return caller;
+    }
+}
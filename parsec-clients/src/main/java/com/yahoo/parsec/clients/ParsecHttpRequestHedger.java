@@ -0,0 +1,335 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import com.ning.http.client.AsyncHandler;
+import com.ning.http.util.AsyncHttpProviderUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Sends a second copy of a slow GET request (hedged request) and returns whichever response completes first.
+ * <p>
+ * Hedges are limited by a per-client budget: every hedgeable request earns a fraction of a hedge token,
+ * every hedge spends a full token, so hedges can never exceed the budget ratio of the traffic (plus a small burst).
+ *
+ * @author sho
+ */
+final class ParsecHttpRequestHedger {
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(ParsecHttpRequestHedger.class);
+
+    /**
+     * Budget units per hedge token.
+     */
+    private static final long TOKEN = 1000;
+
+    /**
+     * Max hedge tokens (burst).
+     */
+    private static final long MAX_TOKENS = 10 * TOKEN;
+
+    /**
+     * Latency window size per host.
+     */
+    private static final int LATENCY_WINDOW_SIZE = 256;
+
+    /**
+     * Min latency samples before using percentile hedge delay.
+     */
+    private static final int MIN_LATENCY_SAMPLES = 20;
+
+    /**
+     * Scheduler for hedge delays.
+     */
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * Budget units earned per hedgeable request.
+     */
+    private final long tokensPerRequest;
+
+    /**
+     * Available budget units.
+     */
+    private final AtomicLong tokens;
+
+    /**
+     * Time to response headers (microseconds) per host, waited time for copies cancelled before headers.
+     */
+    private final ConcurrentMap<String, ParsecLatencyWindow> latencyWindows;
+
+    /**
+     * Constructor.
+     *
+     * @param scheduler scheduler for hedge delays
+     * @param budget max ratio of hedges over hedgeable requests
+     */
+    ParsecHttpRequestHedger(final ScheduledExecutorService scheduler, final double budget) {
+        this.scheduler = scheduler;
+        tokensPerRequest = (long) (Math.max(0, budget) * TOKEN);
+        tokens = new AtomicLong(tokensPerRequest > 0 ? MAX_TOKENS : 0);
+        latencyWindows = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Whether request can be hedged.
+     *
+     * @param request request
+     * @return true if request is a GET with hedging enabled
+     */
+    static boolean isHedgeable(final ParsecAsyncHttpRequest request) {
+        return "GET".equals(request.getMethod())
+            && (request.getHedgeAfter() > 0 || request.getHedgeAfterPercentile() > 0);
+    }
+
+    /**
+     * Execute request, hedging it if no response headers are received within the hedge delay.
+     *
+     * @param request request
+     * @param asyncHandlerSupplier supplies a new async handler for every copy
+     * @param execution executes one copy with the given handler wrapper
+     * @param <T> response type
+     * @return {@literal CompletableFuture<T>} completed by the first copy to complete successfully
+     */
+    <T> CompletableFuture<T> execute(
+        final ParsecAsyncHttpRequest request,
+        final Supplier<AsyncHandler<T>> asyncHandlerSupplier,
+        final Function<ParsecAsyncHandlerWrapper<T>, CompletableFuture<T>> execution
+    ) {
+        earnToken();
+
+        final ParsecLatencyWindow latencyWindow = getLatencyWindow(request);
+
+        final HedgeFuture<T> result = new HedgeFuture<>();
+        final ParsecAsyncHandlerWrapper<T> primaryWrapper = newWrapper(request, asyncHandlerSupplier, latencyWindow);
+        result.addAttempt(executeAttempt(execution, primaryWrapper, latencyWindow));
+
+        long delay = getHedgeDelay(request, latencyWindow);
+        if (delay > 0 && !result.isDone()) {
+            result.setTimer(scheduler.schedule(() -> {
+                if (result.isDone() || primaryWrapper.isHeadersReceived()) {
+                    return;
+                }
+                if (!spendToken()) {
+                    LOGGER.debug("Hedge budget exhausted: " + request.getUrl());
+                    return;
+                }
+                LOGGER.debug("Hedging request after " + delay + "ms: " + request.getUrl());
+                result.addAttempt(executeAttempt(
+                    execution, newWrapper(request, asyncHandlerSupplier, latencyWindow), latencyWindow));
+            }, delay, TimeUnit.MILLISECONDS));
+        }
+
+        return result;
+    }
+
+    /**
+     * Get latency window of request host.
+     *
+     * @param request request
+     * @return {@link ParsecLatencyWindow}
+     */
+    ParsecLatencyWindow getLatencyWindow(final ParsecAsyncHttpRequest request) {
+        return latencyWindows.computeIfAbsent(
+            AsyncHttpProviderUtils.getBaseUrl(request.getNingRequest().getUri()),
+            key -> new ParsecLatencyWindow(LATENCY_WINDOW_SIZE)
+        );
+    }
+
+    /**
+     * Get hedge delay: percentile of recent time to headers if enough samples, hedge after otherwise.
+     *
+     * @param request request
+     * @param latencyWindow latency window of request host
+     * @return hedge delay in milliseconds, 0 for no hedge
+     */
+    long getHedgeDelay(final ParsecAsyncHttpRequest request, final ParsecLatencyWindow latencyWindow) {
+        if (request.getHedgeAfterPercentile() > 0 && latencyWindow.size() >= MIN_LATENCY_SAMPLES) {
+            return Math.max(1, TimeUnit.MICROSECONDS.toMillis(
+                latencyWindow.percentile(request.getHedgeAfterPercentile())));
+        }
+        return request.getHedgeAfter();
+    }
+
+    /**
+     * Get available hedge tokens.
+     *
+     * @return available hedge tokens
+     */
+    double getAvailableTokens() {
+        return (double) tokens.get() / TOKEN;
+    }
+
+    /**
+     * Create a handler wrapper that records time to headers.
+     *
+     * @param request request
+     * @param asyncHandlerSupplier async handler supplier
+     * @param latencyWindow latency window
+     * @param <T> response type
+     * @return {@link ParsecAsyncHandlerWrapper}
+     */
+    private <T> ParsecAsyncHandlerWrapper<T> newWrapper(
+        final ParsecAsyncHttpRequest request,
+        final Supplier<AsyncHandler<T>> asyncHandlerSupplier,
+        final ParsecLatencyWindow latencyWindow
+    ) {
+        ParsecAsyncHandlerWrapper<T> wrapper =
+            new ParsecAsyncHandlerWrapper<>(asyncHandlerSupplier.get(), request.getNingRequest());
+        wrapper.addProgressListener(progress -> {
+            if (progress.getStartTransferTime() > 0) {
+                latencyWindow.record(progress.getStartTransferTime());
+            }
+        });
+        return wrapper;
+    }
+
+    /**
+     * Execute one copy, recording the time it waited if cancelled before its headers: a primary cancelled
+     * because its hedge won is the slow tail, leaving it out would drift the hedge delay low.
+     *
+     * @param execution executes one copy with the given handler wrapper
+     * @param wrapper handler wrapper
+     * @param latencyWindow latency window
+     * @param <T> response type
+     * @return {@literal CompletableFuture<T>} of the copy
+     */
+    private static <T> CompletableFuture<T> executeAttempt(
+        final Function<ParsecAsyncHandlerWrapper<T>, CompletableFuture<T>> execution,
+        final ParsecAsyncHandlerWrapper<T> wrapper,
+        final ParsecLatencyWindow latencyWindow
+    ) {
+        final long start = System.nanoTime();
+        final CompletableFuture<T> attempt = execution.apply(wrapper);
+        attempt.whenComplete((response, throwable) -> {
+            // a lower bound of its time to headers
+            if (attempt.isCancelled() && !wrapper.isHeadersReceived()) {
+                latencyWindow.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+            }
+        });
+        return attempt;
+    }
+
+    /**
+     * Earn budget for one hedgeable request.
+     */
+    private void earnToken() {
+        if (tokensPerRequest > 0) {
+            tokens.getAndUpdate(current -> Math.min(MAX_TOKENS, current + tokensPerRequest));
+        }
+    }
+
+    /**
+     * Spend one hedge token.
+     *
+     * @return true if a token was available
+     */
+    private boolean spendToken() {
+        long current;
+        do {
+            current = tokens.get();
+            if (current < TOKEN) {
+                return false;
+            }
+        } while (!tokens.compareAndSet(current, current - TOKEN));
+        return true;
+    }
+
+    /**
+     * {@link CompletableFuture} completed by the first attempt to succeed, cancels the other attempts.
+     *
+     * @param <T> response type
+     */
+    private static final class HedgeFuture<T> extends CompletableFuture<T> {
+        /**
+         * Attempts.
+         */
+        private final List<CompletableFuture<T>> attempts = new CopyOnWriteArrayList<>();
+
+        /**
+         * Attempts in flight.
+         */
+        private final AtomicInteger pending = new AtomicInteger();
+
+        /**
+         * Pending hedge timer.
+         */
+        private volatile Future<?> timer;
+
+        /**
+         * Add attempt.
+         *
+         * @param attempt attempt
+         */
+        private void addAttempt(final CompletableFuture<T> attempt) {
+            attempts.add(attempt);
+            pending.incrementAndGet();
+
+            attempt.whenComplete((response, throwable) -> {
+                int left = pending.decrementAndGet();
+                if (throwable == null) {
+                    if (complete(response)) {
+                        cancelAttempts();
+                    }
+                } else if (left == 0 && completeExceptionally(throwable)) {
+                    cancelAttempts();
+                }
+            });
+
+            if (isDone()) {
+                attempt.cancel(true);
+            }
+        }
+
+        /**
+         * Set hedge timer.
+         *
+         * @param timer timer
+         */
+        private void setTimer(final Future<?> timer) {
+            this.timer = timer;
+            if (isDone()) {
+                timer.cancel(false);
+            }
+        }
+
+        /**
+         * Cancel timer and attempts still in flight.
+         */
+        private void cancelAttempts() {
+            Future<?> pendingTimer = timer;
+            if (pendingTimer != null) {
+                pendingTimer.cancel(false);
+            }
+            for (CompletableFuture<T> attempt : attempts) {
+                if (!attempt.isDone()) {
+                    attempt.cancel(true);
+                }
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            cancelAttempts();
+            return cancelled;
+        }
+    }
+}
@@ -5,18 +5,35 @@ package com.yahoo.parsec.clients;
 
 import com.ning.http.client.AsyncHandler;
 import com.ning.http.client.AsyncHttpClient;
+import com.ning.http.client.ListenableFuture;
 import com.ning.http.client.Request;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.ws.rs.core.Response;
-import java.util.ArrayList;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * {@link Callable} implementation that handles HTTP request retry based on response status code.
+ * <p>
+ * Retries are chained asynchronously on the completion of the previous attempt, no thread is
+ * blocked while an attempt is in flight or while waiting for the retry backoff. Attempts and backoffs
+ * are bounded by the request deadline, if any.
  *
  * @param <T>
  */
@@ -26,6 +43,16 @@ class ParsecHttpRequestRetryCallable<T> implements Callable<T> {
      */
     private static final Logger LOGGER = LoggerFactory.getLogger(ParsecHttpRequestRetryCallable.class);
 
+    /**
+     * Retry-After header.
+     */
+    private static final String RETRY_AFTER_HEADER = "Retry-After";
+
+    /**
+     * Max shift for exponential backoff (prevents overflow).
+     */
+    private static final int MAX_BACKOFF_SHIFT = 30;
+
     /**
      * Async handler.
      */
@@ -42,9 +69,19 @@ class ParsecHttpRequestRetryCallable<T> implements Callable<T> {
     private final ParsecAsyncHttpRequest request;
 
     /**
-     * Response list.
+     * Executor for attempt completion callbacks.
+     */
+    private final Executor executor;
+
+    /**
+     * Scheduler for retry backoff, null to retry immediately.
+     */
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * Retries performed.
      */
-    private List<T> responses;
+    private volatile int retries;
 
     /**
      * Constructor.
@@ -65,14 +102,34 @@ class ParsecHttpRequestRetryCallable<T> implements Callable<T> {
      */
     public ParsecHttpRequestRetryCallable(
             final AsyncHttpClient client, final ParsecAsyncHttpRequest request, final AsyncHandler<T> asyncHandler) {
+        this(client, request, asyncHandler, Runnable::run, null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param client client
+     * @param request request
+     * @param asyncHandler async handler
+     * @param executor executor for attempt completion callbacks
+     * @param scheduler scheduler for retry backoff
+     */
+    public ParsecHttpRequestRetryCallable(
+            final AsyncHttpClient client,
+            final ParsecAsyncHttpRequest request,
+            final AsyncHandler<T> asyncHandler,
+            final Executor executor,
+            final ScheduledExecutorService scheduler) {
         this.client = client;
         this.request = request;
         this.asyncHandler = asyncHandler;
-        responses = new ArrayList<>();
+        this.executor = executor;
+        this.scheduler = scheduler;
     }
 
     /**
      * Check status code and handles retry if T is type {@link Response} or Ning {@link com.ning.http.client.Response}.
+     * Blocks the calling thread, use {@link #callAsync()} whenever possible.
      *
      * @return T
      * @throws InterruptedException Interrupted exception
@@ -80,62 +137,194 @@ class ParsecHttpRequestRetryCallable<T> implements Callable<T> {
      */
     @Override
     public T call() throws InterruptedException, ExecutionException {
-        responses.clear();
-        final Request ningRequest = request.getNingRequest();
+        return callAsync().get();
+    }
+
+    /**
+     * Check status code and handles retry if T is type {@link Response} or Ning {@link com.ning.http.client.Response}
+     * without blocking.
+     *
+     * @return {@literal CompletableFuture<T>} completed with the last response
+     */
+    public CompletableFuture<T> callAsync() {
+        retries = 0;
+        RetryFuture result = new RetryFuture();
+        executeAttempt(result);
+        return result;
+    }
+
+    /**
+     * Execute one attempt and chain the retry decision on its completion.
+     *
+     * @param result result future
+     */
+    private void executeAttempt(final RetryFuture result) {
+        if (result.isDone()) {
+            return;
+        }
+
+        // Retryable responses are aborted before the body download, except for the last attempt
+        if (asyncHandler instanceof ParsecAsyncHandlerWrapper) {
+            ((ParsecAsyncHandlerWrapper<?>) asyncHandler).setAbortStatusCodes(
+                retries < request.getMaxRetries() ? request.getRetryStatusCodes() : Collections.emptyList());
+        }
+
+        final ListenableFuture<T> future;
+        try {
+            future = executeRequest(request.getDeadline() == 0
+                ? request.getNingRequest() : request.getNingRequest(client.getConfig().getRequestTimeout()));
+        } catch (RuntimeException | TimeoutException e) {
+            result.completeExceptionally(e);
+            return;
+        }
+
+        if (asyncHandler instanceof ParsecAsyncHandlerWrapper) {
+            ((ParsecAsyncHandlerWrapper<?>) asyncHandler).setResponseFuture(future);
+        }
+        result.setCurrent(future);
+        future.addListener(() -> onAttemptCompleted(result, future), executor);
+    }
+
+    /**
+     * Handle completion of one attempt.
+     *
+     * @param result result future
+     * @param future attempt future (done)
+     */
+    private void onAttemptCompleted(final RetryFuture result, final ListenableFuture<T> future) {
+        final T response;
+        try {
+            response = future.get();
+        } catch (ExecutionException e) {
+            result.completeExceptionally(e.getCause() != null ? e.getCause() : e);
+            return;
+        } catch (InterruptedException | CancellationException e) {
+            result.completeExceptionally(e);
+            return;
+        }
+
         final List<Integer> retryStatusCodes = request.getRetryStatusCodes();
         final int maxRetries = request.getMaxRetries();
-
-        T response = executeRequest(ningRequest);
         int statusCode = getStatusCode(response);
 
-        if (statusCode == -1) {
-            return response;
+        if (statusCode == -1 || !retryStatusCodes.contains(statusCode)) {
+            result.complete(response);
+            return;
         }
 
-        int retries = 0;
-        responses.add(response);
-
-        while (retryStatusCodes.contains(statusCode)) {
-            if (maxRetries > retries) {
-                LOGGER.debug("Retry number: " + retries + " (max: " + maxRetries + ")");
-                retries++;
+        if (maxRetries <= retries) {
+            LOGGER.debug("Max retries reached: " + retries + " (max: " + maxRetries + ")");
+            result.complete(response);
+            return;
+        }
 
-                T retryResponse = executeRequest(ningRequest);
-                statusCode = getStatusCode(retryResponse);
-                responses.add(retryResponse);
-            } else {
-                LOGGER.debug("Max retries reached: " + retries + " (max: " + maxRetries + ")");
-                break;
-            }
+        long delay = getRetryDelay(response, retries + 1);
+        if (delay >= request.getTimeLeft()) {
+            LOGGER.debug("Deadline reached before retry: " + retries + " (max: " + maxRetries + ")");
+            result.complete(response);
+            return;
         }
 
-        return response;
+        LOGGER.debug("Retry number: " + retries + " (max: " + maxRetries + ")");
+        retries++;
+
+        if (delay > 0 && scheduler != null) {
+            result.setCurrent(scheduler.schedule(() -> executeAttempt(result), delay, TimeUnit.MILLISECONDS));
+        } else {
+            executeAttempt(result);
+        }
     }
 
     /**
      * Execute Request.
      *
      * @param ningRequest Ning request
-     * @return T
-     * @throws InterruptedException Interrupted exception
-     * @throws ExecutionException Execution exception
+     * @return {@literal ListenableFuture<T>}
      */
     @SuppressWarnings("unchecked")
-    private T executeRequest(Request ningRequest) throws InterruptedException, ExecutionException {
+    private ListenableFuture<T> executeRequest(Request ningRequest) {
         if (asyncHandler != null) {
-            return client.executeRequest(ningRequest, asyncHandler).get();
+            return client.executeRequest(ningRequest, asyncHandler);
         } else {
-            return (T) client.executeRequest(ningRequest).get();
+            return (ListenableFuture<T>) client.executeRequest(ningRequest);
         }
     }
 
     /**
-     * Get Responses.
+     * Get retries performed by the last {@link #callAsync()}.
+     *
+     * @return Retries
+     */
+    public int getRetries() {
+        return retries;
+    }
+
+    /**
+     * Get delay before the given retry: exponential backoff with equal jitter, raised to the
+     * response Retry-After header if present, both capped by max retry backoff.
      *
-     * @return {@literal List<T>}
+     * @param response last response
+     * @param retry retry number (starting from 1)
+     * @return delay in milliseconds
      */
-    public List<T> getResponses() {
-        return responses;
+    long getRetryDelay(final T response, final int retry) {
+        final long maxBackoff = request.getMaxRetryBackoff();
+        long delay = 0;
+
+        if (request.getRetryBackoff() > 0) {
+            long backoff = Math.min(
+                maxBackoff, (long) request.getRetryBackoff() << Math.min(retry - 1, MAX_BACKOFF_SHIFT));
+            delay = backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+        }
+
+        long retryAfter = getRetryAfter(getHeader(response, RETRY_AFTER_HEADER));
+        if (retryAfter > delay) {
+            delay = Math.min(retryAfter, maxBackoff);
+        }
+
+        return delay;
+    }
+
+    /**
+     * Parse Retry-After header value (delta seconds or HTTP date).
+     *
+     * @param retryAfter Retry-After header value
+     * @return delay in milliseconds or 0 if absent or invalid
+     */
+    static long getRetryAfter(final String retryAfter) {
+        if (retryAfter == null || retryAfter.isEmpty()) {
+            return 0;
+        }
+
+        try {
+            return Math.max(0, TimeUnit.SECONDS.toMillis(Long.parseLong(retryAfter.trim())));
+        } catch (NumberFormatException e) {
+            try {
+                Instant instant = ZonedDateTime.parse(retryAfter.trim(), DateTimeFormatter.RFC_1123_DATE_TIME)
+                    .toInstant();
+                return Math.max(0, instant.toEpochMilli() - System.currentTimeMillis());
+            } catch (DateTimeParseException ignored) {
+                LOGGER.debug("Invalid Retry-After header: " + retryAfter);
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Gets header from {@link Response} or Ning {@link com.ning.http.client.Response}.
+     *
+     * @param response T
+     * @param name header name
+     * @return header value or null if absent or T is not a response type
+     */
+    private String getHeader(T response, String name) {
+        if (response instanceof Response) {
+            return ((Response) response).getHeaderString(name);
+        } else if (response instanceof com.ning.http.client.Response) {
+            return ((com.ning.http.client.Response) response).getHeader(name);
+        } else {
+            return null;
+        }
     }
 
     /**
@@ -153,4 +342,36 @@ class ParsecHttpRequestRetryCallable<T> implements Callable<T> {
             return -1;
         }
     }
+
+    /**
+     * {@link CompletableFuture} that cancels the in-flight attempt (or pending backoff) when cancelled.
+     */
+    private final class RetryFuture extends CompletableFuture<T> {
+        /**
+         * Current attempt or pending backoff.
+         */
+        private volatile Future<?> current;
+
+        /**
+         * Set current attempt or pending backoff.
+         *
+         * @param current current future
+         */
+        private void setCurrent(final Future<?> current) {
+            this.current = current;
+            if (isCancelled()) {
+                current.cancel(true);
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            Future<?> future = current;
+            if (cancelled && future != null) {
+                future.cancel(mayInterruptIfRunning);
+            }
+            return cancelled;
+        }
+    }
 }
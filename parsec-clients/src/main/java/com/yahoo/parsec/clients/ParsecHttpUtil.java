@@ -3,12 +3,14 @@
 
 package com.yahoo.parsec.clients;
 
+import com.ning.http.client.HttpResponseBodyPart;
 import com.ning.http.client.Param;
 import com.ning.http.client.cookie.Cookie;
 
 import javax.ws.rs.core.NewCookie;
 import javax.ws.rs.core.Response;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.*;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -84,6 +86,46 @@ public final class ParsecHttpUtil {
      * @throws IOException IO exception
      */
     public static Response getResponse(final com.ning.http.client.Response ningResponse) throws IOException {
+        Response.ResponseBuilder responseBuilder = getResponseBuilder(ningResponse);
+
+        if (ningResponse.hasResponseBody()) {
+            responseBuilder.entity(ningResponse.getResponseBody());
+        }
+        return responseBuilder.build();
+    }
+
+    /**
+     * Get {@link javax.ws.rs.core} {@link Response} from Ning {@link com.ning.http.client.Response}, with a
+     * {@link ParsecResponseBody} entity over the body parts (not copied nor decoded).
+     *
+     * @param ningResponse Ning {@link com.ning.http.client.Response}, without body
+     * @param bodyParts Ning {@link HttpResponseBodyPart} {@link List}
+     * @return {@link Response}
+     */
+    public static Response getResponse(
+        final com.ning.http.client.Response ningResponse,
+        final List<HttpResponseBodyPart> bodyParts
+    ) {
+        Response.ResponseBuilder responseBuilder = getResponseBuilder(ningResponse);
+
+        if (!bodyParts.isEmpty()) {
+            List<ByteBuffer> buffers = new ArrayList<>(bodyParts.size());
+            bodyParts.forEach(bodyPart -> buffers.add(bodyPart.getBodyByteBuffer()));
+            responseBuilder.entity(
+                new ParsecResponseBody(buffers, ParsecResponseBody.getCharset(ningResponse.getContentType()))
+            );
+        }
+        return responseBuilder.build();
+    }
+
+    /**
+     * Get {@link Response.ResponseBuilder} with status, headers and cookies of Ning
+     * {@link com.ning.http.client.Response}.
+     *
+     * @param ningResponse Ning {@link com.ning.http.client.Response}
+     * @return {@link Response.ResponseBuilder}
+     */
+    private static Response.ResponseBuilder getResponseBuilder(final com.ning.http.client.Response ningResponse) {
         Response.ResponseBuilder responseBuilder = Response
             .status(ningResponse.getStatusCode())
             .type(ningResponse.getContentType());
@@ -94,11 +136,7 @@ public final class ParsecHttpUtil {
                     .forEach(value -> responseBuilder.header(entry.getKey(), value)));
         }
 
-        if (ningResponse.hasResponseBody()) {
-            responseBuilder.entity(ningResponse.getResponseBody());
-        }
-
         ningResponse.getCookies().forEach(ningCookie -> responseBuilder.cookie(getCookie(ningCookie)));
-        return responseBuilder.build();
+        return responseBuilder;
     }
 }
@@ -0,0 +1,116 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free sliding window of the last N latency samples.
+ * Percentiles are read from a sorted snapshot of the window, recomputed every {@link #RECOMPUTE_INTERVAL}
+ * samples instead of on every call.
+ *
+ * @author sho
+ */
+final class ParsecLatencyWindow {
+    /**
+     * Max percentile.
+     */
+    private static final double MAX_PERCENTILE = 100.0;
+
+    /**
+     * Samples recorded between recomputations of the sorted snapshot.
+     */
+    static final int RECOMPUTE_INTERVAL = 16;
+
+    /**
+     * Samples ring buffer.
+     */
+    private final AtomicLongArray samples;
+
+    /**
+     * Total samples recorded.
+     */
+    private final AtomicLong count;
+
+    /**
+     * Total samples recorded at which the sorted snapshot is due for recomputation.
+     */
+    private final AtomicLong recomputeAt;
+
+    /**
+     * Sorted snapshot of the samples, null until first computed.
+     */
+    private volatile long[] sorted;
+
+    /**
+     * Constructor.
+     *
+     * @param size window size
+     */
+    ParsecLatencyWindow(final int size) {
+        samples = new AtomicLongArray(size);
+        count = new AtomicLong();
+        recomputeAt = new AtomicLong();
+    }
+
+    /**
+     * Record latency.
+     *
+     * @param latency latency
+     */
+    void record(final long latency) {
+        samples.set((int) (count.getAndIncrement() % samples.length()), latency);
+    }
+
+    /**
+     * Get number of samples in window.
+     *
+     * @return number of samples
+     */
+    int size() {
+        return (int) Math.min(count.get(), samples.length());
+    }
+
+    /**
+     * Get percentile of samples in window, as of the last sorted snapshot.
+     *
+     * @param percentile percentile (0 - 100)
+     * @return latency at percentile, or 0 if window is empty
+     */
+    long percentile(final double percentile) {
+        long recorded = count.get();
+        if (recorded == 0) {
+            return 0;
+        }
+
+        // Only one caller recomputes a due snapshot, the others keep reading the previous one
+        long[] snapshot = sorted;
+        long due = recomputeAt.get();
+        if (recorded >= due && recomputeAt.compareAndSet(due, recorded + RECOMPUTE_INTERVAL) || snapshot == null) {
+            snapshot = sort();
+            sorted = snapshot;
+        }
+
+        int size = snapshot.length;
+        int index = (int) Math.ceil(Math.min(percentile, MAX_PERCENTILE) / MAX_PERCENTILE * size) - 1;
+        return snapshot[Math.max(0, Math.min(index, size - 1))];
+    }
+
+    /**
+     * Copy and sort samples in window.
+     *
+     * @return sorted samples
+     */
+    private long[] sort() {
+        int size = size();
+        long[] copy = new long[size];
+        for (int i = 0; i < size; i++) {
+            copy[i] = samples.get(i);
+        }
+        Arrays.sort(copy);
+        return copy;
+    }
+}
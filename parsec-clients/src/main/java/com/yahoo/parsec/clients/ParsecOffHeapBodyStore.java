@@ -0,0 +1,273 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Off-heap storage of response bodies in fixed size direct memory slabs, keeping them out of the
+ * garbage collected heap.
+ * <p>
+ * Bodies are appended to the current slab. When it is full, the next slab is recycled: an empty slab
+ * (all its bodies released) if any, the oldest slab otherwise, invalidating the bodies left in it.
+ * Reads of invalidated bodies return null.
+ *
+ * @author sho
+ */
+final class ParsecOffHeapBodyStore {
+    /**
+     * Slabs, allocated on first use.
+     */
+    private final ByteBuffer[] slabs;
+
+    /**
+     * Generation of each slab, incremented when recycled.
+     */
+    private final int[] generations;
+
+    /**
+     * Bytes of each slab not yet released.
+     */
+    private final long[] liveBytes;
+
+    /**
+     * Slab size.
+     */
+    private final int slabSize;
+
+    /**
+     * Lock, reads share it, allocations and releases are exclusive.
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Current slab.
+     */
+    private int current;
+
+    /**
+     * Bodies invalidated by recycling slabs.
+     */
+    private long evictions;
+
+    /**
+     * Constructor.
+     *
+     * @param capacity total capacity (bytes), rounded down to a multiple of the slab size
+     * @param slabSize slab size (bytes), the max size of a stored body
+     */
+    ParsecOffHeapBodyStore(final long capacity, final int slabSize) {
+        if (slabSize <= 0 || capacity < slabSize) {
+            throw new IllegalArgumentException("capacity must hold at least one slab: " + capacity + " < " + slabSize);
+        }
+
+        int slabCount = (int) Math.min(Integer.MAX_VALUE, capacity / slabSize);
+        this.slabSize = slabSize;
+        slabs = new ByteBuffer[slabCount];
+        generations = new int[slabCount];
+        liveBytes = new long[slabCount];
+        slabs[0] = ByteBuffer.allocateDirect(slabSize);
+    }
+
+    /**
+     * Get slab size.
+     *
+     * @return slab size (bytes), the max size of a stored body
+     */
+    int getSlabSize() {
+        return slabSize;
+    }
+
+    /**
+     * Store a body.
+     *
+     * @param bytes body
+     * @return handle, or null if the body is larger than a slab
+     */
+    Handle store(final byte[] bytes) {
+        if (bytes.length > slabSize) {
+            return null;
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (slabs[current].remaining() < bytes.length) {
+                current = nextSlab();
+            }
+
+            ByteBuffer slab = slabs[current];
+            Handle handle = new Handle(current, generations[current], slab.position(), bytes.length);
+            slab.put(bytes);
+            liveBytes[current] += bytes.length;
+            return handle;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Read a body.
+     *
+     * @param handle handle
+     * @return body, or null if it was invalidated
+     */
+    byte[] read(final Handle handle) {
+        lock.readLock().lock();
+        try {
+            if (generations[handle.slab] != handle.generation) {
+                return null;
+            }
+
+            byte[] bytes = new byte[handle.length];
+            ByteBuffer slab = slabs[handle.slab].duplicate();
+            slab.position(handle.offset);
+            slab.get(bytes);
+            return bytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Whether a body is still stored.
+     *
+     * @param handle handle
+     * @return true if not invalidated
+     */
+    boolean contains(final Handle handle) {
+        lock.readLock().lock();
+        try {
+            return generations[handle.slab] == handle.generation;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Release a body no longer referenced, so that its slab can be recycled first once empty.
+     *
+     * @param handle handle
+     */
+    void release(final Handle handle) {
+        lock.writeLock().lock();
+        try {
+            if (generations[handle.slab] == handle.generation) {
+                liveBytes[handle.slab] -= handle.length;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Get bytes of bodies stored and not released.
+     *
+     * @return live bytes
+     */
+    long getLiveBytes() {
+        lock.readLock().lock();
+        try {
+            long total = 0;
+            for (long live : liveBytes) {
+                total += live;
+            }
+            return total;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get number of slab recyclings that invalidated bodies not yet released.
+     *
+     * @return evictions
+     */
+    long getEvictions() {
+        lock.readLock().lock();
+        try {
+            return evictions;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Pick and recycle the slab after the current one, with the write lock held.
+     *
+     * @return slab index
+     */
+    private int nextSlab() {
+        int next = (current + 1) % slabs.length;
+        for (int i = 0; i < slabs.length; i++) {
+            int candidate = (current + 1 + i) % slabs.length;
+            if (candidate != current && (slabs[candidate] == null || liveBytes[candidate] == 0)) {
+                next = candidate;
+                break;
+            }
+        }
+
+        if (slabs[next] == null) {
+            slabs[next] = ByteBuffer.allocateDirect(slabSize);
+        } else {
+            if (liveBytes[next] > 0) {
+                evictions++;
+            }
+            generations[next]++;
+            liveBytes[next] = 0;
+            slabs[next].clear();
+        }
+        return next;
+    }
+
+    /**
+     * Location of a stored body.
+     */
+    static final class Handle {
+        /**
+         * Slab index.
+         */
+        private final int slab;
+
+        /**
+         * Slab generation when stored.
+         */
+        private final int generation;
+
+        /**
+         * Offset in slab.
+         */
+        private final int offset;
+
+        /**
+         * Length.
+         */
+        private final int length;
+
+        /**
+         * Constructor.
+         *
+         * @param slab slab index
+         * @param generation slab generation
+         * @param offset offset in slab
+         * @param length length
+         */
+        private Handle(final int slab, final int generation, final int offset, final int length) {
+            this.slab = slab;
+            this.generation = generation;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        /**
+         * Get length.
+         *
+         * @return length (bytes)
+         */
+        int getLength() {
+            return length;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+/**
+ * SHA-256 fingerprint of request fields, computed once so that request equality and hash code need
+ * no reflection. Every value is written with its type and length, so that different field values
+ * never produce the same input. Values are fed to the digest as they are added, without buffering,
+ * and a fingerprint must be digested before another one is started on the same thread.
+ *
+ * @author sho
+ */
+final class ParsecRequestFingerprint {
+    /**
+     * Null marker.
+     */
+    private static final byte NULL = 0;
+
+    /**
+     * Value marker.
+     */
+    private static final byte VALUE = 1;
+
+    /**
+     * Digest per thread, looking up a digest provider costs more than hashing a request.
+     */
+    private static final ThreadLocal<MessageDigest> DIGESTS = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform supports SHA-256
+            throw new IllegalStateException(e);
+        }
+    });
+
+    /**
+     * Digest of this thread.
+     */
+    private final MessageDigest digest;
+
+    /**
+     * Scratch buffer for longs.
+     */
+    private final ByteBuffer scratch = ByteBuffer.allocate(Long.BYTES);
+
+    /**
+     * Constructor.
+     */
+    ParsecRequestFingerprint() {
+        digest = DIGESTS.get();
+        digest.reset();
+    }
+
+    /**
+     * Add a boolean.
+     *
+     * @param value value
+     * @return this
+     */
+    ParsecRequestFingerprint add(final boolean value) {
+        return add(value ? 1L : 0L);
+    }
+
+    /**
+     * Add a long (or int).
+     *
+     * @param value value
+     * @return this
+     */
+    ParsecRequestFingerprint add(final long value) {
+        scratch.clear();
+        scratch.putLong(value);
+        digest.update(VALUE);
+        digest.update(scratch.array());
+        return this;
+    }
+
+    /**
+     * Add a double.
+     *
+     * @param value value
+     * @return this
+     */
+    ParsecRequestFingerprint add(final double value) {
+        return add(Double.doubleToLongBits(value));
+    }
+
+    /**
+     * Add a string.
+     *
+     * @param value value, may be null
+     * @return this
+     */
+    ParsecRequestFingerprint add(final String value) {
+        return add(value == null ? null : value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Add bytes.
+     *
+     * @param value value, may be null
+     * @return this
+     */
+    ParsecRequestFingerprint add(final byte[] value) {
+        if (value == null) {
+            digest.update(NULL);
+            return this;
+        }
+        add((long) value.length);
+        digest.update(value);
+        return this;
+    }
+
+    /**
+     * Add a list of strings, or of the string values of objects.
+     *
+     * @param values values, may be null
+     * @return this
+     */
+    ParsecRequestFingerprint add(final List<?> values) {
+        if (values == null) {
+            digest.update(NULL);
+            return this;
+        }
+        add((long) values.size());
+        for (Object value : values) {
+            add(value == null ? null : value.toString());
+        }
+        return this;
+    }
+
+    /**
+     * Compute the fingerprint.
+     *
+     * @return SHA-256 digest
+     */
+    byte[] digest() {
+        return digest.digest();
+    }
+
+    /**
+     * Get hash code of a fingerprint.
+     *
+     * @param fingerprint fingerprint
+     * @return hash code, from its first 4 bytes
+     */
+    static int hashCode(final byte[] fingerprint) {
+        return ByteBuffer.wrap(fingerprint).getInt();
+    }
+}
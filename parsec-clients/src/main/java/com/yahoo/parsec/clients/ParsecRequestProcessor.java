@@ -0,0 +1,267 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import javax.ws.rs.core.Response;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * {@link ParsecFlow.Processor} executing the requests it receives and publishing their responses in request
+ * order, with at most {@code maxInFlight} requests in flight or waiting for downstream demand.
+ * A failed request fails the stream when its turn comes: upstream and the pending requests are cancelled.
+ * Only one subscriber is supported.
+ *
+ * @author sho
+ */
+final class ParsecRequestProcessor implements ParsecFlow.Processor<ParsecAsyncHttpRequest, Response> {
+    /**
+     * Max requests in flight or waiting for downstream demand.
+     */
+    private final int maxInFlight;
+
+    /**
+     * Execution of one request.
+     */
+    private final Function<ParsecAsyncHttpRequest, CompletableFuture<Response>> execution;
+
+    /**
+     * Requests not yet emitted, in request order.
+     */
+    private final Queue<CompletableFuture<Response>> pending = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Upstream subscription.
+     */
+    private final AtomicReference<ParsecFlow.Subscription> upstream = new AtomicReference<>();
+
+    /**
+     * Downstream subscriber.
+     */
+    private final AtomicReference<ParsecFlow.Subscriber<? super Response>> downstream = new AtomicReference<>();
+
+    /**
+     * Whether the first requests were requested from upstream.
+     */
+    private final AtomicBoolean connected = new AtomicBoolean();
+
+    /**
+     * Outstanding downstream demand.
+     */
+    private final AtomicLong demand = new AtomicLong();
+
+    /**
+     * Drain work in progress, only one thread emits at a time.
+     */
+    private final AtomicInteger wip = new AtomicInteger();
+
+    /**
+     * Whether upstream completed.
+     */
+    private volatile boolean upstreamDone;
+
+    /**
+     * Failure to emit, null if none.
+     */
+    private volatile Throwable error;
+
+    /**
+     * Whether downstream cancelled.
+     */
+    private volatile boolean cancelled;
+
+    /**
+     * Whether a terminal signal was emitted, only accessed while draining.
+     */
+    private boolean terminated;
+
+    /**
+     * Constructor.
+     *
+     * @param maxInFlight max requests in flight or waiting for downstream demand
+     * @param execution execution of one request
+     */
+    ParsecRequestProcessor(
+        final int maxInFlight,
+        final Function<ParsecAsyncHttpRequest, CompletableFuture<Response>> execution
+    ) {
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("maxInFlight must be positive: " + maxInFlight);
+        }
+        this.maxInFlight = maxInFlight;
+        this.execution = execution;
+    }
+
+    @Override
+    public void onSubscribe(final ParsecFlow.Subscription subscription) {
+        Objects.requireNonNull(subscription, "subscription");
+        if (!upstream.compareAndSet(null, subscription) || cancelled) {
+            subscription.cancel();
+            return;
+        }
+        connect();
+    }
+
+    @Override
+    public void onNext(final ParsecAsyncHttpRequest request) {
+        Objects.requireNonNull(request, "request");
+        CompletableFuture<Response> future;
+        try {
+            future = execution.apply(request);
+        } catch (RuntimeException e) {
+            future = new CompletableFuture<>();
+            future.completeExceptionally(ParsecResponsePublisher.unwrap(e));
+        }
+
+        pending.add(future);
+        if (cancelled) {
+            future.cancel(true);
+        }
+        future.whenComplete((response, throwable) -> drain());
+    }
+
+    @Override
+    public void onError(final Throwable throwable) {
+        Objects.requireNonNull(throwable, "throwable");
+        if (error == null) {
+            error = throwable;
+        }
+        upstreamDone = true;
+        drain();
+    }
+
+    @Override
+    public void onComplete() {
+        upstreamDone = true;
+        drain();
+    }
+
+    @Override
+    public void subscribe(final ParsecFlow.Subscriber<? super Response> subscriber) {
+        Objects.requireNonNull(subscriber, "subscriber");
+        if (!downstream.compareAndSet(null, subscriber)) {
+            subscriber.onSubscribe(new ParsecFlow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("Only one subscriber is supported"));
+            return;
+        }
+
+        subscriber.onSubscribe(new ParsecFlow.Subscription() {
+            @Override
+            public void request(long n) {
+                if (n <= 0) {
+                    onError(new IllegalArgumentException("request must be positive: " + n));
+                    return;
+                }
+                demand.getAndUpdate(current -> current + n < 0 ? Long.MAX_VALUE : current + n);
+                drain();
+            }
+
+            @Override
+            public void cancel() {
+                cancelled = true;
+                cancelUpstream();
+                drain();
+            }
+        });
+        connect();
+        drain();
+    }
+
+    /**
+     * Request the first requests from upstream once both upstream and downstream are subscribed.
+     */
+    private void connect() {
+        ParsecFlow.Subscription subscription = upstream.get();
+        if (subscription != null && downstream.get() != null && connected.compareAndSet(false, true)) {
+            subscription.request(maxInFlight);
+        }
+    }
+
+    /**
+     * Cancel upstream.
+     */
+    private void cancelUpstream() {
+        ParsecFlow.Subscription subscription = upstream.get();
+        if (subscription != null) {
+            subscription.cancel();
+        }
+    }
+
+    /**
+     * Cancel the requests not yet emitted.
+     */
+    private void cancelPending() {
+        CompletableFuture<Response> future;
+        while ((future = pending.poll()) != null) {
+            future.cancel(true);
+        }
+    }
+
+    /**
+     * Emit completed responses in request order as demanded, then the terminal signal.
+     */
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+
+        do {
+            ParsecFlow.Subscriber<? super Response> subscriber = downstream.get();
+            if (cancelled || terminated) {
+                cancelPending();
+                continue;
+            }
+            if (subscriber == null) {
+                continue;
+            }
+
+            while (error == null && demand.get() > 0) {
+                CompletableFuture<Response> future = pending.peek();
+                if (future == null || !future.isDone()) {
+                    break;
+                }
+                pending.poll();
+
+                Response response;
+                try {
+                    response = future.join();
+                } catch (RuntimeException e) {
+                    error = ParsecResponsePublisher.unwrap(e);
+                    break;
+                }
+
+                if (demand.get() != Long.MAX_VALUE) {
+                    demand.decrementAndGet();
+                }
+                subscriber.onNext(response);
+                upstream.get().request(1);
+            }
+
+            if (error != null) {
+                terminated = true;
+                cancelUpstream();
+                cancelPending();
+                subscriber.onError(error);
+            } else if (upstreamDone && pending.isEmpty()) {
+                terminated = true;
+                subscriber.onComplete();
+            }
+        } while (wip.decrementAndGet() != 0);
+    }
+}
@@ -0,0 +1,293 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ning.http.util.AsyncHttpProviderUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Response body kept as the received body parts, the entity of responses to requests built with
+ * {@link ParsecAsyncHttpRequest.Builder#setResponseBodyAsBytes(boolean)}.
+ * <p>
+ * The body is exposed as read-only {@link ByteBuffer}s or an {@link InputStream} over the body parts, without
+ * copying them. It is decoded into a String only on the first call to {@link #getString()} (or
+ * {@link #toString()}). Instances are immutable and can be shared, e.g. by cached responses, as are the objects
+ * decoded from JSON by {@link ParsecAsyncHttpClient#execute(ParsecAsyncHttpRequest, Class)}.
+ *
+ * @author sho
+ */
+public final class ParsecResponseBody {
+    /**
+     * Read-only body parts.
+     */
+    private final List<ByteBuffer> buffers;
+
+    /**
+     * Body length (bytes).
+     */
+    private final long length;
+
+    /**
+     * Charset of the body.
+     */
+    private final Charset charset;
+
+    /**
+     * Decoded body, null until asked for.
+     */
+    private volatile String string;
+
+    /**
+     * Objects decoded from JSON per type, created on first decode.
+     */
+    private volatile ConcurrentMap<JavaType, Object> decoded;
+
+    /**
+     * Constructor.
+     *
+     * @param buffers body parts, not copied
+     * @param charset charset of the body
+     */
+    ParsecResponseBody(final List<ByteBuffer> buffers, final Charset charset) {
+        List<ByteBuffer> readOnly = new ArrayList<>(buffers.size());
+        long bodyLength = 0;
+        for (ByteBuffer buffer : buffers) {
+            readOnly.add(buffer.asReadOnlyBuffer());
+            bodyLength += buffer.remaining();
+        }
+        this.buffers = Collections.unmodifiableList(readOnly);
+        this.length = bodyLength;
+        this.charset = charset;
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param bytes body, not copied
+     * @param charset charset of the body
+     */
+    ParsecResponseBody(final byte[] bytes, final Charset charset) {
+        this(Collections.singletonList(ByteBuffer.wrap(bytes)), charset);
+    }
+
+    /**
+     * Get the charset of a content type.
+     *
+     * @param contentType Content-Type header, may be null
+     * @return charset parameter, ISO-8859-1 if none (as Ning does)
+     */
+    static Charset getCharset(final String contentType) {
+        String charset = contentType == null ? null : AsyncHttpProviderUtils.parseCharset(contentType);
+        return charset == null ? AsyncHttpProviderUtils.DEFAULT_CHARSET : Charset.forName(charset);
+    }
+
+    /**
+     * Get body parts.
+     *
+     * @return read-only buffers over the body parts, positioned at their start
+     */
+    public List<ByteBuffer> getByteBuffers() {
+        List<ByteBuffer> duplicates = new ArrayList<>(buffers.size());
+        for (ByteBuffer buffer : buffers) {
+            duplicates.add(buffer.duplicate());
+        }
+        return duplicates;
+    }
+
+    /**
+     * Get an input stream over the body parts.
+     *
+     * @return new input stream
+     */
+    public InputStream getInputStream() {
+        return new BodyInputStream(getByteBuffers());
+    }
+
+    /**
+     * Get body length.
+     *
+     * @return length (bytes)
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * Get charset of the body, from the Content-Type header.
+     *
+     * @return charset
+     */
+    public Charset getCharset() {
+        return charset;
+    }
+
+    /**
+     * Copy the body into a byte array.
+     *
+     * @return body bytes
+     */
+    public byte[] getBytes() {
+        if (length > Integer.MAX_VALUE) {
+            throw new IllegalStateException("body too large for a byte array: " + length);
+        }
+        byte[] bytes = new byte[(int) length];
+        int offset = 0;
+        for (ByteBuffer buffer : getByteBuffers()) {
+            int remaining = buffer.remaining();
+            buffer.get(bytes, offset, remaining);
+            offset += remaining;
+        }
+        return bytes;
+    }
+
+    /**
+     * Get the body decoded with its charset, decoded on first call only.
+     *
+     * @return body string
+     */
+    public String getString() {
+        String decoded = string;
+        if (decoded == null) {
+            decoded = buffers.size() == 1
+                ? charset.decode(buffers.get(0).duplicate()).toString()
+                : new String(getBytes(), charset);
+            string = decoded;
+        }
+        return decoded;
+    }
+
+    /**
+     * Decode the body from JSON, reading the body parts, once per type.
+     *
+     * @param mapper object mapper, the same for every call
+     * @param type type
+     * @param <T> type
+     * @return decoded object, shared by callers decoding the same type
+     * @throws IOException if the body is not valid JSON for the type
+     */
+    @SuppressWarnings("unchecked")
+    <T> T decode(final ObjectMapper mapper, final JavaType type) throws IOException {
+        ConcurrentMap<JavaType, Object> objects = decoded;
+        if (objects == null) {
+            synchronized (this) {
+                objects = decoded;
+                if (objects == null) {
+                    objects = new ConcurrentHashMap<>(2);
+                    decoded = objects;
+                }
+            }
+        }
+
+        Object object = objects.get(type);
+        if (object == null) {
+            try (InputStream in = getInputStream()) {
+                object = mapper.readValue(in, type);
+            }
+            if (object != null) {
+                Object existing = objects.putIfAbsent(type, object);
+                object = existing == null ? object : existing;
+            }
+        }
+        return (T) object;
+    }
+
+    /**
+     * Same as {@link #getString()}.
+     *
+     * @return body string
+     */
+    @Override
+    public String toString() {
+        return getString();
+    }
+
+    /**
+     * Input stream over buffers.
+     */
+    private static final class BodyInputStream extends InputStream {
+        /**
+         * Buffers.
+         */
+        private final List<ByteBuffer> buffers;
+
+        /**
+         * Index of the current buffer.
+         */
+        private int index;
+
+        /**
+         * Constructor.
+         *
+         * @param buffers buffers, consumed
+         */
+        private BodyInputStream(final List<ByteBuffer> buffers) {
+            this.buffers = buffers;
+        }
+
+        @Override
+        public int read() {
+            ByteBuffer buffer = current();
+            return buffer == null ? -1 : buffer.get() & 0xff;
+        }
+
+        @Override
+        public int read(final byte[] bytes, final int offset, final int length) {
+            if (length == 0) {
+                return 0;
+            }
+            ByteBuffer buffer = current();
+            if (buffer == null) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+
+        @Override
+        public long skip(final long n) {
+            long skipped = 0;
+            ByteBuffer buffer;
+            while (skipped < n && (buffer = current()) != null) {
+                int count = (int) Math.min(n - skipped, buffer.remaining());
+                buffer.position(buffer.position() + count);
+                skipped += count;
+            }
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            ByteBuffer buffer = current();
+            return buffer == null ? 0 : buffer.remaining();
+        }
+
+        /**
+         * Get the current buffer, skipping consumed ones.
+         *
+         * @return buffer with remaining bytes, null at end of body
+         */
+        private ByteBuffer current() {
+            while (index < buffers.size()) {
+                ByteBuffer buffer = buffers.get(index);
+                if (buffer.hasRemaining()) {
+                    return buffer;
+                }
+                index++;
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Lazy {@link ParsecFlow.Publisher} of a single response: the request is sent on the first demand of each
+ * subscriber, not on subscribe, and cancelled if the subscription is cancelled.
+ *
+ * @param <T> Response type
+ * @author sho
+ */
+final class ParsecResponsePublisher<T> implements ParsecFlow.Publisher<T> {
+    /**
+     * Execution, called once per subscriber.
+     */
+    private final Supplier<CompletableFuture<T>> execution;
+
+    /**
+     * Constructor.
+     *
+     * @param execution execution
+     */
+    ParsecResponsePublisher(final Supplier<CompletableFuture<T>> execution) {
+        this.execution = execution;
+    }
+
+    @Override
+    public void subscribe(final ParsecFlow.Subscriber<? super T> subscriber) {
+        Objects.requireNonNull(subscriber, "subscriber");
+        subscriber.onSubscribe(new ResponseSubscription(subscriber));
+    }
+
+    /**
+     * Unwrap {@link CompletionException}.
+     *
+     * @param throwable throwable
+     * @return cause if wrapped
+     */
+    static Throwable unwrap(final Throwable throwable) {
+        if (throwable instanceof CompletionException && throwable.getCause() != null) {
+            return throwable.getCause();
+        }
+        return throwable;
+    }
+
+    /**
+     * Subscription of one subscriber.
+     */
+    private final class ResponseSubscription implements ParsecFlow.Subscription {
+        /**
+         * Subscriber.
+         */
+        private final ParsecFlow.Subscriber<? super T> subscriber;
+
+        /**
+         * Whether the request was sent.
+         */
+        private final AtomicBoolean started = new AtomicBoolean();
+
+        /**
+         * Whether a terminal signal was sent, or the subscription cancelled.
+         */
+        private final AtomicBoolean terminated = new AtomicBoolean();
+
+        /**
+         * Execution future.
+         */
+        private volatile CompletableFuture<T> future;
+
+        /**
+         * Constructor.
+         *
+         * @param subscriber subscriber
+         */
+        private ResponseSubscription(final ParsecFlow.Subscriber<? super T> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(final long n) {
+            if (n <= 0) {
+                if (terminated.compareAndSet(false, true)) {
+                    cancelExecution();
+                    subscriber.onError(new IllegalArgumentException("request must be positive: " + n));
+                }
+                return;
+            }
+
+            if (terminated.get() || !started.compareAndSet(false, true)) {
+                return;
+            }
+
+            CompletableFuture<T> execution;
+            try {
+                execution = ParsecResponsePublisher.this.execution.get();
+            } catch (RuntimeException e) {
+                if (terminated.compareAndSet(false, true)) {
+                    subscriber.onError(unwrap(e));
+                }
+                return;
+            }
+
+            future = execution;
+            if (terminated.get()) {
+                execution.cancel(true);
+                return;
+            }
+
+            execution.whenComplete((response, throwable) -> {
+                if (!terminated.compareAndSet(false, true)) {
+                    return;
+                }
+                if (throwable == null) {
+                    subscriber.onNext(response);
+                    subscriber.onComplete();
+                } else {
+                    subscriber.onError(unwrap(throwable));
+                }
+            });
+        }
+
+        @Override
+        public void cancel() {
+            if (terminated.compareAndSet(false, true)) {
+                cancelExecution();
+            }
+        }
+
+        /**
+         * Cancel execution if sent.
+         */
+        private void cancelExecution() {
+            CompletableFuture<T> execution = future;
+            if (execution != null) {
+                execution.cancel(true);
+            }
+        }
+    }
+}
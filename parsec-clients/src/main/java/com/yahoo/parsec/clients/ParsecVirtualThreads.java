@@ -0,0 +1,89 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Virtual thread executors, looked up at runtime so that the client still runs on JDKs without virtual threads.
+ *
+ * @author sho
+ */
+final class ParsecVirtualThreads {
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(ParsecVirtualThreads.class);
+
+    /**
+     * System property making the JDK print the stack trace of virtual threads blocking while pinned.
+     */
+    static final String TRACE_PINNED_THREADS_PROPERTY = "jdk.tracePinnedThreads";
+
+    /**
+     * Executors.newVirtualThreadPerTaskExecutor, null if not available.
+     */
+    private static final Method NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = findNewVirtualThreadPerTaskExecutor();
+
+    /**
+     * Unused private constructor.
+     */
+    private ParsecVirtualThreads() {
+
+    }
+
+    /**
+     * Whether virtual threads are available (JDK 21 and later).
+     *
+     * @return true if available
+     */
+    static boolean isAvailable() {
+        return NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null;
+    }
+
+    /**
+     * Create an executor starting a new virtual thread per task.
+     *
+     * @param tracePinning whether to trace virtual threads blocking while pinned to their carrier thread
+     *     (e.g. in synchronized blocks), only effective before the first virtual thread of the JVM is created
+     * @return new {@link ExecutorService}
+     * @throws UnsupportedOperationException if virtual threads are not available
+     */
+    static ExecutorService newExecutor(final boolean tracePinning) {
+        if (!isAvailable()) {
+            throw new UnsupportedOperationException(
+                "Virtual threads are not available on Java " + System.getProperty("java.version"));
+        }
+
+        if (tracePinning && System.getProperty(TRACE_PINNED_THREADS_PROPERTY) == null) {
+            System.setProperty(TRACE_PINNED_THREADS_PROPERTY, "short");
+        }
+
+        try {
+            return (ExecutorService) NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.invoke(null);
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new UnsupportedOperationException("Virtual thread executor creation failed", e);
+        }
+    }
+
+    /**
+     * Look up Executors.newVirtualThreadPerTaskExecutor.
+     *
+     * @return method, null if not available
+     */
+    private static Method findNewVirtualThreadPerTaskExecutor() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            LOGGER.debug("Virtual threads are not available");
+            return null;
+        }
+    }
+}
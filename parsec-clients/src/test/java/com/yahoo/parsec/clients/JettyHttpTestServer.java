@@ -16,8 +16,11 @@ import javax.servlet.ServletRequest;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.Part;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.Collection;
 
 
@@ -82,6 +85,16 @@ public class JettyHttpTestServer {
 			super();
 		}
 
+        private byte[] readFully(InputStream in) throws IOException {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+
         private boolean isMultipartRequest(ServletRequest request) {
             return request.getContentType() != null
                     && request.getContentType().startsWith(MULTIPART_FORMDATA_TYPE);
@@ -107,6 +120,34 @@ public class JettyHttpTestServer {
                 e.printStackTrace();
 			}
 
+            String sleep = request.getParameter("sleep");
+            if (sleep != null) {
+                try {
+                    Thread.sleep(Long.parseLong(sleep));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            String cacheControl = request.getParameter("cacheControl");
+            if (cacheControl != null) {
+                response.setHeader("Cache-Control", cacheControl);
+            }
+
+            String etag = request.getParameter("etag");
+            if (etag != null) {
+                response.setHeader("ETag", "\"" + etag + "\"");
+                if (("\"" + etag + "\"").equals(request.getHeader("If-None-Match"))) {
+                    statusCode = 304;
+                    response.setHeader("Revalidated", "true");
+                }
+            }
+
+            String echoHeader = request.getParameter("echoHeader");
+            if (echoHeader != null && request.getHeader(echoHeader) != null) {
+                response.setHeader(echoHeader, request.getHeader(echoHeader));
+            }
+
             response.setStatus(statusCode);
             response.setHeader("ServerPort", Integer.toString(request.getServerPort()));
             response.setHeader("SocketPort", Integer.toString(port));
@@ -122,7 +163,17 @@ public class JettyHttpTestServer {
                     }
                 }
             }
+            String body = request.getParameter("body");
+            if (request.getParameter("echo") != null) {
+                body = new String(readFully(request.getInputStream()), StandardCharsets.UTF_8);
+            }
+            if (body != null) {
+                response.setContentType("text/plain; charset=UTF-8");
+            }
             Writer writer = response.getWriter();
+            if (body != null) {
+                writer.write(body);
+            }
             writer.flush();
 
             if (multipartRequest) {
@@ -3,9 +3,13 @@
 
 package com.yahoo.parsec.clients;
 
+import com.ning.http.client.HttpResponseBodyPart;
+import com.ning.http.client.HttpResponseStatus;
 import org.testng.annotations.Test;
 
 import javax.ws.rs.core.Response;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -26,4 +30,30 @@ public class ParsecAsyncCompletionHandlerBaseTest {
         Response response = asyncBase.onCompleted(ningResponse);
         assertEquals(response.getStatus(), ningResponse.getStatusCode());
     }
+
+    @Test
+    public void testOnCompleteWithResponseBodyAsBytes() throws Exception {
+        ParsecAsyncCompletionHandlerBase asyncBase = new ParsecAsyncCompletionHandlerBase(true);
+        HttpResponseBodyPart part1 = mock(HttpResponseBodyPart.class);
+        when(part1.getBodyByteBuffer()).thenReturn(ByteBuffer.wrap("b\u00f6".getBytes(StandardCharsets.UTF_8)));
+        HttpResponseBodyPart part2 = mock(HttpResponseBodyPart.class);
+        when(part2.getBodyByteBuffer()).thenReturn(ByteBuffer.wrap("dy".getBytes(StandardCharsets.UTF_8)));
+
+        // parts of a retried response are dropped
+        asyncBase.onStatusReceived(mock(HttpResponseStatus.class));
+        asyncBase.onBodyPartReceived(part2);
+        asyncBase.onStatusReceived(mock(HttpResponseStatus.class));
+        asyncBase.onBodyPartReceived(part1);
+        asyncBase.onBodyPartReceived(part2);
+
+        com.ning.http.client.Response ningResponse = mock(com.ning.http.client.Response.class);
+        when(ningResponse.getStatusCode()).thenReturn(200);
+        when(ningResponse.getContentType()).thenReturn("text/plain; charset=UTF-8");
+
+        Response response = asyncBase.onCompleted(ningResponse);
+        ParsecResponseBody body = (ParsecResponseBody) response.getEntity();
+        assertEquals(body.getByteBuffers().size(), 2);
+        assertEquals(body.getLength(), 5);
+        assertEquals(body.getString(), "b\u00f6dy");
+    }
 }
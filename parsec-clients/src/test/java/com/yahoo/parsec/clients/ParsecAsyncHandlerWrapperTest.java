@@ -0,0 +1,118 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import com.ning.http.client.AsyncHandler;
+import com.ning.http.client.FluentCaseInsensitiveStringsMap;
+import com.ning.http.client.HttpResponseBodyPart;
+import com.ning.http.client.HttpResponseHeaders;
+import com.ning.http.client.HttpResponseStatus;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.ws.rs.core.Response;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+
+public class ParsecAsyncHandlerWrapperTest {
+    private ParsecAsyncHandlerWrapper<Response> wrapper;
+    private HttpResponseHeaders mockHeaders;
+
+    private HttpResponseStatus mockStatus(int statusCode) {
+        HttpResponseStatus status = mock(HttpResponseStatus.class);
+        when(status.getStatusCode()).thenReturn(statusCode);
+        return status;
+    }
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        ParsecAsyncHttpRequest request = new ParsecAsyncHttpRequest.Builder().build();
+        wrapper = new ParsecAsyncHandlerWrapper<>(new ParsecAsyncCompletionHandlerBase(), request.getNingRequest());
+        mockHeaders = mock(HttpResponseHeaders.class);
+        when(mockHeaders.getHeaders()).thenReturn(new FluentCaseInsensitiveStringsMap());
+    }
+
+    @Test
+    public void testContinueByDefault() throws Exception {
+        assertEquals(wrapper.onStatusReceived(mockStatus(503)), AsyncHandler.STATE.CONTINUE);
+        assertEquals(wrapper.onHeadersReceived(mockHeaders), AsyncHandler.STATE.CONTINUE);
+    }
+
+    @Test
+    public void testAbortOnAbortStatusCode() throws Exception {
+        wrapper.setAbortStatusCodes(Collections.singletonList(503));
+
+        assertEquals(wrapper.onStatusReceived(mockStatus(503)), AsyncHandler.STATE.CONTINUE);
+        assertEquals(wrapper.onHeadersReceived(mockHeaders), AsyncHandler.STATE.ABORT);
+    }
+
+    @Test
+    public void testContinueOnOtherStatusCode() throws Exception {
+        wrapper.setAbortStatusCodes(Collections.singletonList(503));
+
+        assertEquals(wrapper.onStatusReceived(mockStatus(200)), AsyncHandler.STATE.CONTINUE);
+        assertEquals(wrapper.onHeadersReceived(mockHeaders), AsyncHandler.STATE.CONTINUE);
+    }
+
+    @Test
+    public void testProgressListenerNotNotifiedOnCancellation() throws Exception {
+        AtomicInteger notified = new AtomicInteger();
+        wrapper.addProgressListener(progress -> notified.incrementAndGet());
+
+        wrapper.onThrowable(new CancellationException());
+        assertEquals(notified.get(), 0);
+
+        wrapper.onThrowable(new IOException());
+        assertEquals(notified.get(), 1);
+        assertEquals(wrapper.getLastRespCode(), -1);
+    }
+
+    @Test
+    public void testBodyPartsAreStreamedAndCounted() throws Exception {
+        @SuppressWarnings("unchecked")
+        AsyncHandler<Long> streamingHandler = mock(AsyncHandler.class);
+        when(streamingHandler.onStatusReceived(any())).thenReturn(AsyncHandler.STATE.CONTINUE);
+        when(streamingHandler.onHeadersReceived(any())).thenReturn(AsyncHandler.STATE.CONTINUE);
+        when(streamingHandler.onBodyPartReceived(any())).thenReturn(AsyncHandler.STATE.CONTINUE);
+        when(streamingHandler.onCompleted()).thenReturn(1L);
+
+        ParsecAsyncHttpRequest request = new ParsecAsyncHttpRequest.Builder().build();
+        ParsecAsyncHandlerWrapper<Long> streamingWrapper =
+            new ParsecAsyncHandlerWrapper<>(streamingHandler, request.getNingRequest());
+
+        // 1 GB in 1 MB parts, the wrapper only counts them
+        HttpResponseBodyPart bodyPart = mock(HttpResponseBodyPart.class);
+        when(bodyPart.length()).thenReturn(1024 * 1024);
+        HttpResponseStatus status = mockStatus(200);
+        com.ning.http.client.Response ningResponse = mock(com.ning.http.client.Response.class);
+        when(ningResponse.getStatusCode()).thenReturn(200);
+        when(status.prepareResponse(mockHeaders, Collections.emptyList())).thenReturn(ningResponse);
+        streamingWrapper.onStatusReceived(status);
+        streamingWrapper.onHeadersReceived(mockHeaders);
+        for (int i = 0; i < 1024; i++) {
+            assertEquals(streamingWrapper.onBodyPartReceived(bodyPart), AsyncHandler.STATE.CONTINUE);
+        }
+        verify(streamingHandler, times(1024)).onBodyPartReceived(bodyPart);
+        verify(bodyPart, never()).getBodyPartBytes();
+        verify(bodyPart, never()).getBodyByteBuffer();
+        assertEquals(streamingWrapper.getBytesReceived(), 1024L * 1024 * 1024);
+
+        assertEquals(streamingWrapper.onCompleted(), Long.valueOf(1L));
+        assertEquals(streamingWrapper.getLastRespCode(), 200);
+
+        // counted per response, e.g. on retries
+        streamingWrapper.onStatusReceived(mockStatus(200));
+        assertEquals(streamingWrapper.getBytesReceived(), 0L);
+    }
+}
@@ -3,6 +3,7 @@
 
 package com.yahoo.parsec.clients;
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.ning.http.client.AsyncHttpClientConfig;
 import com.ning.http.client.filter.FilterContext;
 import com.ning.http.client.filter.IOExceptionFilter;
@@ -12,12 +13,20 @@ import org.testng.annotations.AfterTest;
 import org.testng.annotations.BeforeTest;
 import org.testng.annotations.Test;
 
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Response;
+import java.io.ByteArrayInputStream;
 import java.lang.reflect.Constructor;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.*;
 
 import static org.mockito.Mockito.mock;
@@ -366,11 +375,53 @@ public class ParsecAsyncHttpClientTest {
     @Test
     public void testSharedParsecExecutorService() throws Exception {
         client = new ParsecAsyncHttpClient.Builder().build();
-        ThreadPoolExecutor executor = client.getExecutorService();
+        ExecutorService executor = client.getExecutorService();
 
         assertNotNull(executor);
     }
 
+    @Test
+    public void testAnyExecutorService() throws Exception {
+        // not a ThreadPoolExecutor
+        ExecutorService executor = Executors.unconfigurableExecutorService(Executors.newCachedThreadPool());
+        ParsecAsyncHttpClient executorClient = new ParsecAsyncHttpClient.Builder()
+            .setExecutorService(executor)
+            .build();
+        assertSame(executorClient.getExecutorService(), executor);
+
+        Response response = executorClient.criticalExecute(new ParsecAsyncHttpRequest.Builder()
+            .setUrl(baseUrl + "/200")
+            .addRetryStatusCode(500)
+            .build()).get(5, TimeUnit.SECONDS);
+        assertEquals(response.getStatus(), 200);
+        executorClient.close();
+        assertTrue(executor.isShutdown());
+    }
+
+    @Test
+    public void testVirtualThreads() throws Exception {
+        ParsecAsyncHttpClient.Builder builder = new ParsecAsyncHttpClient.Builder()
+            .setVirtualThreads(true)
+            .setTraceVirtualThreadPinning(true);
+        if (!ParsecVirtualThreads.isAvailable()) {
+            try {
+                builder.build();
+                fail("virtual threads are not available");
+            } catch (UnsupportedOperationException expected) {
+                return;
+            }
+        }
+
+        ParsecAsyncHttpClient virtualClient = builder.build();
+        assertNotSame(virtualClient.getExecutorService(), virtualClient.getNingClientConfig().executorService());
+        Response response = virtualClient.criticalExecute(new ParsecAsyncHttpRequest.Builder()
+            .setUrl(baseUrl + "/200")
+            .addRetryStatusCode(500)
+            .build()).get(5, TimeUnit.SECONDS);
+        assertEquals(response.getStatus(), 200);
+        virtualClient.close();
+    }
+
     @Test
     public void testSingleRequestExec() throws Exception {
         Future<Response> future = client.execute(new ParsecAsyncHttpRequest.Builder()
@@ -447,6 +498,479 @@ public class ParsecAsyncHttpClientTest {
         assertNotNull(host);
     }
 
+    @Test
+    public void testSingleRequestExecWithRetryCompletesAsynchronously() throws Exception {
+        ParsecAsyncHttpRequest request = new ParsecAsyncHttpRequest.Builder()
+                .setCriticalGet(true)
+                .setUrl(baseUrl + "/500")
+                .addRetryStatusCode(500)
+                .setMaxRetries(2)
+                .setRetryBackoff(10)
+                .build();
+
+        CompletableFuture<Integer> status = client.execute(request).thenApply(Response::getStatus);
+        assertEquals(status.get(5, TimeUnit.SECONDS).intValue(), 500);
+    }
+
+    @Test
+    public void testHedgedRequest() throws Exception {
+        ParsecAsyncHttpRequest request = new ParsecAsyncHttpRequest.Builder()
+                .setCriticalGet(true)
+                .setUrl(baseUrl + "/200?sleep=200")
+                .setHedgeAfter(50)
+                .build();
+
+        ParsecAsyncHttpClient hedgeClient = new ParsecAsyncHttpClient.Builder().build();
+        double tokens = hedgeClient.getHedger().getAvailableTokens();
+        assertEquals(hedgeClient.execute(request).get(5, TimeUnit.SECONDS).getStatus(), 200);
+        assertTrue(hedgeClient.getHedger().getAvailableTokens() < tokens);
+        hedgeClient.close();
+    }
+
+    @Test
+    public void testCircuitBreakerOpensAndRejects() throws Exception {
+        ParsecAsyncHttpRequest request = new ParsecAsyncHttpRequest.Builder()
+                .setCriticalGet(true)
+                .setUrl(baseUrl + "/500")
+                .build();
+
+        List<ParsecCircuitBreaker.State> transitions = new CopyOnWriteArrayList<>();
+        ParsecAsyncHttpClient breakerClient = new ParsecAsyncHttpClient.Builder()
+                .setCircuitBreaker(new ParsecCircuitBreaker.Builder()
+                        .setMinimumCalls(2)
+                        .addStateListener((host, from, to) -> transitions.add(to)))
+                .build();
+
+        assertEquals(breakerClient.execute(request).get(5, TimeUnit.SECONDS).getStatus(), 500);
+        assertEquals(breakerClient.execute(request).get(5, TimeUnit.SECONDS).getStatus(), 500);
+        // outcomes are recorded right after completion
+        ParsecCircuitBreaker circuitBreaker = breakerClient.getCircuitBreaker(baseUrl);
+        for (int i = 0; i < 100 && transitions.isEmpty(); i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(circuitBreaker.getState(), ParsecCircuitBreaker.State.OPEN);
+        assertEquals(transitions, Collections.singletonList(ParsecCircuitBreaker.State.OPEN));
+
+        CompletableFuture<Response> rejected = breakerClient.execute(request);
+        assertTrue(rejected.isCompletedExceptionally());
+        try {
+            rejected.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof ParsecCircuitBreakerOpenException);
+            assertEquals(((ParsecCircuitBreakerOpenException) e.getCause()).getHost(), baseUrl);
+        }
+        breakerClient.close();
+    }
+
+    @Test
+    public void testConcurrencyLimiterQueuesExcessRequests() throws Exception {
+        ParsecAsyncHttpRequest request = new ParsecAsyncHttpRequest.Builder()
+                .setCriticalGet(true)
+                .setUrl(baseUrl + "/200?sleep=100")
+                .build();
+
+        ParsecAsyncHttpClient limitedClient = new ParsecAsyncHttpClient.Builder()
+                .setConcurrencyLimiter(new ParsecConcurrencyLimiter.Builder()
+                        .setInitialLimit(1)
+                        .setMaxLimit(1))
+                .build();
+
+        CompletableFuture<Response> first = limitedClient.execute(request);
+        CompletableFuture<Response> second = limitedClient.execute(request);
+        ParsecConcurrencyLimiter concurrencyLimiter = limitedClient.getConcurrencyLimiter(baseUrl);
+        assertEquals(concurrencyLimiter.getInFlight(), 1);
+        assertEquals(concurrencyLimiter.getQueueSize(), 1);
+
+        assertEquals(first.get(5, TimeUnit.SECONDS).getStatus(), 200);
+        assertEquals(second.get(5, TimeUnit.SECONDS).getStatus(), 200);
+        limitedClient.close();
+    }
+
+    @Test
+    public void testCoalesceCriticalGets() throws Exception {
+        ParsecAsyncHttpRequest request = new ParsecAsyncHttpRequest.Builder()
+                .setCriticalGet(true)
+                .setUrl(baseUrl + "/200?sleep=100")
+                .build();
+
+        ParsecAsyncHttpClient coalescingClient = new ParsecAsyncHttpClient.Builder()
+                .setCoalesceCriticalGets(true)
+                .build();
+
+        CompletableFuture<Response> first = coalescingClient.execute(request);
+        CompletableFuture<Response> second = coalescingClient.execute(request);
+        assertEquals(coalescingClient.getCoalescer().size(), 1);
+
+        assertSame(first.get(5, TimeUnit.SECONDS), second.get(5, TimeUnit.SECONDS));
+        assertEquals(coalescingClient.getCoalescer().size(), 0);
+        coalescingClient.close();
+    }
+
+    @Test
+    public void testExecuteBatch() throws Exception {
+        List<ParsecAsyncHttpRequest> requests = Arrays.asList(
+            new ParsecAsyncHttpRequest.Builder().setCriticalGet(true).setUrl(baseUrl + "/200").build(),
+            new ParsecAsyncHttpRequest.Builder().setCriticalGet(true).setUrl(baseUrl + "/200?sleep=2000").build(),
+            new ParsecAsyncHttpRequest.Builder().setCriticalGet(true).setUrl(baseUrl + "/404").build()
+        );
+
+        ParsecAsyncHttpClient batchClient = new ParsecAsyncHttpClient.Builder().build();
+        List<ParsecBatchItem> items = batchClient.executeBatch(requests, new ParsecBatchOptions.Builder()
+            .setMaxInFlight(2)
+            .setDeadline(500, TimeUnit.MILLISECONDS)
+            .build()).get(5, TimeUnit.SECONDS);
+
+        assertEquals(items.size(), 3);
+        assertEquals(items.get(0).getResponse().getStatus(), 200);
+        assertTrue(items.get(1).getThrowable() instanceof TimeoutException);
+        assertEquals(items.get(2).getResponse().getStatus(), 404);
+        batchClient.close();
+    }
+
+    @Test
+    public void testScatterGather() throws Exception {
+        List<ParsecAsyncHttpRequest> requests = Arrays.asList(
+            new ParsecAsyncHttpRequest.Builder().setCriticalGet(true).setUrl(baseUrl + "/200?sleep=2000").build(),
+            new ParsecAsyncHttpRequest.Builder().setCriticalGet(true).setUrl(baseUrl + "/200").build(),
+            new ParsecAsyncHttpRequest.Builder().setCriticalGet(true).setUrl(baseUrl + "/200?sleep=50").build()
+        );
+
+        ParsecAsyncHttpClient scatterClient = new ParsecAsyncHttpClient.Builder().build();
+        long start = System.currentTimeMillis();
+        List<ParsecBatchItem> items = scatterClient.scatterGather(requests, 2, 5, TimeUnit.SECONDS)
+            .get(5, TimeUnit.SECONDS);
+
+        assertTrue(System.currentTimeMillis() - start < 2000);
+        assertTrue(items.get(0).getThrowable() instanceof CancellationException);
+        assertEquals(items.get(1).getResponse().getStatus(), 200);
+        assertEquals(items.get(2).getResponse().getStatus(), 200);
+        scatterClient.close();
+    }
+
+    @Test
+    public void testDeadline() throws Exception {
+        ParsecAsyncHttpClient deadlineClient = new ParsecAsyncHttpClient.Builder().build();
+
+        // Budget propagated to the backend
+        Response response = deadlineClient.criticalExecute(new ParsecAsyncHttpRequest.Builder()
+            .setUrl(baseUrl + "/200")
+            .addQueryParam("echoHeader", "X-Budget")
+            .setDeadlineAfter(5, TimeUnit.SECONDS)
+            .setDeadlineHeader("X-Budget")
+            .build()).get(5, TimeUnit.SECONDS);
+        long budget = Long.parseLong(response.getHeaderString("X-Budget"));
+        assertTrue(budget > 0 && budget <= 5000);
+
+        // Deadline spans all retries
+        long start = System.currentTimeMillis();
+        try {
+            deadlineClient.criticalExecute(new ParsecAsyncHttpRequest.Builder()
+                .setUrl(baseUrl + "/500?sleep=200")
+                .addRetryStatusCode(500)
+                .setMaxRetries(10)
+                .setDeadlineAfter(500, TimeUnit.MILLISECONDS)
+                .build()).get(5, TimeUnit.SECONDS);
+            fail("request should time out");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        }
+        assertTrue(System.currentTimeMillis() - start < 2000);
+
+        // Expired requests are not sent
+        try {
+            deadlineClient.criticalExecute(new ParsecAsyncHttpRequest.Builder()
+                .setUrl(baseUrl + "/200")
+                .setDeadline(System.currentTimeMillis() - 1)
+                .build()).get(5, TimeUnit.SECONDS);
+            fail("request should time out");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        }
+        deadlineClient.close();
+    }
+
+    @Test
+    public void testDeadlinePerCoalescedCaller() throws Exception {
+        ParsecAsyncHttpClient coalescingClient = new ParsecAsyncHttpClient.Builder()
+            .setCoalesceCriticalGets(true)
+            .build();
+        ParsecAsyncHttpRequest.Builder builder = new ParsecAsyncHttpRequest.Builder()
+            .setCriticalGet(true)
+            .setUrl(baseUrl + "/200?sleep=300&coalescedDeadline=true");
+
+        CompletableFuture<Response> impatient = coalescingClient.execute(
+            builder.setDeadlineAfter(50, TimeUnit.MILLISECONDS).build());
+        CompletableFuture<Response> patient = coalescingClient.execute(
+            builder.setDeadlineAfter(5, TimeUnit.SECONDS).build());
+        CompletableFuture<Response> noDeadline = coalescingClient.execute(builder.setDeadline(0).build());
+        assertEquals(coalescingClient.getCoalescer().size(), 1);
+
+        try {
+            impatient.get(5, TimeUnit.SECONDS);
+            fail("request should time out");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        }
+        assertEquals(patient.get(5, TimeUnit.SECONDS).getStatus(), 200);
+        assertEquals(noDeadline.get(5, TimeUnit.SECONDS).getStatus(), 200);
+        coalescingClient.close();
+    }
+
+    @Test
+    public void testDeadlinePerCacheLoadCaller() throws Exception {
+        ParsecAsyncHttpClient cachingClient = new ParsecAsyncHttpClient.Builder().build();
+        ParsecAsyncHttpRequest.Builder builder = new ParsecAsyncHttpRequest.Builder()
+            .setUrl(baseUrl + "/200?sleep=300&cachedDeadline=true");
+
+        CompletableFuture<Response> impatient = cachingClient.execute(
+            builder.setDeadlineAfter(50, TimeUnit.MILLISECONDS).build());
+        CompletableFuture<Response> noDeadline = cachingClient.execute(builder.setDeadline(0).build());
+
+        try {
+            impatient.get(5, TimeUnit.SECONDS);
+            fail("request should time out");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        }
+        assertEquals(noDeadline.get(5, TimeUnit.SECONDS).getStatus(), 200);
+        cachingClient.close();
+    }
+
+    @Test
+    public void testPublish() throws Exception {
+        ParsecAsyncHttpClient publishClient = new ParsecAsyncHttpClient.Builder().build();
+        ParsecFlow.Publisher<Response> publisher = publishClient.publish(new ParsecAsyncHttpRequest.Builder()
+            .setCriticalGet(true)
+            .setUrl(baseUrl + "/200")
+            .build());
+
+        ParsecTestSubscriber<Response> subscriber = new ParsecTestSubscriber<>();
+        publisher.subscribe(subscriber);
+        subscriber.request(1);
+
+        assertTrue(subscriber.await());
+        assertTrue(subscriber.completed);
+        assertEquals(subscriber.items.size(), 1);
+        assertEquals(subscriber.items.get(0).getStatus(), 200);
+        publishClient.close();
+    }
+
+    @Test
+    public void testPublishBody() throws Exception {
+        ParsecAsyncHttpClient publishClient = new ParsecAsyncHttpClient.Builder().build();
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            body.append("chunk");
+        }
+
+        ParsecTestSubscriber<ByteBuffer> subscriber = new ParsecTestSubscriber<>();
+        publishClient.publishBody(new ParsecAsyncHttpRequest.Builder()
+            .setUrl(baseUrl + "/200")
+            .addQueryParam("body", body.toString())
+            .build()).subscribe(subscriber);
+        subscriber.request(Long.MAX_VALUE);
+
+        assertTrue(subscriber.await());
+        assertTrue(subscriber.completed);
+        StringBuilder received = new StringBuilder();
+        for (ByteBuffer part : subscriber.items) {
+            received.append(StandardCharsets.UTF_8.decode(part));
+        }
+        assertEquals(received.toString(), body.toString());
+
+        ParsecTestSubscriber<ByteBuffer> notFound = new ParsecTestSubscriber<>();
+        publishClient.publishBody(new ParsecAsyncHttpRequest.Builder().setUrl(baseUrl + "/404").build())
+            .subscribe(notFound);
+        notFound.request(1);
+
+        assertTrue(notFound.await());
+        assertEquals(((WebApplicationException) notFound.error).getResponse().getStatus(), 404);
+        publishClient.close();
+    }
+
+    @Test
+    public void testRequestProcessor() throws Exception {
+        ParsecAsyncHttpClient processorClient = new ParsecAsyncHttpClient.Builder().build();
+        ParsecFlow.Processor<ParsecAsyncHttpRequest, Response> processor = processorClient.newRequestProcessor(2);
+        List<ParsecAsyncHttpRequest> requests = Arrays.asList(
+            new ParsecAsyncHttpRequest.Builder().setCriticalGet(true).setUrl(baseUrl + "/200?sleep=100").build(),
+            new ParsecAsyncHttpRequest.Builder().setCriticalGet(true).setUrl(baseUrl + "/404").build(),
+            new ParsecAsyncHttpRequest.Builder().setCriticalGet(true).setUrl(baseUrl + "/201").build()
+        );
+
+        processor.onSubscribe(new ParsecFlow.Subscription() {
+            private int next;
+
+            @Override
+            public synchronized void request(long n) {
+                for (long i = 0; i < n && next < requests.size(); i++) {
+                    processor.onNext(requests.get(next++));
+                }
+                if (next == requests.size()) {
+                    next++;
+                    processor.onComplete();
+                }
+            }
+
+            @Override
+            public void cancel() {
+            }
+        });
+
+        ParsecTestSubscriber<Response> subscriber = new ParsecTestSubscriber<>();
+        processor.subscribe(subscriber);
+        subscriber.request(Long.MAX_VALUE);
+
+        assertTrue(subscriber.await());
+        assertTrue(subscriber.completed);
+        assertEquals(subscriber.items.size(), 3);
+        assertEquals(subscriber.items.get(0).getStatus(), 200);
+        assertEquals(subscriber.items.get(1).getStatus(), 404);
+        assertEquals(subscriber.items.get(2).getStatus(), 201);
+        processorClient.close();
+    }
+
+    @Test
+    public void testResponseBodyAsBytes() throws Exception {
+        ParsecAsyncHttpRequest request = new ParsecAsyncHttpRequest.Builder()
+                .setUrl(baseUrl + "/200")
+                .addQueryParam("body", "b\u00f6dy")
+                .setResponseBodyAsBytes(true)
+                .build();
+
+        ParsecAsyncHttpClient cachingClient = new ParsecAsyncHttpClient.Builder().build();
+
+        Response response = cachingClient.execute(request).get(5, TimeUnit.SECONDS);
+        ParsecResponseBody body = (ParsecResponseBody) response.getEntity();
+        assertEquals(body.getLength(), 5);
+        assertEquals(body.getString(), "b\u00f6dy");
+
+        Response cached = cachingClient.execute(request).get(5, TimeUnit.SECONDS);
+        assertEquals(((ParsecResponseBody) cached.getEntity()).getString(), "b\u00f6dy");
+        assertEquals(cachingClient.getCacheStats().getHitCount(), 1);
+        cachingClient.close();
+    }
+
+    @Test
+    public void testStreamedRequestBodies() throws Exception {
+        Path file = Files.createTempFile("parsec-body", ".txt");
+        try {
+            Files.write(file, "0123456789".getBytes(StandardCharsets.UTF_8));
+            ParsecAsyncHttpRequest.Builder builder = new ParsecAsyncHttpRequest.Builder()
+                    .setUrl(baseUrl + "/200")
+                    .setMethod("POST")
+                    .addQueryParam("echo", "true");
+
+            ParsecAsyncHttpRequest streamRequest = builder
+                    .setBody(new ByteArrayInputStream("stream".getBytes(StandardCharsets.UTF_8)))
+                    .build();
+            assertFalse(streamRequest.isBodyReplayable());
+            assertEquals(client.criticalExecute(streamRequest).get(5, TimeUnit.SECONDS).getEntity(), "stream");
+
+            ParsecAsyncHttpRequest channelRequest = builder
+                    .setBody(Channels.newChannel(new ByteArrayInputStream("channel".getBytes(StandardCharsets.UTF_8))))
+                    .build();
+            assertFalse(channelRequest.isBodyReplayable());
+            assertEquals(client.criticalExecute(channelRequest).get(5, TimeUnit.SECONDS).getEntity(), "channel");
+
+            ParsecAsyncHttpRequest fileRequest = builder.setBody(file.toFile()).build();
+            assertTrue(fileRequest.isBodyReplayable());
+            assertEquals(client.criticalExecute(fileRequest).get(5, TimeUnit.SECONDS).getEntity(), "0123456789");
+
+            ParsecAsyncHttpRequest regionRequest = builder.setBody(file.toFile(), 2, 5).build();
+            assertEquals(client.criticalExecute(regionRequest).get(5, TimeUnit.SECONDS).getEntity(), "23456");
+            assertEquals(regionRequest, builder.setBody(file.toFile(), 2, 5).build());
+            assertNotEquals(regionRequest, builder.setBody(file.toFile(), 3, 5).build());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testExecuteDecodesJson() throws Exception {
+        ParsecAsyncHttpRequest request = new ParsecAsyncHttpRequest.Builder()
+                .setUrl(baseUrl + "/200")
+                .addQueryParam("body", "{\"name\":\"b\u00f6dy\",\"values\":[1,2]}")
+                .build();
+
+        ParsecAsyncHttpClient cachingClient = new ParsecAsyncHttpClient.Builder().build();
+
+        Map<?, ?> decoded = cachingClient.execute(request, Map.class).get(5, TimeUnit.SECONDS);
+        assertEquals(decoded.get("name"), "b\u00f6dy");
+        assertEquals(decoded.get("values"), Arrays.asList(1, 2));
+
+        // cache hits are not decoded again
+        assertSame(cachingClient.execute(request, Map.class).get(5, TimeUnit.SECONDS), decoded);
+        assertEquals(cachingClient.getCacheStats().getHitCount(), 1);
+
+        Map<String, List<Integer>> values = cachingClient.execute(
+            new ParsecAsyncHttpRequest.Builder()
+                .setUrl(baseUrl + "/200")
+                .addQueryParam("body", "{\"values\":[1,2]}")
+                .build(),
+            new TypeReference<Map<String, List<Integer>>>() { }
+        ).get(5, TimeUnit.SECONDS);
+        assertEquals(values.get("values"), Arrays.asList(1, 2));
+
+        assertNull(cachingClient.execute(
+            new ParsecAsyncHttpRequest.Builder().setUrl(baseUrl + "/200").build(), Map.class
+        ).get(5, TimeUnit.SECONDS));
+        cachingClient.close();
+    }
+
+    @Test
+    public void testExecuteDecodesJsonFailures() throws Exception {
+        ParsecAsyncHttpClient cachingClient = new ParsecAsyncHttpClient.Builder().build();
+
+        try {
+            cachingClient.execute(
+                new ParsecAsyncHttpRequest.Builder().setUrl(baseUrl + "/404").build(), Map.class
+            ).get(5, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertEquals(((WebApplicationException) e.getCause()).getResponse().getStatus(), 404);
+        }
+
+        try {
+            cachingClient.execute(
+                new ParsecAsyncHttpRequest.Builder().setUrl(baseUrl + "/200").addQueryParam("body", "{").build(),
+                Map.class
+            ).get(5, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof com.fasterxml.jackson.core.JsonProcessingException);
+        }
+        cachingClient.close();
+    }
+
+    @Test
+    public void testCachedResponseIsRevalidated() throws Exception {
+        ParsecAsyncHttpRequest request = new ParsecAsyncHttpRequest.Builder()
+                .setUrl(baseUrl + "/200")
+                .addQueryParam("etag", "v1")
+                .addQueryParam("cacheControl", "max-age=0")
+                .build();
+
+        ParsecAsyncHttpClient cachingClient = new ParsecAsyncHttpClient.Builder().build();
+
+        Response response = cachingClient.execute(request).get(5, TimeUnit.SECONDS);
+        assertEquals(response.getStatus(), 200);
+        assertNull(response.getHeaderString("Revalidated"));
+
+        Response revalidated = cachingClient.execute(request).get(5, TimeUnit.SECONDS);
+        assertEquals(revalidated.getStatus(), 200);
+        assertEquals(revalidated.getHeaderString("Revalidated"), "true");
+        assertEquals(revalidated.getHeaderString("ETag"), "\"v1\"");
+
+        ParsecCacheStats stats = cachingClient.getCacheStats();
+        assertEquals(stats.getMissCount(), 2);
+        assertEquals(stats.getLoadSuccessCount(), 2);
+        assertEquals(stats.getRevalidationCount(), 1);
+        assertEquals(stats.getSize(), 1);
+        cachingClient.close();
+    }
+
     //@Test
     public void testMultiPart() throws Exception {
         CompletableFuture<Response> future = client.execute(new ParsecAsyncHttpRequest.Builder()
@@ -4,6 +4,7 @@
 package com.yahoo.parsec.clients;
 
 
+import com.ning.http.client.generators.InputStreamBodyGenerator;
 import com.ning.http.client.multipart.ByteArrayPart;
 import com.ning.http.client.multipart.FilePart;
 import com.ning.http.client.multipart.Part;
@@ -241,6 +242,24 @@ public class ParsecAsyncHttpRequestTest {
         assertEquals(binData, builder.setBody(binData).build().getBodyByte());
     }
 
+    @Test
+    public void testSetStreamedBody() throws Exception {
+        java.io.ByteArrayInputStream stream = new java.io.ByteArrayInputStream(new byte[] {1});
+        ParsecAsyncHttpRequest request = builder.setBody("body-data").setBody(stream).build();
+        assertNull(request.getBody());
+        assertSame(((InputStreamBodyGenerator) request.getNingRequest().getBodyGenerator()).getInputStream(), stream);
+        assertFalse(request.isBodyReplayable());
+        assertNotEquals(request, builder.setBody(stream).build());
+
+        request = builder.setBody(java.nio.channels.Channels.newChannel(stream)).build();
+        assertTrue(request.getNingRequest().getBodyGenerator() instanceof InputStreamBodyGenerator);
+        assertFalse(request.isBodyReplayable());
+
+        request = builder.setBody(new File("build.gradle"), 1, 2).build();
+        assertTrue(request.isBodyReplayable());
+        assertTrue(builder.setBody("body-data").build().isBodyReplayable());
+    }
+
     @Test
     public void testSetAndGetBodyEncoding() throws Exception {
         // Test default value
@@ -330,6 +349,126 @@ public class ParsecAsyncHttpRequestTest {
         assertEquals(5, builder.setMaxRetries(5).build().getMaxRetries());
     }
 
+    @Test
+    public void testSetAndGetRetryBackoff() throws Exception {
+        // Test default value
+        assertEquals(0, builder.build().getRetryBackoff());
+        assertEquals(30000, builder.build().getMaxRetryBackoff());
+
+        // Test set and get
+        ParsecAsyncHttpRequest request = builder.setRetryBackoff(100).setMaxRetryBackoff(2000).build();
+        assertEquals(100, request.getRetryBackoff());
+        assertEquals(2000, request.getMaxRetryBackoff());
+    }
+
+    @Test
+    public void testSetAndGetHedgeAfter() throws Exception {
+        // Test default value
+        assertEquals(0, builder.build().getHedgeAfter());
+        assertEquals(0.0, builder.build().getHedgeAfterPercentile());
+
+        // Test set and get
+        ParsecAsyncHttpRequest request = builder.setHedgeAfter(50).setHedgeAfterPercentile(95.0).build();
+        assertEquals(50, request.getHedgeAfter());
+        assertEquals(95.0, request.getHedgeAfterPercentile());
+    }
+
+    @Test
+    public void testEqualsAndHashCode() throws Exception {
+        ParsecAsyncHttpRequest request = new ParsecAsyncHttpRequest.Builder()
+            .setUrl("http://localhost/path?a=1")
+            .addHeader("X-First", "1")
+            .addHeader("X-Second", "2")
+            .addFormParam("form", "value")
+            .build();
+        ParsecAsyncHttpRequest same = new ParsecAsyncHttpRequest.Builder()
+            .setUrl("http://localhost/path?a=1")
+            .addHeader("x-second", "2")
+            .addHeader("X-FIRST", "1")
+            .addFormParam("form", "value")
+            .build();
+
+        assertEquals(request, same);
+        assertEquals(request.hashCode(), same.hashCode());
+        assertNotEquals(request, null);
+        assertNotEquals(request, "http://localhost/path?a=1");
+    }
+
+    @Test
+    public void testNotEquals() throws Exception {
+        ParsecAsyncHttpRequest request = builder.setUrl("http://localhost/path").build();
+
+        assertNotEquals(request, new ParsecAsyncHttpRequest.Builder().setUrl("http://localhost/other").build());
+        assertNotEquals(request, builder.setMethod("POST").build());
+        assertNotEquals(builder.build(), builder.setBody("body").build());
+        assertNotEquals(builder.build(), builder.setBody("body".getBytes(StandardCharsets.UTF_8)).build());
+        assertNotEquals(builder.build(), builder.addHeader("X-Header", "1").build());
+        assertNotEquals(builder.build(), builder.setMaxRetries(7).build());
+        assertNotEquals(builder.build(), builder.setCriticalGet(true).build());
+        assertNotEquals(builder.build(), builder.addBodyPart("part", "value").build());
+        assertNotEquals(request, request.withHeader("If-None-Match", "\"v1\""));
+    }
+
+    @Test
+    public void testStreamedBodiesAreOnlyEqualToCopies() throws Exception {
+        ParsecAsyncHttpRequest request = builder.setUrl("http://localhost/path")
+            .setBody(new java.io.ByteArrayInputStream(new byte[] {1})).build();
+        ParsecAsyncHttpRequest other = new ParsecAsyncHttpRequest.Builder().setUrl("http://localhost/path")
+            .setBody(new java.io.ByteArrayInputStream(new byte[] {1})).build();
+
+        assertNotEquals(request, other);
+        assertNotEquals(request.getFingerprint(), other.getFingerprint());
+        assertEquals(request.withHeader("A", "1"), request.withHeader("A", "1"));
+        assertNotEquals(request.withHeader("A", "1"), other.withHeader("A", "1"));
+        assertFalse(request.isFingerprintStable());
+        assertTrue(builder.setBody("body").build().isFingerprintStable());
+    }
+
+    @Test
+    public void testEqualsIsNotAffectedByBuilderChanges() throws Exception {
+        ParsecAsyncHttpRequest request = builder.setUrl("http://localhost/path").addRetryStatusCode(503).build();
+        ParsecAsyncHttpRequest same = new ParsecAsyncHttpRequest.Builder()
+            .setUrl("http://localhost/path").addRetryStatusCode(503).build();
+
+        builder.removeRetryStatusCode(503);
+        assertEquals(request, same);
+        assertEquals(1, request.getRetryStatusCodes().size());
+    }
+
+    @Test
+    public void testWithHeader() throws Exception {
+        ParsecAsyncHttpRequest request = builder
+            .setUrl("http://localhost/path")
+            .addHeader("If-None-Match", "old")
+            .addQueryParam("key", "value")
+            .setCriticalGet(true)
+            .setMaxRetries(5)
+            .build();
+        ParsecAsyncHttpRequest copy = request.withHeader("If-None-Match", "\"v1\"");
+
+        assertEquals("\"v1\"", copy.getHeaderString("If-None-Match"));
+        assertEquals("old", request.getHeaderString("If-None-Match"));
+        assertEquals(request.getUrl(), copy.getUrl());
+        assertEquals(request.getQueryParams(), copy.getQueryParams());
+        assertTrue(copy.isCriticalGet());
+        assertEquals(5, copy.getMaxRetries());
+        assertNotEquals(request, copy);
+    }
+
+    @Test
+    public void testAddSetAndGetCacheTags() throws Exception {
+        ParsecAsyncHttpRequest request = builder.setUrl("http://localhost/users/1")
+            .addCacheTag("user:1").addCacheTag("users").build();
+        ParsecAsyncHttpRequest untagged = new ParsecAsyncHttpRequest.Builder().setUrl("http://localhost/users/1").build();
+
+        assertEquals(request.getCacheTags(), new LinkedHashSet<>(Arrays.asList("user:1", "users")));
+        assertTrue(untagged.getCacheTags().isEmpty());
+        assertEquals(request, untagged);
+        assertEquals(request.withHeader("A", "1").getCacheTags(), request.getCacheTags());
+        assertEquals(builder.setCacheTags(Collections.singleton("other")).build().getCacheTags(),
+            Collections.singleton("other"));
+    }
+
     @Test
     public void testSetAndGetProxyServer() throws Exception {
         // Test default value
@@ -400,6 +539,57 @@ public class ParsecAsyncHttpRequestTest {
         assertEquals(3000, builder.setRequestTimeout(3000).build().getRequestTimeout());
     }
 
+    @Test
+    public void testSetAndGetDeadline() throws Exception {
+        // Test default value
+        ParsecAsyncHttpRequest request = builder.build();
+        assertEquals(0, request.getDeadline());
+        assertNull(request.getDeadlineHeader());
+        assertEquals(Long.MAX_VALUE, request.getTimeLeft());
+        assertSame(request.getNingRequest(), request.getNingRequest(1000));
+
+        // Test set and get, the deadline is not part of equals
+        long deadline = System.currentTimeMillis() + 10000;
+        ParsecAsyncHttpRequest withDeadline = builder.setDeadline(deadline).setDeadlineHeader("X-Budget").build();
+        assertEquals(deadline, withDeadline.getDeadline());
+        assertEquals("X-Budget", withDeadline.getDeadlineHeader());
+        assertTrue(withDeadline.getTimeLeft() > 9000 && withDeadline.getTimeLeft() <= 10000);
+        assertEquals(request, withDeadline);
+        assertSame(request.withoutDeadline(), request);
+        assertEquals(0, withDeadline.withoutDeadline().getDeadline());
+        assertEquals(withDeadline.withoutDeadline(), withDeadline);
+
+        long before = System.currentTimeMillis();
+        ParsecAsyncHttpRequest after = new ParsecAsyncHttpRequest.Builder()
+            .setDeadlineAfter(2, java.util.concurrent.TimeUnit.SECONDS).build();
+        assertTrue(after.getDeadline() >= before + 2000 && after.getDeadline() <= System.currentTimeMillis() + 2000);
+    }
+
+    @Test
+    public void testGetNingRequestWithinDeadline() throws Exception {
+        ParsecAsyncHttpRequest request = builder
+            .setDeadline(System.currentTimeMillis() + 5000)
+            .setDeadlineHeader("X-Budget")
+            .build();
+
+        // Attempt timeout shrunk to the time left, which is propagated in the header
+        com.ning.http.client.Request ningRequest = request.getNingRequest(60000);
+        assertTrue(ningRequest.getRequestTimeout() > 4000 && ningRequest.getRequestTimeout() <= 5000);
+        long budget = Long.parseLong(ningRequest.getHeaders().getFirstValue("X-Budget"));
+        assertTrue(budget > 4000 && budget <= 5000);
+
+        // Shorter timeouts are kept, 0 for the client request timeout
+        assertEquals(0, request.getNingRequest(1000).getRequestTimeout());
+        assertEquals(2000, builder.setRequestTimeout(2000).build().getNingRequest(60000).getRequestTimeout());
+
+        try {
+            builder.setDeadline(System.currentTimeMillis() - 1).build().getNingRequest(1000);
+            fail("deadline passed");
+        } catch (java.util.concurrent.TimeoutException expected) {
+            assertTrue(expected.getMessage().contains("Deadline exceeded"));
+        }
+    }
+
     @Test
     public void testSetAndGetUri() throws Exception {
         // Test default value
@@ -460,6 +650,15 @@ public class ParsecAsyncHttpRequestTest {
         assertEquals(requestExistEmpty.getHeaderString("Accept-Encoding"), "");
     }
 
+    @Test
+    public void testSetAndIsResponseBodyAsBytes() throws Exception {
+        assertFalse(builder.build().isResponseBodyAsBytes());
+
+        ParsecAsyncHttpRequest request = builder.setResponseBodyAsBytes(true).build();
+        assertTrue(request.isResponseBodyAsBytes());
+        assertNotEquals(request, builder.setResponseBodyAsBytes(false).build());
+    }
+
     @Test
     public void testMultipartBody() {
         String filepath = "src/test/java/com/yahoo/parsec/clients/ParsecAsyncHttpRequestTest.java";
@@ -0,0 +1,658 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.ws.rs.core.Response;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class ParsecAsyncHttpResponseLoadingCacheTest {
+    private MutableClock clock;
+    private List<ParsecAsyncHttpRequest> executed;
+    private Queue<CompletableFuture<Response>> responses;
+    private ParsecAsyncHttpResponseLoadingCache cache;
+    private ParsecAsyncHttpRequest request;
+
+    private static final class MutableClock extends Clock {
+        private long millis = 1_000_000_000_000L;
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+
+        @Override
+        public long millis() {
+            return millis;
+        }
+
+        void advance(long advance) {
+            millis += advance;
+        }
+    }
+
+    private void respond(Response.ResponseBuilder builder) {
+        responses.add(CompletableFuture.completedFuture(builder.build()));
+    }
+
+    private ParsecAsyncHttpResponseLoadingCache.Builder newCacheBuilder() {
+        ParsecAsyncHttpClient client = mock(ParsecAsyncHttpClient.class);
+        try {
+            when(client.criticalExecute(any(ParsecAsyncHttpRequest.class))).thenAnswer(invocation -> {
+                executed.add((ParsecAsyncHttpRequest) invocation.getArguments()[0]);
+                return responses.remove();
+            });
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e);
+        }
+
+        return new ParsecAsyncHttpResponseLoadingCache.Builder(client)
+            .expireAfterWrite(2, TimeUnit.SECONDS)
+            .executor(Runnable::run)
+            .clock(clock);
+    }
+
+    private ParsecAsyncHttpResponseLoadingCache replaceCache(ParsecAsyncHttpResponseLoadingCache.Builder builder) {
+        cache.shutdownCleanUpExecutorService();
+        cache = builder.build();
+        return cache;
+    }
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        clock = new MutableClock();
+        executed = new ArrayList<>();
+        responses = new LinkedList<>();
+
+        cache = newCacheBuilder().maximumSize(100).build();
+        request = new ParsecAsyncHttpRequest.Builder().setUrl("http://localhost/resource").build();
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        cache.shutdownCleanUpExecutorService();
+    }
+
+    @Test
+    public void testFreshResponseIsServedFromCache() throws Exception {
+        respond(Response.ok("v1").header("Cache-Control", "max-age=60"));
+
+        assertEquals(cache.get(request).get().getEntity(), "v1");
+        clock.advance(59000);
+        assertEquals(cache.get(request).get().getEntity(), "v1");
+        assertEquals(executed.size(), 1);
+    }
+
+    @Test
+    public void testDefaultTimeToLive() throws Exception {
+        respond(Response.ok("v1"));
+        respond(Response.ok("v2"));
+
+        assertEquals(cache.get(request).get().getEntity(), "v1");
+        clock.advance(1999);
+        assertEquals(cache.get(request).get().getEntity(), "v1");
+        clock.advance(1);
+        assertEquals(cache.get(request).get().getEntity(), "v2");
+        assertEquals(executed.size(), 2);
+        assertNull(executed.get(1).getHeaderString("If-None-Match"));
+    }
+
+    @Test
+    public void testStaleResponseIsRevalidatedWithEtag() throws Exception {
+        respond(Response.ok("v1").header("Cache-Control", "max-age=10").header("ETag", "\"v1\""));
+        respond(Response.notModified().header("Cache-Control", "max-age=20"));
+
+        Response first = cache.get(request).get();
+        clock.advance(10000);
+        Response revalidated = cache.get(request).get();
+
+        assertEquals(executed.size(), 2);
+        assertEquals(executed.get(1).getHeaderString("If-None-Match"), "\"v1\"");
+        assertEquals(revalidated.getStatus(), 200);
+        assertEquals(revalidated.getEntity(), first.getEntity());
+        assertEquals(revalidated.getHeaderString("Cache-Control"), "max-age=20");
+
+        // fresh again for the new max-age
+        clock.advance(19000);
+        assertSame(cache.get(request).get(), revalidated);
+        assertEquals(executed.size(), 2);
+    }
+
+    @Test
+    public void testStaleResponseIsRevalidatedWithLastModified() throws Exception {
+        String lastModified = "Wed, 21 Oct 2015 07:28:00 GMT";
+        respond(Response.ok("v1").header("Cache-Control", "no-cache").header("Last-Modified", lastModified));
+        respond(Response.ok("v2").header("Cache-Control", "no-cache"));
+
+        cache.get(request).get();
+        assertEquals(cache.get(request).get().getEntity(), "v2");
+        assertEquals(executed.get(1).getHeaderString("If-Modified-Since"), lastModified);
+    }
+
+    @Test
+    public void testNoStoreResponseIsNotKept() throws Exception {
+        respond(Response.ok("v1").header("Cache-Control", "no-store"));
+        respond(Response.ok("v2").header("Cache-Control", "no-store"));
+
+        assertEquals(cache.get(request).get().getEntity(), "v1");
+        assertNull(cache.getIfPresent(request));
+        assertEquals(cache.get(request).get().getEntity(), "v2");
+    }
+
+    @Test
+    public void testFailedRevalidationCanBeRetried() throws Exception {
+        respond(Response.ok("v1").header("Cache-Control", "max-age=1").header("ETag", "\"v1\""));
+        CompletableFuture<Response> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new IOException("failed"));
+        responses.add(failed);
+        respond(Response.notModified());
+
+        cache.get(request).get();
+        clock.advance(1000);
+        try {
+            cache.get(request).get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        assertEquals(cache.get(request).get().getEntity(), "v1");
+        assertEquals(executed.size(), 3);
+    }
+
+    @Test
+    public void testCleanUpRemovesUnusableEntries() throws Exception {
+        ParsecAsyncHttpRequest revalidatable = new ParsecAsyncHttpRequest.Builder()
+            .setUrl("http://localhost/revalidatable").build();
+        respond(Response.ok("v1"));
+        respond(Response.ok("v1").header("ETag", "\"v1\""));
+
+        cache.get(request).get();
+        cache.get(revalidatable).get();
+        clock.advance(2000);
+        cache.cleanUp();
+
+        assertNull(cache.getIfPresent(request));
+        assertEquals(cache.getIfPresent(revalidatable).get().getEntity(), "v1");
+    }
+
+    @Test
+    public void testStaleWhileRevalidateServesStaleDuringOneBackgroundRevalidation() throws Exception {
+        replaceCache(newCacheBuilder().staleWhileRevalidate(5, TimeUnit.SECONDS));
+        respond(Response.ok("v1").header("Cache-Control", "max-age=10"));
+        CompletableFuture<Response> pending = new CompletableFuture<>();
+        responses.add(pending);
+
+        cache.get(request).get();
+        clock.advance(10000);
+        assertEquals(cache.get(request).get().getEntity(), "v1");
+        assertEquals(cache.get(request).get().getEntity(), "v1");
+        assertEquals(executed.size(), 2);
+
+        pending.complete(Response.ok("v2").header("Cache-Control", "max-age=10").build());
+        assertEquals(cache.get(request).get().getEntity(), "v2");
+        assertEquals(executed.size(), 2);
+    }
+
+    @Test
+    public void testStaleWhileRevalidateDirective() throws Exception {
+        respond(Response.ok("v1").header("Cache-Control", "max-age=10, stale-while-revalidate=5"));
+        respond(Response.ok("v2").header("Cache-Control", "max-age=10, stale-while-revalidate=5"));
+        respond(Response.ok("v3"));
+
+        cache.get(request).get();
+        clock.advance(14999);
+        assertEquals(cache.get(request).get().getEntity(), "v1");
+        assertEquals(cache.get(request).get().getEntity(), "v2");
+
+        // beyond the window callers wait for the revalidation
+        clock.advance(15000);
+        assertEquals(cache.get(request).get().getEntity(), "v3");
+        assertEquals(executed.size(), 3);
+    }
+
+    @Test
+    public void testStaleIfErrorServesLastGoodResponse() throws Exception {
+        respond(Response.ok("v1").header("Cache-Control", "max-age=1, stale-if-error=60"));
+        CompletableFuture<Response> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new IOException("failed"));
+        responses.add(failed);
+        respond(Response.status(503));
+
+        cache.get(request).get();
+        clock.advance(1000);
+        assertEquals(cache.get(request).get().getEntity(), "v1");
+        assertEquals(cache.get(request).get().getEntity(), "v1");
+        assertEquals(cache.getIfPresent(request).get().getEntity(), "v1");
+        assertEquals(executed.size(), 3);
+
+        // beyond the window errors are returned
+        clock.advance(60000);
+        respond(Response.status(503));
+        assertEquals(cache.get(request).get().getStatus(), 503);
+    }
+
+    @Test
+    public void testStaleIfErrorDefault() throws Exception {
+        replaceCache(newCacheBuilder().staleIfError(60, TimeUnit.SECONDS));
+        respond(Response.ok("v1"));
+        CompletableFuture<Response> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new IOException("failed"));
+        responses.add(failed);
+
+        cache.get(request).get();
+        clock.advance(2000);
+        assertEquals(cache.get(request).get().getEntity(), "v1");
+    }
+
+    @Test
+    public void testEarlyRefresh() throws Exception {
+        // practically always refreshes early
+        replaceCache(newCacheBuilder().earlyRefreshBeta(1e300));
+        respond(Response.ok("v1").header("Cache-Control", "max-age=10"));
+        respond(Response.ok("v2").header("Cache-Control", "max-age=10"));
+        respond(Response.ok("v3").header("Cache-Control", "max-age=10"));
+
+        cache.get(request).get();
+        assertEquals(cache.get(request).get().getEntity(), "v1");
+        assertEquals(executed.size(), 2);
+        assertEquals(cache.get(request).get().getEntity(), "v2");
+    }
+
+    @Test
+    public void testNoEarlyRefreshByDefault() throws Exception {
+        respond(Response.ok("v1").header("Cache-Control", "max-age=10"));
+
+        cache.get(request).get();
+        clock.advance(9999);
+        cache.get(request).get();
+        assertEquals(executed.size(), 1);
+    }
+
+    @Test
+    public void testMaxEntryWeightIsNotCached() throws Exception {
+        replaceCache(newCacheBuilder().maxEntryWeight(100));
+        ParsecAsyncHttpRequest small = new ParsecAsyncHttpRequest.Builder().setUrl("http://localhost/small").build();
+        respond(Response.ok(new String(new char[100])));
+        respond(Response.ok(new String(new char[10])));
+
+        cache.get(request).get();
+        cache.get(small).get();
+
+        assertNull(cache.getIfPresent(request));
+        assertEquals(cache.getIfPresent(small).get().getEntity(), new String(new char[10]));
+        assertEquals(cache.getWeightedSize(), 20);
+    }
+
+    @Test
+    public void testMaximumWeight() throws Exception {
+        replaceCache(newCacheBuilder().maximumWeight(300));
+        for (int i = 0; i < 4; i++) {
+            respond(Response.ok(new String(new char[50])));
+            cache.get(new ParsecAsyncHttpRequest.Builder().setUrl("http://localhost/" + i).build()).get();
+        }
+        cache.cleanUp();
+
+        assertEquals(cache.synchronous().estimatedSize(), 3);
+        assertEquals(cache.getWeightedSize(), 300);
+    }
+
+    @Test
+    public void testOffHeapStorage() throws Exception {
+        replaceCache(newCacheBuilder().offHeapStorage(10, 10));
+        ParsecAsyncHttpRequest other = new ParsecAsyncHttpRequest.Builder().setUrl("http://localhost/other").build();
+        respond(Response.ok("0123456789").header("Cache-Control", "max-age=60"));
+        respond(Response.ok("abcdefghij").header("Cache-Control", "max-age=60"));
+        respond(Response.ok("v2").header("Cache-Control", "max-age=60"));
+
+        assertEquals(cache.get(request).get().getEntity(), "0123456789");
+        assertTrue(cache.synchronous().getIfPresent(request).isOffHeap());
+        assertEquals(cache.get(request).get().getEntity(), "0123456789");
+        assertEquals(cache.getBodyStore().getLiveBytes(), 10);
+
+        // the body of request is evicted by the body of other, request is reloaded
+        cache.get(other).get();
+        assertEquals(cache.get(request).get().getEntity(), "v2");
+        assertEquals(executed.size(), 3);
+
+        cache.synchronous().invalidateAll();
+        cache.cleanUp();
+        assertEquals(cache.getBodyStore().getLiveBytes(), 0);
+    }
+
+    @Test
+    public void testNotFoundIsNegativelyCached() throws Exception {
+        replaceCache(newCacheBuilder()
+            .negativeTimeToLive(Response.Status.Family.CLIENT_ERROR, 1, TimeUnit.SECONDS));
+        respond(Response.status(Response.Status.NOT_FOUND).entity("missing").header("Cache-Control", "max-age=60"));
+        respond(Response.ok("v1"));
+
+        assertEquals(cache.get(request).get().getStatus(), 404);
+        clock.advance(999);
+        assertEquals(cache.get(request).get().getEntity(), "missing");
+        assertEquals(executed.size(), 1);
+        assertNull(cache.synchronous().getIfPresent(request));
+        assertEquals(cache.getNegativeCache().estimatedSize(), 1);
+
+        clock.advance(1);
+        assertEquals(cache.get(request).get().getEntity(), "v1");
+        assertEquals(executed.size(), 2);
+    }
+
+    @Test
+    public void testNegativeTimeToLiveIsCappedByFreshness() throws Exception {
+        replaceCache(newCacheBuilder()
+            .negativeTimeToLive(Response.Status.Family.SERVER_ERROR, 10, TimeUnit.SECONDS));
+        respond(Response.status(Response.Status.SERVICE_UNAVAILABLE).header("Cache-Control", "max-age=1"));
+        respond(Response.status(Response.Status.SERVICE_UNAVAILABLE).header("Cache-Control", "no-store"));
+        respond(Response.status(Response.Status.SERVICE_UNAVAILABLE));
+
+        assertEquals(cache.get(request).get().getStatus(), 503);
+        assertEquals(cache.get(request).get().getStatus(), 503);
+        assertEquals(executed.size(), 1);
+
+        clock.advance(1000);
+        assertEquals(cache.get(request).get().getStatus(), 503);
+        assertEquals(cache.get(request).get().getStatus(), 503);
+        assertEquals(executed.size(), 3);
+    }
+
+    @Test
+    public void testErrorStatusWithoutNegativeTimeToLiveIsCachedAsUsual() throws Exception {
+        replaceCache(newCacheBuilder()
+            .negativeTimeToLive(Response.Status.Family.SERVER_ERROR, 1, TimeUnit.SECONDS));
+        respond(Response.status(Response.Status.NOT_FOUND));
+
+        cache.get(request).get();
+        assertEquals(cache.synchronous().getIfPresent(request).getStatus(), 404);
+        assertEquals(cache.getNegativeCache().estimatedSize(), 0);
+    }
+
+    @Test
+    public void testFailureIsNegativelyCached() throws Exception {
+        replaceCache(newCacheBuilder().exceptionTimeToLive(1, TimeUnit.SECONDS));
+        CompletableFuture<Response> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new IOException("connect"));
+        responses.add(failed);
+        respond(Response.ok("v1"));
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                cache.get(request).get();
+                fail();
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IOException);
+            }
+        }
+        assertEquals(executed.size(), 1);
+
+        clock.advance(1000);
+        assertEquals(cache.get(request).get().getEntity(), "v1");
+        assertEquals(executed.size(), 2);
+    }
+
+    @Test
+    public void testLocalFailureIsNotNegativelyCached() throws Exception {
+        replaceCache(newCacheBuilder().exceptionTimeToLive(1, TimeUnit.SECONDS));
+        List<Exception> failures = Arrays.asList(
+            new ParsecDeadlineExceededException("deadline"),
+            new ParsecCircuitBreakerOpenException("http://localhost"),
+            new ParsecConcurrencyLimitExceededException("http://localhost"));
+        for (Exception failure : failures) {
+            CompletableFuture<Response> failed = new CompletableFuture<>();
+            failed.completeExceptionally(failure);
+            responses.add(failed);
+        }
+        respond(Response.ok("v1"));
+
+        for (Exception failure : failures) {
+            try {
+                cache.get(request).get();
+                fail();
+            } catch (ExecutionException e) {
+                assertSame(e.getCause(), failure);
+            }
+            assertEquals(cache.getNegativeCache().estimatedSize(), 0);
+        }
+        assertEquals(cache.get(request).get().getEntity(), "v1");
+        assertEquals(executed.size(), 4);
+    }
+
+    @Test
+    public void testNegativeMaximumSize() throws Exception {
+        replaceCache(newCacheBuilder()
+            .negativeTimeToLive(Response.Status.Family.CLIENT_ERROR, 1, TimeUnit.SECONDS)
+            .negativeMaximumSize(2));
+        for (int i = 0; i < 10; i++) {
+            respond(Response.status(Response.Status.NOT_FOUND));
+            cache.get(new ParsecAsyncHttpRequest.Builder().setUrl("http://localhost/missing/" + i).build()).get();
+        }
+        cache.cleanUp();
+        assertTrue(cache.getNegativeCache().estimatedSize() <= 2);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNegativeTimeToLiveOfSuccessfulFamily() throws Exception {
+        newCacheBuilder().negativeTimeToLive(Response.Status.Family.SUCCESSFUL, 1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testKeyNormalizerSharesEntries() throws Exception {
+        replaceCache(newCacheBuilder().keyNormalizer(new ParsecCacheKeyNormalizer.Builder()
+            .addAllowedHeader("Accept").build()));
+        respond(Response.ok("v1").header("Cache-Control", "max-age=60"));
+
+        assertEquals(cache.get(new ParsecAsyncHttpRequest.Builder().setUrl("http://localhost/resource?b=2&a=1")
+            .addHeader("X-Trace-Id", "1").build()).get().getEntity(), "v1");
+        assertEquals(cache.get(new ParsecAsyncHttpRequest.Builder().setUrl("http://localhost/resource?a=1&b=2")
+            .addHeader("X-Trace-Id", "2").build()).get().getEntity(), "v1");
+        assertEquals(executed.size(), 1);
+        // the request executed is the caller's own request
+        assertEquals(executed.get(0).getHeaderString("X-Trace-Id"), "1");
+    }
+
+    @Test
+    public void testKeyNormalizerHonorsVary() throws Exception {
+        replaceCache(newCacheBuilder().keyNormalizer(new ParsecCacheKeyNormalizer.Builder()
+            .setHeaderAllowlist(Collections.emptyList()).build()));
+        ParsecAsyncHttpRequest english = new ParsecAsyncHttpRequest.Builder().setUrl("http://localhost/resource")
+            .addHeader("Accept-Language", "en").addHeader("X-Trace-Id", "1").build();
+        ParsecAsyncHttpRequest french = new ParsecAsyncHttpRequest.Builder().setUrl("http://localhost/resource")
+            .addHeader("Accept-Language", "fr").addHeader("X-Trace-Id", "2").build();
+        respond(Response.ok("hello").header("Cache-Control", "max-age=60").header("Vary", "Accept-Language"));
+        respond(Response.ok("bonjour").header("Cache-Control", "max-age=60").header("Vary", "Accept-Language"));
+
+        assertEquals(cache.get(english).get().getEntity(), "hello");
+        assertEquals(cache.get(french).get().getEntity(), "bonjour");
+        assertEquals(cache.get(english).get().getEntity(), "hello");
+        assertEquals(cache.get(new ParsecAsyncHttpRequest.Builder().setUrl("http://localhost/resource")
+            .addHeader("Accept-Language", "fr").addHeader("X-Trace-Id", "3").build()).get().getEntity(), "bonjour");
+        assertEquals(executed.size(), 2);
+        assertEquals(cache.synchronous().estimatedSize(), 2);
+    }
+
+    @Test
+    public void testVaryAllIsNotCached() throws Exception {
+        respond(Response.ok("v1").header("Cache-Control", "max-age=60").header("Vary", "*"));
+        respond(Response.ok("v2").header("Cache-Control", "max-age=60").header("Vary", "*"));
+
+        assertEquals(cache.get(request).get().getEntity(), "v1");
+        assertEquals(cache.get(request).get().getEntity(), "v2");
+    }
+
+    @Test
+    public void testStats() throws Exception {
+        replaceCache(newCacheBuilder()
+            .maximumSize(100)
+            .staleWhileRevalidate(10, TimeUnit.SECONDS)
+            .exceptionTimeToLive(1, TimeUnit.SECONDS));
+        respond(Response.ok("v1").header("Cache-Control", "max-age=10").header("ETag", "\"v1\""));
+        respond(Response.notModified());
+        CompletableFuture<Response> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new IOException("failed"));
+        responses.add(failed);
+
+        cache.get(request).get();
+        cache.get(request).get();
+        clock.advance(10000);
+        cache.get(request).get();
+        ParsecAsyncHttpRequest failing = new ParsecAsyncHttpRequest.Builder().setUrl("http://localhost/failing").build();
+        for (int i = 0; i < 2; i++) {
+            try {
+                cache.get(failing).get();
+                fail();
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IOException);
+            }
+        }
+
+        ParsecCacheStats stats = cache.getStats();
+        assertEquals(stats.getHitCount(), 1);
+        assertEquals(stats.getStaleHitCount(), 1);
+        assertEquals(stats.getNegativeHitCount(), 1);
+        assertEquals(stats.getMissCount(), 2);
+        assertEquals(stats.getRequestCount(), 5);
+        assertEquals(stats.getHitRate(), 0.6, 0.001);
+        assertEquals(stats.getLoadSuccessCount(), 2);
+        assertEquals(stats.getLoadFailureCount(), 1);
+        assertEquals(stats.getRevalidationCount(), 1);
+        assertTrue(stats.getTotalLoadTime() >= 0);
+        assertEquals(stats.getSize(), 1);
+        assertEquals(stats.getNegativeSize(), 1);
+        assertTrue(stats.getWeightedSize() > 0);
+    }
+
+    @Test
+    public void testStatsCountRemovals() throws Exception {
+        respond(Response.ok("v1").header("Cache-Control", "no-store"));
+
+        cache.get(request).get();
+        cache.synchronous().cleanUp();
+        ParsecCacheStats stats = cache.getStats();
+        assertEquals(stats.getMissCount(), 1);
+        assertEquals(stats.getSize(), 0);
+        assertEquals((long) stats.getRemovalCounts().get(RemovalCause.EXPLICIT), 1);
+        assertEquals(stats.getEvictionCount(), 0);
+    }
+
+    @Test
+    public void testInvalidate() throws Exception {
+        respond(Response.ok("v1").header("Cache-Control", "max-age=60"));
+        respond(Response.ok("v2").header("Cache-Control", "max-age=60"));
+
+        assertEquals(cache.get(request).get().getEntity(), "v1");
+        cache.invalidate(request);
+        assertEquals(cache.get(request).get().getEntity(), "v2");
+        assertEquals(executed.size(), 2);
+    }
+
+    @Test
+    public void testInvalidateByHostUrlPrefixAndTag() throws Exception {
+        replaceCache(newCacheBuilder().negativeTimeToLive(Response.Status.Family.CLIENT_ERROR, 60, TimeUnit.SECONDS));
+        ParsecAsyncHttpRequest user = new ParsecAsyncHttpRequest.Builder().setUrl("http://users/users/1")
+            .addCacheTag("user:1").build();
+        ParsecAsyncHttpRequest friends = new ParsecAsyncHttpRequest.Builder().setUrl("http://users/users/1/friends")
+            .addCacheTag("user:1").build();
+        ParsecAsyncHttpRequest missing = new ParsecAsyncHttpRequest.Builder().setUrl("http://users/users/2").build();
+        ParsecAsyncHttpRequest group = new ParsecAsyncHttpRequest.Builder().setUrl("http://groups/groups/1").build();
+        for (int i = 0; i < 3; i++) {
+            respond(Response.ok("v" + i).header("Cache-Control", "max-age=60"));
+        }
+        respond(Response.status(Response.Status.NOT_FOUND));
+
+        cache.get(user).get();
+        cache.get(friends).get();
+        cache.get(group).get();
+        cache.get(missing).get();
+        assertEquals(cache.getIndex().size(), 4);
+
+        assertEquals(cache.invalidateTag("user:1"), 2);
+        assertNull(cache.getIfPresent(user));
+        assertNull(cache.getIfPresent(friends));
+        assertEquals(cache.invalidateTag("user:1"), 0);
+
+        // negatively cached responses are invalidated too
+        assertEquals(cache.invalidateUrlPrefix("http://users/users/"), 1);
+        assertNull(cache.getIfPresent(missing));
+
+        assertEquals(cache.invalidateHost("GROUPS"), 1);
+        assertNull(cache.getIfPresent(group));
+        assertEquals(cache.getIndex().size(), 0);
+    }
+
+    @Test
+    public void testDiskStorageSurvivesRestart() throws Exception {
+        Path directory = Files.createTempDirectory("parsec-disk-cache");
+        try {
+            replaceCache(newCacheBuilder().diskStorage(directory, 4096, 2));
+            respond(Response.ok("v1").header("Cache-Control", "max-age=10").header("ETag", "\"v1\""));
+            cache.get(request).get();
+            assertEquals(cache.getDiskCache().size(), 1);
+
+            // fresh on disk: served without executing the request
+            replaceCache(newCacheBuilder().diskStorage(directory, 4096, 2));
+            assertEquals(cache.get(request).get().getEntity(), "v1");
+            assertEquals(executed.size(), 1);
+
+            // stale on disk: revalidated
+            clock.advance(10000);
+            replaceCache(newCacheBuilder().diskStorage(directory, 4096, 2));
+            respond(Response.notModified().header("Cache-Control", "max-age=10"));
+            assertEquals(cache.get(request).get().getEntity(), "v1");
+            assertEquals(executed.size(), 2);
+            assertEquals(executed.get(1).getHeaderString("If-None-Match"), "\"v1\"");
+
+            // invalidation also drops the response from disk
+            assertEquals(cache.invalidateHost("localhost"), 1);
+            assertEquals(cache.getDiskCache().size(), 0);
+        } finally {
+            cache.shutdownCleanUpExecutorService();
+            File[] files = directory.toFile().listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+            directory.toFile().delete();
+        }
+    }
+}
@@ -0,0 +1,152 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import com.ning.http.client.AsyncHandler;
+import com.ning.http.client.HttpResponseBodyPart;
+import com.ning.http.client.HttpResponseStatus;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.ws.rs.WebApplicationException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+public class ParsecBodyPublisherTest {
+    private List<ParsecAsyncHandlerWrapper<Void>> wrappers;
+    private List<CompletableFuture<Void>> executions;
+    private ParsecBodyPublisher publisher;
+
+    private HttpResponseStatus mockStatus(int statusCode) {
+        HttpResponseStatus status = mock(HttpResponseStatus.class);
+        when(status.getStatusCode()).thenReturn(statusCode);
+        return status;
+    }
+
+    private HttpResponseBodyPart mockBodyPart(String body) {
+        HttpResponseBodyPart bodyPart = mock(HttpResponseBodyPart.class);
+        when(bodyPart.getBodyByteBuffer()).thenReturn(ByteBuffer.wrap(body.getBytes(StandardCharsets.UTF_8)));
+        return bodyPart;
+    }
+
+    private String toString(ByteBuffer buffer) {
+        return StandardCharsets.UTF_8.decode(buffer).toString();
+    }
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        wrappers = new CopyOnWriteArrayList<>();
+        executions = new CopyOnWriteArrayList<>();
+        publisher = new ParsecBodyPublisher(
+            new ParsecAsyncHttpRequest.Builder().setUrl("http://localhost/200").build(),
+            wrapper -> {
+                CompletableFuture<Void> execution = new CompletableFuture<>();
+                wrappers.add(wrapper);
+                executions.add(execution);
+                return execution;
+            });
+    }
+
+    @Test
+    public void testBodyPartsOnDemand() throws Exception {
+        ParsecTestSubscriber<ByteBuffer> subscriber = new ParsecTestSubscriber<>();
+        publisher.subscribe(subscriber);
+        assertTrue(wrappers.isEmpty());
+
+        subscriber.request(1);
+        ParsecAsyncHandlerWrapper<Void> wrapper = wrappers.get(0);
+        assertEquals(wrapper.onStatusReceived(mockStatus(200)), AsyncHandler.STATE.CONTINUE);
+        assertEquals(wrapper.onBodyPartReceived(mockBodyPart("a")), AsyncHandler.STATE.CONTINUE);
+        assertEquals(wrapper.onBodyPartReceived(mockBodyPart("b")), AsyncHandler.STATE.CONTINUE);
+        executions.get(0).complete(null);
+
+        assertEquals(subscriber.items.size(), 1);
+        assertEquals(toString(subscriber.items.get(0)), "a");
+        assertFalse(subscriber.completed);
+
+        subscriber.request(Long.MAX_VALUE);
+        assertTrue(subscriber.await());
+        assertEquals(subscriber.items.size(), 2);
+        assertEquals(toString(subscriber.items.get(1)), "b");
+        assertTrue(subscriber.completed);
+        assertNull(subscriber.error);
+    }
+
+    @Test
+    public void testErrorStatus() throws Exception {
+        ParsecTestSubscriber<ByteBuffer> subscriber = new ParsecTestSubscriber<>();
+        publisher.subscribe(subscriber);
+        subscriber.request(1);
+
+        assertEquals(wrappers.get(0).onStatusReceived(mockStatus(404)), AsyncHandler.STATE.ABORT);
+
+        assertTrue(subscriber.await());
+        assertTrue(subscriber.error instanceof WebApplicationException);
+        assertEquals(((WebApplicationException) subscriber.error).getResponse().getStatus(), 404);
+    }
+
+    @Test
+    public void testFailureDropsBufferedParts() throws Exception {
+        ParsecTestSubscriber<ByteBuffer> subscriber = new ParsecTestSubscriber<>();
+        publisher.subscribe(subscriber);
+        subscriber.request(1);
+
+        ParsecAsyncHandlerWrapper<Void> wrapper = wrappers.get(0);
+        wrapper.onStatusReceived(mockStatus(200));
+        wrapper.onBodyPartReceived(mockBodyPart("a"));
+        wrapper.onBodyPartReceived(mockBodyPart("b"));
+        IOException failure = new IOException("failed");
+        executions.get(0).completeExceptionally(failure);
+
+        assertTrue(subscriber.await());
+        assertSame(subscriber.error, failure);
+        assertEquals(subscriber.items.size(), 1);
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        ParsecTestSubscriber<ByteBuffer> subscriber = new ParsecTestSubscriber<>();
+        publisher.subscribe(subscriber);
+        subscriber.request(1);
+        subscriber.subscription.cancel();
+
+        assertTrue(executions.get(0).isCancelled());
+        assertEquals(wrappers.get(0).onBodyPartReceived(mockBodyPart("a")), AsyncHandler.STATE.ABORT);
+        assertTrue(subscriber.items.isEmpty());
+        assertFalse(subscriber.completed);
+    }
+
+    @Test
+    public void testCancelBeforeRequest() throws Exception {
+        ParsecTestSubscriber<ByteBuffer> subscriber = new ParsecTestSubscriber<>();
+        publisher.subscribe(subscriber);
+        subscriber.subscription.cancel();
+        subscriber.request(1);
+
+        assertTrue(executions.isEmpty());
+    }
+
+    @Test
+    public void testInvalidRequest() throws Exception {
+        ParsecTestSubscriber<ByteBuffer> subscriber = new ParsecTestSubscriber<>();
+        publisher.subscribe(subscriber);
+        subscriber.request(-1);
+
+        assertTrue(subscriber.await());
+        assertTrue(subscriber.error instanceof IllegalArgumentException);
+        assertTrue(executions.isEmpty());
+    }
+}
@@ -0,0 +1,117 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class ParsecCacheIndexTest {
+    private Set<ParsecAsyncHttpRequest> cached;
+    private ParsecCacheIndex index;
+
+    private ParsecAsyncHttpRequest request(String url, String... tags) {
+        ParsecAsyncHttpRequest.Builder builder = new ParsecAsyncHttpRequest.Builder().setUrl(url);
+        for (String tag : tags) {
+            builder.addCacheTag(tag);
+        }
+        return builder.build();
+    }
+
+    private ParsecAsyncHttpRequest cache(String url, String... tags) {
+        ParsecAsyncHttpRequest request = request(url, tags);
+        cached.add(request);
+        index.add(request, request);
+        return request;
+    }
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        cached = new HashSet<>();
+        index = new ParsecCacheIndex(cached::contains);
+    }
+
+    @Test
+    public void testGetByHost() throws Exception {
+        ParsecAsyncHttpRequest first = cache("http://Users.example.com/users/1");
+        ParsecAsyncHttpRequest second = cache("https://users.example.com:8443/users/2");
+        cache("http://other.example.com/users/1");
+
+        assertEquals(new HashSet<>(index.getByHost("USERS.example.com")), new HashSet<>(Arrays.asList(first, second)));
+        assertTrue(index.getByHost("missing.example.com").isEmpty());
+    }
+
+    @Test
+    public void testGetByUrlPrefix() throws Exception {
+        ParsecAsyncHttpRequest first = cache("http://localhost/users/1");
+        ParsecAsyncHttpRequest firstFriends = cache("http://localhost/users/1/friends");
+        cache("http://localhost/users/2");
+        cache("http://localhost/groups/1");
+
+        assertEquals(new HashSet<>(index.getByUrlPrefix("http://localhost/users/1")),
+            new HashSet<>(Arrays.asList(first, firstFriends)));
+        assertEquals(index.getByUrlPrefix("http://localhost/").size(), 4);
+        assertTrue(index.getByUrlPrefix("http://localhost/z").isEmpty());
+    }
+
+    @Test
+    public void testGetByTag() throws Exception {
+        ParsecAsyncHttpRequest first = cache("http://localhost/users/1", "user:1", "users");
+        cache("http://localhost/users/2", "users");
+
+        assertEquals(index.getByTag("user:1"), Collections.singletonList(first));
+        assertEquals(index.getByTag("users").size(), 2);
+        assertTrue(index.getByTag("groups").isEmpty());
+    }
+
+    @Test
+    public void testTagsOfLaterLoadsAreAdded() throws Exception {
+        ParsecAsyncHttpRequest key = cache("http://localhost/users/1", "a");
+        index.add(key, request("http://localhost/users/1", "b"));
+
+        assertEquals(index.getByTag("a"), Collections.singletonList(key));
+        assertEquals(index.getByTag("b"), Collections.singletonList(key));
+    }
+
+    @Test
+    public void testRemove() throws Exception {
+        ParsecAsyncHttpRequest key = cache("http://localhost/users/1", "users");
+
+        // still cached (e.g. cached again before the removal notification)
+        index.remove(key);
+        assertEquals(index.size(), 1);
+
+        cached.remove(key);
+        index.remove(key);
+        assertEquals(index.size(), 0);
+        assertTrue(index.getByHost("localhost").isEmpty());
+        assertTrue(index.getByUrlPrefix("http://").isEmpty());
+        assertTrue(index.getByTag("users").isEmpty());
+    }
+
+    @Test
+    public void testUncachedKeyIsNotAdded() throws Exception {
+        ParsecAsyncHttpRequest key = request("http://localhost/users/1");
+        index.add(key, key);
+
+        assertEquals(index.size(), 0);
+    }
+
+    @Test
+    public void testCleanUp() throws Exception {
+        ParsecAsyncHttpRequest key = cache("http://localhost/users/1");
+        cache("http://localhost/users/2");
+        cached.remove(key);
+
+        index.cleanUp();
+        assertEquals(index.size(), 1);
+    }
+}
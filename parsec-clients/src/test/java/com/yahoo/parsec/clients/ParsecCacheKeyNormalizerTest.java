@@ -0,0 +1,79 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class ParsecCacheKeyNormalizerTest {
+
+    @Test
+    public void testNormalizeUrlSortsQueryParams() throws Exception {
+        ParsecCacheKeyNormalizer normalizer = new ParsecCacheKeyNormalizer();
+
+        assertEquals(normalizer.normalizeUrl("http://localhost/a?c=3&a=1&b=2&a=0"), "http://localhost/a?a=1&a=0&b=2&c=3");
+        assertEquals(normalizer.normalizeUrl("http://localhost/a?flag&a=1"), "http://localhost/a?a=1&flag");
+        assertEquals(normalizer.normalizeUrl("http://localhost/a?b=2"), "http://localhost/a?b=2");
+        assertEquals(normalizer.normalizeUrl("http://localhost/a"), "http://localhost/a");
+        assertNull(normalizer.normalizeUrl(null));
+    }
+
+    @Test
+    public void testNormalizeUrlWithoutSorting() throws Exception {
+        ParsecCacheKeyNormalizer normalizer = new ParsecCacheKeyNormalizer.Builder().setSortQueryParams(false).build();
+
+        assertFalse(normalizer.isSortQueryParams());
+        assertEquals(normalizer.normalizeUrl("http://localhost/a?b=2&a=1"), "http://localhost/a?b=2&a=1");
+    }
+
+    @Test
+    public void testHeaderAllowlist() throws Exception {
+        ParsecCacheKeyNormalizer normalizer = new ParsecCacheKeyNormalizer.Builder()
+            .setHeaderAllowlist(Arrays.asList("Accept", "X-Tenant"))
+            .build();
+
+        assertTrue(normalizer.isKeyHeader("accept"));
+        assertTrue(normalizer.isKeyHeader("x-tenant"));
+        assertFalse(normalizer.isKeyHeader("x-trace-id"));
+        assertEquals(normalizer.getHeaderAllowlist().size(), 2);
+    }
+
+    @Test
+    public void testAllHeadersByDefault() throws Exception {
+        ParsecCacheKeyNormalizer normalizer = new ParsecCacheKeyNormalizer();
+
+        assertNull(normalizer.getHeaderAllowlist());
+        assertTrue(normalizer.isKeyHeader("x-trace-id"));
+    }
+
+    @Test
+    public void testRequestCacheKey() throws Exception {
+        ParsecCacheKeyNormalizer normalizer = new ParsecCacheKeyNormalizer.Builder().addAllowedHeader("Accept").build();
+        ParsecAsyncHttpRequest request = new ParsecAsyncHttpRequest.Builder()
+            .setUrl("http://localhost/a?b=2&a=1")
+            .addHeader("Accept", "application/json")
+            .addHeader("X-Trace-Id", "1")
+            .build();
+        ParsecAsyncHttpRequest other = new ParsecAsyncHttpRequest.Builder()
+            .setUrl("http://localhost/a?a=1&b=2")
+            .addHeader("accept", "application/json")
+            .addHeader("X-Trace-Id", "2")
+            .build();
+
+        assertNotEquals(request, other);
+        assertEquals(request.withCacheKey(normalizer, Collections.emptySet()),
+            other.withCacheKey(normalizer, Collections.emptySet()));
+        assertNotEquals(request.withCacheKey(normalizer, Collections.singleton("x-trace-id")),
+            other.withCacheKey(normalizer, Collections.singleton("x-trace-id")));
+        assertEquals(request.withCacheKey(normalizer, Collections.emptySet()).getUrl(), request.getUrl());
+    }
+}
@@ -0,0 +1,63 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class ParsecCacheStatsTest {
+
+    @Test
+    public void testEmpty() throws Exception {
+        ParsecCacheStats stats = new ParsecCacheStats(new ParsecCacheStatsCounter(), 0, 0, 0);
+
+        assertEquals(stats.getRequestCount(), 0);
+        assertEquals(stats.getHitRate(), 1.0);
+        assertEquals(stats.getAverageLoadPenalty(), 0.0);
+        assertEquals(stats.getEvictionCount(), 0);
+        assertEquals(stats.getRemovalCounts().size(), RemovalCause.values().length);
+    }
+
+    @Test
+    public void testSnapshot() throws Exception {
+        ParsecCacheStatsCounter counter = new ParsecCacheStatsCounter();
+        counter.recordHit();
+        counter.recordHit();
+        counter.recordStaleHit();
+        counter.recordNegativeHit();
+        counter.recordMiss();
+        counter.recordDiskHit();
+        counter.recordLoad(true, 100);
+        counter.recordLoad(false, 300);
+        counter.recordRevalidation();
+        counter.recordRemoval(RemovalCause.SIZE);
+        counter.recordRemoval(RemovalCause.EXPIRED);
+        counter.recordRemoval(RemovalCause.EXPLICIT);
+
+        ParsecCacheStats stats = new ParsecCacheStats(counter, 3, 1024, 1);
+        counter.recordHit();
+
+        assertEquals(stats.getHitCount(), 2);
+        assertEquals(stats.getStaleHitCount(), 1);
+        assertEquals(stats.getNegativeHitCount(), 1);
+        assertEquals(stats.getMissCount(), 1);
+        assertEquals(stats.getRequestCount(), 5);
+        assertEquals(stats.getHitRate(), 0.8);
+        assertEquals(stats.getDiskHitCount(), 1);
+        assertEquals(stats.getLoadSuccessCount(), 1);
+        assertEquals(stats.getLoadFailureCount(), 1);
+        assertEquals(stats.getTotalLoadTime(), 400);
+        assertEquals(stats.getAverageLoadPenalty(), 200.0);
+        assertEquals(stats.getRevalidationCount(), 1);
+        assertEquals(stats.getEvictionCount(), 2);
+        assertEquals((long) stats.getRemovalCounts().get(RemovalCause.EXPLICIT), 1);
+        assertEquals(stats.getSize(), 3);
+        assertEquals(stats.getWeightedSize(), 1024);
+        assertEquals(stats.getNegativeSize(), 1);
+        assertTrue(stats.toString().contains("hitCount=2"));
+    }
+}
@@ -0,0 +1,246 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import org.testng.annotations.Test;
+
+import javax.ws.rs.core.Response;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+public class ParsecCachedResponseTest {
+    private static final long NOW = 1_000_000_000_000L;
+    private static final long DEFAULT_TTL = 2000;
+    private static final long MAX_TTL = 3_600_000;
+
+    private static String httpDate(long millis) {
+        return DateTimeFormatter.RFC_1123_DATE_TIME.format(Instant.ofEpochMilli(millis).atZone(ZoneOffset.UTC));
+    }
+
+    private ParsecCachedResponse cached(Response.ResponseBuilder builder) {
+        return new ParsecCachedResponse(builder.build(), NOW, NOW, DEFAULT_TTL, MAX_TTL);
+    }
+
+    @Test
+    public void testDefaultTimeToLive() throws Exception {
+        ParsecCachedResponse cached = cached(Response.ok("body"));
+
+        assertEquals(cached.getFreshnessLifetime(), DEFAULT_TTL);
+        assertTrue(cached.isFresh(NOW + DEFAULT_TTL - 1));
+        assertFalse(cached.isFresh(NOW + DEFAULT_TTL));
+        assertTrue(cached.isStorable());
+        assertFalse(cached.hasValidator());
+    }
+
+    @Test
+    public void testMaxAgeAndAge() throws Exception {
+        ParsecCachedResponse cached = cached(Response.ok("body")
+            .header("Cache-Control", "public, max-age=60")
+            .header("Age", "50"));
+
+        assertEquals(cached.getFreshnessLifetime(), 60000);
+        assertEquals(cached.getAge(NOW), 50000);
+        assertTrue(cached.isFresh(NOW + 9999));
+        assertFalse(cached.isFresh(NOW + 10000));
+    }
+
+    @Test
+    public void testSharedMaxAgeOverridesMaxAge() throws Exception {
+        ParsecCachedResponse cached = cached(Response.ok("body").header("Cache-Control", "max-age=60, s-maxage=\"5\""));
+
+        assertEquals(cached.getFreshnessLifetime(), 5000);
+    }
+
+    @Test
+    public void testMaxAgeIsCapped() throws Exception {
+        ParsecCachedResponse cached = cached(Response.ok("body").header("Cache-Control", "max-age=999999999"));
+
+        assertEquals(cached.getFreshnessLifetime(), MAX_TTL);
+    }
+
+    @Test
+    public void testExpires() throws Exception {
+        ParsecCachedResponse cached = cached(Response.ok("body")
+            .header("Date", httpDate(NOW - 10000))
+            .header("Expires", httpDate(NOW + 20000)));
+
+        assertEquals(cached.getFreshnessLifetime(), 30000);
+        // apparent age from Date
+        assertEquals(cached.getAge(NOW), 10000);
+        assertTrue(cached.isFresh(NOW + 19999));
+        assertFalse(cached.isFresh(NOW + 20000));
+    }
+
+    @Test
+    public void testInvalidExpiresIsExpired() throws Exception {
+        ParsecCachedResponse cached = cached(Response.ok("body").header("Expires", "0"));
+
+        assertEquals(cached.getFreshnessLifetime(), 0);
+        assertFalse(cached.isFresh(NOW));
+    }
+
+    @Test
+    public void testNoCacheMustRevalidate() throws Exception {
+        ParsecCachedResponse cached = cached(Response.ok("body")
+            .header("Cache-Control", "no-cache, max-age=60")
+            .header("ETag", "\"v1\""));
+
+        assertFalse(cached.isFresh(NOW));
+        assertTrue(cached.isStorable());
+        assertTrue(cached.isUsable(NOW, 0));
+        assertEquals(cached.getEtag(), "\"v1\"");
+    }
+
+    @Test
+    public void testNoStoreAndPrivateAreNotStorable() throws Exception {
+        assertFalse(cached(Response.ok("body").header("Cache-Control", "no-store")).isStorable());
+        assertFalse(cached(Response.ok("body").header("Cache-Control", "PRIVATE, max-age=60")).isStorable());
+    }
+
+    @Test
+    public void testStaleWithoutValidatorIsNotUsable() throws Exception {
+        ParsecCachedResponse cached = cached(Response.ok("body").header("Last-Modified", httpDate(NOW)));
+        assertTrue(cached.isUsable(NOW + DEFAULT_TTL, 0));
+
+        cached = cached(Response.ok("body"));
+        assertTrue(cached.isUsable(NOW, 0));
+        assertFalse(cached.isUsable(NOW + DEFAULT_TTL, 0));
+    }
+
+    @Test
+    public void testStaleWithin() throws Exception {
+        ParsecCachedResponse cached = cached(Response.ok("body")
+            .header("Cache-Control", "max-age=10, stale-while-revalidate=5, stale-if-error=60"));
+
+        assertEquals(cached.getStaleWhileRevalidate(), 5000);
+        assertEquals(cached.getStaleIfError(), 60000);
+        assertTrue(cached.isStaleWithin(NOW + 14999, 5000));
+        assertFalse(cached.isStaleWithin(NOW + 15000, 5000));
+        assertTrue(cached.isUsable(NOW + 69999, 60000));
+        assertFalse(cached.isUsable(NOW + 70000, 60000));
+    }
+
+    @Test
+    public void testMustRevalidateIsNeverServedStale() throws Exception {
+        ParsecCachedResponse cached = cached(Response.ok("body").header("Cache-Control", "max-age=10, must-revalidate"));
+        assertTrue(cached.isStaleWithin(NOW, 60000));
+        assertFalse(cached.isStaleWithin(NOW + 10000, 60000));
+
+        cached = cached(Response.ok("body").header("Cache-Control", "no-cache, stale-if-error=60"));
+        assertFalse(cached.isStaleWithin(NOW, 60000));
+    }
+
+    @Test
+    public void testShouldRefreshEarly() throws Exception {
+        ParsecCachedResponse cached = new ParsecCachedResponse(
+            Response.ok("body").header("Cache-Control", "max-age=10").build(), NOW - 1000, NOW, DEFAULT_TTL, MAX_TTL);
+
+        // age 1s at NOW, 1s load time: refreshes early when -ln(random) * beta >= 9 - (now - NOW) / 1000
+        assertFalse(cached.shouldRefreshEarly(NOW, 1, 0.5));
+        assertFalse(cached.shouldRefreshEarly(NOW + 8000, 1, 0.5));
+        assertTrue(cached.shouldRefreshEarly(NOW + 8500, 1, 0.5));
+        assertTrue(cached.shouldRefreshEarly(NOW, 1, Math.exp(-9)));
+        assertTrue(cached.shouldRefreshEarly(NOW + 8000, 2, 0.5));
+        // disabled or already stale
+        assertFalse(cached.shouldRefreshEarly(NOW + 8999, 0, Math.exp(-9)));
+        assertFalse(cached.shouldRefreshEarly(NOW + 9000, 1, Math.exp(-9)));
+    }
+
+    @Test
+    public void testRevalidatedKeepsBodyAndUpdatesHeaders() throws Exception {
+        ParsecCachedResponse cached = cached(Response.ok("body")
+            .header("Cache-Control", "max-age=60")
+            .header("ETag", "\"v1\"")
+            .header("X-Other", "other"));
+
+        Response revalidated = cached.revalidated(Response.notModified()
+            .header("Cache-Control", "max-age=120")
+            .build());
+
+        assertEquals(revalidated.getStatus(), 200);
+        assertEquals(revalidated.getEntity(), "body");
+        assertEquals(revalidated.getHeaderString("Cache-Control"), "max-age=120");
+        assertEquals(revalidated.getHeaderString("ETag"), "\"v1\"");
+        assertEquals(revalidated.getHeaderString("X-Other"), "other");
+    }
+
+    @Test
+    public void testWeight() throws Exception {
+        ParsecCachedResponse cached = cached(Response.ok("0123456789").header("X-Key", "value"));
+        assertEquals(cached.getWeight(), 2 * 10 + 2 * (5 + 5));
+
+        assertEquals(ParsecCachedResponse.estimateWeight(Response.ok(new byte[100]).build()), 100);
+        assertEquals(ParsecCachedResponse.estimateWeight(Response.noContent().build()), 0);
+        assertEquals(ParsecCachedResponse.estimateWeight(
+            Response.ok(new ParsecResponseBody(new byte[100], StandardCharsets.UTF_8)).build()), 100);
+    }
+
+    @Test
+    public void testOffHeap() throws Exception {
+        ParsecOffHeapBodyStore store = new ParsecOffHeapBodyStore(100, 50);
+        ParsecCachedResponse onHeap = cached(Response.ok("b\u00f6dy").header("Cache-Control", "max-age=60"));
+        ParsecCachedResponse offHeap = onHeap.offHeap(store);
+
+        assertTrue(offHeap.isOffHeap());
+        assertEquals(offHeap.getResponse().getEntity(), "b\u00f6dy");
+        assertEquals(offHeap.getResponse().getHeaderString("Cache-Control"), "max-age=60");
+        assertEquals(offHeap.getStatus(), 200);
+        assertEquals(offHeap.getFreshnessLifetime(), 60000);
+        assertTrue(offHeap.getWeight() < onHeap.getWeight());
+        assertEquals(store.getLiveBytes(), 5);
+
+        offHeap.release();
+        offHeap.release();
+        assertEquals(store.getLiveBytes(), 0);
+
+        ParsecCachedResponse binary = cached(Response.ok(new byte[] {1, 2, 3})).offHeap(store);
+        assertEquals((byte[]) binary.getResponse().getEntity(), new byte[] {1, 2, 3});
+
+        ParsecResponseBody body =
+            new ParsecResponseBody("b\u00f6dy".getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+        ParsecCachedResponse bytes = cached(Response.ok(body).type("text/plain; charset=UTF-8")).offHeap(store);
+        assertTrue(bytes.isOffHeap());
+        assertEquals(((ParsecResponseBody) bytes.getResponse().getEntity()).getString(), "b\u00f6dy");
+
+        ParsecCachedResponse noBody = cached(Response.noContent());
+        assertSame(noBody.offHeap(store), noBody);
+    }
+
+    @Test
+    public void testOffHeapBodyEvicted() throws Exception {
+        ParsecOffHeapBodyStore store = new ParsecOffHeapBodyStore(10, 10);
+        ParsecCachedResponse offHeap = cached(Response.ok("0123456789").header("ETag", "\"v1\"")).offHeap(store);
+        store.store(new byte[10]);
+
+        assertFalse(offHeap.isBodyAvailable());
+        assertNull(offHeap.getResponse());
+        assertNull(offHeap.revalidated(Response.notModified().build()));
+    }
+
+    @Test
+    public void testParseHttpDate() throws Exception {
+        assertEquals(ParsecCachedResponse.parseHttpDate(httpDate(NOW)), NOW);
+        assertEquals(ParsecCachedResponse.parseHttpDate("invalid"), 0);
+        assertEquals(ParsecCachedResponse.parseHttpDate(null), 0);
+    }
+
+    @Test
+    public void testVary() throws Exception {
+        ParsecCachedResponse cached = cached(Response.ok("body").header("Vary", "Accept-Language, accept-encoding"));
+
+        assertEquals(cached.getVaryHeaders(), Arrays.asList("accept-encoding", "accept-language"));
+        assertTrue(cached.isStorable());
+        assertTrue(cached(Response.ok("body")).getVaryHeaders().isEmpty());
+        assertFalse(cached(Response.ok("body").header("Vary", "*")).isStorable());
+    }
+}
@@ -0,0 +1,176 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+
+public class ParsecCircuitBreakerTest {
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(1000);
+
+    private List<ParsecCircuitBreaker.State> transitions;
+    private ParsecCircuitBreaker.Builder builder;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        transitions = new ArrayList<>();
+        builder = new ParsecCircuitBreaker.Builder()
+            .setWindowSize(10)
+            .setMinimumCalls(4)
+            .setFailureRateThreshold(50)
+            .setSlowCallDuration(500)
+            .setSlowCallRateThreshold(75)
+            .setOpenDuration(50)
+            .setHalfOpenCalls(2)
+            .addStateListener((name, from, to) -> transitions.add(to));
+    }
+
+    @Test
+    public void testStaysClosedBelowMinimumCalls() throws Exception {
+        ParsecCircuitBreaker circuitBreaker = builder.build("host");
+
+        for (int i = 0; i < 3; i++) {
+            circuitBreaker.tryAcquirePermission().onComplete(true, FAST);
+        }
+
+        assertEquals(circuitBreaker.getState(), ParsecCircuitBreaker.State.CLOSED);
+        assertEquals(circuitBreaker.getFailureRate(), -1f);
+    }
+
+    @Test
+    public void testOpensOnFailureRate() throws Exception {
+        ParsecCircuitBreaker circuitBreaker = builder.build("host");
+
+        circuitBreaker.tryAcquirePermission().onComplete(false, FAST);
+        circuitBreaker.tryAcquirePermission().onComplete(true, FAST);
+        circuitBreaker.tryAcquirePermission().onComplete(false, FAST);
+        assertEquals(circuitBreaker.getState(), ParsecCircuitBreaker.State.CLOSED);
+        circuitBreaker.tryAcquirePermission().onComplete(true, FAST);
+
+        assertEquals(circuitBreaker.getState(), ParsecCircuitBreaker.State.OPEN);
+        assertNull(circuitBreaker.tryAcquirePermission());
+        assertEquals(transitions, Arrays.asList(ParsecCircuitBreaker.State.OPEN));
+    }
+
+    @Test
+    public void testOpensOnSlowCallRate() throws Exception {
+        ParsecCircuitBreaker circuitBreaker = builder.build("host");
+
+        circuitBreaker.tryAcquirePermission().onComplete(false, SLOW);
+        circuitBreaker.tryAcquirePermission().onComplete(false, SLOW);
+        circuitBreaker.tryAcquirePermission().onComplete(false, FAST);
+        circuitBreaker.tryAcquirePermission().onComplete(false, SLOW);
+
+        assertEquals(circuitBreaker.getState(), ParsecCircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    public void testSlidingWindowEvictsOldOutcomes() throws Exception {
+        ParsecCircuitBreaker circuitBreaker = builder.setMinimumCalls(10).build("host");
+
+        for (int i = 0; i < 4; i++) {
+            circuitBreaker.tryAcquirePermission().onComplete(true, FAST);
+        }
+        for (int i = 0; i < 10; i++) {
+            circuitBreaker.tryAcquirePermission().onComplete(false, FAST);
+        }
+
+        assertEquals(circuitBreaker.getState(), ParsecCircuitBreaker.State.CLOSED);
+        assertEquals(circuitBreaker.getFailureRate(), 0f);
+    }
+
+    @Test
+    public void testHalfOpenClosesAfterSuccessfulTrialCalls() throws Exception {
+        ParsecCircuitBreaker circuitBreaker = open(builder.build("host"));
+
+        Thread.sleep(60);
+        ParsecCircuitBreaker.Permit first = circuitBreaker.tryAcquirePermission();
+        assertEquals(circuitBreaker.getState(), ParsecCircuitBreaker.State.HALF_OPEN);
+        ParsecCircuitBreaker.Permit second = circuitBreaker.tryAcquirePermission();
+        assertNotNull(second);
+        assertNull(circuitBreaker.tryAcquirePermission());
+
+        first.onComplete(false, FAST);
+        second.onComplete(false, FAST);
+
+        assertEquals(circuitBreaker.getState(), ParsecCircuitBreaker.State.CLOSED);
+        assertEquals(transitions, Arrays.asList(
+            ParsecCircuitBreaker.State.OPEN,
+            ParsecCircuitBreaker.State.HALF_OPEN,
+            ParsecCircuitBreaker.State.CLOSED
+        ));
+
+        // window is reset on close
+        circuitBreaker.tryAcquirePermission().onComplete(true, FAST);
+        assertEquals(circuitBreaker.getState(), ParsecCircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    public void testHalfOpenReopensOnFailure() throws Exception {
+        ParsecCircuitBreaker circuitBreaker = open(builder.build("host"));
+
+        Thread.sleep(60);
+        circuitBreaker.tryAcquirePermission().onComplete(true, FAST);
+
+        assertEquals(circuitBreaker.getState(), ParsecCircuitBreaker.State.OPEN);
+        assertNull(circuitBreaker.tryAcquirePermission());
+    }
+
+    @Test
+    public void testHalfOpenIgnoredCallReleasesPermit() throws Exception {
+        ParsecCircuitBreaker circuitBreaker = open(builder.setHalfOpenCalls(1).build("host"));
+
+        Thread.sleep(60);
+        ParsecCircuitBreaker.Permit permit = circuitBreaker.tryAcquirePermission();
+        assertNull(circuitBreaker.tryAcquirePermission());
+        permit.onIgnored();
+        permit.onIgnored();
+        assertNotNull(circuitBreaker.tryAcquirePermission());
+        assertNull(circuitBreaker.tryAcquirePermission());
+    }
+
+    @Test
+    public void testStragglersDoNotCountAsTrialCalls() throws Exception {
+        ParsecCircuitBreaker circuitBreaker = builder.build("host");
+        List<ParsecCircuitBreaker.Permit> stragglers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            stragglers.add(circuitBreaker.tryAcquirePermission());
+        }
+        open(circuitBreaker);
+
+        Thread.sleep(60);
+        ParsecCircuitBreaker.Permit trial = circuitBreaker.tryAcquirePermission();
+        assertEquals(circuitBreaker.getState(), ParsecCircuitBreaker.State.HALF_OPEN);
+
+        // calls permitted while closed neither close the breaker nor release trial permits
+        stragglers.get(0).onComplete(false, FAST);
+        stragglers.get(1).onComplete(false, FAST);
+        stragglers.get(2).onIgnored();
+        stragglers.get(3).onIgnored();
+        assertEquals(circuitBreaker.getState(), ParsecCircuitBreaker.State.HALF_OPEN);
+        assertNotNull(circuitBreaker.tryAcquirePermission());
+        assertNull(circuitBreaker.tryAcquirePermission());
+
+        trial.onComplete(true, FAST);
+        assertEquals(circuitBreaker.getState(), ParsecCircuitBreaker.State.OPEN);
+    }
+
+    private ParsecCircuitBreaker open(ParsecCircuitBreaker circuitBreaker) {
+        for (int i = 0; i < 4; i++) {
+            circuitBreaker.tryAcquirePermission().onComplete(true, FAST);
+        }
+        assertEquals(circuitBreaker.getState(), ParsecCircuitBreaker.State.OPEN);
+        return circuitBreaker;
+    }
+}
@@ -0,0 +1,141 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import org.testng.annotations.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class ParsecConcurrencyLimiterTest {
+    private static final Executor DIRECT = Runnable::run;
+
+    private ParsecConcurrencyLimiter.Builder builder() {
+        return new ParsecConcurrencyLimiter.Builder()
+            .setInitialLimit(2)
+            .setMaxLimit(100)
+            .setMaxQueueSize(1)
+            .setSmoothing(1.0);
+    }
+
+    @Test
+    public void testQueuesAboveLimitAndStartsOnRelease() throws Exception {
+        ParsecConcurrencyLimiter limiter = builder().build("host");
+        AtomicInteger started = new AtomicInteger();
+        CompletableFuture<String> first = new CompletableFuture<>();
+        CompletableFuture<String> second = new CompletableFuture<>();
+
+        limiter.submit(() -> { started.incrementAndGet(); return first; }, DIRECT);
+        limiter.submit(() -> { started.incrementAndGet(); return second; }, DIRECT);
+        CompletableFuture<String> queued = limiter.submit(
+            () -> { started.incrementAndGet(); return CompletableFuture.completedFuture("queued"); }, DIRECT);
+
+        assertEquals(started.get(), 2);
+        assertEquals(limiter.getInFlight(), 2);
+        assertEquals(limiter.getQueueSize(), 1);
+        assertFalse(queued.isDone());
+
+        first.complete("first");
+        assertEquals(started.get(), 3);
+        assertEquals(queued.get(), "queued");
+        assertEquals(limiter.getQueueSize(), 0);
+        assertEquals(limiter.getInFlight(), 1);
+    }
+
+    @Test
+    public void testRejectsWhenQueueIsFull() throws Exception {
+        ParsecConcurrencyLimiter limiter = builder().build("host");
+
+        limiter.submit(CompletableFuture::new, DIRECT);
+        limiter.submit(CompletableFuture::new, DIRECT);
+        limiter.submit(CompletableFuture::new, DIRECT);
+        CompletableFuture<Object> rejected = limiter.submit(CompletableFuture::new, DIRECT);
+
+        try {
+            rejected.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof ParsecConcurrencyLimitExceededException);
+            assertEquals(((ParsecConcurrencyLimitExceededException) e.getCause()).getHost(), "host");
+        }
+    }
+
+    @Test
+    public void testCancelledQueuedCallIsNotStarted() throws Exception {
+        ParsecConcurrencyLimiter limiter = builder().build("host");
+        AtomicInteger started = new AtomicInteger();
+        CompletableFuture<String> first = new CompletableFuture<>();
+
+        limiter.submit(() -> first, DIRECT);
+        limiter.submit(CompletableFuture::new, DIRECT);
+        CompletableFuture<String> queued = limiter.submit(() -> {
+            started.incrementAndGet();
+            return new CompletableFuture<>();
+        }, DIRECT);
+
+        queued.cancel(true);
+        first.complete("first");
+
+        assertEquals(started.get(), 0);
+        assertEquals(limiter.getInFlight(), 1);
+    }
+
+    @Test
+    public void testLimitGrowsWithStableRtt() throws Exception {
+        ParsecConcurrencyLimiter limiter = builder().build("host");
+        limiter.submit(CompletableFuture::new, DIRECT);
+        limiter.submit(CompletableFuture::new, DIRECT);
+
+        for (int i = 0; i < 5; i++) {
+            limiter.onSample(1000, false);
+        }
+
+        assertTrue(limiter.getLimit() > 2);
+    }
+
+    @Test
+    public void testLimitDoesNotGrowWhenNotUsed() throws Exception {
+        ParsecConcurrencyLimiter limiter = builder().setInitialLimit(10).build("host");
+
+        for (int i = 0; i < 5; i++) {
+            limiter.onSample(1000, false);
+        }
+
+        assertEquals(limiter.getLimit(), 10);
+    }
+
+    @Test
+    public void testLimitShrinksWhenRttIncreases() throws Exception {
+        ParsecConcurrencyLimiter limiter = builder().setInitialLimit(20).setMaxQueueSize(100).build("host");
+        for (int i = 0; i < 20; i++) {
+            limiter.submit(CompletableFuture::new, DIRECT);
+        }
+
+        limiter.onSample(1000, false);
+        int limit = limiter.getLimit();
+        limiter.onSample(10000, false);
+
+        assertTrue(limiter.getLimit() < limit);
+    }
+
+    @Test
+    public void testLimitShrinksOnDropAndRespectsMinLimit() throws Exception {
+        ParsecConcurrencyLimiter limiter = builder().setInitialLimit(10).setMinLimit(5).build("host");
+
+        limiter.onSample(0, true);
+        assertEquals(limiter.getLimit(), 9);
+
+        for (int i = 0; i < 20; i++) {
+            limiter.onSample(1000, true);
+        }
+        assertEquals(limiter.getLimit(), 5);
+    }
+}
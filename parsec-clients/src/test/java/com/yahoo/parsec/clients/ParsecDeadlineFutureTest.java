@@ -0,0 +1,79 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import org.testng.annotations.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class ParsecDeadlineFutureTest {
+    @Test
+    public void testCompletedByExecution() throws Exception {
+        ParsecDeadlineFuture<String> future = new ParsecDeadlineFuture<>();
+        CompletableFuture<String> execution = new CompletableFuture<>();
+        Future<?> timer = mock(Future.class);
+        future.setExecution(execution);
+        future.setTimer(timer);
+
+        execution.complete("done");
+
+        assertEquals(future.get(), "done");
+        verify(timer).cancel(false);
+    }
+
+    @Test
+    public void testExpireCancelsExecution() throws Exception {
+        ParsecDeadlineFuture<String> future = new ParsecDeadlineFuture<>();
+        CompletableFuture<String> execution = new CompletableFuture<>();
+        future.setExecution(execution);
+
+        future.expire(new TimeoutException("deadline"));
+
+        assertTrue(execution.isCancelled());
+        try {
+            future.get();
+            fail("future should time out");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        }
+    }
+
+    @Test
+    public void testCancelCancelsExecutionAndTimer() throws Exception {
+        ParsecDeadlineFuture<String> future = new ParsecDeadlineFuture<>();
+        CompletableFuture<String> execution = new CompletableFuture<>();
+        Future<?> timer = mock(Future.class);
+        future.setExecution(execution);
+        future.setTimer(timer);
+
+        future.cancel(true);
+
+        assertTrue(execution.isCancelled());
+        verify(timer).cancel(false);
+    }
+
+    @Test
+    public void testTimerOfCompletedFutureIsCancelled() throws Exception {
+        ParsecDeadlineFuture<String> future = new ParsecDeadlineFuture<>();
+        future.setExecution(CompletableFuture.completedFuture("done"));
+        Future<?> timer = mock(Future.class);
+
+        future.setTimer(timer);
+
+        verify(timer).cancel(false);
+        future.expire(new TimeoutException("deadline"));
+        assertEquals(future.get(), "done");
+        verify(timer, never()).cancel(true);
+    }
+}
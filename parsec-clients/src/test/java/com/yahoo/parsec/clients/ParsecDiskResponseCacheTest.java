@@ -0,0 +1,195 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.ws.rs.core.Response;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertNull;
+
+public class ParsecDiskResponseCacheTest {
+    private static final long NOW = 1_000_000_000_000L;
+
+    private Path directory;
+    private ParsecDiskResponseCache cache;
+
+    private static ParsecAsyncHttpRequest request(String url) throws Exception {
+        return new ParsecAsyncHttpRequest.Builder().setUrl(url).build();
+    }
+
+    private ParsecDiskResponseCache open(int segmentSize, int maxSegments) throws IOException {
+        if (cache != null) {
+            cache.close();
+        }
+        cache = new ParsecDiskResponseCache(directory, segmentSize, maxSegments, NOW);
+        return cache;
+    }
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("parsec-disk-cache");
+        open(4096, 4);
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        cache.close();
+        File[] files = directory.toFile().listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.toFile().delete();
+    }
+
+    @Test
+    public void testPutAndGet() throws Exception {
+        cache.put(request("http://localhost/a"),
+            Response.ok("b\u00f6dy").header("ETag", "\"v1\"").header("X-Multi", "1").header("X-Multi", "2").build(),
+            NOW - 10, NOW, NOW + 1000);
+        cache.put(request("http://localhost/b"), Response.ok(new byte[] {1, 2, 3}).build(), NOW, NOW, NOW + 1000);
+        cache.put(request("http://localhost/d"), Response.ok(
+            new ParsecResponseBody("b\u00f6dy".getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8),
+            "text/plain; charset=UTF-8").build(), NOW, NOW, NOW + 1000);
+
+        ParsecDiskResponseCache.Record record = cache.get(request("http://localhost/a"), NOW);
+        assertEquals(record.getResponse().getStatus(), 200);
+        assertEquals(record.getResponse().getEntity(), "b\u00f6dy");
+        assertEquals(record.getResponse().getHeaderString("ETag"), "\"v1\"");
+        assertEquals(record.getResponse().getStringHeaders().get("X-Multi").size(), 2);
+        assertEquals(record.getRequestTime(), NOW - 10);
+        assertEquals(record.getResponseTime(), NOW);
+        assertEquals((byte[]) cache.get(request("http://localhost/b"), NOW).getResponse().getEntity(), new byte[] {1, 2, 3});
+        ParsecResponseBody body = (ParsecResponseBody) cache.get(request("http://localhost/d"), NOW)
+            .getResponse().getEntity();
+        assertEquals(body.getString(), "b\u00f6dy");
+        assertNull(cache.get(request("http://localhost/c"), NOW));
+        assertEquals(cache.size(), 3);
+    }
+
+    @Test
+    public void testExpiredResponseIsNotReturned() throws Exception {
+        cache.put(request("http://localhost/a"), Response.ok("a").build(), NOW, NOW, NOW + 1000);
+
+        assertNull(cache.get(request("http://localhost/a"), NOW + 1000));
+        cache.cleanUp(NOW + 1000);
+        assertEquals(cache.size(), 0);
+    }
+
+    @Test
+    public void testSurvivesRestart() throws Exception {
+        cache.put(request("http://localhost/a"), Response.ok("a1").build(), NOW, NOW, NOW + 1000);
+        cache.put(request("http://localhost/a"), Response.ok("a2").build(), NOW, NOW + 1, NOW + 1000);
+        cache.put(request("http://localhost/b"), Response.ok("b").build(), NOW, NOW, NOW + 1000);
+        cache.put(request("http://localhost/c"), Response.ok("c").build(), NOW, NOW, NOW + 1000);
+        cache.remove(request("http://localhost/b"));
+
+        open(4096, 4);
+        assertEquals(cache.get(request("http://localhost/a"), NOW).getResponse().getEntity(), "a2");
+        assertNull(cache.get(request("http://localhost/b"), NOW));
+        assertEquals(cache.get(request("http://localhost/c"), NOW).getResponse().getEntity(), "c");
+        assertEquals(cache.size(), 2);
+    }
+
+    @Test
+    public void testCorruptRecordIsNotRecovered() throws Exception {
+        cache.put(request("http://localhost/a"), Response.ok("a").build(), NOW, NOW, NOW + 1000);
+        cache.put(request("http://localhost/b"), Response.ok("bbbbbbbbbb").build(), NOW, NOW, NOW + 1000);
+        cache.close();
+
+        try (RandomAccessFile file = new RandomAccessFile(directory.resolve("segment-0.log").toFile(), "rw")) {
+            // last byte of the body of b
+            long position = 0;
+            for (long i = 0; i < file.length(); i++) {
+                file.seek(i);
+                if (file.read() == 'b') {
+                    position = i;
+                }
+            }
+            file.seek(position);
+            file.write('x');
+        }
+
+        open(4096, 4);
+        assertEquals(cache.get(request("http://localhost/a"), NOW).getResponse().getEntity(), "a");
+        assertNull(cache.get(request("http://localhost/b"), NOW));
+    }
+
+    @Test
+    public void testCompaction() throws Exception {
+        open(1024, 2);
+        for (int i = 0; i < 100; i++) {
+            cache.put(request("http://localhost/a"), Response.ok("a" + i).build(), NOW, NOW + i, NOW + 1000);
+            cache.put(request("http://localhost/b"), Response.ok("b" + i).build(), NOW, NOW + i, NOW + 1000);
+        }
+
+        assertEquals(cache.getSegmentCount(), 2);
+        assertEquals(cache.get(request("http://localhost/a"), NOW).getResponse().getEntity(), "a99");
+        assertEquals(cache.get(request("http://localhost/b"), NOW).getResponse().getEntity(), "b99");
+
+        open(1024, 2);
+        assertEquals(cache.get(request("http://localhost/a"), NOW).getResponse().getEntity(), "a99");
+        assertEquals(cache.size(), 2);
+    }
+
+    @Test
+    public void testFullSegmentIsDropped() throws Exception {
+        open(1024, 1);
+        for (int i = 0; i < 100; i++) {
+            cache.put(request("http://localhost/" + i), Response.ok("body").build(), NOW, NOW, NOW + 1000);
+        }
+
+        assertEquals(cache.getSegmentCount(), 1);
+        assertNull(cache.get(request("http://localhost/0"), NOW));
+        assertEquals(cache.get(request("http://localhost/99"), NOW).getResponse().getEntity(), "body");
+    }
+
+    @Test
+    public void testLargeResponseIsNotStored() throws Exception {
+        cache.put(request("http://localhost/a"), Response.ok(new byte[2048]).build(), NOW, NOW, NOW + 1000);
+
+        assertNull(cache.get(request("http://localhost/a"), NOW));
+    }
+
+    @Test
+    public void testStreamedBodyIsNotStored() throws Exception {
+        ParsecAsyncHttpRequest request = new ParsecAsyncHttpRequest.Builder().setUrl("http://localhost/a")
+            .setBody(new ByteArrayInputStream(new byte[] {1})).build();
+        cache.put(request, Response.ok("body").build(), NOW, NOW, NOW + 1000);
+
+        assertFalse(cache.contains(request));
+        assertNull(cache.get(request, NOW));
+    }
+
+    @Test
+    public void testKey() throws Exception {
+        ParsecAsyncHttpRequest request = new ParsecAsyncHttpRequest.Builder().setUrl("http://localhost/a")
+            .addHeader("B", "2").addHeader("A", "1").build();
+        ParsecAsyncHttpRequest reordered = new ParsecAsyncHttpRequest.Builder().setUrl("http://localhost/a")
+            .addHeader("A", "1").addHeader("B", "2").build();
+
+        assertEquals(ParsecDiskResponseCache.key(request), ParsecDiskResponseCache.key(reordered));
+        assertNotEquals(ParsecDiskResponseCache.key(request), ParsecDiskResponseCache.key(request("http://localhost/a")));
+        assertEquals(ParsecDiskResponseCache.key(request.withCacheKey(new ParsecCacheKeyNormalizer.Builder()
+                .addAllowedHeader("a").build(), Collections.emptySet())),
+            ParsecDiskResponseCache.key(new ParsecAsyncHttpRequest.Builder().setUrl("http://localhost/a")
+                .addHeader("A", "1").build().withCacheKey(new ParsecCacheKeyNormalizer.Builder()
+                    .addAllowedHeader("a").build(), Collections.emptySet())));
+    }
+}
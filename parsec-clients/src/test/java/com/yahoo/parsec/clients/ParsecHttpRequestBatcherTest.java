@@ -0,0 +1,229 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.ws.rs.core.Response;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class ParsecHttpRequestBatcherTest {
+    private ScheduledExecutorService scheduler;
+    private ParsecHttpRequestBatcher batcher;
+    private List<CompletableFuture<Response>> attempts;
+
+    private List<ParsecAsyncHttpRequest> requests(int count) throws Exception {
+        List<ParsecAsyncHttpRequest> requests = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            requests.add(new ParsecAsyncHttpRequest.Builder().setUrl("http://localhost/" + i).build());
+        }
+        return requests;
+    }
+
+    private CompletableFuture<List<ParsecBatchItem>> execute(
+        List<ParsecAsyncHttpRequest> requests, ParsecBatchOptions options) {
+        return batcher.execute(requests, options, request -> {
+            CompletableFuture<Response> attempt = new CompletableFuture<>();
+            attempts.add(attempt);
+            return attempt;
+        });
+    }
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        batcher = new ParsecHttpRequestBatcher(scheduler);
+        attempts = new CopyOnWriteArrayList<>();
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void testEmptyBatch() throws Exception {
+        assertTrue(execute(Collections.emptyList(), new ParsecBatchOptions.Builder().build()).get().isEmpty());
+    }
+
+    @Test
+    public void testMaxInFlightAndRequestOrder() throws Exception {
+        List<ParsecAsyncHttpRequest> requests = requests(3);
+        CompletableFuture<List<ParsecBatchItem>> future =
+            execute(requests, new ParsecBatchOptions.Builder().setMaxInFlight(2).build());
+        assertEquals(attempts.size(), 2);
+
+        Response second = Response.ok().build();
+        attempts.get(1).complete(second);
+        assertEquals(attempts.size(), 3);
+
+        Response third = Response.status(404).build();
+        attempts.get(2).complete(third);
+        IOException failure = new IOException("failed");
+        attempts.get(0).completeExceptionally(failure);
+
+        List<ParsecBatchItem> items = future.get(1, TimeUnit.SECONDS);
+        assertEquals(items.size(), 3);
+        assertSame(items.get(0).getRequest(), requests.get(0));
+        assertFalse(items.get(0).isSuccess());
+        assertNull(items.get(0).getResponse());
+        assertSame(items.get(0).getThrowable(), failure);
+        assertSame(items.get(1).getResponse(), second);
+        assertTrue(items.get(1).isSuccess());
+        assertSame(items.get(2).getResponse(), third);
+        assertTrue(items.get(2).isSuccess());
+    }
+
+    @Test
+    public void testFailFast() throws Exception {
+        CompletableFuture<List<ParsecBatchItem>> future = execute(requests(3), new ParsecBatchOptions.Builder()
+            .setMaxInFlight(2).setPolicy(ParsecBatchOptions.Policy.FAIL_FAST).build());
+
+        IOException failure = new IOException("failed");
+        attempts.get(0).completeExceptionally(failure);
+
+        try {
+            future.get(1, TimeUnit.SECONDS);
+            fail("batch should fail");
+        } catch (ExecutionException e) {
+            assertSame(e.getCause(), failure);
+        }
+        assertTrue(attempts.get(1).isCancelled());
+        assertEquals(attempts.size(), 2);
+    }
+
+    @Test
+    public void testDeadlineCollectsPartialResults() throws Exception {
+        CompletableFuture<List<ParsecBatchItem>> future = execute(requests(3), new ParsecBatchOptions.Builder()
+            .setMaxInFlight(2).setDeadline(50, TimeUnit.MILLISECONDS).build());
+
+        Response response = Response.ok().build();
+        attempts.get(0).complete(response);
+
+        List<ParsecBatchItem> items = future.get(1, TimeUnit.SECONDS);
+        assertSame(items.get(0).getResponse(), response);
+        assertTrue(items.get(1).getThrowable() instanceof TimeoutException);
+        assertTrue(items.get(2).getThrowable() instanceof TimeoutException);
+        assertTrue(attempts.get(1).isCancelled());
+        assertTrue(attempts.get(2).isCancelled());
+    }
+
+    @Test
+    public void testDeadlineFailsFast() throws Exception {
+        CompletableFuture<List<ParsecBatchItem>> future = execute(requests(2), new ParsecBatchOptions.Builder()
+            .setDeadline(50, TimeUnit.MILLISECONDS).setPolicy(ParsecBatchOptions.Policy.FAIL_FAST).build());
+
+        try {
+            future.get(1, TimeUnit.SECONDS);
+            fail("batch should time out");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        }
+        assertTrue(attempts.get(0).isCancelled());
+        assertTrue(attempts.get(1).isCancelled());
+    }
+
+    @Test
+    public void testQuorum() throws Exception {
+        CompletableFuture<List<ParsecBatchItem>> future = execute(requests(4), new ParsecBatchOptions.Builder()
+            .setQuorum(2).build());
+        assertEquals(attempts.size(), 4);
+
+        Response first = Response.ok().build();
+        attempts.get(2).complete(first);
+        attempts.get(0).complete(Response.status(503).build());
+        assertFalse(future.isDone());
+
+        Response second = Response.ok().build();
+        attempts.get(3).complete(second);
+
+        List<ParsecBatchItem> items = future.get(1, TimeUnit.SECONDS);
+        assertEquals(items.get(0).getResponse().getStatus(), 503);
+        assertTrue(items.get(1).getThrowable() instanceof CancellationException);
+        assertTrue(attempts.get(1).isCancelled());
+        assertSame(items.get(2).getResponse(), first);
+        assertSame(items.get(3).getResponse(), second);
+    }
+
+    @Test
+    public void testQuorumNotReachedByDeadline() throws Exception {
+        CompletableFuture<List<ParsecBatchItem>> future = execute(requests(3), new ParsecBatchOptions.Builder()
+            .setQuorum(2).setDeadline(50, TimeUnit.MILLISECONDS).build());
+
+        Response response = Response.ok().build();
+        attempts.get(1).complete(response);
+
+        List<ParsecBatchItem> items = future.get(1, TimeUnit.SECONDS);
+        assertTrue(items.get(0).getThrowable() instanceof TimeoutException);
+        assertSame(items.get(1).getResponse(), response);
+        assertTrue(items.get(2).getThrowable() instanceof TimeoutException);
+    }
+
+    @Test
+    public void testCancelCancelsRequestsInFlight() throws Exception {
+        CompletableFuture<List<ParsecBatchItem>> future =
+            execute(requests(3), new ParsecBatchOptions.Builder().setMaxInFlight(1).build());
+
+        future.cancel(true);
+
+        assertTrue(attempts.get(0).isCancelled());
+        assertEquals(attempts.size(), 1);
+    }
+
+    @Test
+    public void testExecutionThrows() throws Exception {
+        IllegalStateException failure = new IllegalStateException("failed");
+        List<ParsecBatchItem> items = batcher.execute(requests(1), new ParsecBatchOptions.Builder().build(),
+            request -> {
+                throw failure;
+            }).get(1, TimeUnit.SECONDS);
+
+        assertSame(items.get(0).getThrowable(), failure);
+    }
+
+    @Test
+    public void testSynchronouslyCompletedExecutions() throws Exception {
+        IOException failure = new IOException("failed");
+        List<ParsecBatchItem> items = batcher.execute(requests(5000),
+            new ParsecBatchOptions.Builder().setMaxInFlight(4).build(),
+            request -> {
+                CompletableFuture<Response> attempt = new CompletableFuture<>();
+                attempt.completeExceptionally(failure);
+                return attempt;
+            }).get(5, TimeUnit.SECONDS);
+
+        assertEquals(items.size(), 5000);
+        assertSame(items.get(4999).getThrowable(), failure);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidMaxInFlight() throws Exception {
+        new ParsecBatchOptions.Builder().setMaxInFlight(0);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidQuorum() throws Exception {
+        new ParsecBatchOptions.Builder().setQuorum(-1);
+    }
+}
@@ -0,0 +1,103 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class ParsecHttpRequestCoalescerTest {
+    private ParsecHttpRequestCoalescer<String> coalescer;
+    private AtomicInteger calls;
+    private CompletableFuture<String> call;
+
+    private ParsecAsyncHttpRequest request(String url) throws Exception {
+        return new ParsecAsyncHttpRequest.Builder().setCriticalGet(true).setUrl(url).build();
+    }
+
+    private CompletableFuture<String> execute(ParsecAsyncHttpRequest request) {
+        return coalescer.execute(request, r -> {
+            calls.incrementAndGet();
+            return call;
+        });
+    }
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        coalescer = new ParsecHttpRequestCoalescer<>();
+        calls = new AtomicInteger();
+        call = new CompletableFuture<>();
+    }
+
+    @Test
+    public void testIdenticalRequestsShareOneCall() throws Exception {
+        CompletableFuture<String> first = execute(request("http://localhost/a"));
+        CompletableFuture<String> second = execute(request("http://localhost/a"));
+
+        assertEquals(calls.get(), 1);
+        assertEquals(coalescer.size(), 1);
+
+        call.complete("response");
+        assertEquals(first.get(), "response");
+        assertEquals(second.get(), "response");
+        assertEquals(coalescer.size(), 0);
+    }
+
+    @Test
+    public void testDifferentRequestsDoNotShare() throws Exception {
+        execute(request("http://localhost/a"));
+        execute(request("http://localhost/b"));
+
+        assertEquals(calls.get(), 2);
+    }
+
+    @Test
+    public void testNothingKeptAfterCompletion() throws Exception {
+        execute(request("http://localhost/a"));
+        call.complete("response");
+        call = new CompletableFuture<>();
+
+        execute(request("http://localhost/a"));
+        assertEquals(calls.get(), 2);
+    }
+
+    @Test
+    public void testFailureIsShared() throws Exception {
+        CompletableFuture<String> first = execute(request("http://localhost/a"));
+        CompletableFuture<String> second = execute(request("http://localhost/a"));
+
+        call.completeExceptionally(new IOException("failed"));
+        for (CompletableFuture<String> future : Arrays.asList(first, second)) {
+            try {
+                future.get();
+                fail();
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IOException);
+            }
+        }
+        assertEquals(coalescer.size(), 0);
+    }
+
+    @Test
+    public void testCancelDoesNotAffectOtherCallers() throws Exception {
+        CompletableFuture<String> first = execute(request("http://localhost/a"));
+        CompletableFuture<String> second = execute(request("http://localhost/a"));
+
+        first.cancel(true);
+        assertFalse(call.isDone());
+
+        call.complete("response");
+        assertEquals(second.get(), "response");
+    }
+}
@@ -0,0 +1,172 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.ws.rs.core.Response;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class ParsecHttpRequestHedgerTest {
+    private ScheduledExecutorService scheduler;
+    private List<CompletableFuture<Response>> attempts;
+
+    private CompletableFuture<Response> execute(ParsecHttpRequestHedger hedger, ParsecAsyncHttpRequest request) {
+        return hedger.execute(request, ParsecAsyncCompletionHandlerBase::new, wrapper -> {
+            CompletableFuture<Response> attempt = new CompletableFuture<>();
+            attempts.add(attempt);
+            return attempt;
+        });
+    }
+
+    private void waitForAttempts(int count) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (attempts.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        attempts = new CopyOnWriteArrayList<>();
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void testIsHedgeable() throws Exception {
+        assertFalse(ParsecHttpRequestHedger.isHedgeable(new ParsecAsyncHttpRequest.Builder().build()));
+        assertTrue(ParsecHttpRequestHedger.isHedgeable(
+            new ParsecAsyncHttpRequest.Builder().setHedgeAfter(10).build()));
+        assertTrue(ParsecHttpRequestHedger.isHedgeable(
+            new ParsecAsyncHttpRequest.Builder().setHedgeAfterPercentile(95).build()));
+        assertFalse(ParsecHttpRequestHedger.isHedgeable(
+            new ParsecAsyncHttpRequest.Builder().setMethod("POST").setHedgeAfter(10).build()));
+    }
+
+    @Test
+    public void testHedgeWinsAndPrimaryIsCancelled() throws Exception {
+        ParsecHttpRequestHedger hedger = new ParsecHttpRequestHedger(scheduler, 0.1);
+        ParsecAsyncHttpRequest request = new ParsecAsyncHttpRequest.Builder().setHedgeAfter(10).build();
+
+        CompletableFuture<Response> future = execute(hedger, request);
+        waitForAttempts(2);
+        assertEquals(attempts.size(), 2);
+
+        Response response = Response.ok().build();
+        attempts.get(1).complete(response);
+
+        assertSame(future.get(), response);
+        assertTrue(attempts.get(0).isCancelled());
+    }
+
+    @Test
+    public void testNoHedgeWhenPrimaryCompletes() throws Exception {
+        ParsecHttpRequestHedger hedger = new ParsecHttpRequestHedger(scheduler, 0.1);
+        ParsecAsyncHttpRequest request = new ParsecAsyncHttpRequest.Builder().setHedgeAfter(50).build();
+
+        CompletableFuture<Response> future = execute(hedger, request);
+        attempts.get(0).complete(Response.ok().build());
+        assertEquals(future.get().getStatus(), 200);
+
+        Thread.sleep(100);
+        assertEquals(attempts.size(), 1);
+    }
+
+    @Test
+    public void testFailsWhenAllAttemptsFail() throws Exception {
+        ParsecHttpRequestHedger hedger = new ParsecHttpRequestHedger(scheduler, 0.1);
+        ParsecAsyncHttpRequest request = new ParsecAsyncHttpRequest.Builder().setHedgeAfter(10).build();
+
+        CompletableFuture<Response> future = execute(hedger, request);
+        waitForAttempts(2);
+        attempts.get(0).completeExceptionally(new IOException("primary"));
+        assertFalse(future.isDone());
+        attempts.get(1).completeExceptionally(new IOException("hedge"));
+
+        try {
+            future.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertEquals(e.getCause().getMessage(), "hedge");
+        }
+    }
+
+    @Test
+    public void testBudget() throws Exception {
+        ParsecHttpRequestHedger hedger = new ParsecHttpRequestHedger(scheduler, 0);
+        ParsecAsyncHttpRequest request = new ParsecAsyncHttpRequest.Builder().setHedgeAfter(10).build();
+        assertEquals(hedger.getAvailableTokens(), 0.0);
+
+        execute(hedger, request);
+        Thread.sleep(100);
+        assertEquals(attempts.size(), 1);
+
+        hedger = new ParsecHttpRequestHedger(scheduler, 0.5);
+        assertEquals(hedger.getAvailableTokens(), 10.0);
+        execute(hedger, request);
+        waitForAttempts(3);
+        assertEquals(hedger.getAvailableTokens(), 9.0, 0.001);
+    }
+
+    @Test
+    public void testGetHedgeDelay() throws Exception {
+        ParsecHttpRequestHedger hedger = new ParsecHttpRequestHedger(scheduler, 0.1);
+        ParsecAsyncHttpRequest request = new ParsecAsyncHttpRequest.Builder()
+            .setHedgeAfter(100)
+            .setHedgeAfterPercentile(90)
+            .build();
+        ParsecLatencyWindow window = new ParsecLatencyWindow(100);
+
+        // Not enough samples
+        assertEquals(hedger.getHedgeDelay(request, window), 100);
+
+        for (int i = 1; i <= 100; i++) {
+            window.record(TimeUnit.MILLISECONDS.toMicros(i));
+        }
+        assertEquals(hedger.getHedgeDelay(request, window), 90);
+    }
+
+    @Test
+    public void testSlowPrimariesKeepHedgeDelay() throws Exception {
+        ParsecHttpRequestHedger hedger = new ParsecHttpRequestHedger(scheduler, 1);
+        ParsecAsyncHttpRequest request = new ParsecAsyncHttpRequest.Builder()
+            .setHedgeAfter(20)
+            .setHedgeAfterPercentile(95)
+            .build();
+        ParsecLatencyWindow window = hedger.getLatencyWindow(request);
+
+        // primaries never respond, hedges get their headers in 1ms and win
+        for (int i = 0; i < 15; i++) {
+            CompletableFuture<Response> future = execute(hedger, request);
+            waitForAttempts(2 * i + 2);
+            window.record(TimeUnit.MILLISECONDS.toMicros(1));
+            attempts.get(2 * i + 1).complete(Response.ok().build());
+            future.get();
+            assertTrue(attempts.get(2 * i).isCancelled());
+        }
+
+        assertEquals(window.size(), 30);
+        assertTrue(hedger.getHedgeDelay(request, window) >= 20);
+    }
+}
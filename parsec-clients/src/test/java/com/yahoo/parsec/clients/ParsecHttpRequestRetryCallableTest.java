@@ -4,16 +4,32 @@
 package com.yahoo.parsec.clients;
 
 import com.ning.http.client.AsyncHttpClient;
+import com.ning.http.client.AsyncHttpClientConfig;
 import com.ning.http.client.ListenableFuture;
 import com.ning.http.client.Response;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
-import java.util.List;
-
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
 
 public class ParsecHttpRequestRetryCallableTest {
     private ParsecAsyncHttpRequest request;
@@ -33,6 +49,12 @@ public class ParsecHttpRequestRetryCallableTest {
         mockResponse = mock(com.ning.http.client.Response.class);
         mockClient = mock(AsyncHttpClient.class);
         mockFuture = mock(ListenableFuture.class);
+
+        // Completed attempt: run listener right away
+        doAnswer(invocation -> {
+            ((Runnable) invocation.getArguments()[0]).run();
+            return mockFuture;
+        }).when(mockFuture).addListener(any(Runnable.class), any(Executor.class));
     }
 
     @Test
@@ -45,10 +67,10 @@ public class ParsecHttpRequestRetryCallableTest {
         ParsecHttpRequestRetryCallable<Response> parsecHttpRequestRetryCallable =
             new ParsecHttpRequestRetryCallable<>(mockClient, request);
         Response response = parsecHttpRequestRetryCallable.call();
-        List<Response> responses = parsecHttpRequestRetryCallable.getResponses();
 
         // Default max retries is 3
-        assertEquals(responses.size(), 4);
+        assertEquals(parsecHttpRequestRetryCallable.getRetries(), 3);
+        verify(mockClient, times(4)).executeRequest(request.getNingRequest());
         assertEquals(response.getStatusCode(), 500);
     }
 
@@ -63,9 +85,9 @@ public class ParsecHttpRequestRetryCallableTest {
         ParsecHttpRequestRetryCallable<Response> parsecHttpRequestRetryCallable =
             new ParsecHttpRequestRetryCallable<>(mockClient, request);
         Response response = parsecHttpRequestRetryCallable.call();
-        List<Response> responses = parsecHttpRequestRetryCallable.getResponses();
 
-        assertEquals(responses.size(), 2);
+        assertEquals(parsecHttpRequestRetryCallable.getRetries(), 1);
+        verify(mockClient, times(2)).executeRequest(request.getNingRequest());
         assertEquals(response.getStatusCode(), 500);
     }
 
@@ -79,9 +101,144 @@ public class ParsecHttpRequestRetryCallableTest {
         ParsecHttpRequestRetryCallable<Response> parsecHttpRequestRetryCallable =
             new ParsecHttpRequestRetryCallable<>(mockClient, request);
         Response response = parsecHttpRequestRetryCallable.call();
-        List<Response> responses = parsecHttpRequestRetryCallable.getResponses();
 
-        assertEquals(responses.size(), 1);
+        assertEquals(parsecHttpRequestRetryCallable.getRetries(), 0);
+        verify(mockClient, times(1)).executeRequest(request.getNingRequest());
         assertEquals(response.getStatusCode(), 200);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testCallAsyncDoesNotBlock() throws Exception {
+        request = new ParsecAsyncHttpRequest.Builder()
+            .addRetryStatusCode(500)
+            .build();
+        when(mockClient.executeRequest(request.getNingRequest())).thenReturn(mockFuture);
+
+        // Attempt still in flight: keep listener, do not run it
+        Runnable[] listener = new Runnable[1];
+        doAnswer(invocation -> {
+            listener[0] = (Runnable) invocation.getArguments()[0];
+            return mockFuture;
+        }).when(mockFuture).addListener(any(Runnable.class), any(Executor.class));
+
+        CompletableFuture<Response> future =
+            new ParsecHttpRequestRetryCallable<Response>(mockClient, request).callAsync();
+        assertTrue(!future.isDone());
+        verify(mockFuture, never()).get();
+
+        when(mockResponse.getStatusCode()).thenReturn(200);
+        when(mockFuture.get()).thenReturn(mockResponse);
+        listener[0].run();
+
+        assertTrue(future.isDone());
+        assertEquals(future.get().getStatusCode(), 200);
+    }
+
+    @Test
+    public void testCallAsyncExceptionally() throws Exception {
+        request = new ParsecAsyncHttpRequest.Builder()
+            .addRetryStatusCode(500)
+            .build();
+        when(mockFuture.get()).thenThrow(new ExecutionException(new IOException("connect failed")));
+        when(mockClient.executeRequest(request.getNingRequest())).thenReturn(mockFuture);
+
+        CompletableFuture<Response> future =
+            new ParsecHttpRequestRetryCallable<Response>(mockClient, request).callAsync();
+        try {
+            future.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void testRetryBackoffIsScheduled() throws Exception {
+        request = new ParsecAsyncHttpRequest.Builder()
+            .addRetryStatusCode(503)
+            .setRetryBackoff(100)
+            .setMaxRetries(1)
+            .build();
+        setMockClientReturnStatusCode(503);
+        ScheduledExecutorService mockScheduler = mock(ScheduledExecutorService.class);
+
+        CompletableFuture<Response> future = new ParsecHttpRequestRetryCallable<Response>(
+            mockClient, request, null, Runnable::run, mockScheduler).callAsync();
+
+        verify(mockScheduler).schedule(any(Runnable.class), anyLong(), eq(TimeUnit.MILLISECONDS));
+        verify(mockClient, times(1)).executeRequest(request.getNingRequest());
+        assertTrue(!future.isDone());
+    }
+
+    @Test
+    public void testNoRetryPastDeadline() throws Exception {
+        request = new ParsecAsyncHttpRequest.Builder()
+            .addRetryStatusCode(503)
+            .setRetryBackoff(2000)
+            .setMaxRetries(3)
+            .setDeadlineAfter(500, TimeUnit.MILLISECONDS)
+            .build();
+        when(mockClient.getConfig()).thenReturn(new AsyncHttpClientConfig.Builder().build());
+        when(mockResponse.getStatusCode()).thenReturn(503);
+        when(mockFuture.get()).thenReturn(mockResponse);
+        when(mockClient.executeRequest(any(com.ning.http.client.Request.class))).thenReturn(mockFuture);
+        ScheduledExecutorService mockScheduler = mock(ScheduledExecutorService.class);
+
+        ParsecHttpRequestRetryCallable<Response> callable = new ParsecHttpRequestRetryCallable<>(
+            mockClient, request, null, Runnable::run, mockScheduler);
+        CompletableFuture<Response> future = callable.callAsync();
+
+        assertEquals(future.get().getStatusCode(), 503);
+        assertEquals(callable.getRetries(), 0);
+        verify(mockScheduler, never()).schedule(any(Runnable.class), anyLong(), any(TimeUnit.class));
+    }
+
+    @Test
+    public void testNoAttemptPastDeadline() throws Exception {
+        request = new ParsecAsyncHttpRequest.Builder()
+            .addRetryStatusCode(503)
+            .setDeadline(System.currentTimeMillis() - 1)
+            .build();
+        when(mockClient.getConfig()).thenReturn(new AsyncHttpClientConfig.Builder().build());
+
+        CompletableFuture<Response> future = new ParsecHttpRequestRetryCallable<Response>(mockClient, request)
+            .callAsync();
+        try {
+            future.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        }
+        verify(mockClient, never()).executeRequest(any(com.ning.http.client.Request.class));
+    }
+
+    @Test
+    public void testGetRetryDelay() throws Exception {
+        request = new ParsecAsyncHttpRequest.Builder()
+            .addRetryStatusCode(503)
+            .setRetryBackoff(100)
+            .setMaxRetryBackoff(1000)
+            .build();
+        ParsecHttpRequestRetryCallable<Response> callable = new ParsecHttpRequestRetryCallable<>(mockClient, request);
+
+        // Exponential backoff with jitter
+        long delay = callable.getRetryDelay(mockResponse, 1);
+        assertTrue(delay >= 50 && delay <= 100);
+        delay = callable.getRetryDelay(mockResponse, 3);
+        assertTrue(delay >= 200 && delay <= 400);
+        delay = callable.getRetryDelay(mockResponse, 10);
+        assertTrue(delay >= 500 && delay <= 1000);
+
+        // Retry-After is honored but capped
+        when(mockResponse.getHeader("Retry-After")).thenReturn("5");
+        assertEquals(callable.getRetryDelay(mockResponse, 1), 1000);
+    }
+
+    @Test
+    public void testGetRetryAfter() throws Exception {
+        assertEquals(ParsecHttpRequestRetryCallable.getRetryAfter(null), 0);
+        assertEquals(ParsecHttpRequestRetryCallable.getRetryAfter("2"), 2000);
+        assertEquals(ParsecHttpRequestRetryCallable.getRetryAfter("invalid"), 0);
+        assertEquals(ParsecHttpRequestRetryCallable.getRetryAfter("Wed, 21 Oct 2015 07:28:00 GMT"), 0);
+    }
+}
@@ -0,0 +1,64 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+
+public class ParsecLatencyWindowTest {
+
+    @Test
+    public void testEmptyWindow() throws Exception {
+        ParsecLatencyWindow window = new ParsecLatencyWindow(10);
+        assertEquals(window.size(), 0);
+        assertEquals(window.percentile(99), 0);
+    }
+
+    @Test
+    public void testPercentile() throws Exception {
+        ParsecLatencyWindow window = new ParsecLatencyWindow(100);
+        for (int i = 100; i > 0; i--) {
+            window.record(i);
+        }
+
+        assertEquals(window.size(), 100);
+        assertEquals(window.percentile(50), 50);
+        assertEquals(window.percentile(95), 95);
+        assertEquals(window.percentile(100), 100);
+        assertEquals(window.percentile(0), 1);
+    }
+
+    @Test
+    public void testSlidingWindow() throws Exception {
+        ParsecLatencyWindow window = new ParsecLatencyWindow(4);
+        for (int i = 0; i < 4; i++) {
+            window.record(1000);
+        }
+        for (int i = 0; i < 4; i++) {
+            window.record(10);
+        }
+
+        assertEquals(window.size(), 4);
+        assertEquals(window.percentile(100), 10);
+    }
+
+    @Test
+    public void testSnapshotRecomputedEveryInterval() throws Exception {
+        ParsecLatencyWindow window = new ParsecLatencyWindow(100);
+        for (int i = 1; i <= 100; i++) {
+            window.record(i);
+        }
+        assertEquals(window.percentile(100), 100);
+
+        for (int i = 1; i < ParsecLatencyWindow.RECOMPUTE_INTERVAL; i++) {
+            window.record(1000);
+        }
+        assertEquals(window.percentile(100), 100);
+
+        window.record(1000);
+        assertEquals(window.percentile(100), 1000);
+        assertEquals(window.percentile(50), 66);
+    }
+}
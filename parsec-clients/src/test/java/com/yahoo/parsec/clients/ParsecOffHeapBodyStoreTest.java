@@ -0,0 +1,79 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import org.testng.annotations.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class ParsecOffHeapBodyStoreTest {
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testStoreAndRead() throws Exception {
+        ParsecOffHeapBodyStore store = new ParsecOffHeapBodyStore(100, 10);
+        ParsecOffHeapBodyStore.Handle first = store.store(bytes("first"));
+        ParsecOffHeapBodyStore.Handle second = store.store(bytes("second"));
+
+        assertEquals(store.read(first), bytes("first"));
+        assertEquals(store.read(second), bytes("second"));
+        assertEquals(second.getLength(), 6);
+        assertEquals(store.getLiveBytes(), 11);
+    }
+
+    @Test
+    public void testBodyLargerThanSlabIsNotStored() throws Exception {
+        ParsecOffHeapBodyStore store = new ParsecOffHeapBodyStore(100, 10);
+
+        assertNull(store.store(new byte[11]));
+        assertEquals(store.getLiveBytes(), 0);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testCapacitySmallerThanSlab() throws Exception {
+        new ParsecOffHeapBodyStore(5, 10);
+    }
+
+    @Test
+    public void testOldestSlabIsRecycledWhenFull() throws Exception {
+        ParsecOffHeapBodyStore store = new ParsecOffHeapBodyStore(20, 10);
+        ParsecOffHeapBodyStore.Handle first = store.store(bytes("first!"));
+        ParsecOffHeapBodyStore.Handle second = store.store(bytes("second"));
+        ParsecOffHeapBodyStore.Handle third = store.store(bytes("third!"));
+
+        assertNull(store.read(first));
+        assertFalse(store.contains(first));
+        assertEquals(store.read(second), bytes("second"));
+        assertEquals(store.read(third), bytes("third!"));
+        assertEquals(store.getEvictions(), 1);
+        assertEquals(store.getLiveBytes(), 12);
+
+        // releasing an evicted body has no effect
+        store.release(first);
+        assertEquals(store.getLiveBytes(), 12);
+    }
+
+    @Test
+    public void testEmptySlabIsRecycledFirst() throws Exception {
+        ParsecOffHeapBodyStore store = new ParsecOffHeapBodyStore(30, 10);
+        ParsecOffHeapBodyStore.Handle first = store.store(bytes("first!"));
+        ParsecOffHeapBodyStore.Handle second = store.store(bytes("second"));
+        store.store(bytes("third!"));
+
+        store.release(second);
+        ParsecOffHeapBodyStore.Handle fourth = store.store(bytes("fourth"));
+
+        assertTrue(store.contains(first));
+        assertFalse(store.contains(second));
+        assertEquals(store.read(fourth), bytes("fourth"));
+        assertEquals(store.getEvictions(), 0);
+    }
+}
@@ -0,0 +1,37 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+
+public class ParsecRequestFingerprintTest {
+    @Test
+    public void testSameValuesSameFingerprint() throws Exception {
+        byte[] first = new ParsecRequestFingerprint().add("a").add(1).add(true).add(Arrays.asList("x", "y")).digest();
+        byte[] second = new ParsecRequestFingerprint().add("a").add(1).add(true).add(Arrays.asList("x", "y")).digest();
+
+        assertEquals(first, second);
+        assertEquals(first.length, 32);
+        assertEquals(ParsecRequestFingerprint.hashCode(first), ParsecRequestFingerprint.hashCode(second));
+    }
+
+    @Test
+    public void testValueBoundaries() throws Exception {
+        // lengths are part of the fingerprint, moving a char between values changes it
+        assertFalse(Arrays.equals(
+            new ParsecRequestFingerprint().add("ab").add("c").digest(),
+            new ParsecRequestFingerprint().add("a").add("bc").digest()));
+        assertFalse(Arrays.equals(
+            new ParsecRequestFingerprint().add((String) null).digest(),
+            new ParsecRequestFingerprint().add("").digest()));
+        assertFalse(Arrays.equals(
+            new ParsecRequestFingerprint().add(Arrays.asList("a", "b")).add(Arrays.asList("c")).digest(),
+            new ParsecRequestFingerprint().add(Arrays.asList("a")).add(Arrays.asList("b", "c")).digest()));
+    }
+}
@@ -0,0 +1,164 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.ws.rs.core.Response;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+public class ParsecRequestProcessorTest {
+    private List<CompletableFuture<Response>> attempts;
+    private ParsecRequestProcessor processor;
+    private AtomicLong upstreamDemand;
+    private AtomicBoolean upstreamCancelled;
+
+    private ParsecAsyncHttpRequest request(int i) throws Exception {
+        return new ParsecAsyncHttpRequest.Builder().setUrl("http://localhost/" + i).build();
+    }
+
+    private void subscribeUpstream() {
+        processor.onSubscribe(new ParsecFlow.Subscription() {
+            @Override
+            public void request(long n) {
+                upstreamDemand.addAndGet(n);
+            }
+
+            @Override
+            public void cancel() {
+                upstreamCancelled.set(true);
+            }
+        });
+    }
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        attempts = new CopyOnWriteArrayList<>();
+        upstreamDemand = new AtomicLong();
+        upstreamCancelled = new AtomicBoolean();
+        processor = new ParsecRequestProcessor(2, request -> {
+            CompletableFuture<Response> attempt = new CompletableFuture<>();
+            attempts.add(attempt);
+            return attempt;
+        });
+    }
+
+    @Test
+    public void testResponsesInRequestOrder() throws Exception {
+        subscribeUpstream();
+        assertEquals(upstreamDemand.get(), 0);
+
+        ParsecTestSubscriber<Response> subscriber = new ParsecTestSubscriber<>();
+        processor.subscribe(subscriber);
+        assertEquals(upstreamDemand.get(), 2);
+
+        processor.onNext(request(0));
+        processor.onNext(request(1));
+        subscriber.request(2);
+
+        Response second = Response.ok().build();
+        attempts.get(1).complete(second);
+        assertTrue(subscriber.items.isEmpty());
+
+        Response first = Response.status(404).build();
+        attempts.get(0).complete(first);
+        assertEquals(subscriber.items.size(), 2);
+        assertSame(subscriber.items.get(0), first);
+        assertSame(subscriber.items.get(1), second);
+        assertEquals(upstreamDemand.get(), 4);
+
+        processor.onComplete();
+        assertTrue(subscriber.await());
+        assertTrue(subscriber.completed);
+    }
+
+    @Test
+    public void testNoUpstreamDemandWithoutDownstreamDemand() throws Exception {
+        subscribeUpstream();
+        ParsecTestSubscriber<Response> subscriber = new ParsecTestSubscriber<>();
+        processor.subscribe(subscriber);
+
+        processor.onNext(request(0));
+        attempts.get(0).complete(Response.ok().build());
+        assertEquals(upstreamDemand.get(), 2);
+        assertTrue(subscriber.items.isEmpty());
+
+        subscriber.request(1);
+        assertEquals(subscriber.items.size(), 1);
+        assertEquals(upstreamDemand.get(), 3);
+    }
+
+    @Test
+    public void testFailureCancelsPendingRequests() throws Exception {
+        subscribeUpstream();
+        ParsecTestSubscriber<Response> subscriber = new ParsecTestSubscriber<>();
+        processor.subscribe(subscriber);
+        subscriber.request(2);
+
+        processor.onNext(request(0));
+        processor.onNext(request(1));
+        IOException failure = new IOException("failed");
+        attempts.get(0).completeExceptionally(failure);
+
+        assertTrue(subscriber.await());
+        assertSame(subscriber.error, failure);
+        assertTrue(attempts.get(1).isCancelled());
+        assertTrue(upstreamCancelled.get());
+    }
+
+    @Test
+    public void testUpstreamError() throws Exception {
+        subscribeUpstream();
+        ParsecTestSubscriber<Response> subscriber = new ParsecTestSubscriber<>();
+        processor.subscribe(subscriber);
+        processor.onNext(request(0));
+
+        IOException failure = new IOException("failed");
+        processor.onError(failure);
+
+        assertTrue(subscriber.await());
+        assertSame(subscriber.error, failure);
+        assertTrue(attempts.get(0).isCancelled());
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        subscribeUpstream();
+        ParsecTestSubscriber<Response> subscriber = new ParsecTestSubscriber<>();
+        processor.subscribe(subscriber);
+        processor.onNext(request(0));
+
+        subscriber.subscription.cancel();
+
+        assertTrue(upstreamCancelled.get());
+        assertTrue(attempts.get(0).isCancelled());
+        assertFalse(subscriber.completed);
+    }
+
+    @Test
+    public void testSingleSubscriber() throws Exception {
+        processor.subscribe(new ParsecTestSubscriber<>());
+        ParsecTestSubscriber<Response> second = new ParsecTestSubscriber<>();
+        processor.subscribe(second);
+
+        assertTrue(second.await());
+        assertTrue(second.error instanceof IllegalStateException);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidMaxInFlight() throws Exception {
+        new ParsecRequestProcessor(0, request -> new CompletableFuture<>());
+    }
+}
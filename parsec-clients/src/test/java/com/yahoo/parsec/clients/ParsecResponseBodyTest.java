@@ -0,0 +1,104 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+public class ParsecResponseBodyTest {
+    private static ParsecResponseBody body(String... parts) {
+        ByteBuffer[] buffers = new ByteBuffer[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            buffers[i] = ByteBuffer.wrap(parts[i].getBytes(StandardCharsets.UTF_8));
+        }
+        return new ParsecResponseBody(Arrays.asList(buffers), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testByteBuffersAreReadOnlyViewsOfTheParts() throws Exception {
+        byte[] part = {1, 2, 3};
+        ParsecResponseBody body = new ParsecResponseBody(part, StandardCharsets.UTF_8);
+
+        List<ByteBuffer> buffers = body.getByteBuffers();
+        assertEquals(buffers.size(), 1);
+        assertTrue(buffers.get(0).isReadOnly());
+        assertEquals(buffers.get(0).remaining(), 3);
+
+        // not copied
+        part[0] = 9;
+        assertEquals(buffers.get(0).get(0), 9);
+
+        // every call returns buffers positioned at their start
+        buffers.get(0).get();
+        assertEquals(body.getByteBuffers().get(0).position(), 0);
+        assertEquals(body.getLength(), 3);
+    }
+
+    @Test
+    public void testInputStream() throws Exception {
+        ParsecResponseBody body = body("ab", "", "cde", "f");
+
+        InputStream in = body.getInputStream();
+        assertEquals(in.read(), 'a');
+        assertEquals(in.skip(2), 2);
+        assertEquals(in.available(), 2);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] chunk = new byte[2];
+        int read;
+        while ((read = in.read(chunk, 0, chunk.length)) != -1) {
+            out.write(chunk, 0, read);
+        }
+        assertEquals(out.toString("UTF-8"), "def");
+        assertEquals(in.read(), -1);
+        assertEquals(body.getInputStream().read(new byte[10]), 2);
+    }
+
+    @Test
+    public void testStringIsDecodedOnce() throws Exception {
+        ParsecResponseBody body = body("b\u00f6", "dy");
+
+        assertEquals(body.getLength(), 5);
+        assertEquals(new String(body.getBytes(), StandardCharsets.UTF_8), "b\u00f6dy");
+        assertEquals(body.getString(), "b\u00f6dy");
+        assertSame(body.getString(), body.getString());
+        assertSame(body.toString(), body.getString());
+        assertEquals(body("b\u00f6dy").getString(), "b\u00f6dy");
+    }
+
+    @Test
+    public void testDecodeOncePerType() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        ParsecResponseBody body = body("{\"a\":", "[1]}");
+
+        Map<String, List<Integer>> map = body.decode(mapper, mapper.getTypeFactory().constructType(Map.class));
+        assertEquals(map.get("a"), Arrays.asList(1));
+        assertSame(body.decode(mapper, mapper.getTypeFactory().constructType(Map.class)), map);
+        JsonNode node = body.decode(mapper, mapper.getTypeFactory().constructType(JsonNode.class));
+        assertEquals(node.get("a").get(0).asInt(), 1);
+
+        ParsecResponseBody nullBody = body("null");
+        assertEquals(nullBody.<Object>decode(mapper, mapper.getTypeFactory().constructType(Map.class)), null);
+    }
+
+    @Test
+    public void testGetCharset() throws Exception {
+        assertEquals(ParsecResponseBody.getCharset("text/plain; charset=UTF-8"), StandardCharsets.UTF_8);
+        assertEquals(ParsecResponseBody.getCharset("application/json"), StandardCharsets.ISO_8859_1);
+        assertEquals(ParsecResponseBody.getCharset(null), StandardCharsets.ISO_8859_1);
+    }
+}
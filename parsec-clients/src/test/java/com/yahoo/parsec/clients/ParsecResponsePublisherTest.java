@@ -0,0 +1,129 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+public class ParsecResponsePublisherTest {
+    private List<CompletableFuture<String>> executions;
+    private ParsecResponsePublisher<String> publisher;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        executions = new CopyOnWriteArrayList<>();
+        publisher = new ParsecResponsePublisher<>(() -> {
+            CompletableFuture<String> execution = new CompletableFuture<>();
+            executions.add(execution);
+            return execution;
+        });
+    }
+
+    @Test
+    public void testLazyExecution() throws Exception {
+        ParsecTestSubscriber<String> subscriber = new ParsecTestSubscriber<>();
+        publisher.subscribe(subscriber);
+        assertTrue(executions.isEmpty());
+
+        subscriber.request(1);
+        subscriber.request(1);
+        assertEquals(executions.size(), 1);
+
+        executions.get(0).complete("response");
+        assertTrue(subscriber.await());
+        assertEquals(subscriber.items.size(), 1);
+        assertEquals(subscriber.items.get(0), "response");
+        assertTrue(subscriber.completed);
+        assertNull(subscriber.error);
+    }
+
+    @Test
+    public void testExecutionPerSubscriber() throws Exception {
+        ParsecTestSubscriber<String> first = new ParsecTestSubscriber<>();
+        ParsecTestSubscriber<String> second = new ParsecTestSubscriber<>();
+        publisher.subscribe(first);
+        publisher.subscribe(second);
+        first.request(1);
+        second.request(1);
+
+        assertEquals(executions.size(), 2);
+    }
+
+    @Test
+    public void testFailure() throws Exception {
+        ParsecTestSubscriber<String> subscriber = new ParsecTestSubscriber<>();
+        publisher.subscribe(subscriber);
+        subscriber.request(1);
+
+        IOException failure = new IOException("failed");
+        executions.get(0).completeExceptionally(failure);
+
+        assertTrue(subscriber.await());
+        assertSame(subscriber.error, failure);
+        assertTrue(subscriber.items.isEmpty());
+    }
+
+    @Test
+    public void testExecutionThrows() throws Exception {
+        IOException failure = new IOException("failed");
+        ParsecTestSubscriber<String> subscriber = new ParsecTestSubscriber<>();
+        new ParsecResponsePublisher<String>(() -> {
+            throw new CompletionException(failure);
+        }).subscribe(subscriber);
+        subscriber.request(1);
+
+        assertTrue(subscriber.await());
+        assertSame(subscriber.error, failure);
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        ParsecTestSubscriber<String> subscriber = new ParsecTestSubscriber<>();
+        publisher.subscribe(subscriber);
+        subscriber.request(1);
+        subscriber.subscription.cancel();
+
+        assertTrue(executions.get(0).isCancelled());
+        assertFalse(subscriber.completed);
+        assertNull(subscriber.error);
+    }
+
+    @Test
+    public void testCancelBeforeRequest() throws Exception {
+        ParsecTestSubscriber<String> subscriber = new ParsecTestSubscriber<>();
+        publisher.subscribe(subscriber);
+        subscriber.subscription.cancel();
+        subscriber.request(1);
+
+        assertTrue(executions.isEmpty());
+    }
+
+    @Test
+    public void testInvalidRequest() throws Exception {
+        ParsecTestSubscriber<String> subscriber = new ParsecTestSubscriber<>();
+        publisher.subscribe(subscriber);
+        subscriber.request(0);
+
+        assertTrue(subscriber.await());
+        assertTrue(subscriber.error instanceof IllegalArgumentException);
+        assertTrue(executions.isEmpty());
+    }
+
+    @Test(expectedExceptions = NullPointerException.class)
+    public void testNullSubscriber() throws Exception {
+        publisher.subscribe(null);
+    }
+}
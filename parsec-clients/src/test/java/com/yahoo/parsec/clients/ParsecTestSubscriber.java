@@ -0,0 +1,50 @@
+// Copyright 2016 Yahoo Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+
+package com.yahoo.parsec.clients;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Subscriber collecting the items and terminal signal it receives, for publisher tests.
+ */
+class ParsecTestSubscriber<T> implements ParsecFlow.Subscriber<T> {
+    final List<T> items = new CopyOnWriteArrayList<>();
+    final CountDownLatch terminated = new CountDownLatch(1);
+    volatile ParsecFlow.Subscription subscription;
+    volatile Throwable error;
+    volatile boolean completed;
+
+    @Override
+    public void onSubscribe(ParsecFlow.Subscription subscription) {
+        this.subscription = subscription;
+    }
+
+    @Override
+    public void onNext(T item) {
+        items.add(item);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        error = throwable;
+        terminated.countDown();
+    }
+
+    @Override
+    public void onComplete() {
+        completed = true;
+        terminated.countDown();
+    }
+
+    void request(long n) {
+        subscription.request(n);
+    }
+
+    boolean await() throws InterruptedException {
+        return terminated.await(5, TimeUnit.SECONDS);
+    }
+}